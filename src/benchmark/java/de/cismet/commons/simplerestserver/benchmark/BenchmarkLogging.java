@@ -0,0 +1,49 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+
+/**
+ * Log4J setup shared by the benchmarks. Events that pass the level check are formatted by nobody and discarded by a
+ * <code>NullAppender</code>, so the benchmarks measure the logging path of the server and not the IO of an appender.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class BenchmarkLogging {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    // for configs of containers that are never started
+    static final int UNUSED_PORT = 8080;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new BenchmarkLogging object.
+     */
+    private BenchmarkLogging() {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Resets Log4J to a single discarding appender at the given root level.
+     *
+     * @param  level  the root level
+     */
+    static void configure(final Level level) {
+        final Logger root = Logger.getRootLogger();
+        root.getLoggerRepository().resetConfiguration();
+        root.setLevel(level);
+        root.addAppender(new NullAppender());
+    }
+}
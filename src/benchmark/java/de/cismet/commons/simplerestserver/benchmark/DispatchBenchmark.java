@@ -0,0 +1,171 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import java.util.concurrent.TimeUnit;
+
+import de.cismet.commons.simplerestserver.ServerParamProvider;
+import de.cismet.commons.simplerestserver.WebServerConfig;
+import de.cismet.commons.simplerestserver.benchmark.resource.PingResource;
+import de.cismet.commons.simplerestserver.container.GrizzlyRESTContainer;
+
+/**
+ * Measures a complete request through a {@link GrizzlyRESTContainer} bound to the loopback interface: parsing, the
+ * adapter chain, the Jersey dispatch to a trivial resource and writing the response. The client reuses its connection,
+ * so the numbers do not include connection setup. Metrics can be switched on to measure their overhead.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(
+    iterations = 5,
+    time = 2
+)
+@Measurement(
+    iterations = 5,
+    time = 2
+)
+@Fork(1)
+public class DispatchBenchmark {
+
+    //~ Instance fields --------------------------------------------------------
+
+    @Param({ "false", "true" })
+    public boolean metrics;
+
+    private GrizzlyRESTContainer container;
+    private URL url;
+    private byte[] buffer;
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Starts the container on a free port.
+     *
+     * @throws  Exception  if the container cannot be started
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkLogging.configure(org.apache.log4j.Level.WARN);
+
+        final int port;
+        final ServerSocket probe = new ServerSocket(0);
+        try {
+            port = probe.getLocalPort();
+        } finally {
+            probe.close();
+        }
+
+        final File logFile = File.createTempFile("dispatch-benchmark", ".log"); // NOI18N
+        logFile.deleteOnExit();
+
+        final WebServerConfig config = new WebServerConfig(port, logFile);
+        config.setHost("127.0.0.1"); // NOI18N
+        config.putServerParam(
+            ServerParamProvider.PARAM_JERSEY_PROPERTY_PACKAGES,
+            PingResource.class.getPackage().getName());
+        config.putServerParam(ServerParamProvider.PARAM_METRICS, String.valueOf(metrics));
+        // small responses of kept-alive connections would otherwise wait for the delayed ack of the client
+        config.putServerParam(ServerParamProvider.PARAM_TCP_NO_DELAY, "true"); // NOI18N
+        // the client keeps its connections for the whole trial, reconnects would be measured as dispatch time
+        config.putServerParam(ServerParamProvider.PARAM_KEEP_ALIVE_MAX_REQUESTS, "-1"); // NOI18N
+
+        container = new GrizzlyRESTContainer(config);
+        container.up();
+
+        url = new URL("http://127.0.0.1:" + port + "/ping"); // NOI18N
+        buffer = new byte[256];
+    }
+
+    /**
+     * Stops the container.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        container.down();
+    }
+
+    /**
+     * Sends a request from a single client.
+     *
+     * @return  the number of bytes read
+     *
+     * @throws  IOException  if the request fails
+     */
+    @Benchmark
+    public int ping() throws IOException {
+        return get();
+    }
+
+    /**
+     * Sends requests from eight concurrent clients.
+     *
+     * @return  the number of bytes read
+     *
+     * @throws  IOException  if the request fails
+     */
+    @Benchmark
+    @Threads(8)
+    public int pingConcurrent() throws IOException {
+        return get();
+    }
+
+    /**
+     * Sends a request and reads the response completely, so the connection is kept alive for the next request.
+     *
+     * @return  the number of bytes read
+     *
+     * @throws  IOException  if the request fails or is not answered with 200
+     */
+    private int get() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("unexpected status: " + connection.getResponseCode()); // NOI18N
+        }
+
+        final InputStream in = connection.getInputStream();
+        int total = 0;
+        try {
+            // the buffer is shared by the client threads, its content is never used
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        } finally {
+            in.close();
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,149 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark;
+
+import org.openide.util.Lookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import java.util.concurrent.TimeUnit;
+
+import de.cismet.commons.simplerestserver.ServerParamProvider;
+import de.cismet.commons.simplerestserver.WebServerConfig;
+import de.cismet.commons.simplerestserver.WebServiceContainer;
+import de.cismet.commons.simplerestserver.WebServiceContainerFactory;
+import de.cismet.commons.simplerestserver.benchmark.resource.PingResource;
+
+/**
+ * Compares the startup of the container engines registered with the <code>Lookup</code>: the time from creating the
+ * container until its first response. Every measurement runs in a fresh JVM, so it includes loading and initialising
+ * the classes of the engine and of Jersey, like the start of a server.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class EngineStartupBenchmark {
+
+    //~ Instance fields --------------------------------------------------------
+
+    @Param({ "grizzly", "jdk" })
+    public String engine;
+
+    private WebServiceContainerFactory factory;
+    private WebServerConfig config;
+    private WebServiceContainer container;
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Selects the engine and prepares the configuration of the container.
+     *
+     * @throws  Exception  if the engine is not registered or there is no free port
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkLogging.configure(org.apache.log4j.Level.WARN);
+
+        for (final WebServiceContainerFactory candidate
+                    : Lookup.getDefault().lookupAll(WebServiceContainerFactory.class)) {
+            if (engine.equals(candidate.getName())) {
+                factory = candidate;
+            }
+        }
+        if (factory == null) {
+            throw new IllegalStateException("engine not registered: " + engine); // NOI18N
+        }
+
+        final int port;
+        final ServerSocket probe = new ServerSocket(0);
+        try {
+            port = probe.getLocalPort();
+        } finally {
+            probe.close();
+        }
+
+        final File logFile = File.createTempFile("engine-startup-benchmark", ".log"); // NOI18N
+        logFile.deleteOnExit();
+
+        config = new WebServerConfig(port, logFile);
+        config.setHost("127.0.0.1"); // NOI18N
+        config.putServerParam(
+            ServerParamProvider.PARAM_JERSEY_PROPERTY_PACKAGES,
+            PingResource.class.getPackage().getName());
+    }
+
+    /**
+     * Stops the container started by the measurement.
+     */
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (container != null) {
+            container.down();
+            container = null;
+        }
+    }
+
+    /**
+     * Starts a container and waits for its first response.
+     *
+     * @return  the number of bytes read
+     *
+     * @throws  Exception  if the container cannot be started or the request fails
+     */
+    @Benchmark
+    public int startup() throws Exception {
+        container = factory.createContainer(config);
+        container.up();
+
+        final URL url = new URL("http://127.0.0.1:" + config.getPort() + "/ping"); // NOI18N
+        final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("unexpected status: " + connection.getResponseCode()); // NOI18N
+        }
+
+        final InputStream in = connection.getInputStream();
+        int total = 0;
+        try {
+            final byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        } finally {
+            in.close();
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,108 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark;
+
+import com.sun.grizzly.Controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.cismet.commons.simplerestserver.WebServerConfig;
+import de.cismet.commons.simplerestserver.container.GrizzlyRESTContainer;
+
+/**
+ * Measures the bridge that pipes the java.util.logging output of Grizzly to Log4J. Log4J runs at INFO, so FINEST and
+ * FINE records take the disabled path that must not even create a <code>LogRecord</code>, while INFO and WARNING
+ * records are converted and passed to Log4J.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(
+    iterations = 5,
+    time = 1
+)
+@Measurement(
+    iterations = 5,
+    time = 1
+)
+@Fork(1)
+public class LoggingBridgeBenchmark {
+
+    //~ Instance fields --------------------------------------------------------
+
+    @Param({ "FINEST", "FINE", "INFO", "WARNING" })
+    public String level;
+
+    private Logger logger;
+    private Level julLevel;
+    private Object[] params;
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Installs the bridge, creating a container sets it as the Grizzly logger.
+     *
+     * @throws  Exception  if the container cannot be created
+     */
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkLogging.configure(org.apache.log4j.Level.INFO);
+        final File logFile = File.createTempFile("logging-bridge-benchmark", ".log"); // NOI18N
+        logFile.deleteOnExit();
+        new GrizzlyRESTContainer(new WebServerConfig(BenchmarkLogging.UNUSED_PORT, logFile));
+
+        logger = Controller.logger();
+        julLevel = Level.parse(level);
+        params = new Object[] { "selector", 42 }; // NOI18N
+    }
+
+    /**
+     * Logs a constant message.
+     */
+    @Benchmark
+    public void logMessage() {
+        logger.log(julLevel, "connection accepted"); // NOI18N
+    }
+
+    /**
+     * Logs a parameterised message.
+     */
+    @Benchmark
+    public void logParameterised() {
+        logger.log(julLevel, "{0} processed {1} keys", params); // NOI18N
+    }
+
+    /**
+     * Guards a message with a level check, the way Grizzly does for its debug output.
+     */
+    @Benchmark
+    public void logGuarded() {
+        if (logger.isLoggable(julLevel)) {
+            logger.log(julLevel, "connection accepted"); // NOI18N
+        }
+    }
+}
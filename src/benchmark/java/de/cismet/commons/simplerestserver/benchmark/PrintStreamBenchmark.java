@@ -0,0 +1,113 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark;
+
+import org.apache.log4j.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+
+import java.util.concurrent.TimeUnit;
+
+import de.cismet.commons.simplerestserver.logging.Log4JPrintStream;
+
+/**
+ * Measures the print stream <code>System.out</code> and <code>System.err</code> are redirected to, single threaded and
+ * with several threads writing into the same stream. With DEBUG disabled the output must be discarded without
+ * buffering it.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(
+    iterations = 5,
+    time = 1
+)
+@Measurement(
+    iterations = 5,
+    time = 1
+)
+@Fork(1)
+public class PrintStreamBenchmark {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final String LINE = "processing request 4711 for /resource/path took 12 ms"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    @Param({ "true", "false" })
+    public boolean debug;
+
+    private Log4JPrintStream stream;
+    private byte[] bytes;
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates the stream.
+     */
+    @Setup
+    public void setup() {
+        BenchmarkLogging.configure(debug ? org.apache.log4j.Level.DEBUG : org.apache.log4j.Level.INFO);
+
+        stream = new Log4JPrintStream(Logger.getLogger(PrintStreamBenchmark.class));
+        bytes = (LINE + '\n').getBytes(Charset.forName("UTF-8")); // NOI18N
+    }
+
+    /**
+     * Prints a line.
+     */
+    @Benchmark
+    public void println() {
+        stream.println(LINE);
+    }
+
+    /**
+     * Prints a line with four threads sharing the stream.
+     */
+    @Benchmark
+    @Threads(4)
+    public void printlnContended() {
+        stream.println(LINE);
+    }
+
+    /**
+     * Writes a line as bytes followed by a flush, like a wrapping writer does.
+     */
+    @Benchmark
+    public void writeFlush() {
+        stream.write(bytes, 0, bytes.length);
+        stream.flush();
+    }
+
+    /**
+     * Writes a line as bytes followed by a flush with four threads sharing the stream.
+     */
+    @Benchmark
+    @Threads(4)
+    public void writeFlushContended() {
+        stream.write(bytes, 0, bytes.length);
+        stream.flush();
+    }
+}
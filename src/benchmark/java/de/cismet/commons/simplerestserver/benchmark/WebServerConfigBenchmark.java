@@ -0,0 +1,129 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.cismet.commons.simplerestserver.ServerParamProvider;
+import de.cismet.commons.simplerestserver.ServerParamUtils;
+import de.cismet.commons.simplerestserver.WebServerConfig;
+
+/**
+ * Measures the handling of the server configuration: cloning a config, as done for every additional listener, and
+ * reading typed parameters, as done by the container during startup.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(
+    iterations = 5,
+    time = 1
+)
+@Measurement(
+    iterations = 5,
+    time = 1
+)
+@Fork(1)
+public class WebServerConfigBenchmark {
+
+    //~ Instance fields --------------------------------------------------------
+
+    @Param({ "5", "50" })
+    public int paramCount;
+
+    private WebServerConfig config;
+    private Map<String, String> params;
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates a config with the given number of parameters.
+     *
+     * @throws  Exception  if the log file cannot be created
+     */
+    @Setup
+    public void setup() throws Exception {
+        final File logFile = File.createTempFile("config-benchmark", ".log"); // NOI18N
+        logFile.deleteOnExit();
+
+        config = new WebServerConfig(BenchmarkLogging.UNUSED_PORT, logFile);
+        config.putServerParam(ServerParamProvider.PARAM_WORKER_MAX_THREADS, "64");    // NOI18N
+        config.putServerParam(ServerParamProvider.PARAM_KEEP_ALIVE_TIMEOUT, "30");    // NOI18N
+        config.putServerParam(ServerParamProvider.PARAM_TCP_NO_DELAY, "true");        // NOI18N
+        config.putServerParam(ServerParamProvider.PARAM_SERVLET_CONTEXT, "/service"); // NOI18N
+        for (int i = config.getServerParams().size(); i < paramCount; ++i) {
+            config.putServerParam("de.cismet.benchmark.param" + i, String.valueOf(i)); // NOI18N
+        }
+
+        params = config.getServerParams();
+    }
+
+    /**
+     * Clones the config.
+     *
+     * @return  the clone
+     *
+     * @throws  CloneNotSupportedException  never
+     */
+    @Benchmark
+    public WebServerConfig cloneConfig() throws CloneNotSupportedException {
+        return config.clone();
+    }
+
+    /**
+     * Replaces a parameter.
+     *
+     * @return  whether the parameter was put
+     */
+    @Benchmark
+    public boolean putServerParam() {
+        return config.putServerParam(ServerParamProvider.PARAM_SERVLET_CONTEXT, "/service"); // NOI18N
+    }
+
+    /**
+     * Reads the typed parameters the transport configuration reads.
+     *
+     * @return  a value depending on all parameters read
+     */
+    @Benchmark
+    public int readTypedParams() {
+        final Integer maxThreads = ServerParamUtils.getInteger(
+                params,
+                ServerParamProvider.PARAM_WORKER_MAX_THREADS,
+                1,
+                Integer.MAX_VALUE);
+        final int keepAlive = ServerParamUtils.getInt(
+                params,
+                ServerParamProvider.PARAM_KEEP_ALIVE_TIMEOUT,
+                -1,
+                -1,
+                Integer.MAX_VALUE);
+        final Boolean tcpNoDelay = ServerParamUtils.getBoolean(params, ServerParamProvider.PARAM_TCP_NO_DELAY);
+        final String missing = ServerParamUtils.getString(params, ServerParamProvider.PARAM_STATIC_RESOURCE_PATH);
+
+        return maxThreads + keepAlive + (tcpNoDelay ? 1 : 0) + ((missing == null) ? 0 : 1);
+    }
+}
@@ -0,0 +1,36 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.benchmark.resource;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Trivial resource of the dispatch benchmark, its processing time is negligible compared to the server overhead.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@Path("ping")
+public final class PingResource {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Answers a ping.
+     *
+     * @return  <code>pong</code>
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String ping() {
+        return "pong"; // NOI18N
+    }
+}
@@ -57,7 +57,8 @@ public abstract class AbstractWSContainer implements WebServiceContainer {
      */
     private URI initUri() {
         try {
-            final URI uri = new URI(DEFAULT_PROTOCOL, null, DEFAULT_HOST, config.getPort(), "/", null, null);
+            final String host = (config.getHost() == null) ? DEFAULT_HOST : config.getHost();
+            final URI uri = new URI(DEFAULT_PROTOCOL, null, host, config.getPort(), "/", null, null);
             if (LOG.isInfoEnabled()) {
                 LOG.info("created baseuri: " + uri); // NOI18N
             }
@@ -25,6 +25,138 @@ public interface ServerParamProvider {
     String PARAM_SERVLET_CONTEXT = "de.cismet.commons.simplerestserver.servletContextPath";      // NOI18N
     String PARAM_STATIC_RESOURCE_PATH = "de.cismet.commons.simplerestserver.staticResourcePath"; // NOI18N
 
+    // registers the root resources and providers of the build-time resource index instead of scanning the packages,
+    // the packages are still scanned if a jar or directory that contains one of them has no index
+    String PARAM_RESOURCE_INDEX = "de.cismet.commons.simplerestserver.resourceIndex"; // NOI18N
+
+    // static resource serving, sizes in bytes, check interval in milliseconds
+    String PARAM_STATIC_CACHE_SIZE = "de.cismet.commons.simplerestserver.staticCacheSize";                 // NOI18N
+    String PARAM_STATIC_CACHE_MAX_FILE_SIZE = "de.cismet.commons.simplerestserver.staticCacheMaxFileSize"; // NOI18N
+    String PARAM_STATIC_CHECK_INTERVAL = "de.cismet.commons.simplerestserver.staticCheckInterval";         // NOI18N
+
+    // precompressed .br/.gz siblings of static resources, generation only produces .gz variants
+    String PARAM_STATIC_PRECOMPRESSED = "de.cismet.commons.simplerestserver.staticPrecompressed";              // NOI18N
+    String PARAM_STATIC_PRECOMPRESS = "de.cismet.commons.simplerestserver.staticPrecompress";                  // NOI18N
+    String PARAM_STATIC_PRECOMPRESS_INTERVAL = "de.cismet.commons.simplerestserver.staticPrecompressInterval"; // NOI18N
+
+    // response cache of @ResponseCached resources, sizes in bytes, eviction is one of LRU or LFU
+    String PARAM_RESPONSE_CACHE_SIZE = "de.cismet.commons.simplerestserver.responseCacheSize";                   // NOI18N
+    String PARAM_RESPONSE_CACHE_MAX_ENTRY_SIZE = "de.cismet.commons.simplerestserver.responseCacheMaxEntrySize"; // NOI18N
+    String PARAM_RESPONSE_CACHE_EVICTION = "de.cismet.commons.simplerestserver.responseCacheEviction";           // NOI18N
+
+    // transport tuning, unset parameters leave the grizzly defaults untouched; the grizzly controller enforces a
+    // minimum of 5 worker threads, more if there are additional selector read threads
+    String PARAM_WORKER_CORE_THREADS = "de.cismet.commons.simplerestserver.workerCoreThreads";         // NOI18N
+    String PARAM_WORKER_MAX_THREADS = "de.cismet.commons.simplerestserver.workerMaxThreads";           // NOI18N
+    String PARAM_SELECTOR_READ_THREADS = "de.cismet.commons.simplerestserver.selectorReadThreads";     // NOI18N
+    String PARAM_ACCEPT_BACKLOG = "de.cismet.commons.simplerestserver.acceptBacklog";                  // NOI18N
+    String PARAM_TCP_NO_DELAY = "de.cismet.commons.simplerestserver.tcpNoDelay";                       // NOI18N
+    String PARAM_SOCKET_RECEIVE_BUFFER = "de.cismet.commons.simplerestserver.socketReceiveBuffer";     // NOI18N
+    String PARAM_SOCKET_SEND_BUFFER = "de.cismet.commons.simplerestserver.socketSendBuffer";           // NOI18N
+    String PARAM_SOCKET_LINGER = "de.cismet.commons.simplerestserver.socketLinger";                    // NOI18N
+    String PARAM_KEEP_ALIVE_MAX_REQUESTS = "de.cismet.commons.simplerestserver.keepAliveMaxRequests";  // NOI18N
+    String PARAM_KEEP_ALIVE_TIMEOUT = "de.cismet.commons.simplerestserver.keepAliveTimeout";           // NOI18N
+
+    // the engine of the listeners, the name of a registered WebServiceContainerFactory, e.g. grizzly or jdk; the jdk
+    // engine runs the requests in a pool of workerMaxThreads threads or in virtual threads
+    String PARAM_CONTAINER = "de.cismet.commons.simplerestserver.container"; // NOI18N
+
+    // listeners, each with its own selector and worker pool; listeners is a comma separated list of [host:]port entries
+    // replacing the port option, reusePortListeners is the number of listeners per entry sharing it via SO_REUSEPORT
+    String PARAM_LISTENERS = "de.cismet.commons.simplerestserver.listeners";                      // NOI18N
+    String PARAM_REUSE_PORT_LISTENERS = "de.cismet.commons.simplerestserver.reusePortListeners"; // NOI18N
+
+    // per resource method and transport metrics, served in plain-text exposition format on the absolute metrics path,
+    // metricsJmx additionally registers the transport metrics of every listener as MBean
+    String PARAM_METRICS = "de.cismet.commons.simplerestserver.metrics";          // NOI18N
+    String PARAM_METRICS_PATH = "de.cismet.commons.simplerestserver.metricsPath"; // NOI18N
+    String PARAM_METRICS_JMX = "de.cismet.commons.simplerestserver.metricsJmx";   // NOI18N
+
+    // liveness and readiness probes on <healthPath>/live and <healthPath>/ready; backgroundStartup binds the listener
+    // first and initialises Jersey in the background, other requests are rejected with 503 until then
+    String PARAM_HEALTH = "de.cismet.commons.simplerestserver.health";                       // NOI18N
+    String PARAM_HEALTH_PATH = "de.cismet.commons.simplerestserver.healthPath";              // NOI18N
+    String PARAM_BACKGROUND_STARTUP = "de.cismet.commons.simplerestserver.backgroundStartup"; // NOI18N
+
+    // JIT warm-up before a listener reports itself ready: the GET requests of warmUpFile, one path per line, are
+    // replayed over loopback until warmUpRequests requests are sent or warmUpDuration milliseconds have passed
+    String PARAM_WARM_UP_FILE = "de.cismet.commons.simplerestserver.warmUpFile";         // NOI18N
+    String PARAM_WARM_UP_REQUESTS = "de.cismet.commons.simplerestserver.warmUpRequests"; // NOI18N
+    String PARAM_WARM_UP_DURATION = "de.cismet.commons.simplerestserver.warmUpDuration"; // NOI18N
+
+    // adaptive limit of requests in progress in front of jersey, requests over the limit are rejected with 503; the
+    // limit is decreased while the latency exceeds admissionTolerance percent of the lowest observed latency
+    String PARAM_ADMISSION_CONTROL = "de.cismet.commons.simplerestserver.admissionControl";             // NOI18N
+    String PARAM_ADMISSION_INITIAL_LIMIT = "de.cismet.commons.simplerestserver.admissionInitialLimit"; // NOI18N
+    String PARAM_ADMISSION_MIN_LIMIT = "de.cismet.commons.simplerestserver.admissionMinLimit";         // NOI18N
+    String PARAM_ADMISSION_MAX_LIMIT = "de.cismet.commons.simplerestserver.admissionMaxLimit";         // NOI18N
+    String PARAM_ADMISSION_TOLERANCE = "de.cismet.commons.simplerestserver.admissionTolerance";        // NOI18N
+
+    // token bucket per client in front of everything but the health and metrics endpoints: rateLimit requests per
+    // second with bursts of rateLimitBurst requests, requests over the limit are rejected with 429; the key is a comma
+    // separated list of ip, header:<name> and route[:<segments>]
+    String PARAM_RATE_LIMIT = "de.cismet.commons.simplerestserver.rateLimit";                 // NOI18N
+    String PARAM_RATE_LIMIT_BURST = "de.cismet.commons.simplerestserver.rateLimitBurst";      // NOI18N
+    String PARAM_RATE_LIMIT_KEY = "de.cismet.commons.simplerestserver.rateLimitKey";          // NOI18N
+    String PARAM_RATE_LIMIT_MAX_KEYS = "de.cismet.commons.simplerestserver.rateLimitMaxKeys"; // NOI18N
+
+    // identical concurrent GET requests wait for the first one and get a copy of its response; the key consists of the
+    // path, the query and the comma separated coalescingHeaders, coalescingTimeout is in milliseconds
+    String PARAM_COALESCING = "de.cismet.commons.simplerestserver.coalescing";                // NOI18N
+    String PARAM_COALESCING_HEADERS = "de.cismet.commons.simplerestserver.coalescingHeaders"; // NOI18N
+    String PARAM_COALESCING_TIMEOUT = "de.cismet.commons.simplerestserver.coalescingTimeout"; // NOI18N
+    String PARAM_COALESCING_MAX_SIZE = "de.cismet.commons.simplerestserver.coalescingMaxSize"; // NOI18N
+
+    // lets resource methods suspend their response and complete it later from any thread, see SuspendedResponse
+    String PARAM_ASYNC_RESPONSES = "de.cismet.commons.simplerestserver.asyncResponses"; // NOI18N
+
+    // server-sent events: GET <ssePath>/<topic> subscribes to a topic of the EventBroker; every connection queues up to
+    // sseQueueSize events, sseOverflowPolicy is DROP_OLDEST or DISCONNECT, sseHeartbeat is in milliseconds; a client
+    // that does not accept a write within sseWriteTimeout milliseconds is disconnected
+    String PARAM_SSE = "de.cismet.commons.simplerestserver.sse";                               // NOI18N
+    String PARAM_SSE_PATH = "de.cismet.commons.simplerestserver.ssePath";                      // NOI18N
+    String PARAM_SSE_QUEUE_SIZE = "de.cismet.commons.simplerestserver.sseQueueSize";           // NOI18N
+    String PARAM_SSE_OVERFLOW_POLICY = "de.cismet.commons.simplerestserver.sseOverflowPolicy"; // NOI18N
+    String PARAM_SSE_WRITER_THREADS = "de.cismet.commons.simplerestserver.sseWriterThreads";   // NOI18N
+    String PARAM_SSE_HEARTBEAT = "de.cismet.commons.simplerestserver.sseHeartbeat";            // NOI18N
+    String PARAM_SSE_WRITE_TIMEOUT = "de.cismet.commons.simplerestserver.sseWriteTimeout";     // NOI18N
+
+    // websocket endpoints on the port of the listener: a comma separated list of <path>=<class name> entries, the paths
+    // are relative to the context path; sessions refuse messages while more than webSocketMaxPendingBytes are queued, a
+    // client that takes nothing of a pending write within webSocketWriteTimeout milliseconds is disconnected
+    String PARAM_WEB_SOCKET_ENDPOINTS = "de.cismet.commons.simplerestserver.webSocketEndpoints";               // NOI18N
+    String PARAM_WEB_SOCKET_MAX_PENDING_BYTES = "de.cismet.commons.simplerestserver.webSocketMaxPendingBytes"; // NOI18N
+    String PARAM_WEB_SOCKET_WRITE_TIMEOUT = "de.cismet.commons.simplerestserver.webSocketWriteTimeout";        // NOI18N
+
+    // pooled outbound http client, see HttpClientPool; timeouts are in milliseconds, the connect timeout also bounds
+    // the wait for a connection; pipelining is off by default, a httpClientPipelineDepth greater than 1 enables it
+    String PARAM_HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST =
+        "de.cismet.commons.simplerestserver.httpClientMaxConnectionsPerHost";                                 // NOI18N
+    String PARAM_HTTP_CLIENT_CONNECT_TIMEOUT = "de.cismet.commons.simplerestserver.httpClientConnectTimeout"; // NOI18N
+    String PARAM_HTTP_CLIENT_READ_TIMEOUT = "de.cismet.commons.simplerestserver.httpClientReadTimeout";       // NOI18N
+    String PARAM_HTTP_CLIENT_IDLE_TIMEOUT = "de.cismet.commons.simplerestserver.httpClientIdleTimeout";       // NOI18N
+    String PARAM_HTTP_CLIENT_PIPELINE_DEPTH = "de.cismet.commons.simplerestserver.httpClientPipelineDepth";   // NOI18N
+
+    // request execution in virtual threads, the concurrency cap replaces the worker pool size as backpressure knob
+    String PARAM_VIRTUAL_THREADS = "de.cismet.commons.simplerestserver.virtualThreads"; // NOI18N
+    String PARAM_VIRTUAL_THREADS_MAX_CONCURRENCY =
+        "de.cismet.commons.simplerestserver.virtualThreadsMaxConcurrency";              // NOI18N
+
+    // asynchronous logging, the overflow policy is one of BLOCK, DROP_DEBUG or DROP_ALL
+    String PARAM_LOG_ASYNC = "de.cismet.commons.simplerestserver.logAsync";                               // NOI18N
+    String PARAM_LOG_ASYNC_BUFFER_SIZE = "de.cismet.commons.simplerestserver.logAsyncBufferSize";         // NOI18N
+    String PARAM_LOG_ASYNC_BATCH_SIZE = "de.cismet.commons.simplerestserver.logAsyncBatchSize";           // NOI18N
+    String PARAM_LOG_ASYNC_OVERFLOW_POLICY = "de.cismet.commons.simplerestserver.logAsyncOverflowPolicy"; // NOI18N
+
+    // remote logging, the legacy socket appender is used unless log shipping is enabled
+    String PARAM_LOG_REMOTE_HOST = "de.cismet.commons.simplerestserver.logRemoteHost";                // NOI18N
+    String PARAM_LOG_REMOTE_PORT = "de.cismet.commons.simplerestserver.logRemotePort";                // NOI18N
+    String PARAM_LOG_SHIPPING = "de.cismet.commons.simplerestserver.logShipping";                     // NOI18N
+    String PARAM_LOG_SHIPPING_BATCH_SIZE = "de.cismet.commons.simplerestserver.logShippingBatchSize"; // NOI18N
+    String PARAM_LOG_SHIPPING_QUEUE_SIZE = "de.cismet.commons.simplerestserver.logShippingQueueSize"; // NOI18N
+    String PARAM_LOG_SHIPPING_SPOOL_FILE = "de.cismet.commons.simplerestserver.logShippingSpoolFile"; // NOI18N
+    String PARAM_LOG_SHIPPING_SPOOL_SIZE = "de.cismet.commons.simplerestserver.logShippingSpoolSize"; // NOI18N
+
     //~ Methods ----------------------------------------------------------------
 
     /**
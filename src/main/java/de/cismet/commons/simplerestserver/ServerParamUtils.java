@@ -0,0 +1,198 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver;
+
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+
+/**
+ * Helper methods to read typed values from server parameter maps. Invalid values never cause a failure, they are
+ * reported as a warning and treated as if the parameter was not specified.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class ServerParamUtils {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(ServerParamUtils.class);
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ServerParamUtils object.
+     */
+    private ServerParamUtils() {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Reads an integer parameter that must be within the given bounds (inclusive).
+     *
+     * @param   params  the server parameters
+     * @param   key     the parameter key
+     * @param   min     the smallest accepted value
+     * @param   max     the greatest accepted value
+     *
+     * @return  the parameter value or <code>null</code> if the parameter is not present, is not a number or is out of
+     *          bounds
+     */
+    public static Integer getInteger(
+            final Map<String, String> params,
+            final String key,
+            final int min,
+            final int max) {
+        final Long value = getLong(params, key, min, max);
+
+        return (value == null) ? null : value.intValue();
+    }
+
+    /**
+     * Reads an integer parameter that must be within the given bounds (inclusive).
+     *
+     * @param   params        the server parameters
+     * @param   key           the parameter key
+     * @param   defaultValue  the value to use if the parameter is not present or invalid
+     * @param   min           the smallest accepted value
+     * @param   max           the greatest accepted value
+     *
+     * @return  the parameter value or the default value
+     */
+    public static int getInt(
+            final Map<String, String> params,
+            final String key,
+            final int defaultValue,
+            final int min,
+            final int max) {
+        final Integer value = getInteger(params, key, min, max);
+
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Reads a long parameter that must be within the given bounds (inclusive).
+     *
+     * @param   params  the server parameters
+     * @param   key     the parameter key
+     * @param   min     the smallest accepted value
+     * @param   max     the greatest accepted value
+     *
+     * @return  the parameter value or <code>null</code> if the parameter is not present, is not a number or is out of
+     *          bounds
+     */
+    public static Long getLong(final Map<String, String> params, final String key, final long min, final long max) {
+        final String valueString = getString(params, key);
+        if (valueString == null) {
+            return null;
+        }
+
+        final long value;
+        try {
+            value = Long.parseLong(valueString);
+        } catch (final NumberFormatException ex) {
+            LOG.warn("specified " + key + " '" + valueString + "' is not a number -> ignored"); // NOI18N
+
+            return null;
+        }
+
+        if ((value < min) || (value > max)) {
+            LOG.warn("specified " + key + " '" + valueString + "' is not within [" + min + ", " + max // NOI18N
+                        + "] -> ignored"); // NOI18N
+
+            return null;
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads a long parameter that must be within the given bounds (inclusive).
+     *
+     * @param   params        the server parameters
+     * @param   key           the parameter key
+     * @param   defaultValue  the value to use if the parameter is not present or invalid
+     * @param   min           the smallest accepted value
+     * @param   max           the greatest accepted value
+     *
+     * @return  the parameter value or the default value
+     */
+    public static long getLong(
+            final Map<String, String> params,
+            final String key,
+            final long defaultValue,
+            final long min,
+            final long max) {
+        final Long value = getLong(params, key, min, max);
+
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Reads a boolean parameter. Only <code>true</code> and <code>false</code> (case insensitive) are accepted.
+     *
+     * @param   params  the server parameters
+     * @param   key     the parameter key
+     *
+     * @return  the parameter value or <code>null</code> if the parameter is not present or is not a boolean
+     */
+    public static Boolean getBoolean(final Map<String, String> params, final String key) {
+        final String valueString = getString(params, key);
+        if (valueString == null) {
+            return null;
+        } else if ("true".equalsIgnoreCase(valueString)) { // NOI18N
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(valueString)) { // NOI18N
+            return Boolean.FALSE;
+        } else {
+            LOG.warn("specified " + key + " '" + valueString + "' is not a boolean -> ignored"); // NOI18N
+
+            return null;
+        }
+    }
+
+    /**
+     * Reads a boolean parameter. Only <code>true</code> and <code>false</code> (case insensitive) are accepted.
+     *
+     * @param   params        the server parameters
+     * @param   key           the parameter key
+     * @param   defaultValue  the value to use if the parameter is not present or invalid
+     *
+     * @return  the parameter value or the default value
+     */
+    public static boolean getBoolean(final Map<String, String> params, final String key, final boolean defaultValue) {
+        final Boolean value = getBoolean(params, key);
+
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Reads a string parameter. The value is trimmed and empty values are treated as not present.
+     *
+     * @param   params  the server parameters
+     * @param   key     the parameter key
+     *
+     * @return  the trimmed parameter value or <code>null</code> if the parameter is not present or empty
+     */
+    public static String getString(final Map<String, String> params, final String key) {
+        if ((params == null) || (key == null)) {
+            return null;
+        }
+
+        final String value = params.get(key);
+        if (value == null) {
+            return null;
+        }
+
+        final String trimmed = value.trim();
+
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -25,6 +25,8 @@ public final class WebServerConfig implements Cloneable {
     // not final to be able to reassign after clone()
     private transient Map<String, String> serverParams;
     private transient int port;
+    private transient String host;
+    private transient boolean reusePort;
     private transient File logFile;
     private transient boolean debug;
     private transient boolean console;
@@ -128,6 +130,43 @@ public final class WebServerConfig implements Cloneable {
         return port;
     }
 
+    /**
+     * Sets the host name or address the server binds to. <code>null</code> binds to all interfaces.
+     *
+     * @param  host  the host to bind to or <code>null</code>
+     */
+    public void setHost(final String host) {
+        this.host = ((host == null) || host.trim().isEmpty()) ? null : host.trim();
+    }
+
+    /**
+     * Gets the host name or address the server binds to.
+     *
+     * @return  the host to bind to or <code>null</code> if the server binds to all interfaces
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Sets whether the server socket is bound with <code>SO_REUSEPORT</code>, so that several listeners can share the
+     * same port.
+     *
+     * @param  reusePort  true to share the port with other listeners
+     */
+    public void setReusePort(final boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    /**
+     * Indicates whether the server socket is bound with <code>SO_REUSEPORT</code>.
+     *
+     * @return  true if the port is shared with other listeners
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
     /**
      * Stores a the given value by using the given key. If the key is null or empty or the value is null or empty this
      * implementation returns false and nothing is done.
@@ -14,22 +14,33 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.apache.log4j.Appender;
+import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
 import org.openide.util.Lookup;
 import org.openide.util.NbBundle;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.PrintStream;
 
-import java.util.HashSet;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-
-import de.cismet.commons.simplerestserver.container.GrizzlyRESTContainer;
+import java.util.concurrent.TimeUnit;
+
+import de.cismet.commons.simplerestserver.container.GrizzlyContainerFactory;
+import de.cismet.commons.simplerestserver.container.Readiness;
+import de.cismet.commons.simplerestserver.index.ResourceIndex;
+import de.cismet.commons.simplerestserver.loadtest.LoadGenerator;
+import de.cismet.commons.simplerestserver.logging.AsyncBatchingAppender;
+import de.cismet.commons.simplerestserver.logging.FlushableRollingFileAppender;
+import de.cismet.commons.simplerestserver.logging.Log4JPrintStream;
+import de.cismet.commons.simplerestserver.logging.Log4jUtils;
+import de.cismet.commons.simplerestserver.logging.LogShippingAppender;
+import de.cismet.commons.simplerestserver.logging.OverflowPolicy;
 
 /**
  * Starter class for the {@link WebServerMain}.
@@ -61,7 +72,26 @@ public final class WebServerMain {
     public static final String OPTION_SHORT_CONSOLE = "c";      // NOI18N
     public static final String OPTION_LONG_CONSOLE = "console"; // NOI18N
 
-    private static final Set<WebServiceContainer> CONTAINERS = new HashSet<WebServiceContainer>(2, 1);
+    public static final String OPTION_SHORT_LOADTEST = "L";       // NOI18N
+    public static final String OPTION_LONG_LOADTEST = "loadtest"; // NOI18N
+
+    public static final String OPTION_SHORT_CONNECTIONS = "n";          // NOI18N
+    public static final String OPTION_LONG_CONNECTIONS = "connections"; // NOI18N
+
+    public static final String OPTION_SHORT_RATE = "r";   // NOI18N
+    public static final String OPTION_LONG_RATE = "rate"; // NOI18N
+
+    public static final String OPTION_SHORT_URLS = "u";   // NOI18N
+    public static final String OPTION_LONG_URLS = "urls"; // NOI18N
+    public static final String OPTION_DEFAULT_URLS = "/"; // NOI18N
+
+    public static final String OPTION_SHORT_WARMUP = "w";     // NOI18N
+    public static final String OPTION_LONG_WARMUP = "warmup"; // NOI18N
+
+    private static final Set<WebServiceContainer> CONTAINERS = new LinkedHashSet<WebServiceContainer>(2, 1);
+
+    // ms the load test waits for a background startup or a warm-up
+    private static final long LOADTEST_READY_TIMEOUT = 600000;
 
     //~ Constructors -----------------------------------------------------------
 
@@ -109,6 +139,9 @@ public final class WebServerMain {
                 Runtime.getRuntime().addShutdownHook(new RestServerShutdownHook());
                 Thread.setDefaultUncaughtExceptionHandler(new WebServerExceptionHandler());
 
+                // collect the server parameters, they may configure logging, too
+                initServerParams(config);
+
                 // configure logging
                 initLog4j(config);
 
@@ -118,6 +151,12 @@ public final class WebServerMain {
                     container.up();
                 }
 
+                if (cmd.hasOption(OPTION_SHORT_LOADTEST)) {
+                    // drive the containers and exit, the report is printed to the console
+                    runLoadTest(cmd);
+                    System.exit(0);
+                }
+
                 // redirect the system out and error streams
                 redirectSystemOutAndErr();
             } catch (final Exception e) {
@@ -142,6 +181,7 @@ public final class WebServerMain {
      *   <li>logfile</li>
      *   <li>debug</li>
      *   <li>console</li>
+     *   <li>loadtest, connections, rate, urls, warmup</li>
      * </ul>
      *
      * @return  initialised CLI options
@@ -196,11 +236,63 @@ public final class WebServerMain {
                     "WebServerMain.createOptions().consoleDescription")); // NOI18N
         console.setRequired(false);
 
+        final Option loadTest = new Option(
+                OPTION_SHORT_LOADTEST,
+                OPTION_LONG_LOADTEST,
+                true,
+                NbBundle.getMessage(
+                    WebServerMain.class,
+                    "WebServerMain.createOptions().loadTestDescription")); // NOI18N
+        loadTest.setRequired(false);
+
+        final Option connections = new Option(
+                OPTION_SHORT_CONNECTIONS,
+                OPTION_LONG_CONNECTIONS,
+                true,
+                NbBundle.getMessage(
+                    WebServerMain.class,
+                    "WebServerMain.createOptions().connectionsDescription", // NOI18N
+                    LoadGenerator.DEFAULT_CONNECTIONS));
+        connections.setRequired(false);
+
+        final Option rate = new Option(
+                OPTION_SHORT_RATE,
+                OPTION_LONG_RATE,
+                true,
+                NbBundle.getMessage(
+                    WebServerMain.class,
+                    "WebServerMain.createOptions().rateDescription")); // NOI18N
+        rate.setRequired(false);
+
+        final Option urls = new Option(
+                OPTION_SHORT_URLS,
+                OPTION_LONG_URLS,
+                true,
+                NbBundle.getMessage(
+                    WebServerMain.class,
+                    "WebServerMain.createOptions().urlsDescription", // NOI18N
+                    OPTION_DEFAULT_URLS));
+        urls.setRequired(false);
+
+        final Option warmup = new Option(
+                OPTION_SHORT_WARMUP,
+                OPTION_LONG_WARMUP,
+                true,
+                NbBundle.getMessage(
+                    WebServerMain.class,
+                    "WebServerMain.createOptions().warmupDescription")); // NOI18N
+        warmup.setRequired(false);
+
         options.addOption(help);
         options.addOption(port);
         options.addOption(log);
         options.addOption(debug);
         options.addOption(console);
+        options.addOption(loadTest);
+        options.addOption(connections);
+        options.addOption(rate);
+        options.addOption(urls);
+        options.addOption(warmup);
 
         return options;
     }
@@ -225,6 +317,44 @@ public final class WebServerMain {
         return new WebServerConfig(port, logFile, debug, console);
     }
 
+    /**
+     * Runs a {@link LoadGenerator} against the first container and prints the result to the console. The load is
+     * configured by the options <code>loadtest</code> (the duration of the measurement in seconds), <code>
+     * connections</code>, <code>rate</code> (requests per second, a closed loop if missing), <code>urls</code> and
+     * <code>warmup</code> (seconds). The load test starts as soon as all listeners are ready, a background startup or
+     * a warm-up lets them accept connections before.
+     *
+     * @param   cmd  the <code>CommandLine</code>
+     *
+     * @throws  InterruptedException      if the main thread is interrupted while the load test runs
+     * @throws  IllegalArgumentException  if an illegal argument was provided as an option value
+     * @throws  IllegalStateException     if the listeners do not become ready
+     */
+    private static void runLoadTest(final CommandLine cmd) throws InterruptedException {
+        final long duration = Long.valueOf(cmd.getOptionValue(OPTION_SHORT_LOADTEST));
+        final int connections = Integer.valueOf(cmd.getOptionValue(
+                    OPTION_SHORT_CONNECTIONS,
+                    String.valueOf(LoadGenerator.DEFAULT_CONNECTIONS)));
+        final double rate = Double.valueOf(cmd.getOptionValue(OPTION_SHORT_RATE, "0")); // NOI18N
+        final long warmup = Long.valueOf(cmd.getOptionValue(OPTION_SHORT_WARMUP, "0"));  // NOI18N
+        final String urls = cmd.getOptionValue(OPTION_SHORT_URLS, OPTION_DEFAULT_URLS);
+
+        final Readiness readiness = Readiness.getInstance();
+        if (!readiness.awaitReady(LOADTEST_READY_TIMEOUT)) {
+            throw new IllegalStateException("listeners not ready, load test not started: " // NOI18N
+                        + readiness.describe());
+        }
+
+        final LoadGenerator generator = new LoadGenerator(
+                CONTAINERS.iterator().next().getBaseUri(),
+                urls,
+                connections,
+                rate,
+                TimeUnit.SECONDS.toMillis(warmup),
+                TimeUnit.SECONDS.toMillis(duration));
+        generator.run().print(System.out);
+    }
+
     /**
      * Initialises the log4j logging facilities.
      *
@@ -246,15 +376,37 @@ public final class WebServerMain {
             rootLogger.append("INFO");  // NOI18N
         }
 
-        // init socket appender
-        properties.put("log4j.appender.SOCKET", "org.apache.log4j.net.SocketAppender"); // NOI18N
-        properties.put("log4j.appender.SOCKET.remoteHost", "localhost");                // NOI18N
-        properties.put("log4j.appender.SOCKET.port", "4445");                           // NOI18N
-        properties.put("log4j.appender.SOCKET.locationInfo", "true");                   // NOI18N
-        rootLogger.append(", SOCKET");                                                  // NOI18N
+        final Map<String, String> serverParams = config.getServerParams();
+        final boolean async = ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_LOG_ASYNC, false);
+
+        // init remote appender
+        final String host = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_LOG_REMOTE_HOST);
+        final String remoteHost = (host == null) ? LogShippingAppender.DEFAULT_REMOTE_HOST : host;
+        final String remotePort = String.valueOf(ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_LOG_REMOTE_PORT,
+                    LogShippingAppender.DEFAULT_PORT,
+                    1,
+                    65535));
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_LOG_SHIPPING, false)) {
+            initLogShipping(properties, config, remoteHost, remotePort);
+            rootLogger.append(", SHIP");                                                    // NOI18N
+        } else {
+            properties.put("log4j.appender.SOCKET", "org.apache.log4j.net.SocketAppender"); // NOI18N
+            properties.put("log4j.appender.SOCKET.remoteHost", remoteHost);                 // NOI18N
+            properties.put("log4j.appender.SOCKET.port", remotePort);                       // NOI18N
+            properties.put("log4j.appender.SOCKET.locationInfo", "true");                   // NOI18N
+            rootLogger.append(", SOCKET");                                                  // NOI18N
+        }
 
         // init file appender
-        properties.put("log4j.appender.FILE", "org.apache.log4j.RollingFileAppender");         // NOI18N
+        if (async) {
+            // the async appender flushes once per batch
+            properties.put("log4j.appender.FILE", FlushableRollingFileAppender.class.getName()); // NOI18N
+            properties.put("log4j.appender.FILE.ImmediateFlush", "false");                      // NOI18N
+        } else {
+            properties.put("log4j.appender.FILE", "org.apache.log4j.RollingFileAppender");      // NOI18N
+        }
         properties.put("log4j.appender.FILE.file", config.getLogFile().getAbsolutePath());     // NOI18N
         properties.put("log4j.appender.FILE.MaxFileSize", "10000KB");                          // NOI18N
         properties.put("log4j.appender.FILE.MaxBackupIndex", "7");                             // NOI18N
@@ -274,97 +426,298 @@ public final class WebServerMain {
         properties.put("log4j.rootLogger", rootLogger.toString()); // NOI18N
 
         PropertyConfigurator.configure(properties);
+
+        if (async) {
+            initAsyncLogging(serverParams);
+        }
+    }
+
+    /**
+     * Adds the properties of the <code>SHIP</code> {@link LogShippingAppender} to the given log4j properties. The spool
+     * file defaults to the log file name with the suffix <code>.spool</code>.
+     *
+     * @param  properties  the log4j properties
+     * @param  config      the initialised <code>WebServerConfig</code>
+     * @param  remoteHost  the host of the log receiver
+     * @param  remotePort  the port of the log receiver
+     */
+    private static void initLogShipping(
+            final Properties properties,
+            final WebServerConfig config,
+            final String remoteHost,
+            final String remotePort) {
+        final Map<String, String> serverParams = config.getServerParams();
+
+        final String spoolFile = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_SHIPPING_SPOOL_FILE);
+        final int batchSize = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_SHIPPING_BATCH_SIZE,
+                LogShippingAppender.DEFAULT_BATCH_SIZE,
+                1,
+                Integer.MAX_VALUE);
+        final int queueSize = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_SHIPPING_QUEUE_SIZE,
+                LogShippingAppender.DEFAULT_QUEUE_SIZE,
+                1,
+                Integer.MAX_VALUE);
+        final long spoolSize = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_SHIPPING_SPOOL_SIZE,
+                LogShippingAppender.DEFAULT_MAX_SPOOL_SIZE,
+                0,
+                Long.MAX_VALUE);
+
+        final String spool = (spoolFile == null)
+            ? (config.getLogFile().getAbsolutePath() + ".spool") // NOI18N
+            : spoolFile;
+
+        properties.put("log4j.appender.SHIP", LogShippingAppender.class.getName());    // NOI18N
+        properties.put("log4j.appender.SHIP.RemoteHost", remoteHost);                  // NOI18N
+        properties.put("log4j.appender.SHIP.Port", remotePort);                        // NOI18N
+        properties.put("log4j.appender.SHIP.BatchSize", String.valueOf(batchSize));    // NOI18N
+        properties.put("log4j.appender.SHIP.QueueSize", String.valueOf(queueSize));    // NOI18N
+        properties.put("log4j.appender.SHIP.SpoolFile", spool);                        // NOI18N
+        properties.put("log4j.appender.SHIP.MaxSpoolSize", String.valueOf(spoolSize)); // NOI18N
+    }
+
+    /**
+     * Moves all appenders of the root logger behind an {@link AsyncBatchingAppender} so that logging threads never
+     * perform file or socket I/O themselves.
+     *
+     * @param  serverParams  the server parameters holding the async logging configuration
+     */
+    private static void initAsyncLogging(final Map<String, String> serverParams) {
+        final Logger root = Logger.getRootLogger();
+
+        final AsyncBatchingAppender async = new AsyncBatchingAppender();
+        async.setName("ASYNC"); // NOI18N
+        async.setBufferSize(ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_ASYNC_BUFFER_SIZE,
+                AsyncBatchingAppender.DEFAULT_BUFFER_SIZE,
+                1,
+                Integer.MAX_VALUE));
+        async.setBatchSize(ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_ASYNC_BATCH_SIZE,
+                AsyncBatchingAppender.DEFAULT_BATCH_SIZE,
+                1,
+                Integer.MAX_VALUE));
+
+        final String policy = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_LOG_ASYNC_OVERFLOW_POLICY);
+        if (policy != null) {
+            try {
+                async.setOverflowPolicy(OverflowPolicy.valueOf(policy.toUpperCase()));
+            } catch (final IllegalArgumentException e) {
+                System.err.println("[WARN] unknown log overflow policy '" + policy + "' -> using " // NOI18N
+                            + async.getOverflowPolicy());
+            }
+        }
+
+        final Enumeration appenders = root.getAllAppenders();
+        while (appenders.hasMoreElements()) {
+            async.addAppender((Appender)appenders.nextElement());
+        }
+        async.setLocationInfo(Log4jUtils.requiresLocationInfo(async.getAllAppenders()));
+        async.activateOptions();
+
+        root.removeAllAppenders();
+        root.addAppender(async);
+    }
+
+    /**
+     * Replaces the server parameters of the given config with the parameters of the {@link ServerParamProvider}, if
+     * there is any. See {@link #findServerParamProvider()}.
+     *
+     * @param  config  the <code>WebServerConfig</code>
+     */
+    private static void initServerParams(final WebServerConfig config) {
+        final ServerParamProvider spp = findServerParamProvider();
+        if ((spp == null) || (spp.getServerParams() == null) || spp.getServerParams().isEmpty()) {
+            if (config.getServerParams() == null) {
+                System.err.println("[WARN] no server parameters provided, nothing will be served"); // NOI18N
+            } else if (config.getServerParams().isEmpty()) {
+                System.err.println("[WARN] server parameters empty, nothing will be served");       // NOI18N
+            }
+        } else {
+            System.out.println("[INFO] found ServerParamProvider, using its parameters");           // NOI18N
+
+            config.clearServerParams();
+            config.putAllServerParams(spp.getServerParams());
+        }
+    }
+
+    /**
+     * Finds the {@link ServerParamProvider}. If the {@link ResourceIndex} contains exactly one implementation, it is
+     * instantiated directly, which avoids initialising the default {@link Lookup}. Otherwise, e.g. if there are several
+     * implementations whose order is defined by their lookup positions, the default <code>Lookup</code> is asked.
+     *
+     * @return  the <code>ServerParamProvider</code> or <code>null</code> if there is none
+     */
+    private static ServerParamProvider findServerParamProvider() {
+        final ClassLoader context = Thread.currentThread().getContextClassLoader();
+        final ClassLoader loader = (context == null) ? WebServerMain.class.getClassLoader() : context;
+        final Set<String> indexed = ResourceIndex.load(loader)
+                    .getClasses(ResourceIndex.Kind.SERVER_PARAM_PROVIDER);
+        if (indexed.size() == 1) {
+            final String className = indexed.iterator().next();
+            try {
+                return Class.forName(className, true, loader)
+                            .asSubclass(ServerParamProvider.class)
+                            .getDeclaredConstructor()
+                            .newInstance();
+            } catch (final Exception e) {
+                System.err.println("[WARN] cannot create indexed ServerParamProvider " + className // NOI18N
+                            + ", using the lookup: " + e);                                           // NOI18N
+            }
+        }
+
+        return Lookup.getDefault().lookup(ServerParamProvider.class);
     }
 
     /**
-     * Creates {@link WebServiceContainer}s using the given config.
+     * Creates {@link WebServiceContainer}s using the given config. There is one container per listener, each with its
+     * own selector and worker pool. The listeners are the <code>[host:]port</code> entries of the server parameter
+     * {@link ServerParamProvider#PARAM_LISTENERS}, or the configured port on all interfaces if there are none. If
+     * {@link ServerParamProvider#PARAM_REUSE_PORT_LISTENERS} is greater than one, as many listeners share the port of
+     * every entry using <code>SO_REUSEPORT</code> and the kernel spreads the connections across them. The containers
+     * are created by the engine selected with {@link ServerParamProvider#PARAM_CONTAINER}.
      *
      * @param   config  the <code>WebServerConfig</code>
      *
-     * @throws  WebServerException  if a container could not be created
+     * @throws  WebServerException         if a container could not be created
+     * @throws  IllegalArgumentException  if a listener entry is invalid
      */
     private static void createContainers(final WebServerConfig config) throws WebServerException {
+        final Map<String, String> serverParams = config.getServerParams();
+        final WebServiceContainerFactory factory = getContainerFactory(ServerParamUtils.getString(
+                    serverParams,
+                    ServerParamProvider.PARAM_CONTAINER));
+
+        int reusePortListeners = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_REUSE_PORT_LISTENERS,
+                1,
+                1,
+                Integer.MAX_VALUE);
+        if ((reusePortListeners > 1) && !factory.isReusePortSupported()) {
+            System.err.println("[WARN] SO_REUSEPORT not supported, starting one listener per port"); // NOI18N
+            reusePortListeners = 1;
+        }
+
+        final String listeners = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_LISTENERS);
+        final String[] entries = (listeners == null) ? new String[] { String.valueOf(config.getPort()) }
+                                                     : listeners.split(","); // NOI18N
+
         try {
-            final WebServerConfig grizzlyConfig = config.clone();
-
-            // create grizzly container for rest based services
-            final ServerParamProvider spp = Lookup.getDefault().lookup(ServerParamProvider.class);
-            if ((spp == null) || (spp.getServerParams() == null) || spp.getServerParams().isEmpty()) {
-                if (grizzlyConfig.getServerParams() == null) {
-                    System.err.println("[WARN] no server parameters provided, nothing will be served"); // NOI18N
-                } else if (grizzlyConfig.getServerParams().isEmpty()) {
-                    System.err.println("[WARN] server parameters empty, nothing will be served");       // NOI18N
+            boolean first = true;
+            for (final String entry : entries) {
+                if (entry.trim().isEmpty()) {
+                    continue;
                 }
-            } else {
-                System.out.println("[INFO] found ServerParamProvider, using its parameters");           // NOI18N
 
-                grizzlyConfig.clearServerParams();
-                grizzlyConfig.putAllServerParams(spp.getServerParams());
+                for (int i = 0; i < reusePortListeners; ++i) {
+                    // create container for rest based services
+                    final WebServerConfig listenerConfig = config.clone();
+                    configureListener(listenerConfig, entry.trim());
+                    listenerConfig.setReusePort(reusePortListeners > 1);
+                    if (!first) {
+                        // the static resources are shared, one compressor is enough
+                        listenerConfig.removeServerParam(ServerParamProvider.PARAM_STATIC_PRECOMPRESS);
+                    }
+                    CONTAINERS.add(factory.createContainer(listenerConfig));
+                    first = false;
+                }
             }
-            CONTAINERS.add(new GrizzlyRESTContainer(grizzlyConfig));
         } catch (final CloneNotSupportedException ex) {
-            throw new WebServerException("cannot create grizzly configuration", ex); // NOI18N
+            throw new WebServerException("cannot create listener configuration", ex); // NOI18N
         }
     }
 
     /**
-     * DOCUMENT ME!
+     * Returns the engine with the given name from the default <code>Lookup</code>, or the first one if no name is
+     * given.
+     *
+     * @param   name  the name of the engine or <code>null</code>
+     *
+     * @return  the factory of the engine
+     *
+     * @throws  WebServerException  if there is no engine with the given name
      */
-    private static void redirectSystemOutAndErr() {
-        final Logger stdOut = Logger.getLogger("STDOUT"); // NOI18N
-        final Logger stdErr = Logger.getLogger("STDERR"); // NOI18N
+    private static WebServiceContainerFactory getContainerFactory(final String name) throws WebServerException {
+        final StringBuilder available = new StringBuilder();
+        for (final WebServiceContainerFactory factory
+                    : Lookup.getDefault().lookupAll(WebServiceContainerFactory.class)) {
+            if ((name == null) || name.equalsIgnoreCase(factory.getName())) {
+                System.out.println("[INFO] using container engine " + factory.getName()); // NOI18N
+
+                return factory;
+            }
+            if (available.length() > 0) {
+                available.append(", "); // NOI18N
+            }
+            available.append(factory.getName());
+        }
 
-        System.setOut(new PrintStream(new Log4JOutputStream(stdOut)));
-        System.setErr(new PrintStream(new Log4JOutputStream(stdErr)));
-    }
+        if ((name == null) || ((available.length() == 0) && GrizzlyContainerFactory.NAME.equalsIgnoreCase(name))) {
+            // no registrations, e.g. the service files were not generated
+            return new GrizzlyContainerFactory();
+        }
 
-    //~ Inner Classes ----------------------------------------------------------
+        throw new WebServerException("unknown container engine: " + name + ", available: " + available); // NOI18N
+    }
 
     /**
-     * Pipes a outputstream to log4j.
+     * Sets host and port of the given config according to a <code>[host:]port</code> listener entry. IPv6 addresses
+     * must be enclosed in square brackets.
+     *
+     * @param   config  the <code>WebServerConfig</code> of the listener
+     * @param   entry   the listener entry
      *
-     * @version  1.0, 20100518
+     * @throws  IllegalArgumentException  if the entry is invalid
      */
-    private static final class Log4JOutputStream extends ByteArrayOutputStream {
-
-        //~ Instance fields ----------------------------------------------------
-
-        private final transient Logger log;
-
-        //~ Constructors -------------------------------------------------------
+    private static void configureListener(final WebServerConfig config, final String entry) {
+        final int colon = entry.lastIndexOf(':');
+        final String host;
+        final String port;
+        if ((colon < 0) || (entry.indexOf(']') > colon)) {
+            host = null;
+            port = entry;
+        } else {
+            host = entry.substring(0, colon);
+            port = entry.substring(colon + 1);
+        }
 
-        /**
-         * Creates a new Log4JPrintStream object.
-         *
-         * @param  log  the log4j logger to use for logging
-         */
-        public Log4JOutputStream(final Logger log) {
-            this.log = log;
+        try {
+            config.setPort(Integer.parseInt(port.trim()));
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException("illegal listener port: " + entry, ex); // NOI18N
         }
+        if ((host != null) && host.startsWith("[") && host.endsWith("]")) {        // NOI18N
+            config.setHost(host.substring(1, host.length() - 1));
+        } else {
+            config.setHost(host);
+        }
+    }
 
-        //~ Methods ------------------------------------------------------------
+    /**
+     * Redirects the system out and error streams to the loggers <code>STDOUT</code> and <code>STDERR</code>.
+     */
+    private static void redirectSystemOutAndErr() {
+        final Logger stdOut = Logger.getLogger("STDOUT"); // NOI18N
+        final Logger stdErr = Logger.getLogger("STDERR"); // NOI18N
 
-        /**
-         * DOCUMENT ME!
-         *
-         * @throws  IOException  DOCUMENT ME!
-         */
-        @Override
-        public void flush() throws IOException {
-            synchronized (this) {
-                super.flush();
-                final String message = this.toString();
-                super.reset();
-
-                if (log.isDebugEnabled()
-                            && !message.isEmpty()
-                            && !message.equals(System.getProperty("line.separator"))) { // NOI18N
-                    log.debug(message);
-                }
-            }
-        }
+        System.setOut(new Log4JPrintStream(stdOut));
+        System.setErr(new Log4JPrintStream(stdErr));
     }
 
+    //~ Inner Classes ----------------------------------------------------------
+
     /**
      * Shutdown hook for the <code>WebServer</code> that tries to cleanly shutdown all running
      * {@link WebServiceContainer}s.
@@ -395,6 +748,9 @@ public final class WebServerMain {
                     LOG.error("could not shutdown webservice container: " + wsc, ex); // NOI18N
                 }
             }
+
+            // closes the appenders, buffered events are written before
+            LogManager.shutdown();
         }
     }
 }
@@ -0,0 +1,47 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver;
+
+/**
+ * Creates the {@link WebServiceContainer}s of an engine. Engines are registered with the default <code>Lookup</code>,
+ * e.g. using <code>&#64;ServiceProvider(service = WebServiceContainerFactory.class)</code>, and selected by their name
+ * with the server parameter {@link ServerParamProvider#PARAM_CONTAINER}. Without the parameter the engine with the
+ * lowest lookup position is used, the Grizzly engine of the server is registered at position 100.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public interface WebServiceContainerFactory {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the name the engine is selected by.
+     *
+     * @return  the name of the engine
+     */
+    String getName();
+
+    /**
+     * Indicates whether several containers of the engine can share a port using <code>SO_REUSEPORT</code>.
+     *
+     * @return  <code>true</code> if the engine and the platform support <code>SO_REUSEPORT</code>
+     */
+    boolean isReusePortSupported();
+
+    /**
+     * Creates a container for a listener. The container is not started yet.
+     *
+     * @param   config  the configuration of the listener
+     *
+     * @return  the container
+     *
+     * @throws  WebServerException  if the container cannot be created
+     */
+    WebServiceContainer createContainer(WebServerConfig config) throws WebServerException;
+}
@@ -0,0 +1,113 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Copies everything written to the target stream into a buffer until the buffer exceeds its maximum size.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class CapturingOutputStream extends OutputStream {
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final OutputStream target;
+    private final long maxSize;
+    private ByteArrayOutputStream buffer;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new CapturingOutputStream object.
+     *
+     * @param  target       the stream to write to
+     * @param  initialSize  the initial size of the buffer
+     * @param  maxSize      the maximum size of the buffer
+     */
+    CapturingOutputStream(final OutputStream target, final int initialSize, final long maxSize) {
+        this.target = target;
+        this.maxSize = maxSize;
+        this.buffer = new ByteArrayOutputStream(initialSize);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final int b) throws IOException {
+        target.write(b);
+        capture(new byte[] { (byte)b }, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        target.write(b, off, len);
+        capture(b, off, len);
+    }
+
+    /**
+     * Copies the given bytes into the buffer. If the buffer would exceed the maximum size it is discarded.
+     *
+     * @param  b    the bytes
+     * @param  off  the offset
+     * @param  len  the number of bytes
+     */
+    private void capture(final byte[] b, final int off, final int len) {
+        if (buffer != null) {
+            if ((buffer.size() + len) > maxSize) {
+                buffer = null;
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        target.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        target.close();
+    }
+
+    /**
+     * Indicates whether the response exceeded the maximum size.
+     *
+     * @return  true if nothing was captured
+     */
+    boolean isOverflown() {
+        return buffer == null;
+    }
+
+    /**
+     * Returns the captured bytes.
+     *
+     * @return  the captured bytes
+     */
+    byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,221 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.cache;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.HttpMethod;
+
+/**
+ * Captures the serialised response of a <code>GET</code> request that leads a group of identical requests, so that the
+ * container can fan it out to the requests that waited for it. The container announces the leader with
+ * {@link #beginCapture(long)} before it passes the request to Jersey in the same thread and collects the response with
+ * {@link #endCapture()} afterwards. Responses setting cookies are never captured. The factory is registered using the
+ * Jersey init parameter <code>com.sun.jersey.spi.container.ResourceFilters</code>, the container does that
+ * automatically if request coalescing is enabled.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class CoalescingFilterFactory implements ResourceFilterFactory {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final ThreadLocal<Capture> CAPTURE = new ThreadLocal<Capture>();
+
+    private static final ResourceFilter FILTER = new CoalescingFilter();
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Captures the response of the request processed next by the current thread.
+     *
+     * @param  maxSize  the maximum size of the body, larger responses are not captured
+     */
+    public static void beginCapture(final long maxSize) {
+        CAPTURE.set(new Capture(maxSize));
+    }
+
+    /**
+     * Stops capturing and returns the response of the request processed by the current thread.
+     *
+     * @return  the response or <code>null</code> if it was not captured completely, e.g. because the request did not
+     *          match a <code>GET</code> resource method, the resource method failed or the body was too large
+     */
+    public static ResponseCache.CachedResponse endCapture() {
+        final Capture capture = CAPTURE.get();
+        CAPTURE.remove();
+
+        return (capture == null) ? null : capture.response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ResourceFilter> create(final AbstractMethod am) {
+        if (!(am instanceof AbstractResourceMethod)
+                    || !HttpMethod.GET.equals(((AbstractResourceMethod)am).getHttpMethod())) {
+            return null;
+        }
+
+        return Collections.singletonList(FILTER);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * The response captured for the current thread.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Capture {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final long maxSize;
+        private ResponseCache.CachedResponse response;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Capture object.
+         *
+         * @param  maxSize  the maximum size of the body
+         */
+        Capture(final long maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Installs the capturing writer if the current thread processes a leading request.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class CoalescingFilter implements ResourceFilter, ContainerResponseFilter {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerRequestFilter getRequestFilter() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerResponseFilter getResponseFilter() {
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+            final Capture capture = CAPTURE.get();
+            if ((capture != null) && !response.getHttpHeaders().containsKey("Set-Cookie")) { // NOI18N
+                response.setContainerResponseWriter(new CapturingWriter(
+                        response.getContainerResponseWriter(),
+                        capture));
+            }
+
+            return response;
+        }
+    }
+
+    /**
+     * Writes the response to the original writer and to a buffer. If the whole response fits into the maximum size it
+     * is handed to the capture once it is finished.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class CapturingWriter implements ContainerResponseWriter {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final ContainerResponseWriter writer;
+        private final Capture capture;
+
+        private CapturingOutputStream out;
+        private int status;
+        private Map<String, List<Object>> headers;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new CapturingWriter object.
+         *
+         * @param  writer   the original writer
+         * @param  capture  receives the response
+         */
+        CapturingWriter(final ContainerResponseWriter writer, final Capture capture) {
+            this.writer = writer;
+            this.capture = capture;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream writeStatusAndHeaders(final long contentLength, final ContainerResponse response)
+                throws IOException {
+            if (contentLength <= capture.maxSize) {
+                status = response.getStatus();
+                headers = new HashMap<String, List<Object>>();
+                for (final Map.Entry<String, List<Object>> header : response.getHttpHeaders().entrySet()) {
+                    headers.put(header.getKey(), new ArrayList<Object>(header.getValue()));
+                }
+                out = new CapturingOutputStream(
+                        writer.writeStatusAndHeaders(contentLength, response),
+                        (contentLength < 0) ? 1024 : (int)contentLength,
+                        capture.maxSize);
+
+                return out;
+            }
+
+            return writer.writeStatusAndHeaders(contentLength, response);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finish() throws IOException {
+            writer.finish();
+
+            if ((out != null) && !out.isOverflown()) {
+                capture.response = new ResponseCache.CachedResponse(status, headers, out.toByteArray(), 0);
+            }
+        }
+    }
+}
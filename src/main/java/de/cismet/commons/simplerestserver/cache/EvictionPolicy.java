@@ -0,0 +1,28 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.cache;
+
+/**
+ * Defines which entry a {@link ResponseCache} evicts if it is full. Expired entries are always evicted first.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public enum EvictionPolicy {
+
+    //~ Enum constants ---------------------------------------------------------
+
+    /** The least recently used entry is evicted. */
+    LRU,
+
+    /**
+     * The least frequently used entry among the least recently used entries is evicted, so rarely used entries leave
+     * the cache before entries that are hit often but not right now.
+     */
+    LFU
+}
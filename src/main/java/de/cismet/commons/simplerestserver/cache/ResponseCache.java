@@ -0,0 +1,383 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Stores serialised responses of resource methods annotated with {@link ResponseCached}. The cache is bounded by the
+ * total number of body bytes, if it is full entries are evicted according to the {@link EvictionPolicy}. There is one
+ * cache per JVM, it is configured by the container before the Jersey application is started and shared by all
+ * containers.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class ResponseCache implements MetricsSource {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_ENTRY_SIZE = 1024L * 1024;
+
+    // number of least recently used entries inspected by the LFU eviction
+    private static final int LFU_SAMPLE_SIZE = 16;
+
+    // approximate heap usage of an entry without body
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private static final ResponseCache INSTANCE = new ResponseCache();
+
+    //~ Instance fields --------------------------------------------------------
+
+    // access ordered, guarded by itself
+    private final transient LinkedHashMap<String, CachedResponse> entries;
+    private transient long size;
+
+    private transient volatile long maxSize;
+    private transient volatile long maxEntrySize;
+    private transient volatile EvictionPolicy evictionPolicy;
+
+    private final transient AtomicLong hits;
+    private final transient AtomicLong misses;
+    private final transient AtomicLong evictions;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ResponseCache object.
+     */
+    private ResponseCache() {
+        entries = new LinkedHashMap<String, CachedResponse>(64, 0.75f, true);
+        maxSize = DEFAULT_MAX_SIZE;
+        maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+        evictionPolicy = EvictionPolicy.LRU;
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the response cache of this JVM.
+     *
+     * @return  the response cache
+     */
+    public static ResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Configures the cache. Cached entries are discarded if the cache shrinks.
+     *
+     * @param  maxSize         the maximum number of cached bytes, <code>0</code> disables the cache
+     * @param  maxEntrySize    the maximum size of a single response body
+     * @param  evictionPolicy  the eviction policy, <code>null</code> means {@link EvictionPolicy#LRU}
+     */
+    public void configure(final long maxSize, final long maxEntrySize, final EvictionPolicy evictionPolicy) {
+        this.maxSize = Math.max(0, maxSize);
+        this.maxEntrySize = Math.max(0, Math.min(maxEntrySize, maxSize));
+        this.evictionPolicy = (evictionPolicy == null) ? EvictionPolicy.LRU : evictionPolicy;
+
+        synchronized (entries) {
+            evict(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Indicates whether the cache stores responses at all.
+     *
+     * @return  true if the maximum size is greater than zero
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the cached response for the given key if it is not expired.
+     *
+     * @param   key  the cache key
+     *
+     * @return  the cached response or <code>null</code>
+     */
+    public CachedResponse get(final String key) {
+        final long now = System.currentTimeMillis();
+
+        CachedResponse response;
+        synchronized (entries) {
+            response = entries.get(key);
+            if ((response != null) && response.isExpired(now)) {
+                entries.remove(key);
+                size -= response.weight();
+                response = null;
+            }
+        }
+
+        if (response == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            response.hits.incrementAndGet();
+        }
+
+        return response;
+    }
+
+    /**
+     * Stores a response. Responses whose body exceeds the maximum entry size are ignored.
+     *
+     * @param  key       the cache key
+     * @param  response  the response to store
+     */
+    public void put(final String key, final CachedResponse response) {
+        if (!isEnabled() || (response.body.length > maxEntrySize)) {
+            return;
+        }
+
+        synchronized (entries) {
+            final CachedResponse previous = entries.put(key, response);
+            if (previous != null) {
+                size -= previous.weight();
+            }
+            size += response.weight();
+
+            evict(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Evicts entries until the cache is not larger than the maximum size. Must be called while holding the lock of the
+     * entries.
+     *
+     * @param  now  the current time
+     */
+    private void evict(final long now) {
+        while ((size > maxSize) && !entries.isEmpty()) {
+            final Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+            Map.Entry<String, CachedResponse> victim = it.next();
+            if ((evictionPolicy == EvictionPolicy.LFU) && !victim.getValue().isExpired(now)) {
+                for (int i = 1; (i < LFU_SAMPLE_SIZE) && it.hasNext(); ++i) {
+                    final Map.Entry<String, CachedResponse> candidate = it.next();
+                    if (candidate.getValue().isExpired(now)) {
+                        victim = candidate;
+                        break;
+                    } else if (candidate.getValue().hits.get() < victim.getValue().hits.get()) {
+                        victim = candidate;
+                    }
+                }
+            }
+
+            entries.remove(victim.getKey());
+            size -= victim.getValue().weight();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Getter for the number of requests served from the cache.
+     *
+     * @return  the number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Getter for the number of requests that were not found in the cache.
+     *
+     * @return  the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Getter for the number of entries that were evicted because the cache was full.
+     *
+     * @return  the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Getter for the approximate number of bytes occupied by the cached entries.
+     *
+     * @return  the size of the cache
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    /**
+     * Getter for the number of cached entries, including expired entries that were not removed yet.
+     *
+     * @return  the number of entries
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Getter for the maximum size.
+     *
+     * @return  the maximum number of cached bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Getter for the maximum entry size.
+     *
+     * @return  the maximum size of a single response body
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Getter for the eviction policy.
+     *
+     * @return  the eviction policy
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        writer.counter("response_cache_hits_total", "Requests served from the cache", getHitCount());     // NOI18N
+        writer.counter("response_cache_misses_total", "Requests not found in the cache", getMissCount()); // NOI18N
+        writer.counter("response_cache_evictions_total", "Evicted entries", getEvictionCount());          // NOI18N
+        writer.gauge("response_cache_size_bytes", "Approximate size of the cache", getSize());            // NOI18N
+        writer.gauge("response_cache_entries", "Number of cached entries", getEntryCount());              // NOI18N
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * A cached response, consisting of the status, the headers and the serialised body.
+     *
+     * @version  1.0, 20261017
+     */
+    public static final class CachedResponse {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final int status;
+        private final Map<String, List<Object>> headers;
+        private final byte[] body;
+        private final long expires;
+        private final AtomicLong hits;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new CachedResponse object.
+         *
+         * @param  status   the response status
+         * @param  headers  the response headers, must not be modified afterwards
+         * @param  body     the serialised body
+         * @param  expires  the time the response expires
+         */
+        CachedResponse(final int status,
+                final Map<String, List<Object>> headers,
+                final byte[] body,
+                final long expires) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.expires = expires;
+            this.hits = new AtomicLong();
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Getter for the response status.
+         *
+         * @return  the status
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Getter for the response headers.
+         *
+         * @return  the headers, must not be modified
+         */
+        public Map<String, List<Object>> getHeaders() {
+            return headers;
+        }
+
+        /**
+         * Getter for the serialised body.
+         *
+         * @return  the body, must not be modified
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Getter for the time the response expires.
+         *
+         * @return  the expiry time in milliseconds since the epoch
+         */
+        public long getExpires() {
+            return expires;
+        }
+
+        /**
+         * Indicates whether the response is expired.
+         *
+         * @param   now  the current time
+         *
+         * @return  true if the response is expired
+         */
+        boolean isExpired(final long now) {
+            return now >= expires;
+        }
+
+        /**
+         * Returns the approximate number of bytes this response occupies in the cache.
+         *
+         * @return  the weight of this response
+         */
+        long weight() {
+            return ENTRY_OVERHEAD + body.length;
+        }
+    }
+}
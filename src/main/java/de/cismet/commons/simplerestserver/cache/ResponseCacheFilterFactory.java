@@ -0,0 +1,353 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.cache;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * Attaches the {@link ResponseCache} to all <code>GET</code> resource methods annotated with {@link ResponseCached}.
+ * On a cache hit the request is answered before the resource method is invoked, on a miss the serialised body of a
+ * successful response is captured while it is written to the client and stored afterwards. The factory is registered
+ * using the Jersey init parameter <code>com.sun.jersey.spi.container.ResourceFilters</code>, the container does that
+ * automatically.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class ResponseCacheFilterFactory implements ResourceFilterFactory {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(ResponseCacheFilterFactory.class);
+
+    private static final int SC_OK = 200;
+
+    // separates the parts of a cache key, cannot occur in paths, queries or header values
+    private static final char KEY_SEPARATOR = '\n';
+
+    // always part of the cache key, requests of different users must not share responses
+    private static final String[] USER_HEADERS = { HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE };
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ResourceFilter> create(final AbstractMethod am) {
+        if (!(am instanceof AbstractResourceMethod)
+                    || !HttpMethod.GET.equals(((AbstractResourceMethod)am).getHttpMethod())) {
+            return null;
+        }
+
+        ResponseCached cached = am.getAnnotation(ResponseCached.class);
+        if (cached == null) {
+            cached = am.getResource().getAnnotation(ResponseCached.class);
+        }
+        if (cached == null) {
+            return null;
+        }
+
+        final boolean varyByAccept = ((AbstractResourceMethod)am).getSupportedOutputTypes().size() > 1;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("caching responses of " + am.getMethod() + " :: ttl=" + cached.ttl() // NOI18N
+                        + " | varyByAccept=" + varyByAccept); // NOI18N
+        }
+
+        return Collections.<ResourceFilter>singletonList(new CacheFilter(
+                    am.getMethod().toGenericString(),
+                    cached,
+                    varyByAccept));
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Serves and stores the responses of a single resource method.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class CacheFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final String methodId;
+        private final long ttl;
+        private final boolean varyByPath;
+        private final boolean varyByQuery;
+        private final String[] varyByHeaders;
+        private final String keyProperty;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new CacheFilter object.
+         *
+         * @param  methodId      identifies the resource method
+         * @param  cached        the cache settings of the resource method
+         * @param  varyByAccept  whether the <code>Accept</code> header is part of the cache key
+         */
+        CacheFilter(final String methodId, final ResponseCached cached, final boolean varyByAccept) {
+            this.methodId = methodId;
+            this.ttl = cached.ttl() * 1000;
+            this.varyByPath = cached.varyByPath();
+            this.varyByQuery = cached.varyByQuery();
+
+            final List<String> headers = new ArrayList<String>();
+            for (final String header : cached.varyByHeaders()) {
+                headers.add(header);
+            }
+            if (varyByAccept && !headers.contains(HttpHeaders.ACCEPT)) {
+                headers.add(HttpHeaders.ACCEPT);
+            }
+            for (final String header : USER_HEADERS) {
+                if (!headers.contains(header)) {
+                    headers.add(header);
+                }
+            }
+            this.varyByHeaders = headers.toArray(new String[headers.size()]);
+            this.keyProperty = CacheFilter.class.getName() + ".key"; // NOI18N
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerRequestFilter getRequestFilter() {
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerResponseFilter getResponseFilter() {
+            return this;
+        }
+
+        /**
+         * Answers the request from the cache, if possible, otherwise remembers the cache key for the response filter.
+         *
+         * @param   request  the request
+         *
+         * @return  the request
+         *
+         * @throws  CachedResponseException  if the response was found in the cache
+         */
+        @Override
+        public ContainerRequest filter(final ContainerRequest request) {
+            final ResponseCache cache = ResponseCache.getInstance();
+            if (!cache.isEnabled()) {
+                return request;
+            }
+
+            final String key = createKey(request);
+            final ResponseCache.CachedResponse cached = cache.get(key);
+            if (cached == null) {
+                request.getProperties().put(keyProperty, key);
+
+                return request;
+            }
+
+            final Response.ResponseBuilder builder = Response.status(cached.getStatus()).entity(cached.getBody());
+            for (final Map.Entry<String, List<Object>> header : cached.getHeaders().entrySet()) {
+                for (final Object value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+
+            throw new CachedResponseException(builder.build());
+        }
+
+        /**
+         * Captures the body of successful responses that shall be cached.
+         *
+         * @param   request   the request
+         * @param   response  the response
+         *
+         * @return  the response
+         */
+        @Override
+        public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+            final String key = (String)request.getProperties().remove(keyProperty);
+            if ((key != null) && (response.getStatus() == SC_OK)
+                        && !response.getHttpHeaders().containsKey("Set-Cookie")) { // NOI18N
+                response.setContainerResponseWriter(new CapturingWriter(
+                        response.getContainerResponseWriter(),
+                        key,
+                        System.currentTimeMillis()
+                                + ttl));
+            }
+
+            return response;
+        }
+
+        /**
+         * Creates the cache key of the request.
+         *
+         * @param   request  the request
+         *
+         * @return  the cache key
+         */
+        private String createKey(final ContainerRequest request) {
+            final StringBuilder key = new StringBuilder(methodId);
+            key.append(KEY_SEPARATOR);
+            if (varyByPath) {
+                key.append(request.getRequestUri().getRawPath());
+            }
+            key.append(KEY_SEPARATOR);
+            if (varyByQuery) {
+                final String query = request.getRequestUri().getRawQuery();
+                if (query != null) {
+                    key.append(query);
+                }
+            }
+            for (final String header : varyByHeaders) {
+                key.append(KEY_SEPARATOR);
+                final List<String> values = request.getRequestHeader(header);
+                if (values != null) {
+                    for (final String value : values) {
+                        key.append(value).append(',');
+                    }
+                }
+            }
+
+            return key.toString();
+        }
+    }
+
+    /**
+     * Writes the response to the original writer and to a buffer. If the whole response fits into the maximum entry
+     * size of the cache it is stored once it is finished.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class CapturingWriter implements ContainerResponseWriter {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final ContainerResponseWriter writer;
+        private final String key;
+        private final long expires;
+
+        private CapturingOutputStream out;
+        private Map<String, List<Object>> headers;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new CapturingWriter object.
+         *
+         * @param  writer   the original writer
+         * @param  key      the cache key
+         * @param  expires  the time the cached response expires
+         */
+        CapturingWriter(final ContainerResponseWriter writer, final String key, final long expires) {
+            this.writer = writer;
+            this.key = key;
+            this.expires = expires;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream writeStatusAndHeaders(final long contentLength, final ContainerResponse response)
+                throws IOException {
+            final long maxEntrySize = ResponseCache.getInstance().getMaxEntrySize();
+            if ((contentLength <= maxEntrySize) && (response.getStatus() == SC_OK)) {
+                headers = new HashMap<String, List<Object>>();
+                for (final Map.Entry<String, List<Object>> header : response.getHttpHeaders().entrySet()) {
+                    headers.put(header.getKey(), new ArrayList<Object>(header.getValue()));
+                }
+                out = new CapturingOutputStream(
+                        writer.writeStatusAndHeaders(contentLength, response),
+                        (contentLength < 0) ? 1024 : (int)contentLength,
+                        maxEntrySize);
+
+                return out;
+            }
+
+            return writer.writeStatusAndHeaders(contentLength, response);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finish() throws IOException {
+            writer.finish();
+
+            if ((out != null) && !out.isOverflown()) {
+                ResponseCache.getInstance()
+                        .put(key, new ResponseCache.CachedResponse(SC_OK, headers, out.toByteArray(), expires));
+            }
+        }
+    }
+
+    /**
+     * Carries a cached response past the resource method. The stack trace is never needed, so it is not filled in.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class CachedResponseException extends WebApplicationException {
+
+        //~ Static fields/initializers -----------------------------------------
+
+        private static final long serialVersionUID = 1L;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new CachedResponseException object.
+         *
+         * @param  response  the cached response
+         */
+        CachedResponseException(final Response response) {
+            super(response);
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a <code>GET</code> resource method, or all <code>GET</code> resource methods of a resource class, whose
+ * successful responses shall be cached by the {@link ResponseCache}. While a response is cached the resource method is
+ * not invoked at all. An annotation of the method takes precedence over the annotation of the class.<br/>
+ * <br/>
+ * Responses are cached per resource method and, depending on the vary-by settings, per request path, query and header
+ * values. If the method produces several media types the <code>Accept</code> header is always part of the key, the
+ * <code>Authorization</code> and <code>Cookie</code> headers always are, so users never get responses of other users.
+ * Responses that set cookies are never cached.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface ResponseCached {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * The time in seconds a response is served from the cache.
+     *
+     * @return  the time to live in seconds
+     */
+    long ttl() default 60;
+
+    /**
+     * Whether the request path is part of the cache key. If not, all requests of the method share the same response
+     * regardless of the path parameters.
+     *
+     * @return  true if the response varies by path
+     */
+    boolean varyByPath() default true;
+
+    /**
+     * Whether the query string is part of the cache key.
+     *
+     * @return  true if the response varies by query
+     */
+    boolean varyByQuery() default true;
+
+    /**
+     * The names of the request headers that are part of the cache key in addition to <code>Authorization</code> and
+     * <code>Cookie</code>.
+     *
+     * @return  the header names
+     */
+    String[] varyByHeaders() default {};
+}
@@ -0,0 +1,354 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.client;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The connections of a {@link HttpClientPool} to one server. A request takes the most recently used idle connection,
+ * so that surplus connections stay idle and expire. If there is none and the pool is full, requests wait for a
+ * connection. Only if pipelining is enabled, <code>GET</code> and <code>HEAD</code> requests are pipelined onto the
+ * connection with the fewest requests in flight instead, provided that it carries only such requests and the server
+ * has kept it alive before.<br/>
+ * <br/>
+ * A kept-alive connection may have been closed by the server while it was idle, which is only noticed by the next
+ * request. Idempotent requests that fail on a connection that has been used before are therefore repeated once on a
+ * new connection.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class HostPool {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(HostPool.class);
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final HttpClientPool owner;
+    private final boolean secure;
+    private final String host;
+    private final int port;
+
+    // guarded by this
+    private final List<PooledConnection> connections;
+    private int opening;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new HostPool object.
+     *
+     * @param  owner   the client pool providing configuration and counters
+     * @param  secure  whether to use TLS
+     * @param  host    the host name
+     * @param  port    the port
+     */
+    HostPool(final HttpClientPool owner, final boolean secure, final String host, final int port) {
+        this.owner = owner;
+        this.secure = secure;
+        this.host = host;
+        this.port = port;
+        this.connections = new ArrayList<PooledConnection>();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Sends a request over a pooled connection and reads its response.
+     *
+     * @param   request      the bytes of the request
+     * @param   head         whether it is a <code>HEAD</code> request
+     * @param   pipelinable  whether the request may be pipelined
+     * @param   idempotent   whether the request may be repeated
+     *
+     * @return  the response
+     *
+     * @throws  IOException  if no connection is available in time, the request cannot be sent or the response cannot
+     *                       be read
+     */
+    PooledConnection.Response execute(
+            final byte[] request,
+            final boolean head,
+            final boolean pipelinable,
+            final boolean idempotent) throws IOException {
+        owner.requests.incrementAndGet();
+
+        PooledConnection connection = acquire(pipelinable, false);
+        boolean retry = idempotent;
+        while (true) {
+            // only a connection that was used or shared before may have been closed by the server unnoticed
+            final boolean used = connection.served > 0;
+            try {
+                final PooledConnection.Response response = connection.exchange(request, head);
+                release(connection, response.keepAlive);
+
+                return response;
+            } catch (final IOException e) {
+                release(connection, false);
+
+                if (!retry || !used || (e instanceof SocketTimeoutException)
+                            || (e instanceof InterruptedIOException)) {
+                    owner.failures.incrementAndGet();
+
+                    throw e;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("request to " + getName() + " failed on a kept-alive connection, retrying", e); // NOI18N
+                }
+
+                owner.retries.incrementAndGet();
+                retry = false;
+                connection = acquire(false, true);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the pool.
+     *
+     * @return  <code>&lt;scheme&gt;://&lt;host&gt;:&lt;port&gt;</code>
+     */
+    String getName() {
+        return (secure ? "https://" : "http://") + host + ':' + port; // NOI18N
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return  the number of open connections
+     */
+    synchronized int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return  the number of connections without requests in flight
+     */
+    synchronized int getIdleCount() {
+        int idle = 0;
+        for (final PooledConnection connection : connections) {
+            if (connection.inFlight == 0) {
+                idle++;
+            }
+        }
+
+        return idle;
+    }
+
+    /**
+     * Closes the connections that have been idle since the given time.
+     *
+     * @param  idleSince  the time in milliseconds
+     */
+    synchronized void closeIdle(final long idleSince) {
+        final Iterator<PooledConnection> it = connections.iterator();
+        while (it.hasNext()) {
+            final PooledConnection connection = it.next();
+            if ((connection.inFlight == 0) && (connection.lastUsed <= idleSince)) {
+                it.remove();
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the idle connections at once and the others once their requests are completed.
+     */
+    synchronized void closeAll() {
+        final Iterator<PooledConnection> it = connections.iterator();
+        while (it.hasNext()) {
+            final PooledConnection connection = it.next();
+            if (connection.inFlight == 0) {
+                it.remove();
+                connection.close();
+            } else {
+                connection.closing = true;
+            }
+        }
+    }
+
+    /**
+     * Takes a connection for a request, connecting a new one if necessary.
+     *
+     * @param   pipelinable  whether the request may be pipelined
+     * @param   fresh        whether a new connection is required
+     *
+     * @return  the connection
+     *
+     * @throws  IOException  if no connection is available within the connect timeout or a new connection cannot be
+     *                       established
+     */
+    private PooledConnection acquire(final boolean pipelinable, final boolean fresh) throws IOException {
+        final int connectTimeout = owner.getConnectTimeout();
+        synchronized (this) {
+            final long deadline = System.currentTimeMillis() + connectTimeout;
+            while (true) {
+                final PooledConnection idle = takeIdle(pipelinable, fresh);
+                if (idle != null) {
+                    return idle;
+                }
+
+                if ((connections.size() + opening) < owner.getMaxConnectionsPerHost()) {
+                    opening++;
+                    break;
+                }
+
+                if (pipelinable && !fresh) {
+                    final PooledConnection shared = takeShared();
+                    if (shared != null) {
+                        owner.pipelined.incrementAndGet();
+
+                        return shared;
+                    }
+                }
+
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    owner.acquireTimeouts.incrementAndGet();
+
+                    throw new IOException("no connection to " + getName() + " available within " // NOI18N
+                                + connectTimeout + " ms"); // NOI18N
+                }
+                try {
+                    wait(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new InterruptedIOException("interrupted while waiting for a connection"); // NOI18N
+                }
+            }
+        }
+
+        final PooledConnection connection;
+        try {
+            connection = PooledConnection.open(secure, host, port, connectTimeout, owner.getReadTimeout());
+        } catch (final IOException e) {
+            synchronized (this) {
+                opening--;
+                notifyAll();
+            }
+
+            throw e;
+        }
+        owner.connectionsCreated.incrementAndGet();
+
+        synchronized (this) {
+            opening--;
+            connection.inFlight = 1;
+            connection.pipelinable = pipelinable;
+            connections.add(connection);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Takes the most recently used idle connection. Expired connections are closed on the way. If a new connection
+     * is required but the pool is full, an idle connection is closed to make room for it.
+     *
+     * @param   pipelinable  whether the request may be pipelined
+     * @param   fresh        whether a new connection is required
+     *
+     * @return  the connection or <code>null</code> if there is none
+     */
+    private PooledConnection takeIdle(final boolean pipelinable, final boolean fresh) {
+        final long expired = System.currentTimeMillis() - owner.getIdleTimeout();
+        PooledConnection idle = null;
+        final Iterator<PooledConnection> it = connections.iterator();
+        while (it.hasNext()) {
+            final PooledConnection connection = it.next();
+            if ((connection.inFlight > 0) || connection.closing) {
+                continue;
+            }
+
+            if ((connection.lastUsed <= expired) || connection.isBroken()) {
+                it.remove();
+                connection.close();
+            } else if ((idle == null) || (connection.lastUsed > idle.lastUsed)) {
+                idle = connection;
+            }
+        }
+
+        if (idle == null) {
+            return null;
+        }
+
+        if (fresh) {
+            if ((connections.size() + opening) >= owner.getMaxConnectionsPerHost()) {
+                connections.remove(idle);
+                idle.close();
+            }
+
+            return null;
+        }
+
+        owner.connectionsReused.incrementAndGet();
+        idle.inFlight = 1;
+        idle.pipelinable = pipelinable;
+
+        return idle;
+    }
+
+    /**
+     * Takes the busy connection with the fewest requests in flight that a request may be pipelined onto.
+     *
+     * @return  the connection or <code>null</code> if there is none
+     */
+    private PooledConnection takeShared() {
+        final int depth = owner.getPipelineDepth();
+        PooledConnection shared = null;
+        for (final PooledConnection connection : connections) {
+            if (connection.pipelinable && !connection.closing && (connection.served > 0)
+                        && (connection.inFlight < depth)
+                        && ((shared == null) || (connection.inFlight < shared.inFlight))) {
+                shared = connection;
+            }
+        }
+
+        if (shared != null) {
+            shared.inFlight++;
+        }
+
+        return shared;
+    }
+
+    /**
+     * Returns a connection after a request. The connection is closed if it cannot be reused and no other request is
+     * in flight on it.
+     *
+     * @param  connection  the connection
+     * @param  reusable    whether the server keeps the connection alive and the response was read completely
+     */
+    private synchronized void release(final PooledConnection connection, final boolean reusable) {
+        connection.inFlight--;
+        connection.served++;
+        connection.lastUsed = System.currentTimeMillis();
+        if (!reusable || connection.isBroken()) {
+            connection.closing = true;
+        }
+
+        if (connection.closing && (connection.inFlight == 0)) {
+            connections.remove(connection);
+            connection.close();
+        }
+
+        notifyAll();
+    }
+}
@@ -0,0 +1,368 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.client;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+
+import org.apache.log4j.Logger;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Kept-alive connections for outbound HTTP requests of the services, so that calls to other services do not pay the
+ * TCP (and TLS) setup on every request. Services use the shared Jersey client instead of creating their own:
+ *
+ * <pre>
+ * final String status = HttpClientPool.getInstance().getClient()
+ *             .resource("http://devices:8080/api/devices/4711/status")
+ *             .get(String.class);
+ * </pre>
+ *
+ * <p>There is one pool per JVM with up to <code>maxConnectionsPerHost</code> connections to every server. If all of
+ * them are busy, requests wait for a connection up to the connect timeout. Pipelining is disabled by default, with a
+ * <code>pipelineDepth</code> greater than <code>1</code> busy connections take up to that many <code>GET</code> and
+ * <code>HEAD</code> requests instead. See {@link HostPool} for details. Responses are read completely before the request returns, the connection is available
+ * for the next request at once and a response that is never closed cannot hold on to it. This is not suited to
+ * streaming large downloads.</p>
+ *
+ * <p>The pool is configured and started by every container coming up, the last container coming down closes the
+ * connections. Idle connections are closed after the idle timeout, which should be shorter than the keep-alive timeout
+ * of the servers.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class HttpClientPool {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+    public static final int DEFAULT_IDLE_TIMEOUT = 20000;
+    public static final int DEFAULT_PIPELINE_DEPTH = 1;
+
+    private static final transient Logger LOG = Logger.getLogger(HttpClientPool.class);
+
+    private static final HttpClientPool INSTANCE = new HttpClientPool();
+
+    private static final String SOURCE_NAME = "httpClient"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    final transient AtomicLong requests;
+    final transient AtomicLong connectionsCreated;
+    final transient AtomicLong connectionsReused;
+    final transient AtomicLong pipelined;
+    final transient AtomicLong retries;
+    final transient AtomicLong failures;
+    final transient AtomicLong acquireTimeouts;
+
+    // host pools are never removed, a removed pool could still be in use
+    private final transient ConcurrentMap<String, HostPool> hosts;
+
+    private volatile int maxConnectionsPerHost;
+    private volatile int connectTimeout;
+    private volatile int readTimeout;
+    private volatile int idleTimeout;
+    private volatile int pipelineDepth;
+
+    // guarded by this
+    private final transient Map<Object, Object> owners;
+    private transient ScheduledExecutorService reaper;
+    private transient Client client;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new HttpClientPool object.
+     */
+    private HttpClientPool() {
+        requests = new AtomicLong();
+        connectionsCreated = new AtomicLong();
+        connectionsReused = new AtomicLong();
+        pipelined = new AtomicLong();
+        retries = new AtomicLong();
+        failures = new AtomicLong();
+        acquireTimeouts = new AtomicLong();
+        hosts = new ConcurrentHashMap<String, HostPool>();
+        owners = new IdentityHashMap<Object, Object>();
+
+        configure(
+            DEFAULT_MAX_CONNECTIONS_PER_HOST,
+            DEFAULT_CONNECT_TIMEOUT,
+            DEFAULT_READ_TIMEOUT,
+            DEFAULT_IDLE_TIMEOUT,
+            DEFAULT_PIPELINE_DEPTH);
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the client pool of this JVM.
+     *
+     * @return  the client pool
+     */
+    public static HttpClientPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Configures the pool. The read timeout applies to connections opened afterwards.
+     *
+     * @param  maxConnectionsPerHost  the maximum number of connections to a server
+     * @param  connectTimeout         the connect timeout in milliseconds, also the longest time a request waits for a
+     *                                connection
+     * @param  readTimeout            the read timeout in milliseconds
+     * @param  idleTimeout            the time in milliseconds after which idle connections are closed
+     * @param  pipelineDepth          the maximum number of requests in flight on a connection, <code>1</code> disables
+     *                                pipelining
+     */
+    public void configure(
+            final int maxConnectionsPerHost,
+            final int connectTimeout,
+            final int readTimeout,
+            final int idleTimeout,
+            final int pipelineDepth) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.idleTimeout = idleTimeout;
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Returns the shared Jersey client using the pool. Filters must not be added to it, they would apply to the
+     * requests of all services, see {@link #createClient(com.sun.jersey.api.client.config.ClientConfig)}.
+     *
+     * @return  the shared client
+     */
+    public synchronized Client getClient() {
+        if (client == null) {
+            client = createClient(new DefaultClientConfig());
+        }
+
+        return client;
+    }
+
+    /**
+     * Creates a Jersey client using the pool, e.g. with additional providers or filters. Creating a client is
+     * expensive, it should be reused.
+     *
+     * @param   config  the configuration of the client
+     *
+     * @return  a new client
+     */
+    public Client createClient(final ClientConfig config) {
+        return new Client(new PooledClientHandler(this), config);
+    }
+
+    /**
+     * Starts the pool for a container. The first container starts closing idle connections periodically.
+     *
+     * @param  owner  the container
+     */
+    public synchronized void start(final Object owner) {
+        owners.put(owner, owner);
+        if (reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "http-client-reaper"); // NOI18N
+                            thread.setDaemon(true);
+
+                            return thread;
+                        }
+                    });
+
+            final long period = Math.max(1000, idleTimeout / 2);
+            reaper.scheduleWithFixedDelay(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        closeIdle();
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the pool for a container. Once the last container is stopped, all connections are closed, those with
+     * requests in flight after their requests.
+     *
+     * @param  owner  the container
+     */
+    public synchronized void stop(final Object owner) {
+        if ((owners.remove(owner) != null) && owners.isEmpty()) {
+            reaper.shutdownNow();
+            reaper = null;
+
+            for (final HostPool hostPool : hosts.values()) {
+                hostPool.closeAll();
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("closed the connections of the http client pool"); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * Returns the pool of a server.
+     *
+     * @param   secure  whether to use TLS
+     * @param   host    the host name
+     * @param   port    the port
+     *
+     * @return  the pool of the server
+     */
+    HostPool getHostPool(final boolean secure, final String host, final int port) {
+        final String key = (secure ? "https://" : "http://") + host.toLowerCase() + ':' + port; // NOI18N
+        HostPool hostPool = hosts.get(key);
+        if (hostPool == null) {
+            final HostPool created = new HostPool(this, secure, host, port);
+            hostPool = hosts.putIfAbsent(key, created);
+            if (hostPool == null) {
+                hostPool = created;
+            }
+        }
+
+        return hostPool;
+    }
+
+    /**
+     * Closes the connections that exceeded the idle timeout.
+     */
+    private void closeIdle() {
+        final long idleSince = System.currentTimeMillis() - idleTimeout;
+        for (final HostPool hostPool : hosts.values()) {
+            hostPool.closeIdle(idleSince);
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections to a server.
+     *
+     * @return  the maximum number of connections
+     */
+    int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Returns the connect timeout.
+     *
+     * @return  the connect timeout in milliseconds
+     */
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Returns the read timeout.
+     *
+     * @return  the read timeout in milliseconds
+     */
+    int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Returns the idle timeout.
+     *
+     * @return  the idle timeout in milliseconds
+     */
+    int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Returns the maximum number of requests in flight on a connection.
+     *
+     * @return  the pipeline depth
+     */
+    int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Publishes the counters of the pool and the connections per server.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            writer.counter("http_client_requests_total", "Outbound requests", requests.get()); // NOI18N
+            writer.counter(
+                "http_client_connections_created_total", // NOI18N
+                "Outbound connections established", // NOI18N
+                connectionsCreated.get());
+            writer.counter(
+                "http_client_connections_reused_total", // NOI18N
+                "Outbound requests sent over an idle kept-alive connection", // NOI18N
+                connectionsReused.get());
+            writer.counter(
+                "http_client_pipelined_total", // NOI18N
+                "Outbound requests pipelined onto a busy connection", // NOI18N
+                pipelined.get());
+            writer.counter(
+                "http_client_retries_total", // NOI18N
+                "Outbound requests repeated after a kept-alive connection failed", // NOI18N
+                retries.get());
+            writer.counter("http_client_failures_total", "Outbound requests failed", failures.get()); // NOI18N
+            writer.counter(
+                "http_client_acquire_timeouts_total", // NOI18N
+                "Outbound requests that got no connection in time", // NOI18N
+                acquireTimeouts.get());
+
+            writer.family("http_client_connections", MetricsWriter.TYPE_GAUGE, "Open outbound connections"); // NOI18N
+            for (final HostPool hostPool : hosts.values()) {
+                writer.sample(
+                    "http_client_connections", // NOI18N
+                    new String[] { "host", hostPool.getName() }, // NOI18N
+                    hostPool.getConnectionCount());
+            }
+            writer.family(
+                "http_client_connections_idle", // NOI18N
+                MetricsWriter.TYPE_GAUGE,
+                "Idle outbound connections"); // NOI18N
+            for (final HostPool hostPool : hosts.values()) {
+                writer.sample(
+                    "http_client_connections_idle", // NOI18N
+                    new String[] { "host", hostPool.getName() }, // NOI18N
+                    hostPool.getIdleCount());
+            }
+        }
+    }
+}
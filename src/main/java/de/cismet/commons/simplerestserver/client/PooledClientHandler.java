@@ -0,0 +1,183 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.client;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.TerminatingClientHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.URI;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes the requests of a Jersey client over the connections of a {@link HttpClientPool}. Request entities are
+ * serialised into memory to be sent with a <code>Content-Length</code>, redirects are not followed.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class PooledClientHandler extends TerminatingClientHandler {
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final HttpClientPool pool;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new PooledClientHandler object.
+     *
+     * @param  pool  the pool providing the connections
+     */
+    PooledClientHandler(final HttpClientPool pool) {
+        this.pool = pool;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ClientResponse handle(final ClientRequest cr) throws ClientHandlerException {
+        final URI uri = cr.getURI();
+        final String scheme = uri.getScheme();
+        final boolean secure = "https".equalsIgnoreCase(scheme); // NOI18N
+        if ((!secure && !"http".equalsIgnoreCase(scheme)) || (uri.getHost() == null)) { // NOI18N
+            throw new ClientHandlerException("unsupported uri: " + uri); // NOI18N
+        }
+
+        final String method = cr.getMethod();
+        final boolean head = "HEAD".equals(method);                    // NOI18N
+        final boolean pipelinable = head || "GET".equals(method);      // NOI18N
+        final boolean idempotent = pipelinable || "PUT".equals(method) // NOI18N
+                    || "DELETE".equals(method) || "OPTIONS".equals(method); // NOI18N
+        final int port = (uri.getPort() < 0) ? (secure ? 443 : 80) : uri.getPort();
+
+        try {
+            final HostPool hostPool = pool.getHostPool(secure, uri.getHost(), port);
+            final PooledConnection.Response response = hostPool.execute(
+                    createRequest(cr, uri, secure),
+                    head,
+                    pipelinable,
+                    idempotent);
+
+            return new ClientResponse(
+                    response.status,
+                    response.headers,
+                    new ByteArrayInputStream(response.body),
+                    getMessageBodyWorkers());
+        } catch (final IOException e) {
+            throw new ClientHandlerException(e);
+        }
+    }
+
+    /**
+     * Serialises a request including its entity.
+     *
+     * @param   cr      the request
+     * @param   uri     the uri of the request
+     * @param   secure  whether the request is sent over TLS
+     *
+     * @return  the bytes of the request
+     *
+     * @throws  IOException  if the entity cannot be serialised
+     */
+    private byte[] createRequest(final ClientRequest cr, final URI uri, final boolean secure) throws IOException {
+        // the entity is written first, it may set the content type
+        final EntityBuffer entity = new EntityBuffer();
+        writeRequestEntity(cr, entity);
+
+        final StringBuilder sb = new StringBuilder(256);
+        final String path = uri.getRawPath();
+        sb.append(cr.getMethod()).append(' ').append(((path == null) || path.isEmpty()) ? "/" : path); // NOI18N
+        if (uri.getRawQuery() != null) {
+            sb.append('?').append(uri.getRawQuery());
+        }
+        sb.append(" HTTP/1.1\r\n"); // NOI18N
+
+        sb.append("Host: ").append(uri.getHost()); // NOI18N
+        if ((uri.getPort() >= 0) && (uri.getPort() != (secure ? 443 : 80))) {
+            sb.append(':').append(uri.getPort());
+        }
+        sb.append("\r\n"); // NOI18N
+
+        for (final Map.Entry<String, List<Object>> header : cr.getHeaders().entrySet()) {
+            final String name = header.getKey();
+            if ("Host".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name) // NOI18N
+                        || "Transfer-Encoding".equalsIgnoreCase(name)) { // NOI18N
+                continue;
+            }
+            for (final Object value : header.getValue()) {
+                sb.append(name).append(": ").append(ClientRequest.getHeaderValue(value)).append("\r\n"); // NOI18N
+            }
+        }
+
+        if ((entity.size() > 0) || (cr.getEntity() != null) || "POST".equals(cr.getMethod()) // NOI18N
+                    || "PUT".equals(cr.getMethod())) { // NOI18N
+            sb.append("Content-Length: ").append(entity.size()).append("\r\n"); // NOI18N
+        }
+        sb.append("\r\n"); // NOI18N
+
+        final byte[] bytes = new byte[sb.length() + entity.size()];
+        for (int i = 0; i < sb.length(); ++i) {
+            bytes[i] = (byte)sb.charAt(i);
+        }
+        entity.copyTo(bytes, sb.length());
+
+        return bytes;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Receives the serialised entity of a request.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class EntityBuffer extends ByteArrayOutputStream implements RequestEntityWriterListener {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onRequestEntitySize(final long size) {
+            if (size > 0) {
+                buf = new byte[(int)Math.min(size, Integer.MAX_VALUE)];
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream onGetOutputStream() {
+            return this;
+        }
+
+        /**
+         * Copies the entity into an array.
+         *
+         * @param  target  the array
+         * @param  offset  the position of the first byte in the array
+         */
+        void copyTo(final byte[] target, final int offset) {
+            System.arraycopy(buf, 0, target, offset, count);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.client;
+
+import com.sun.jersey.core.header.InBoundHeaders;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A kept-alive HTTP/1.1 connection of a {@link HostPool}. Several threads may send requests over the connection
+ * without waiting for the responses of each other (pipelining): every thread writes its request and then waits until
+ * the responses of the requests written before are read, so the responses are read in the order of the requests.
+ * Responses are read completely into memory. If the connection fails, the requests still waiting for their response
+ * fail as well.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class PooledConnection {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int CR = '\r';
+    private static final int LF = '\n';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    //~ Instance fields --------------------------------------------------------
+
+    // guarded by the lock of the host pool
+    int inFlight;
+    boolean pipelinable;
+    boolean closing;
+    long lastUsed;
+    volatile long served;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final StringBuilder line;
+
+    private final Object writeLock;
+    private final Object readLock;
+
+    // guarded by the write lock
+    private long nextTicket;
+    // guarded by the read lock
+    private long readTurn;
+
+    private volatile boolean broken;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new PooledConnection object.
+     *
+     * @param   socket  the connected socket
+     *
+     * @throws  IOException  if the streams of the socket cannot be obtained
+     */
+    private PooledConnection(final Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        this.line = new StringBuilder(128);
+        this.writeLock = new Object();
+        this.readLock = new Object();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Connects to a server.
+     *
+     * @param   secure          whether to use TLS
+     * @param   host            the host name
+     * @param   port            the port
+     * @param   connectTimeout  the connect timeout in milliseconds
+     * @param   readTimeout     the read timeout in milliseconds
+     *
+     * @return  the connection
+     *
+     * @throws  IOException  if the connection cannot be established
+     */
+    static PooledConnection open(
+            final boolean secure,
+            final String host,
+            final int port,
+            final int connectTimeout,
+            final int readTimeout) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(readTimeout);
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+
+            if (secure) {
+                final SSLSocket ssl = (SSLSocket)((SSLSocketFactory)SSLSocketFactory.getDefault()).createSocket(
+                        socket,
+                        host,
+                        port,
+                        true);
+                socket = ssl;
+
+                final SSLParameters parameters = ssl.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS"); // NOI18N
+                ssl.setSSLParameters(parameters);
+                ssl.startHandshake();
+            }
+
+            return new PooledConnection(socket);
+        } catch (final IOException e) {
+            socket.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request and reads its response. If other requests are in flight, the response is read after theirs.
+     *
+     * @param   request  the bytes of the request
+     * @param   head     whether it is a <code>HEAD</code> request, whose response has no body
+     *
+     * @return  the response
+     *
+     * @throws  IOException  if the request cannot be sent or the response cannot be read, the connection is unusable
+     *                       then
+     */
+    Response exchange(final byte[] request, final boolean head) throws IOException {
+        final long ticket;
+        synchronized (writeLock) {
+            if (broken) {
+                throw new IOException("connection failed before the request was sent"); // NOI18N
+            }
+
+            ticket = nextTicket++;
+            try {
+                out.write(request);
+                out.flush();
+            } catch (final IOException e) {
+                fail();
+
+                throw e;
+            }
+        }
+
+        synchronized (readLock) {
+            while (readTurn != ticket) {
+                if (broken) {
+                    throw new IOException("connection failed before the response was read"); // NOI18N
+                }
+                try {
+                    readLock.wait();
+                } catch (final InterruptedException e) {
+                    // the response would remain unread and spoil the order of all following responses
+                    Thread.currentThread().interrupt();
+                    fail();
+
+                    throw new InterruptedIOException("interrupted while waiting for the response"); // NOI18N
+                }
+            }
+        }
+
+        try {
+            final Response response = readResponse(head);
+            synchronized (readLock) {
+                readTurn++;
+                readLock.notifyAll();
+            }
+
+            return response;
+        } catch (final IOException e) {
+            fail();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Indicates whether the connection failed.
+     *
+     * @return  <code>true</code> if the connection must not be used anymore
+     */
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Closes the socket. Requests in flight fail.
+     */
+    void close() {
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            // nothing to do, the connection is discarded anyway
+        }
+    }
+
+    /**
+     * Marks the connection as failed, closes it and wakes the threads waiting for their response.
+     */
+    private void fail() {
+        broken = true;
+        close();
+
+        synchronized (readLock) {
+            readLock.notifyAll();
+        }
+    }
+
+    /**
+     * Reads status line, headers and body of a response. Interim responses are skipped.
+     *
+     * @param   head  whether the request was a <code>HEAD</code> request
+     *
+     * @return  the response
+     *
+     * @throws  IOException  if the response cannot be read or is malformed
+     */
+    private Response readResponse(final boolean head) throws IOException {
+        while (true) {
+            final String statusLine = readLine();
+            final int status;
+            try {
+                status = Integer.parseInt(statusLine.substring(9, 12));
+            } catch (final RuntimeException e) {
+                throw new IOException("malformed status line: " + statusLine); // NOI18N
+            }
+
+            boolean keepAlive = !statusLine.startsWith("HTTP/1.0"); // NOI18N
+            boolean chunked = false;
+            long contentLength = -1;
+            final InBoundHeaders headers = new InBoundHeaders();
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                final int colon = header.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+
+                final String name = header.substring(0, colon).trim();
+                final String value = header.substring(colon + 1).trim();
+                headers.add(name, value);
+                if ("Content-Length".equalsIgnoreCase(name)) { // NOI18N
+                    try {
+                        contentLength = Long.parseLong(value);
+                    } catch (final NumberFormatException e) {
+                        throw new IOException("malformed content length: " + value); // NOI18N
+                    }
+                } else if ("Transfer-Encoding".equalsIgnoreCase(name)) { // NOI18N
+                    chunked = value.toLowerCase().contains("chunked");   // NOI18N
+                } else if ("Connection".equalsIgnoreCase(name)) {        // NOI18N
+                    keepAlive = !value.equalsIgnoreCase("close");        // NOI18N
+                }
+            }
+
+            if ((status >= 100) && (status < 200)) {
+                // 100 continue and the like, the final response follows
+                continue;
+            }
+
+            final byte[] body;
+            if (head || (status == 204) || (status == 304)) {
+                body = new byte[0];
+            } else if (chunked) {
+                final ByteArrayOutputStream chunks = new ByteArrayOutputStream(BUFFER_SIZE);
+                for (long size = readChunkSize(); size > 0; size = readChunkSize()) {
+                    read(chunks, size);
+                    readLine();
+                }
+                skipTrailers();
+                body = chunks.toByteArray();
+            } else if (contentLength >= 0) {
+                if (contentLength > Integer.MAX_VALUE) {
+                    throw new IOException("response too large: " + contentLength); // NOI18N
+                }
+                final ByteArrayOutputStream content = new ByteArrayOutputStream((int)contentLength);
+                read(content, contentLength);
+                body = content.toByteArray();
+            } else {
+                // the body ends with the connection
+                final ByteArrayOutputStream content = new ByteArrayOutputStream(BUFFER_SIZE);
+                read(content, Long.MAX_VALUE);
+                body = content.toByteArray();
+                keepAlive = false;
+            }
+
+            return new Response(status, headers, body, keepAlive);
+        }
+    }
+
+    /**
+     * Reads the trailer lines of a chunked body up to the terminating empty line.
+     *
+     * @throws  IOException  if the lines cannot be read
+     */
+    private void skipTrailers() throws IOException {
+        String trailer = readLine();
+        while (!trailer.isEmpty()) {
+            trailer = readLine();
+        }
+    }
+
+    /**
+     * Reads the size line of a chunk.
+     *
+     * @return  the size of the chunk, <code>0</code> for the last chunk
+     *
+     * @throws  IOException  if the line cannot be read or is malformed
+     */
+    private long readChunkSize() throws IOException {
+        final String size = readLine();
+        final int semicolon = size.indexOf(';');
+        try {
+            return Long.parseLong(((semicolon < 0) ? size : size.substring(0, semicolon)).trim(), 16);
+        } catch (final NumberFormatException e) {
+            throw new IOException("malformed chunk size: " + size); // NOI18N
+        }
+    }
+
+    /**
+     * Reads a line terminated by CRLF or LF.
+     *
+     * @return  the line without the terminator
+     *
+     * @throws  IOException   if the line cannot be read
+     * @throws  EOFException  if the connection is closed before the line is complete
+     */
+    private String readLine() throws IOException {
+        line.setLength(0);
+        int c = in.read();
+        while (c != LF) {
+            if (c == -1) {
+                throw new EOFException("connection closed by server"); // NOI18N
+            } else if (c != CR) {
+                line.append((char)c);
+            }
+            c = in.read();
+        }
+
+        return line.toString();
+    }
+
+    /**
+     * Reads the given number of bytes.
+     *
+     * @param   target  receives the bytes
+     * @param   length  the number of bytes or <code>Long.MAX_VALUE</code> to read until the end of the stream
+     *
+     * @throws  IOException   if the bytes cannot be read
+     * @throws  EOFException  if the connection is closed before all bytes are read
+     */
+    private void read(final ByteArrayOutputStream target, final long length) throws IOException {
+        final byte[] buffer = new byte[(int)Math.min(BUFFER_SIZE, length)];
+        long remaining = length;
+        while (remaining > 0) {
+            final int read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+            if (read == -1) {
+                if (length == Long.MAX_VALUE) {
+                    return;
+                }
+
+                throw new EOFException("connection closed by server"); // NOI18N
+            }
+            target.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * A completely read response.
+     *
+     * @version  1.0, 20261017
+     */
+    static final class Response {
+
+        //~ Instance fields ----------------------------------------------------
+
+        final int status;
+        final InBoundHeaders headers;
+        final byte[] body;
+        final boolean keepAlive;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Response object.
+         *
+         * @param  status     the status code
+         * @param  headers    the headers
+         * @param  body       the body, empty if there is none
+         * @param  keepAlive  whether the server keeps the connection open
+         */
+        Response(final int status, final InBoundHeaders headers, final byte[] body, final boolean keepAlive) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.keepAlive = keepAlive;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit of requests in progress that adapts to their latency, following the AIMD scheme of TCP congestion control.
+ * Latencies are averaged over windows of at least {@link #WINDOW_NANOS} and {@link #MIN_WINDOW_SAMPLES} requests. If
+ * the average of a window exceeds the baseline latency by more than the tolerance, requests are queueing somewhere
+ * and the limit is decreased multiplicatively. Otherwise it is increased by the square root of the limit, but only if
+ * at least half of it was used, a limit that is not reached cannot be validated. The latency should include the wait
+ * for a thread, the requests in progress are counted by the threads processing them and the queue in front of them is
+ * bounded by {@link #tryQueue(int)}.
+ *
+ * <p>The baseline is the lowest window average, the latency of the server without queueing. A server that is
+ * overloaded from the start shows that latency only after the limit has been lowered, and the workload may become
+ * slower for good. Thus a window that still exceeds the tolerance at the minimum limit, where nothing queues behind
+ * the limit anymore, becomes the new baseline. Healthy requests are never rejected to measure the baseline.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class AdaptiveConcurrencyLimit implements AdaptiveConcurrencyLimitMBean {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(AdaptiveConcurrencyLimit.class);
+
+    public static final int DEFAULT_INITIAL_LIMIT = 50;
+    public static final int DEFAULT_MIN_LIMIT = 8;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    // percent of the baseline latency
+    public static final int DEFAULT_TOLERANCE = 200;
+
+    static final long WINDOW_NANOS = 100L * 1000 * 1000;
+    static final int MIN_WINDOW_SAMPLES = 10;
+
+    private static final double BACKOFF = 0.9;
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient int minLimit;
+    private final transient int maxLimit;
+    private final transient double tolerance;
+
+    private final transient AtomicInteger inFlight;
+    private final transient AtomicLong admitted;
+    private final transient AtomicLong rejected;
+
+    // the current window, closed by the thread that wins the update of its start
+    private final transient AtomicLong windowStart;
+    private final transient AtomicLong windowSum;
+    private final transient AtomicInteger windowCount;
+    private final transient AtomicInteger windowMaxInFlight;
+
+    private transient volatile int limit;
+    // nanos, written while holding the lock of this limit only
+    private transient volatile double baseline;
+    private transient volatile double latency;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new AdaptiveConcurrencyLimit object.
+     *
+     * @param   initialLimit  the limit to start with, it is moved into the bounds if necessary
+     * @param   minLimit      the lowest limit
+     * @param   maxLimit      the highest limit
+     * @param   tolerance     the latency that is still accepted in percent of the baseline latency
+     *
+     * @throws  IllegalArgumentException  if the bounds are invalid or the tolerance is below <code>100</code>
+     */
+    AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit, final int tolerance) {
+        if ((minLimit < 1) || (maxLimit < minLimit)) {
+            throw new IllegalArgumentException("illegal limits: " + minLimit + ", " + maxLimit);        // NOI18N
+        } else if (tolerance < 100) {
+            throw new IllegalArgumentException("tolerance must be at least 100 percent: " + tolerance); // NOI18N
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance / 100d;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.baseline = Double.NaN;
+        this.latency = Double.NaN;
+
+        inFlight = new AtomicInteger();
+        admitted = new AtomicLong();
+        rejected = new AtomicLong();
+        windowStart = new AtomicLong(System.nanoTime());
+        windowSum = new AtomicLong();
+        windowCount = new AtomicInteger();
+        windowMaxInFlight = new AtomicInteger();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Admits a request if the limit is not reached. An admitted request must be released with
+     * {@link #release(long)}.
+     *
+     * @return  <code>true</code> if the request is admitted
+     */
+    boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                // a lost update only lowers the maximum of the window a little
+                if (current >= windowMaxInFlight.get()) {
+                    windowMaxInFlight.set(current + 1);
+                }
+
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Decides whether a request may be queued for a worker thread. The queued requests count as in progress already,
+     * so the queue in front of the threads never holds more requests than the limit admits. A request that may be
+     * queued still has to be admitted by {@link #tryAcquire()} once a thread processes it.
+     *
+     * @param   queued  the number of requests queued already
+     *
+     * @return  <code>true</code> if the request may be queued
+     */
+    boolean tryQueue(final int queued) {
+        if ((inFlight.get() + queued) >= limit) {
+            rejected.incrementAndGet();
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases an admitted request and accounts its latency.
+     *
+     * @param  latencyNanos  the time from the arrival of the request until it was processed
+     */
+    void release(final long latencyNanos) {
+        inFlight.decrementAndGet();
+
+        windowSum.addAndGet(latencyNanos);
+        final int count = windowCount.incrementAndGet();
+        final long start = windowStart.get();
+        final long now = System.nanoTime();
+        if ((count >= MIN_WINDOW_SAMPLES) && ((now - start) >= WINDOW_NANOS) && windowStart.compareAndSet(start, now)) {
+            // samples of concurrent releases may be split between the windows, which does not matter for an average
+            final long sum = windowSum.getAndSet(0);
+            final int samples = windowCount.getAndSet(0);
+            final int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+            update((double)sum / Math.max(1, samples), maxInFlight);
+        }
+    }
+
+    /**
+     * Adapts the limit to the average latency of a closed window.
+     *
+     * @param  average      the average latency of the window in nanoseconds
+     * @param  maxInFlight  the highest number of requests in progress during the window
+     */
+    private synchronized void update(final double average, final int maxInFlight) {
+        latency = average;
+
+        final int current = limit;
+        final int next;
+        if (Double.isNaN(baseline)) {
+            baseline = average;
+            next = current;
+        } else if (average <= (baseline * tolerance)) {
+            baseline = Math.min(baseline, average);
+            if ((2 * maxInFlight) >= current) {
+                next = Math.min(maxLimit, current + Math.max(1, (int)Math.sqrt(current)));
+            } else {
+                next = current;
+            }
+        } else if (current > minLimit) {
+            next = Math.max(minLimit, (int)(current * BACKOFF));
+        } else {
+            // nothing queues behind the minimum limit, the workload itself became slower
+            baseline = average;
+            next = current;
+        }
+
+        if (next != current) {
+            limit = next;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("concurrency limit " + current + " -> " + next            // NOI18N
+                            + " :: latency=" + (average / NANOS_PER_MILLI) + " ms"  // NOI18N
+                            + " | baseline=" + (baseline / NANOS_PER_MILLI) + " ms" // NOI18N
+                            + " | maxInFlight=" + maxInFlight);                     // NOI18N
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBaselineLatency() {
+        return baseline / NANOS_PER_MILLI;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLatency() {
+        return latency / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,62 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+/**
+ * JMX view of the admission control of a single listener. Counters are totals since the listener was started,
+ * latencies are given in milliseconds.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public interface AdaptiveConcurrencyLimitMBean {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the current limit of requests in progress.
+     *
+     * @return  the limit
+     */
+    int getLimit();
+
+    /**
+     * Returns the number of requests in progress.
+     *
+     * @return  the number of requests in progress
+     */
+    int getInFlight();
+
+    /**
+     * Returns the number of admitted requests.
+     *
+     * @return  the number of admitted requests
+     */
+    long getAdmitted();
+
+    /**
+     * Returns the number of requests rejected because the limit was reached.
+     *
+     * @return  the number of rejected requests
+     */
+    long getRejected();
+
+    /**
+     * Returns the latency the limit is adapted to, the lowest average latency observed recently.
+     *
+     * @return  the baseline latency or <code>NaN</code> if there is no measurement yet
+     */
+    double getBaselineLatency();
+
+    /**
+     * Returns the average latency of the last measurement window.
+     *
+     * @return  the latency or <code>NaN</code> if there is no measurement yet
+     */
+    double getLatency();
+}
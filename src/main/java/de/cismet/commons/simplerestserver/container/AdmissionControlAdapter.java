@@ -0,0 +1,83 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Admits requests to the delegate as long as the {@link AdaptiveConcurrencyLimit} is not reached, other requests are
+ * rejected with <code>503 Service Unavailable</code> and a <code>Retry-After</code> header. Requests over the limit are
+ * usually shed by the {@link AdmissionExecutor} before they are queued for a worker thread, this adapter only rejects
+ * requests that were queued while the limit was not reached yet. Shedding load early keeps the latency of the admitted
+ * requests low, instead of letting every request wait in the worker queue until clients time out. The latency is measured from the {@link RequestArrival} of the request, so it includes the wait for
+ * a worker thread. The requests in progress are counted around the delegate, so the adapter must run in the thread
+ * processing the request.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class AdmissionControlAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(AdmissionControlAdapter.class);
+
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    // seconds a rejected client should wait before it retries
+    private static final String RETRY_AFTER = "1"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient AdaptiveConcurrencyLimit limit;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new AdmissionControlAdapter object.
+     *
+     * @param  delegate  the adapter that processes the admitted requests
+     * @param  limit     the limit of requests in progress
+     */
+    AdmissionControlAdapter(final GrizzlyAdapter delegate, final AdaptiveConcurrencyLimit limit) {
+        super(delegate);
+
+        this.limit = limit;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        // also taken by rejected requests, the mark of the worker thread belongs to them
+        final long arrival = RequestArrival.get(request);
+        if (!limit.tryAcquire()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("concurrency limit " + limit.getLimit() + " reached, rejecting request: " // NOI18N
+                            + request.getRequestURI());
+            }
+            response.setHeader("Retry-After", RETRY_AFTER); // NOI18N
+            response.sendError(SC_SERVICE_UNAVAILABLE);
+
+            return;
+        }
+
+        try {
+            delegate.service(request, response);
+        } finally {
+            limit.release(System.nanoTime() - arrival);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.Context;
+import com.sun.grizzly.ContextTask;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sheds load before requests are queued for a worker thread. The selector thread hands every connection with data to
+ * read to this executor, it queues the task for the worker pool only as long as the queued tasks and the requests in
+ * progress stay below the {@link AdaptiveConcurrencyLimit}. Otherwise the connection is answered with <code>503
+ * Service Unavailable</code> at once, by the selector thread, and closed, so the worker queue cannot grow beyond the
+ * limit under overload.<br/>
+ * <br/>
+ * Requests are not parsed yet when they are queued, thus all requests of the listener are subject to the limit, also
+ * those the {@link AdmissionControlAdapter} does not limit. Only reads of plain HTTP connections are gated, the
+ * connections of suspended responses and WebSockets carry a key attachment and are never answered by this executor.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class AdmissionExecutor extends AbstractExecutorService {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(AdmissionExecutor.class);
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII"); // NOI18N
+
+    private static final byte[] REJECTION = ("HTTP/1.1 503 Service Unavailable\r\n" // NOI18N
+                    + "Retry-After: 1\r\n"                                          // NOI18N
+                    + "Content-Length: 0\r\n"                                       // NOI18N
+                    + "Connection: close\r\n\r\n").getBytes(US_ASCII);              // NOI18N
+
+    // the request is read before answering, closing a socket with unread data resets the connection
+    private static final int DRAIN_BUFFER_SIZE = 8192;
+    private static final int MAX_DRAIN_SIZE = 64 * 1024;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient ExecutorService delegate;
+    private final transient AdaptiveConcurrencyLimit limit;
+    private final transient AtomicInteger queued;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new AdmissionExecutor object.
+     *
+     * @param  delegate  the worker pool
+     * @param  limit     the limit of queued requests and requests in progress
+     */
+    AdmissionExecutor(final ExecutorService delegate, final AdaptiveConcurrencyLimit limit) {
+        this.delegate = delegate;
+        this.limit = limit;
+        this.queued = new AtomicInteger();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final Runnable command) {
+        if (!isRequestRead(command)) {
+            delegate.execute(command);
+
+            return;
+        }
+
+        if (!limit.tryQueue(queued.get())) {
+            reject((ContextTask)command);
+
+            return;
+        }
+
+        queued.incrementAndGet();
+        try {
+            delegate.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        queued.decrementAndGet();
+                        command.run();
+                    }
+                });
+        } catch (final RejectedExecutionException ex) {
+            queued.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Indicates whether the given task reads the next request of a plain HTTP connection. The keys of such connections
+     * have no attachment or the idle timestamp of Grizzly.
+     *
+     * @param   command  the task
+     *
+     * @return  true if the task is subject to the limit
+     */
+    private static boolean isRequestRead(final Runnable command) {
+        if (!(command instanceof ContextTask)) {
+            return false;
+        }
+
+        final Context context = ((ContextTask)command).getContext();
+        if ((context == null) || (context.getCurrentOpType() != Context.OpType.OP_READ)) {
+            return false;
+        }
+
+        final Object attachment = context.getSelectionKey().attachment();
+
+        return (attachment == null) || (attachment instanceof Long);
+    }
+
+    /**
+     * Answers the connection of the given task with <code>503 Service Unavailable</code> and closes it. Runs in the
+     * selector thread, thus nothing blocks: the request is read as far as it has arrived and the response fits into
+     * the empty send buffer of the socket.
+     *
+     * @param  task  the rejected task
+     */
+    private void reject(final ContextTask task) {
+        final Context context = task.getContext();
+        final SelectionKey key = context.getSelectionKey();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("concurrency limit " + limit.getLimit() + " reached, rejecting connection: " // NOI18N
+                        + key.channel());
+        }
+
+        try {
+            final SocketChannel channel = (SocketChannel)key.channel();
+            final ByteBuffer drain = ByteBuffer.allocate(DRAIN_BUFFER_SIZE);
+            int drained = 0;
+            int read;
+            while ((drained < MAX_DRAIN_SIZE) && ((read = channel.read(drain)) > 0)) {
+                drained += read;
+                drain.clear();
+            }
+            channel.write(ByteBuffer.wrap(REJECTION));
+        } catch (final IOException ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("cannot answer rejected connection", ex); // NOI18N
+            }
+        } finally {
+            context.getSelectorHandler().getSelectionKeyHandler().cancel(key);
+            task.recycle();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
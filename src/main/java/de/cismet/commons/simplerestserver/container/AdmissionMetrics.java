@@ -0,0 +1,180 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Publishes the {@link AdaptiveConcurrencyLimit} of all listeners with admission control, labeled with the listener,
+ * through the {@link MetricsRegistry} and optionally as MBeans named
+ * <code>de.cismet.commons.simplerestserver:type=AdmissionControl,name=&lt;listener&gt;</code>.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class AdmissionMetrics implements MetricsSource {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(AdmissionMetrics.class);
+
+    private static final String SOURCE_NAME = "admission";                         // NOI18N
+    private static final String JMX_DOMAIN = "de.cismet.commons.simplerestserver"; // NOI18N
+
+    private static final double SECONDS_PER_MILLI = 0.001;
+
+    private static final AdmissionMetrics INSTANCE = new AdmissionMetrics();
+
+    //~ Instance fields --------------------------------------------------------
+
+    // sorted to get a stable output
+    private final transient Map<String, AdaptiveConcurrencyLimit> limits;
+    private final transient Map<String, ObjectName> mbeans;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new AdmissionMetrics object.
+     */
+    private AdmissionMetrics() {
+        limits = new ConcurrentSkipListMap<String, AdaptiveConcurrencyLimit>();
+        mbeans = new ConcurrentSkipListMap<String, ObjectName>();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the admission metrics of this JVM.
+     *
+     * @return  the admission metrics
+     */
+    static AdmissionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publishes the limit of a listener. Listeners sharing a port get the suffix <code>#2</code>, <code>#3</code> and
+     * so on.
+     *
+     * @param   listener  the address of the listener, e.g. <code>0.0.0.0:8080</code>
+     * @param   limit     the limit of the listener
+     * @param   jmx       whether the limit shall be registered as MBean, too
+     *
+     * @return  the unique name the limit is published with
+     */
+    synchronized String add(final String listener, final AdaptiveConcurrencyLimit limit, final boolean jmx) {
+        String name = listener;
+        for (int i = 2; limits.containsKey(name); ++i) {
+            name = listener + '#' + i;
+        }
+        limits.put(name, limit);
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, this);
+
+        if (jmx) {
+            try {
+                final ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=AdmissionControl,name=" // NOI18N
+                                + ObjectName.quote(name));
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(new StandardMBean(limit, AdaptiveConcurrencyLimitMBean.class), objectName);
+                mbeans.put(name, objectName);
+            } catch (final JMException ex) {
+                LOG.warn("cannot register admission control of listener " + name + " as MBean", ex); // NOI18N
+            }
+        }
+
+        return name;
+    }
+
+    /**
+     * Withdraws the limit of a listener.
+     *
+     * @param  name  the name returned by {@link #add(String, AdaptiveConcurrencyLimit, boolean)}
+     */
+    synchronized void remove(final String name) {
+        limits.remove(name);
+
+        final ObjectName objectName = mbeans.remove(name);
+        if (objectName != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (final JMException ex) {
+                LOG.warn("cannot unregister MBean " + objectName, ex); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (limits.isEmpty()) {
+            return;
+        }
+
+        writer.family("admission_limit", MetricsWriter.TYPE_GAUGE, "Current limit of requests in progress"); // NOI18N
+        for (final Map.Entry<String, AdaptiveConcurrencyLimit> entry : limits.entrySet()) {
+            writer.sample("admission_limit", labels(entry), entry.getValue().getLimit()); // NOI18N
+        }
+
+        writer.family("admission_in_flight", MetricsWriter.TYPE_GAUGE, "Requests in progress"); // NOI18N
+        for (final Map.Entry<String, AdaptiveConcurrencyLimit> entry : limits.entrySet()) {
+            writer.sample("admission_in_flight", labels(entry), entry.getValue().getInFlight()); // NOI18N
+        }
+
+        writer.family("admission_admitted_total", MetricsWriter.TYPE_COUNTER, "Admitted requests"); // NOI18N
+        for (final Map.Entry<String, AdaptiveConcurrencyLimit> entry : limits.entrySet()) {
+            writer.sample("admission_admitted_total", labels(entry), entry.getValue().getAdmitted()); // NOI18N
+        }
+
+        writer.family(
+            "admission_rejected_total", // NOI18N
+            MetricsWriter.TYPE_COUNTER,
+            "Requests rejected with 503 because the limit was reached"); // NOI18N
+        for (final Map.Entry<String, AdaptiveConcurrencyLimit> entry : limits.entrySet()) {
+            writer.sample("admission_rejected_total", labels(entry), entry.getValue().getRejected()); // NOI18N
+        }
+
+        writer.family(
+            "admission_latency_baseline_seconds", // NOI18N
+            MetricsWriter.TYPE_GAUGE,
+            "Lowest recent average latency the limit is adapted to"); // NOI18N
+        for (final Map.Entry<String, AdaptiveConcurrencyLimit> entry : limits.entrySet()) {
+            final double baseline = entry.getValue().getBaselineLatency() * SECONDS_PER_MILLI;
+            if (!Double.isNaN(baseline)) {
+                writer.sample("admission_latency_baseline_seconds", labels(entry), baseline); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * Creates the labels of a listener.
+     *
+     * @param   entry  the listener and its limit
+     *
+     * @return  the labels
+     */
+    private static String[] labels(final Map.Entry<String, AdaptiveConcurrencyLimit> entry) {
+        return new String[] { "listener", entry.getKey() }; // NOI18N
+    }
+}
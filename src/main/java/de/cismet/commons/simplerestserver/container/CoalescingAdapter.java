@@ -0,0 +1,265 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import com.sun.jersey.spi.container.ContainerResponse;
+
+import org.apache.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.cache.CoalescingFilterFactory;
+import de.cismet.commons.simplerestserver.cache.ResponseCache;
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Coalesces identical concurrent <code>GET</code> requests. The first request of a key, consisting of the local port,
+ * the <code>Host</code> header, the path, the query and the selected headers, leads: it is processed by Jersey and its
+ * serialised response is captured by the {@link CoalescingFilterFactory}. Identical requests arriving while the leader
+ * is in progress wait for it and are answered with a copy of its response without touching Jersey at all. Nothing is
+ * kept once the leader is finished, so this is no cache, it only removes the duplicate work of a thundering herd.<br/>
+ * <br/>
+ * If the response of the leader could not be captured, e.g. because it failed, was too large or set cookies, or if it
+ * takes longer than the timeout, the waiting requests are processed on their own. The adapter must run in the thread
+ * of the resource method, thus anywhere between the dispatch to virtual threads and the Jersey adapter.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class CoalescingAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(CoalescingAdapter.class);
+
+    // requests of different users must not share responses
+    public static final String DEFAULT_HEADERS = "Accept,Accept-Language,Authorization,Cookie"; // NOI18N
+    public static final long DEFAULT_TIMEOUT = 30000;
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024;
+
+    private static final String SOURCE_NAME = "coalescing"; // NOI18N
+
+    // separates the parts of a key, cannot occur in paths, queries or header values
+    private static final char KEY_SEPARATOR = '\n';
+
+    // shared by all listeners, the local port in the key keeps the applications of different ports apart
+    private static final ConcurrentMap<String, Flight> FLIGHTS = new ConcurrentHashMap<String, Flight>();
+
+    private static final AtomicLong LEADERS = new AtomicLong();
+    private static final AtomicLong FOLLOWERS = new AtomicLong();
+    private static final AtomicLong FALLBACKS = new AtomicLong();
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient String[] headers;
+    private final transient long timeout;
+    private final transient long maxSize;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new CoalescingAdapter object.
+     *
+     * @param  delegate  the adapter that processes the leading requests
+     * @param  headers   the names of the headers that are part of the key
+     * @param  timeout   the milliseconds a request waits for its leader
+     * @param  maxSize   the maximum size of a response body that is fanned out
+     */
+    CoalescingAdapter(final GrizzlyAdapter delegate, final String[] headers, final long timeout, final long maxSize) {
+        super(delegate);
+
+        this.headers = headers;
+        this.timeout = timeout;
+        this.maxSize = maxSize;
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        if (!"GET".equals(request.getMethod())) { // NOI18N
+            delegate.service(request, response);
+
+            return;
+        }
+
+        final String key = createKey(request);
+        final Flight flight = new Flight();
+        final Flight leader = FLIGHTS.putIfAbsent(key, flight);
+        if (leader == null) {
+            lead(key, flight, request, response);
+        } else if (leader.await(timeout) && (leader.response != null)) {
+            FOLLOWERS.incrementAndGet();
+            write(leader.response, response);
+        } else {
+            FALLBACKS.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("cannot use the response of the leading request, processing on its own: " // NOI18N
+                            + request.getRequestURI());
+            }
+            delegate.service(request, response);
+        }
+    }
+
+    /**
+     * Processes a leading request and hands its response to the requests waiting for it.
+     *
+     * @param   key       the key of the request
+     * @param   flight    the flight the request leads
+     * @param   request   the request
+     * @param   response  the response
+     *
+     * @throws  Exception  if the delegate fails
+     */
+    private void lead(final String key,
+            final Flight flight,
+            final GrizzlyRequest request,
+            final GrizzlyResponse response) throws Exception {
+        LEADERS.incrementAndGet();
+        CoalescingFilterFactory.beginCapture(maxSize);
+        try {
+            delegate.service(request, response);
+        } finally {
+            flight.response = CoalescingFilterFactory.endCapture();
+            FLIGHTS.remove(key, flight);
+            flight.done.countDown();
+        }
+    }
+
+    /**
+     * Writes the response of the leader.
+     *
+     * @param   captured  the response of the leader
+     * @param   response  the response to write to
+     *
+     * @throws  Exception  if the response cannot be written
+     */
+    private static void write(final ResponseCache.CachedResponse captured, final GrizzlyResponse response)
+            throws Exception {
+        response.setStatus(captured.getStatus());
+        for (final Map.Entry<String, List<Object>> header : captured.getHeaders().entrySet()) {
+            for (final Object value : header.getValue()) {
+                response.addHeader(header.getKey(), ContainerResponse.getHeaderValue(value));
+            }
+        }
+
+        final byte[] body = captured.getBody();
+        response.setContentLength(body.length);
+        if (body.length > 0) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    /**
+     * Creates the key of a request.
+     *
+     * @param   request  the request
+     *
+     * @return  the key
+     */
+    private String createKey(final GrizzlyRequest request) {
+        final StringBuilder key = new StringBuilder(128);
+        key.append(request.getLocalPort()).append(KEY_SEPARATOR);
+        final String host = request.getHeader("Host"); // NOI18N
+        if (host != null) {
+            key.append(host);
+        }
+        key.append(KEY_SEPARATOR).append(request.getRequestURI()).append(KEY_SEPARATOR);
+        final String query = request.getQueryString();
+        if (query != null) {
+            key.append(query);
+        }
+        for (final String header : headers) {
+            key.append(KEY_SEPARATOR);
+            final String value = request.getHeader(header);
+            if (value != null) {
+                key.append(value);
+            }
+        }
+
+        return key.toString();
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * A leading request in progress.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Flight {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        // published by the count down of the latch
+        private ResponseCache.CachedResponse response;
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Waits until the leading request is finished.
+         *
+         * @param   timeout  the maximum milliseconds to wait
+         *
+         * @return  <code>true</code> if the leading request is finished
+         *
+         * @throws  InterruptedException  if the waiting thread is interrupted
+         */
+        boolean await(final long timeout) throws InterruptedException {
+            return done.await(timeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publishes the counters of all coalescing adapters.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            writer.counter(
+                "coalescing_leaders_total", // NOI18N
+                "Requests processed for a group of identical requests", // NOI18N
+                LEADERS.get());
+            writer.counter(
+                "coalescing_followers_total", // NOI18N
+                "Requests answered with the response of an identical request", // NOI18N
+                FOLLOWERS.get());
+            writer.counter(
+                "coalescing_fallbacks_total", // NOI18N
+                "Requests processed on their own because the response of the leader was not usable", // NOI18N
+                FALLBACKS.get());
+            writer.gauge("coalescing_in_flight", "Leading requests in progress", FLIGHTS.size()); // NOI18N
+        }
+    }
+}
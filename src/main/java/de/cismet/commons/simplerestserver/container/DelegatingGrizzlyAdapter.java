@@ -0,0 +1,78 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+/**
+ * Base class for adapters that are stacked in front of another {@link GrizzlyAdapter}. The lifecycle of the delegate is
+ * managed by this adapter, so only the outermost adapter has to be registered with the web server. The default
+ * {@link #service(GrizzlyRequest, GrizzlyResponse)} implementation simply forwards to the delegate.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+abstract class DelegatingGrizzlyAdapter extends GrizzlyAdapter {
+
+    //~ Instance fields --------------------------------------------------------
+
+    protected final transient GrizzlyAdapter delegate;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new DelegatingGrizzlyAdapter object.
+     *
+     * @param   delegate  the adapter requests are forwarded to
+     *
+     * @throws  IllegalArgumentException  if the delegate is <code>null</code>
+     */
+    DelegatingGrizzlyAdapter(final GrizzlyAdapter delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null"); // NOI18N
+        }
+
+        this.delegate = delegate;
+
+        // static resources are handled by the delegate, if at all
+        setHandleStaticResources(false);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        delegate.service(request, response);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() {
+        super.start();
+        delegate.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        try {
+            delegate.destroy();
+        } finally {
+            super.destroy();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.openide.util.lookup.ServiceProvider;
+
+import de.cismet.commons.simplerestserver.WebServerConfig;
+import de.cismet.commons.simplerestserver.WebServiceContainer;
+import de.cismet.commons.simplerestserver.WebServiceContainerFactory;
+
+/**
+ * Creates {@link GrizzlyRESTContainer}s, the default engine with all processing stages of the server.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@ServiceProvider(
+    service = WebServiceContainerFactory.class,
+    position = 100
+)
+public final class GrizzlyContainerFactory implements WebServiceContainerFactory {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final String NAME = "grizzly"; // NOI18N
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReusePortSupported() {
+        return GrizzlyRESTContainer.isReusePortSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebServiceContainer createContainer(final WebServerConfig config) {
+        return new GrizzlyRESTContainer(config);
+    }
+}
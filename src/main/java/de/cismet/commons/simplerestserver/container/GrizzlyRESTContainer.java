@@ -8,28 +8,72 @@
 package de.cismet.commons.simplerestserver.container;
 
 import com.sun.grizzly.Controller;
+import com.sun.grizzly.TCPSelectorHandler;
 import com.sun.grizzly.http.SelectorThread;
 import com.sun.grizzly.http.embed.GrizzlyWebServer;
 import com.sun.grizzly.http.servlet.ServletAdapter;
 import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
 import com.sun.grizzly.tcp.http11.GrizzlyRequest;
 import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+import com.sun.grizzly.websockets.WebSocketAsyncFilter;
+import com.sun.grizzly.websockets.WebSocketEngine;
 import com.sun.jersey.api.container.grizzly.GrizzlyWebContainerFactory;
+import com.sun.jersey.api.core.ClassNamesResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
 import com.sun.jersey.spi.container.servlet.ServletContainer;
 
+import org.apache.log4j.Appender;
+import org.apache.log4j.Category;
+import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.apache.log4j.spi.HierarchyEventListener;
+import org.apache.log4j.spi.LoggerRepository;
 
+import java.io.File;
+import java.io.IOException;
+
+import java.lang.reflect.InvocationTargetException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Filter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
+import javax.servlet.ServletException;
+
 import de.cismet.commons.simplerestserver.AbstractWSContainer;
 import de.cismet.commons.simplerestserver.ServerParamProvider;
+import de.cismet.commons.simplerestserver.ServerParamUtils;
 import de.cismet.commons.simplerestserver.WebServerConfig;
 import de.cismet.commons.simplerestserver.WebServerException;
+import de.cismet.commons.simplerestserver.cache.EvictionPolicy;
+import de.cismet.commons.simplerestserver.cache.ResponseCache;
+import de.cismet.commons.simplerestserver.cache.CoalescingFilterFactory;
+import de.cismet.commons.simplerestserver.cache.ResponseCacheFilterFactory;
+import de.cismet.commons.simplerestserver.client.HttpClientPool;
+import de.cismet.commons.simplerestserver.events.SlowConsumerPolicy;
+import de.cismet.commons.simplerestserver.index.ResourceIndex;
+import de.cismet.commons.simplerestserver.loadtest.WarmUpReplay;
+import de.cismet.commons.simplerestserver.metrics.MetricsFilterFactory;
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.websocket.WebSocketEndpoint;
 
 /**
  * Grizzly REST Servlet Container. Logging is piped to Log4J
@@ -43,13 +87,29 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
 
     private static final transient Logger LOG = Logger.getLogger(GrizzlyRESTContainer.class);
 
+    // shared by all containers, the grizzly controller logger is static anyway
+    private static final transient Java2Log4jLogger JAVA_LOGGER = new Java2Log4jLogger();
+
     private static final transient String DEFAULT_CTX_PATH = "/";
 
+    private static final int DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY = 10000;
+
+    private static final String RESPONSE_CACHE_METRICS = "responseCache"; // NOI18N
+
+    // the response cache is shared, only the first container configures it
+    private static final AtomicBoolean RESPONSE_CACHE_CONFIGURED = new AtomicBoolean();
+
     //~ Instance fields --------------------------------------------------------
 
 // private transient SelectorThread selector;
 
     private transient GrizzlyWebServer webServer;
+    private transient ListenerMetrics listenerMetrics;
+    private transient String listenerMetricsName;
+    private transient HealthEndpointAdapter healthAdapter;
+    private transient AdaptiveConcurrencyLimit admissionLimit;
+    private transient String admissionMetricsName;
+    private transient WebSocketEndpointApplication webSocketApplication;
 
     //~ Constructors -----------------------------------------------------------
 
@@ -61,11 +121,20 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
     public GrizzlyRESTContainer(final WebServerConfig config) {
         super(config);
 
-        Controller.setLogger(new Java2Log4jLogger());
+        Controller.setLogger(JAVA_LOGGER);
     }
 
     //~ Methods ----------------------------------------------------------------
 
+    /**
+     * Lets the Grizzly logging follow the current Log4J levels. Log4J reports no level changes, so this has to be
+     * called after levels have been changed programmatically, e.g. by a management console. Reconfigurations that add
+     * appenders are noticed, as is the start of a container.
+     */
+    public static void refreshLogLevels() {
+        JAVA_LOGGER.refresh();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -77,21 +146,25 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                     LOG.info("grizzly coming up @ " + baseuri + " :: server params: " + config.getServerParams()); // NOI18N
                 }
 
+                // levels may have been changed since the last start without notice
+                JAVA_LOGGER.refresh();
                 this.webServer = new GrizzlyWebServer(config.getPort());
+                configureListener(this.webServer.getSelectorThread());
 
-                final ServletAdapter jerseyAdapter;
+                final JerseyServletAdapter jerseyAdapter;
 
                 // handle static resources, if specified
                 final Map<String, String> serverParams = config.getServerParams();
                 if (serverParams.containsKey(ServerParamProvider.PARAM_STATIC_RESOURCE_PATH)) {
                     final String staticResourcePath = serverParams.get(ServerParamProvider.PARAM_STATIC_RESOURCE_PATH);
-                    jerseyAdapter = new ServletAdapter(staticResourcePath);
-                    jerseyAdapter.setHandleStaticResources(true);
+                    jerseyAdapter = new JerseyServletAdapter(staticResourcePath);
+                    // static resources are served by the StaticFileAdapter of the adapter chain
+                    jerseyAdapter.setHandleStaticResources(false);
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Found static resources " + staticResourcePath);
                     }
                 } else {
-                    jerseyAdapter = new ServletAdapter();
+                    jerseyAdapter = new JerseyServletAdapter();
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("No static resources specified");
                     }
@@ -101,6 +174,21 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 for (final Map.Entry<String, String> param : serverParams.entrySet()) {
                     jerseyAdapter.addInitParameter(param.getKey(), param.getValue());
                 }
+                configureResourceClasses(jerseyAdapter, serverParams);
+                if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_METRICS, false)) {
+                    // bind requests to their metrics before cached responses are served
+                    addResourceFilterFactory(jerseyAdapter, MetricsFilterFactory.class);
+                    MetricsRegistry.getInstance().addSource(RESPONSE_CACHE_METRICS, ResponseCache.getInstance());
+                }
+                addResourceFilterFactory(jerseyAdapter, ResponseCacheFilterFactory.class);
+                if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_COALESCING, false)) {
+                    addResourceFilterFactory(jerseyAdapter, CoalescingFilterFactory.class);
+                }
+                if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_ASYNC_RESPONSES, false)) {
+                    addResourceFilterFactory(jerseyAdapter, SuspendedResponseFilterFactory.class);
+                }
+                configureResponseCache(serverParams);
+                configureHttpClientPool(serverParams);
 
                 final String ctxPath;
                 if (serverParams.containsKey(ServerParamProvider.PARAM_SERVLET_CONTEXT)) {
@@ -116,8 +204,20 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 jerseyAdapter.setContextPath(ctxPath);
                 jerseyAdapter.setServletInstance(new ServletContainer());
 
+                final WarmUpReplay warmUp = loadWarmUp(serverParams);
+                // lets the replayed requests pass the health adapter, but not requests of clients knowing the header
+                final String warmUpToken = (warmUp == null) ? null : UUID.randomUUID().toString();
+
                 // register all above defined adapters
-                this.webServer.addGrizzlyAdapter(jerseyAdapter, new String[] { ctxPath });
+                this.webServer.addGrizzlyAdapter(createAdapterChain(jerseyAdapter, serverParams, warmUpToken),
+                    new String[] { ctxPath });
+
+                webSocketApplication = createWebSocketApplication(ctxPath, serverParams);
+                if (webSocketApplication != null) {
+                    // upgrade requests are taken over before they reach the adapters
+                    this.webServer.addAsyncFilter(new WebSocketAsyncFilter());
+                    WebSocketEngine.getEngine().register(webSocketApplication);
+                }
 
                 if (serverParams.containsKey(ServerParamProvider.PARAM_DEFAULT_IDLE_THREAD_TIMEOUT)) {
                     final String timeoutString = serverParams.get(
@@ -130,16 +230,876 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                     }
                 }
 
+                configureTransport(this.webServer.getSelectorThread(), serverParams);
+                final boolean metrics = ServerParamUtils.getBoolean(
+                        serverParams,
+                        ServerParamProvider.PARAM_METRICS,
+                        false);
+                if (metrics || (admissionLimit != null)) {
+                    // creates the worker pool, thus after its configuration; the admission control needs the worker
+                    // pool probe for the queue wait of the requests, even if the metrics are not published
+                    listenerMetrics = new ListenerMetrics(this.webServer.getSelectorThread());
+                    listenerMetrics.install();
+                }
+                // sheds the requests over the limit before they are queued for a worker thread
+                ((ListenerController)this.webServer.getSelectorThread().getController()).setAdmissionLimit(
+                    admissionLimit);
+
+                final boolean background = ServerParamUtils.getBoolean(
+                        serverParams,
+                        ServerParamProvider.PARAM_BACKGROUND_STARTUP,
+                        false);
+                Readiness.getInstance().starting(this, getListenerName());
+                HttpClientPool.getInstance().start(this);
+
                 // let Grizzly run
                 this.webServer.start();
+
+                configureSocketBuffers(
+                    ((ListenerController)this.webServer.getSelectorThread().getController()).getTCPSelectorHandler(),
+                    serverParams);
+
+                if (metrics) {
+                    listenerMetrics.start();
+                    final boolean jmx = ServerParamUtils.getBoolean(
+                            serverParams,
+                            ServerParamProvider.PARAM_METRICS_JMX,
+                            true);
+                    listenerMetricsName = TransportMetrics.getInstance().add(getListenerName(), listenerMetrics, jmx);
+                }
+                if (admissionLimit != null) {
+                    final boolean jmx = ServerParamUtils.getBoolean(
+                            serverParams,
+                            ServerParamProvider.PARAM_METRICS_JMX,
+                            true);
+                    admissionMetricsName = AdmissionMetrics.getInstance().add(getListenerName(), admissionLimit, jmx);
+                }
+
+                final JerseyInitializer initializer = new JerseyInitializer(
+                        jerseyAdapter,
+                        healthAdapter,
+                        warmUp,
+                        warmUpToken);
+                if (background) {
+                    // the listener accepts connections already, the health adapter rejects requests until jersey is up
+                    final Thread thread = new Thread(initializer, "jersey-init-" + config.getPort()); // NOI18N
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+                    thread.start();
+                } else if (warmUp != null) {
+                    initializer.run();
+                } else {
+                    // jersey is loaded lazily by the first request
+                    Readiness.getInstance().ready(this);
+                }
             } catch (final Exception ex) {
                 final String message = "could not start grizzly webcontainer"; // NOI18N
                 LOG.error(message, ex);
+                Readiness.getInstance().failed(this);
                 throw new WebServerException(message, ex);
             }
         }
     }
 
+    /**
+     * Loads the requests of the configured warm-up file. A file that cannot be read is skipped, the warm-up is no
+     * reason not to start.
+     *
+     * @param   serverParams  the server parameters
+     *
+     * @return  the warm-up or <code>null</code> if there is none
+     */
+    private WarmUpReplay loadWarmUp(final Map<String, String> serverParams) {
+        final String file = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_WARM_UP_FILE);
+        if (file == null) {
+            return null;
+        }
+
+        final long requests = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_WARM_UP_REQUESTS,
+                WarmUpReplay.DEFAULT_REQUESTS,
+                1,
+                Long.MAX_VALUE);
+        final long duration = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_WARM_UP_DURATION,
+                WarmUpReplay.DEFAULT_DURATION,
+                1,
+                Long.MAX_VALUE);
+        try {
+            return WarmUpReplay.load(new File(file), requests, duration);
+        } catch (final IOException e) {
+            LOG.warn("cannot read warm-up file, starting without warm-up: " + file, e); // NOI18N
+
+            return null;
+        }
+    }
+
+    /**
+     * Creates the application serving the configured websocket endpoints of this listener.
+     *
+     * @param   ctxPath                    the context path of the listener
+     * @param   serverParams               the server parameters
+     *
+     * @return  the application or <code>null</code> if there are no endpoints
+     *
+     * @throws  ClassNotFoundException     if an endpoint class cannot be found
+     * @throws  InstantiationException     if an endpoint class cannot be instantiated
+     * @throws  IllegalAccessException     if the constructor of an endpoint class is not accessible
+     * @throws  NoSuchMethodException      if an endpoint class has no default constructor
+     * @throws  InvocationTargetException  if the constructor of an endpoint class fails
+     * @throws  IllegalArgumentException   if an entry is malformed or its class is no {@link WebSocketEndpoint}
+     */
+    private WebSocketEndpointApplication createWebSocketApplication(final String ctxPath,
+            final Map<String, String> serverParams) throws ClassNotFoundException,
+        InstantiationException,
+        IllegalAccessException,
+        NoSuchMethodException,
+        InvocationTargetException {
+        final String entries = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_WEB_SOCKET_ENDPOINTS);
+        if (entries == null) {
+            return null;
+        }
+
+        final Map<String, WebSocketEndpoint> endpoints = new LinkedHashMap<String, WebSocketEndpoint>();
+        for (final String entry : entries.split(",")) { // NOI18N
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            final int index = entry.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("websocket endpoint is not <path>=<class name>: " + entry); // NOI18N
+            }
+            final String path = entry.substring(0, index).trim();
+            final String className = entry.substring(index + 1).trim();
+            // loaded like the jersey resources
+            final Class<?> endpointClass = Class.forName(
+                    className,
+                    true,
+                    Thread.currentThread().getContextClassLoader());
+            if (!WebSocketEndpoint.class.isAssignableFrom(endpointClass)) {
+                throw new IllegalArgumentException("not a websocket endpoint: " + className); // NOI18N
+            }
+            endpoints.put(path, (WebSocketEndpoint)endpointClass.getDeclaredConstructor().newInstance());
+        }
+        if (endpoints.isEmpty()) {
+            return null;
+        }
+
+        final long maxPendingBytes = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_WEB_SOCKET_MAX_PENDING_BYTES,
+                WebSocketEndpointApplication.DEFAULT_MAX_PENDING_BYTES,
+                1,
+                Long.MAX_VALUE);
+        final long writeTimeout = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_WEB_SOCKET_WRITE_TIMEOUT,
+                WebSocketEndpointApplication.DEFAULT_WRITE_TIMEOUT,
+                0,
+                Long.MAX_VALUE);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("serving websocket endpoints :: endpoints=" + endpoints.keySet() // NOI18N
+                        + " | maxPendingBytes=" + maxPendingBytes // NOI18N
+                        + " | writeTimeout=" + writeTimeout); // NOI18N
+        }
+
+        return new WebSocketEndpointApplication(config.getPort(), ctxPath, endpoints, maxPendingBytes, writeTimeout);
+    }
+
+    /**
+     * Getter for the address the warm-up requests are sent to, the loopback address if the listener is bound to all
+     * interfaces.
+     *
+     * @return  the address of the listener
+     *
+     * @throws  UnknownHostException  if the configured host cannot be resolved
+     */
+    private InetSocketAddress getWarmUpAddress() throws UnknownHostException {
+        final InetAddress address = (config.getHost() == null) ? null : InetAddress.getByName(config.getHost());
+        if ((address == null) || address.isAnyLocalAddress()) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getPort());
+        }
+
+        return new InetSocketAddress(address, config.getPort());
+    }
+
+    /**
+     * Getter for the name of the listener of this container.
+     *
+     * @return  <code>host:port</code> of the listener
+     */
+    private String getListenerName() {
+        return ((config.getHost() == null) ? "0.0.0.0" : config.getHost()) + ":" + config.getPort(); // NOI18N
+    }
+
+    /**
+     * Indicates whether several containers can listen on the same port, see {@link WebServerConfig#isReusePort()}.
+     *
+     * @return  true if <code>SO_REUSEPORT</code> is supported by the runtime and the platform
+     */
+    public static boolean isReusePortSupported() {
+        return ListenerController.isReusePortSupported();
+    }
+
+    /**
+     * Binds the given <code>SelectorThread</code> to the configured host, if any, and lets it share its port with other
+     * listeners if requested. The controller is always replaced, otherwise the accept backlog is ignored if no host is
+     * configured.
+     *
+     * @param   selectorThread  the selector thread to configure, must not be started yet
+     *
+     * @throws  UnknownHostException  if the configured host cannot be resolved
+     */
+    private void configureListener(final SelectorThread selectorThread) throws UnknownHostException {
+        if (config.getHost() != null) {
+            selectorThread.setAddress(InetAddress.getByName(config.getHost()));
+        }
+        // each listener needs its own controller anyway, grizzly only creates one if none is set
+        selectorThread.setController(new ListenerController(config.isReusePort()));
+    }
+
+    /**
+     * Lets Jersey register the root resources and providers of the {@link ResourceIndex} instead of scanning every
+     * class of the resource packages. Nothing is changed if the index is disabled, another resource config is
+     * configured or a jar or directory that contains one of the packages has no index.
+     *
+     * @param  jerseyAdapter  the adapter hosting the Jersey servlet
+     * @param  serverParams   the server parameters
+     */
+    private void configureResourceClasses(final ServletAdapter jerseyAdapter, final Map<String, String> serverParams) {
+        final String packages = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_JERSEY_PROPERTY_PACKAGES);
+        if ((packages == null)
+                    || !ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_RESOURCE_INDEX, true)
+                    || serverParams.containsKey(ServletContainer.RESOURCE_CONFIG_CLASS)) {
+            return;
+        }
+
+        // jersey loads the classes with the context class loader, too
+        final Set<String> classes = ResourceIndex.load(Thread.currentThread().getContextClassLoader())
+                    .getResourcesAndProviders(packages.split("[,;\\s]+")); // NOI18N
+        if (classes == null) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("resource index incomplete for packages " + packages + " -> scanning them"); // NOI18N
+            }
+
+            return;
+        }
+
+        final StringBuilder classNames = new StringBuilder();
+        for (final String className : classes) {
+            if (classNames.length() > 0) {
+                classNames.append(',');
+            }
+            classNames.append(className);
+        }
+
+        jerseyAdapter.addInitParameter(
+            ServletContainer.RESOURCE_CONFIG_CLASS,
+            ClassNamesResourceConfig.class.getName());
+        jerseyAdapter.addInitParameter(ClassNamesResourceConfig.PROPERTY_CLASSNAMES, classNames.toString());
+        if (LOG.isInfoEnabled()) {
+            LOG.info("registering " + classes.size() + " indexed classes of packages " + packages // NOI18N
+                        + " without scanning: " + classNames);                                // NOI18N
+        }
+    }
+
+    /**
+     * Registers the given Jersey resource filter factory in addition to the factories already registered with the
+     * adapter, including those configured in the server parameters.
+     *
+     * @param  jerseyAdapter  the adapter hosting the Jersey servlet
+     * @param  factory        the resource filter factory class
+     */
+    private void addResourceFilterFactory(
+            final ServletAdapter jerseyAdapter,
+            final Class<? extends ResourceFilterFactory> factory) {
+        final String configured = jerseyAdapter.getInitParameter(ResourceConfig.PROPERTY_RESOURCE_FILTER_FACTORIES);
+        final String factories;
+        if ((configured == null) || configured.trim().isEmpty()) {
+            factories = factory.getName();
+        } else {
+            factories = configured + "," + factory.getName(); // NOI18N
+        }
+
+        jerseyAdapter.addInitParameter(ResourceConfig.PROPERTY_RESOURCE_FILTER_FACTORIES, factories);
+    }
+
+    /**
+     * Configures the {@link ResponseCache} shared by all containers. Only the first container started configures it,
+     * the listeners of a server share their configuration and resizing the cache under traffic would discard entries.
+     *
+     * @param  serverParams  the server parameters
+     */
+    private void configureResponseCache(final Map<String, String> serverParams) {
+        if (!RESPONSE_CACHE_CONFIGURED.compareAndSet(false, true)) {
+            return;
+        }
+
+        final long size = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_RESPONSE_CACHE_SIZE,
+                ResponseCache.DEFAULT_MAX_SIZE,
+                0,
+                Long.MAX_VALUE);
+        final long maxEntrySize = ServerParamUtils.getLong(
+                serverParams,
+                ServerParamProvider.PARAM_RESPONSE_CACHE_MAX_ENTRY_SIZE,
+                ResponseCache.DEFAULT_MAX_ENTRY_SIZE,
+                0,
+                Integer.MAX_VALUE);
+
+        EvictionPolicy eviction = EvictionPolicy.LRU;
+        final String evictionParam = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_RESPONSE_CACHE_EVICTION);
+        if (evictionParam != null) {
+            try {
+                eviction = EvictionPolicy.valueOf(evictionParam.toUpperCase());
+            } catch (final IllegalArgumentException e) {
+                LOG.warn("unknown response cache eviction policy '" + evictionParam + "' -> using " + eviction); // NOI18N
+            }
+        }
+
+        ResponseCache.getInstance().configure(size, maxEntrySize, eviction);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("response cache :: size=" + size // NOI18N
+                        + " | maxEntrySize=" + maxEntrySize // NOI18N
+                        + " | eviction=" + eviction); // NOI18N
+        }
+    }
+
+    /**
+     * Configures the {@link HttpClientPool} shared by all containers.
+     *
+     * @param  serverParams  the server parameters
+     */
+    private void configureHttpClientPool(final Map<String, String> serverParams) {
+        final int maxConnections = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST,
+                HttpClientPool.DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                1,
+                Integer.MAX_VALUE);
+        final int connectTimeout = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_HTTP_CLIENT_CONNECT_TIMEOUT,
+                HttpClientPool.DEFAULT_CONNECT_TIMEOUT,
+                1,
+                Integer.MAX_VALUE);
+        final int readTimeout = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_HTTP_CLIENT_READ_TIMEOUT,
+                HttpClientPool.DEFAULT_READ_TIMEOUT,
+                0,
+                Integer.MAX_VALUE);
+        final int idleTimeout = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_HTTP_CLIENT_IDLE_TIMEOUT,
+                HttpClientPool.DEFAULT_IDLE_TIMEOUT,
+                1,
+                Integer.MAX_VALUE);
+        final int pipelineDepth = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_HTTP_CLIENT_PIPELINE_DEPTH,
+                HttpClientPool.DEFAULT_PIPELINE_DEPTH,
+                1,
+                Integer.MAX_VALUE);
+
+        HttpClientPool.getInstance().configure(maxConnections, connectTimeout, readTimeout, idleTimeout, pipelineDepth);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("http client pool :: maxConnectionsPerHost=" + maxConnections // NOI18N
+                        + " | connectTimeout=" + connectTimeout // NOI18N
+                        + " | readTimeout=" + readTimeout // NOI18N
+                        + " | idleTimeout=" + idleTimeout // NOI18N
+                        + " | pipelineDepth=" + pipelineDepth); // NOI18N
+        }
+    }
+
+    /**
+     * Returns the number of requests that can be processed at the same time, the maximum concurrency of the virtual
+     * threads if requests are dispatched to them, otherwise the maximum size of the worker pool.
+     *
+     * @param   serverParams  the server parameters
+     *
+     * @return  the maximum number of threads processing requests
+     */
+    private int getRequestConcurrency(final Map<String, String> serverParams) {
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_VIRTUAL_THREADS, false)) {
+            return ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_VIRTUAL_THREADS_MAX_CONCURRENCY,
+                    DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY,
+                    1,
+                    Integer.MAX_VALUE);
+        }
+
+        // the grizzly default if the parameter is not set
+        return ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_WORKER_MAX_THREADS,
+                this.webServer.getSelectorThread().getMaxThreads(),
+                1,
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stacks the optional request processing stages in front of the given Jersey adapter. The health adapter, if any,
+     * is kept for the background startup and the warm-up.
+     *
+     * @param   jerseyAdapter  the adapter hosting the Jersey servlet
+     * @param   serverParams   the server parameters
+     * @param   warmUpToken    the token of the warm-up requests or <code>null</code> if there is no warm-up
+     *
+     * @return  the outermost adapter that shall be registered with the web server
+     *
+     * @throws  IOException  if the static resource path cannot be resolved
+     */
+    private GrizzlyAdapter createAdapterChain(
+            final ServletAdapter jerseyAdapter,
+            final Map<String, String> serverParams,
+            final String warmUpToken) throws IOException {
+        final boolean metrics = ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_METRICS, false);
+
+        GrizzlyAdapter adapter = jerseyAdapter;
+        if (metrics) {
+            // must run in the thread of the resource method, thus directly in front of jersey
+            adapter = new ResourceMetricsAdapter(adapter);
+        }
+
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_ADMISSION_CONTROL, false)) {
+            final int minLimit = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_ADMISSION_MIN_LIMIT,
+                    AdaptiveConcurrencyLimit.DEFAULT_MIN_LIMIT,
+                    1,
+                    Integer.MAX_VALUE);
+            final int maxLimit = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_ADMISSION_MAX_LIMIT,
+                    Math.max(minLimit, AdaptiveConcurrencyLimit.DEFAULT_MAX_LIMIT),
+                    minLimit,
+                    Integer.MAX_VALUE);
+            final int initialLimit = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_ADMISSION_INITIAL_LIMIT,
+                    AdaptiveConcurrencyLimit.DEFAULT_INITIAL_LIMIT,
+                    minLimit,
+                    maxLimit);
+            final int tolerance = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_ADMISSION_TOLERANCE,
+                    AdaptiveConcurrencyLimit.DEFAULT_TOLERANCE,
+                    100,
+                    Integer.MAX_VALUE);
+            // the requests in progress are counted in the threads processing them, a limit above their number is
+            // never reached, and the limit must be able to back off below it
+            final int concurrency = getRequestConcurrency(serverParams);
+            final int effectiveMaxLimit = Math.min(maxLimit, concurrency);
+            final int effectiveMinLimit = Math.min(minLimit, Math.max(1, effectiveMaxLimit / 2));
+            if (LOG.isInfoEnabled()) {
+                LOG.info("admission control :: initialLimit=" + initialLimit // NOI18N
+                            + " | minLimit=" + effectiveMinLimit // NOI18N
+                            + " | maxLimit=" + effectiveMaxLimit // NOI18N
+                            + " | concurrency=" + concurrency // NOI18N
+                            + " | tolerance=" + tolerance + "%"); // NOI18N
+            }
+            // in the thread of the resource method as well, the latency is taken from the arrival of the request, so it
+            // includes the wait for a worker thread; static resources are cheap and not limited
+            admissionLimit = new AdaptiveConcurrencyLimit(
+                    initialLimit,
+                    effectiveMinLimit,
+                    effectiveMaxLimit,
+                    tolerance);
+            adapter = new AdmissionControlAdapter(adapter, admissionLimit);
+        } else {
+            admissionLimit = null;
+        }
+
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_COALESCING, false)) {
+            final String headersParam = ServerParamUtils.getString(
+                    serverParams,
+                    ServerParamProvider.PARAM_COALESCING_HEADERS);
+            final String headerList = (headersParam == null) ? CoalescingAdapter.DEFAULT_HEADERS : headersParam;
+            final List<String> headers = new ArrayList<String>();
+            for (final String header : headerList.split(",")) { // NOI18N
+                if (!header.trim().isEmpty()) {
+                    headers.add(header.trim());
+                }
+            }
+            final long timeout = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_COALESCING_TIMEOUT,
+                    CoalescingAdapter.DEFAULT_TIMEOUT,
+                    0,
+                    Long.MAX_VALUE);
+            final long maxSize = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_COALESCING_MAX_SIZE,
+                    CoalescingAdapter.DEFAULT_MAX_SIZE,
+                    0,
+                    Integer.MAX_VALUE);
+            if (LOG.isInfoEnabled()) {
+                LOG.info("request coalescing :: headers=" + headers // NOI18N
+                            + " | timeout=" + timeout // NOI18N
+                            + " | maxSize=" + maxSize); // NOI18N
+            }
+            // outside of the admission control, waiting requests do not occupy the limit
+            adapter = new CoalescingAdapter(adapter, headers.toArray(new String[headers.size()]), timeout, maxSize);
+        }
+
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_ASYNC_RESPONSES, false)) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("asynchronous responses enabled"); // NOI18N
+            }
+            // outside of the admission control and the coalescing, a suspended request neither occupies the limit
+            // nor delays identical requests
+            adapter = new SuspendableResponseAdapter(adapter);
+        }
+
+        final String staticResourcePath = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_STATIC_RESOURCE_PATH);
+        if (staticResourcePath != null) {
+            final long cacheSize = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_STATIC_CACHE_SIZE,
+                    StaticFileAdapter.DEFAULT_CACHE_SIZE,
+                    0,
+                    Long.MAX_VALUE);
+            final long maxCachedFileSize = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_STATIC_CACHE_MAX_FILE_SIZE,
+                    StaticFileAdapter.DEFAULT_MAX_CACHED_FILE_SIZE,
+                    0,
+                    Integer.MAX_VALUE);
+            final long checkInterval = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_STATIC_CHECK_INTERVAL,
+                    StaticFileAdapter.DEFAULT_CHECK_INTERVAL,
+                    0,
+                    Long.MAX_VALUE);
+            final boolean precompressed = ServerParamUtils.getBoolean(
+                    serverParams,
+                    ServerParamProvider.PARAM_STATIC_PRECOMPRESSED,
+                    true);
+            final StaticResourceCompressor compressor;
+            if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_STATIC_PRECOMPRESS, false)) {
+                final long interval = ServerParamUtils.getLong(
+                        serverParams,
+                        ServerParamProvider.PARAM_STATIC_PRECOMPRESS_INTERVAL,
+                        StaticResourceCompressor.DEFAULT_INTERVAL,
+                        0,
+                        Long.MAX_VALUE);
+                compressor = new StaticResourceCompressor(new File(staticResourcePath), interval);
+            } else {
+                compressor = null;
+            }
+            if (LOG.isInfoEnabled()) {
+                LOG.info("serving static resources :: path=" + staticResourcePath // NOI18N
+                            + " | cacheSize=" + cacheSize // NOI18N
+                            + " | maxCachedFileSize=" + maxCachedFileSize // NOI18N
+                            + " | checkInterval=" + checkInterval // NOI18N
+                            + " | precompressed=" + precompressed // NOI18N
+                            + " | precompress=" + (compressor != null)); // NOI18N
+            }
+            adapter = new StaticFileAdapter(
+                    adapter,
+                    new File(staticResourcePath),
+                    cacheSize,
+                    maxCachedFileSize,
+                    checkInterval,
+                    precompressed,
+                    compressor);
+        }
+
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_VIRTUAL_THREADS, false)) {
+            final int maxConcurrency = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_VIRTUAL_THREADS_MAX_CONCURRENCY,
+                    DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY,
+                    1,
+                    Integer.MAX_VALUE);
+            // fails the start on runtimes without virtual threads
+            final ExecutorService executor = VirtualThreadExecutors.newVirtualThreadPerTaskExecutor();
+            if (LOG.isInfoEnabled()) {
+                LOG.info("dispatching requests to virtual threads :: maxConcurrency=" + maxConcurrency); // NOI18N
+            }
+            adapter = new VirtualThreadDispatchAdapter(adapter, executor, maxConcurrency);
+        }
+
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_SSE, false)) {
+            final String path = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_SSE_PATH);
+            final String ssePath = (path == null) ? SseAdapter.DEFAULT_PATH : path;
+            final int queueSize = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_SSE_QUEUE_SIZE,
+                    SseAdapter.DEFAULT_QUEUE_SIZE,
+                    1,
+                    Integer.MAX_VALUE);
+            final int writerThreads = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_SSE_WRITER_THREADS,
+                    SseAdapter.DEFAULT_WRITER_THREADS,
+                    1,
+                    Integer.MAX_VALUE);
+            final long heartbeat = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_SSE_HEARTBEAT,
+                    SseAdapter.DEFAULT_HEARTBEAT,
+                    0,
+                    Long.MAX_VALUE);
+            final long writeTimeout = ServerParamUtils.getLong(
+                    serverParams,
+                    ServerParamProvider.PARAM_SSE_WRITE_TIMEOUT,
+                    SseAdapter.DEFAULT_WRITE_TIMEOUT,
+                    0,
+                    Long.MAX_VALUE);
+            SlowConsumerPolicy policy = SseAdapter.DEFAULT_POLICY;
+            final String policyParam = ServerParamUtils.getString(
+                    serverParams,
+                    ServerParamProvider.PARAM_SSE_OVERFLOW_POLICY);
+            if (policyParam != null) {
+                try {
+                    policy = SlowConsumerPolicy.valueOf(policyParam.toUpperCase());
+                } catch (final IllegalArgumentException e) {
+                    LOG.warn("unknown event stream overflow policy '" + policyParam + "' -> using " + policy); // NOI18N
+                }
+            }
+            if (LOG.isInfoEnabled()) {
+                LOG.info("serving server-sent events :: path=" + ssePath // NOI18N
+                            + " | queueSize=" + queueSize // NOI18N
+                            + " | overflowPolicy=" + policy // NOI18N
+                            + " | writerThreads=" + writerThreads // NOI18N
+                            + " | heartbeat=" + heartbeat // NOI18N
+                            + " | writeTimeout=" + writeTimeout); // NOI18N
+            }
+            // outside of the dispatch to virtual threads, an event stream holds no thread at all; within the rate
+            // limit, so clients cannot reconnect arbitrarily often
+            adapter = new SseAdapter(
+                    adapter,
+                    ssePath,
+                    queueSize,
+                    policy,
+                    writerThreads,
+                    heartbeat,
+                    writeTimeout,
+                    "sse-writer-" + config.getPort()); // NOI18N
+        }
+
+        final int rate = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_RATE_LIMIT,
+                0,
+                0,
+                Integer.MAX_VALUE);
+        if (rate > 0) {
+            final int burst = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_RATE_LIMIT_BURST,
+                    rate,
+                    1,
+                    Integer.MAX_VALUE);
+            final int maxKeys = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_RATE_LIMIT_MAX_KEYS,
+                    TokenBuckets.DEFAULT_MAX_KEYS,
+                    1,
+                    Integer.MAX_VALUE);
+            final String keyParam = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_RATE_LIMIT_KEY);
+            String key = (keyParam == null) ? RateLimitAdapter.DEFAULT_KEY : keyParam;
+            try {
+                RateLimitAdapter.parseKey(key);
+            } catch (final IllegalArgumentException e) {
+                LOG.warn("illegal rate limit key '" + key + "' -> using " + RateLimitAdapter.DEFAULT_KEY, e); // NOI18N
+                key = RateLimitAdapter.DEFAULT_KEY;
+            }
+            if (LOG.isInfoEnabled()) {
+                LOG.info("rate limit :: rate=" + rate // NOI18N
+                            + " | burst=" + burst // NOI18N
+                            + " | key=" + key // NOI18N
+                            + " | maxKeys=" + maxKeys); // NOI18N
+            }
+            // outside of the dispatch to virtual threads and the static resources, rejecting is as cheap as possible
+            adapter = new RateLimitAdapter(adapter, TokenBuckets.getShared(rate, burst, maxKeys), key, warmUpToken);
+        }
+
+        final boolean background = ServerParamUtils.getBoolean(
+                serverParams,
+                ServerParamProvider.PARAM_BACKGROUND_STARTUP,
+                false);
+        // requests are rejected until jersey is initialised and warmed up
+        final boolean gated = background || (warmUpToken != null);
+        if (gated || ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_HEALTH, false)) {
+            final String path = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_HEALTH_PATH);
+            final String healthPath = (path == null) ? HealthEndpointAdapter.DEFAULT_PATH : path;
+            if (LOG.isInfoEnabled()) {
+                LOG.info("serving health probes :: path=" + healthPath // NOI18N
+                            + " | backgroundStartup=" + background // NOI18N
+                            + " | warmUp=" + (warmUpToken != null)); // NOI18N
+            }
+            // within the metrics endpoint, metrics are available while jersey is initialised
+            healthAdapter = new HealthEndpointAdapter(adapter, healthPath, !gated, warmUpToken);
+            adapter = healthAdapter;
+        } else {
+            healthAdapter = null;
+        }
+
+        if (metrics) {
+            final String path = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_METRICS_PATH);
+            final String metricsPath = (path == null) ? MetricsEndpointAdapter.DEFAULT_PATH : path;
+            if (LOG.isInfoEnabled()) {
+                LOG.info("serving metrics :: path=" + metricsPath); // NOI18N
+            }
+            adapter = new MetricsEndpointAdapter(adapter, metricsPath);
+        }
+
+        return adapter;
+    }
+
+    /**
+     * Applies the worker pool, selector and socket parameters to the given <code>SelectorThread</code>. Parameters that
+     * are not specified or that are invalid leave the respective Grizzly default untouched.
+     *
+     * @param  selectorThread  the selector thread to configure, must not be started yet
+     * @param  serverParams    the server parameters
+     */
+    private void configureTransport(final SelectorThread selectorThread, final Map<String, String> serverParams) {
+        final Integer maxThreads = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_WORKER_MAX_THREADS,
+                1,
+                Integer.MAX_VALUE);
+        Integer coreThreads = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_WORKER_CORE_THREADS,
+                1,
+                Integer.MAX_VALUE);
+        final int effectiveMax = (maxThreads == null) ? selectorThread.getMaxThreads() : maxThreads;
+        if ((coreThreads != null) && (effectiveMax > 0) && (coreThreads > effectiveMax)) {
+            LOG.warn("specified worker core threads " + coreThreads + " exceed max threads " + effectiveMax // NOI18N
+                        + " -> using " + effectiveMax); // NOI18N
+            coreThreads = effectiveMax;
+        } else if ((coreThreads == null) && (maxThreads != null) && (selectorThread.getCoreThreads() > maxThreads)) {
+            // the grizzly default core size would exceed the max size and the worker pool would not start
+            coreThreads = maxThreads;
+        }
+        if (maxThreads != null) {
+            selectorThread.setMaxThreads(maxThreads);
+        }
+        if (coreThreads != null) {
+            selectorThread.setCoreThreads(coreThreads);
+        }
+
+        final Integer readThreads = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_SELECTOR_READ_THREADS,
+                0,
+                Integer.MAX_VALUE);
+        if (readThreads != null) {
+            selectorThread.setSelectorReadThreadsCount(readThreads);
+        }
+
+        final Integer backlog = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_ACCEPT_BACKLOG,
+                1,
+                Integer.MAX_VALUE);
+        if (backlog != null) {
+            selectorThread.setSsBackLog(backlog);
+        }
+
+        final Boolean tcpNoDelay = ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_TCP_NO_DELAY);
+        if (tcpNoDelay != null) {
+            selectorThread.setTcpNoDelay(tcpNoDelay);
+        }
+
+        // -1 disables SO_LINGER
+        final Integer linger = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_SOCKET_LINGER,
+                -1,
+                65535);
+        if (linger != null) {
+            selectorThread.setLinger(linger);
+        }
+
+        // -1 means unlimited requests per connection
+        final Integer keepAliveRequests = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_KEEP_ALIVE_MAX_REQUESTS,
+                -1,
+                Integer.MAX_VALUE);
+        if (keepAliveRequests != null) {
+            selectorThread.setMaxKeepAliveRequests(keepAliveRequests);
+        }
+
+        // -1 means no keep-alive timeout
+        final Integer keepAliveTimeout = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_KEEP_ALIVE_TIMEOUT,
+                -1,
+                Integer.MAX_VALUE);
+        if (keepAliveTimeout != null) {
+            selectorThread.setKeepAliveTimeoutInSeconds(keepAliveTimeout);
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("grizzly transport :: coreThreads=" + selectorThread.getCoreThreads() // NOI18N
+                        + " | maxThreads=" + selectorThread.getMaxThreads() // NOI18N
+                        + " | selectorReadThreads=" + selectorThread.getSelectorReadThreadsCount() // NOI18N
+                        + " | backlog=" + selectorThread.getSsBackLog() // NOI18N
+                        + " | tcpNoDelay=" + selectorThread.getTcpNoDelay() // NOI18N
+                        + " | linger=" + selectorThread.getLinger() // NOI18N
+                        + " | keepAliveMaxRequests=" + selectorThread.getMaxKeepAliveRequests() // NOI18N
+                        + " | keepAliveTimeout=" + selectorThread.getKeepAliveTimeoutInSeconds()); // NOI18N
+        }
+    }
+
+    /**
+     * Applies the socket buffer sizes. The selector handler only exists after the selector thread has been started, the
+     * handler applies the values to every connection accepted afterwards.
+     *
+     * @param  selectorHandler  the selector handler of the started selector thread
+     * @param  serverParams     the server parameters
+     */
+    private void configureSocketBuffers(
+            final TCPSelectorHandler selectorHandler,
+            final Map<String, String> serverParams) {
+        final Integer receiveBuffer = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_SOCKET_RECEIVE_BUFFER,
+                1,
+                Integer.MAX_VALUE);
+        final Integer sendBuffer = ServerParamUtils.getInteger(
+                serverParams,
+                ServerParamProvider.PARAM_SOCKET_SEND_BUFFER,
+                1,
+                Integer.MAX_VALUE);
+
+        if ((receiveBuffer == null) && (sendBuffer == null)) {
+            return;
+        }
+
+        if (selectorHandler == null) {
+            LOG.warn("selector handler not available, socket buffer sizes ignored"); // NOI18N
+        } else {
+            if (receiveBuffer != null) {
+                selectorHandler.setReceiveBufferSize(receiveBuffer);
+            }
+            if (sendBuffer != null) {
+                selectorHandler.setSendBufferSize(sendBuffer);
+            }
+        }
+    }
+
     /**
      * DOCUMENT ME!
      *
@@ -152,19 +1112,56 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 LOG.info("grizzly coming down @ " + baseuri + " :: server params: " + config.getServerParams()); // NOI18N
             }
 
+            if (listenerMetrics != null) {
+                if (listenerMetricsName != null) {
+                    TransportMetrics.getInstance().remove(listenerMetricsName);
+                }
+                listenerMetrics.stop();
+                listenerMetrics = null;
+                listenerMetricsName = null;
+            }
+
+            Readiness.getInstance().stopped(this);
+
+            if (admissionMetricsName != null) {
+                AdmissionMetrics.getInstance().remove(admissionMetricsName);
+                admissionMetricsName = null;
+            }
+            admissionLimit = null;
+
+            if (webSocketApplication != null) {
+                webSocketApplication.closeAll();
+                WebSocketEngine.getEngine().unregister(webSocketApplication);
+                webSocketApplication = null;
+            }
+
             this.webServer.stop();
             this.webServer = null;
+            this.healthAdapter = null;
+
+            // after the listener, requests being processed may still call other services
+            HttpClientPool.getInstance().stop(this);
         }
     }
 
     //~ Inner Classes ----------------------------------------------------------
 
     /**
-     * Pipes java logs to logj4.
+     * Pipes java logs to logj4. The loggable level mirrors the most verbose level configured in Log4J, so that records
+     * Log4J would discard are not even created. The level is refreshed whenever an appender is added to the Log4J
+     * hierarchy, which is the case for every (re)configuration, and whenever a container is started. If levels are
+     * changed programmatically {@link GrizzlyRESTContainer#refreshLogLevels()} has to be called. The calling class is
+     * only looked up for records that are actually logged.
      *
      * @version  1.0, 20100518
      */
-    private static final class Java2Log4jLogger extends java.util.logging.Logger {
+    private static final class Java2Log4jLogger extends java.util.logging.Logger implements HierarchyEventListener {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final transient ConcurrentMap<String, Logger> loggers;
+
+        private transient volatile int threshold;
 
         //~ Constructors -------------------------------------------------------
 
@@ -173,10 +1170,100 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         Java2Log4jLogger() {
             super("Java2Log4jLogger", null); // NOI18N
+
+            loggers = new ConcurrentHashMap<String, Logger>();
+            LogManager.getLoggerRepository().addHierarchyEventListener(this);
+            refresh();
         }
 
         //~ Methods ------------------------------------------------------------
 
+        /**
+         * Recomputes the loggable level from the current Log4J configuration.
+         */
+        void refresh() {
+            final LoggerRepository repository = LogManager.getLoggerRepository();
+            final Logger root = repository.getRootLogger();
+
+            org.apache.log4j.Level mostVerbose = root.getEffectiveLevel();
+            final Enumeration current = repository.getCurrentLoggers();
+            while (current.hasMoreElements()) {
+                final org.apache.log4j.Level level = ((Logger)current.nextElement()).getLevel();
+                if ((level != null) && !level.isGreaterOrEqual(mostVerbose)) {
+                    mostVerbose = level;
+                }
+            }
+
+            // nothing below the repository threshold is logged at all
+            final org.apache.log4j.Level repositoryThreshold = repository.getThreshold();
+            if ((repositoryThreshold != null) && !mostVerbose.isGreaterOrEqual(repositoryThreshold)) {
+                mostVerbose = repositoryThreshold;
+            }
+
+            threshold = toJavaLevel(mostVerbose);
+        }
+
+        /**
+         * Maps a Log4J level to the smallest java level that is forwarded to that Log4J level by
+         * {@link #log(java.util.logging.LogRecord)}.
+         *
+         * @param   level  the Log4J level
+         *
+         * @return  the int value of the corresponding java level
+         */
+        private static int toJavaLevel(final org.apache.log4j.Level level) {
+            if (org.apache.log4j.Level.OFF.equals(level)) {
+                return Level.OFF.intValue();
+            } else if (level.isGreaterOrEqual(org.apache.log4j.Level.ERROR)) {
+                return Level.SEVERE.intValue();
+            } else if (level.isGreaterOrEqual(org.apache.log4j.Level.WARN)) {
+                return Level.WARNING.intValue();
+            } else if (level.isGreaterOrEqual(org.apache.log4j.Level.INFO)) {
+                return Level.INFO.intValue();
+            } else {
+                return Level.ALL.intValue();
+            }
+        }
+
+        /**
+         * Returns the cached Log4J logger for the given category.
+         *
+         * @param   category  the logger name
+         *
+         * @return  the Log4J logger
+         */
+        private Logger getLog4jLogger(final String category) {
+            Logger log = loggers.get(category);
+            if (log == null) {
+                log = Logger.getLogger(category);
+                loggers.putIfAbsent(category, log);
+            }
+
+            return log;
+        }
+
+        /**
+         * DOCUMENT ME!
+         *
+         * @param  category  DOCUMENT ME!
+         * @param  appender  DOCUMENT ME!
+         */
+        @Override
+        public void addAppenderEvent(final Category category, final Appender appender) {
+            refresh();
+        }
+
+        /**
+         * DOCUMENT ME!
+         *
+         * @param  category  DOCUMENT ME!
+         * @param  appender  DOCUMENT ME!
+         */
+        @Override
+        public void removeAppenderEvent(final Category category, final Appender appender) {
+            refresh();
+        }
+
         /**
          * DOCUMENT ME!
          *
@@ -221,7 +1308,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void entering(final String sourceClass, final String sourceMethod, final Object[] params) {
-            final Logger log = Logger.getLogger(sourceClass);
+            if (threshold > Level.FINER.intValue()) {
+                return;
+            }
+
+            final Logger log = getLog4jLogger(sourceClass);
             if (log.isDebugEnabled()) {
                 final StringBuilder sb = new StringBuilder();
                 for (final Object o : params) {
@@ -259,7 +1350,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void exiting(final String sourceClass, final String sourceMethod, final Object result) {
-            final Logger log = Logger.getLogger(sourceClass);
+            if (threshold > Level.FINER.intValue()) {
+                return;
+            }
+
+            final Logger log = getLog4jLogger(sourceClass);
             if (log.isDebugEnabled()) {
                 log.debug("EXIT: " + sourceMethod + " :: result: " + result); // NOI18N
             }
@@ -354,7 +1449,7 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public boolean isLoggable(final Level level) {
-            return true;
+            return level.intValue() >= threshold;
         }
 
         /**
@@ -365,7 +1460,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
         @Override
         public void log(final LogRecord record) {
             final int level = record.getLevel().intValue();
-            final Logger log = Logger.getLogger(
+            if (level < threshold) {
+                return;
+            }
+
+            final Logger log = getLog4jLogger(
                     (record.getSourceClassName() == null) ? getLoggingClass() : record.getSourceClassName());
             if ((level < Level.INFO.intValue()) && log.isDebugEnabled()) {
                 log.debug(record.getMessage(), record.getThrown());
@@ -392,6 +1491,23 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
             return "unknown class"; // NOI18N
         }
 
+        /**
+         * Creates a record without source class. {@link #log(java.util.logging.LogRecord)} looks up the calling class
+         * itself once the record passed the threshold, otherwise JUL would walk the stack to infer the caller of every
+         * record.
+         *
+         * @param   level  the level
+         * @param   msg    the message
+         *
+         * @return  the record
+         */
+        private static LogRecord newRecord(final Level level, final String msg) {
+            final LogRecord record = new LogRecord(level, msg);
+            record.setSourceClassName(null);
+
+            return record;
+        }
+
         /**
          * DOCUMENT ME!
          *
@@ -400,7 +1516,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void log(final Level level, final String msg) {
-            log(new LogRecord(level, msg));
+            if (!isLoggable(level)) {
+                return;
+            }
+
+            log(newRecord(level, msg));
         }
 
         /**
@@ -412,7 +1532,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void log(final Level level, final String msg, final Object param1) {
-            final LogRecord lr = new LogRecord(level, msg);
+            if (!isLoggable(level)) {
+                return;
+            }
+
+            final LogRecord lr = newRecord(level, msg);
             lr.setParameters(new Object[] { param1 });
             log(lr);
         }
@@ -426,7 +1550,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void log(final Level level, final String msg, final Object[] params) {
-            final LogRecord lr = new LogRecord(level, msg);
+            if (!isLoggable(level)) {
+                return;
+            }
+
+            final LogRecord lr = newRecord(level, msg);
             lr.setParameters(params);
             log(lr);
         }
@@ -440,7 +1568,11 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void log(final Level level, final String msg, final Throwable thrown) {
-            final LogRecord lr = new LogRecord(level, msg);
+            if (!isLoggable(level)) {
+                return;
+            }
+
+            final LogRecord lr = newRecord(level, msg);
             lr.setThrown(thrown);
             log(lr);
         }
@@ -455,6 +1587,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
          */
         @Override
         public void logp(final Level level, final String sourceClass, final String sourceMethod, final String msg) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setSourceClassName(sourceClass);
             lr.setSourceMethodName(sourceMethod);
@@ -477,6 +1613,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String sourceMethod,
                 final String msg,
                 final Object param1) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setParameters(new Object[] { param1 });
             lr.setSourceClassName(sourceClass);
@@ -500,6 +1640,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String sourceMethod,
                 final String msg,
                 final Object[] params) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setParameters(params);
             lr.setSourceClassName(sourceClass);
@@ -523,6 +1667,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String sourceMethod,
                 final String msg,
                 final Throwable thrown) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setSourceClassName(sourceClass);
             lr.setSourceMethodName(sourceMethod);
@@ -546,6 +1694,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String sourceMethod,
                 final String bundleName,
                 final String msg) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setSourceClassName(sourceClass);
             lr.setSourceMethodName(sourceMethod);
@@ -571,6 +1723,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String bundleName,
                 final String msg,
                 final Object param1) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setSourceClassName(sourceClass);
             lr.setSourceMethodName(sourceMethod);
@@ -597,6 +1753,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String bundleName,
                 final String msg,
                 final Object[] params) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setSourceClassName(sourceClass);
             lr.setSourceMethodName(sourceMethod);
@@ -623,6 +1783,10 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
                 final String bundleName,
                 final String msg,
                 final Throwable thrown) {
+            if (!isLoggable(level)) {
+                return;
+            }
+
             final LogRecord lr = new LogRecord(level, msg);
             lr.setSourceClassName(sourceClass);
             lr.setSourceMethodName(sourceMethod);
@@ -699,4 +1863,116 @@ public final class GrizzlyRESTContainer extends AbstractWSContainer {
             super.throwing(sourceClass, sourceMethod, thrown);
         }
     }
+
+    /**
+     * Servlet adapter hosting Jersey whose servlet can be loaded before the first request.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class JerseyServletAdapter extends ServletAdapter {
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new JerseyServletAdapter object.
+         */
+        JerseyServletAdapter() {
+            super();
+        }
+
+        /**
+         * Creates a new JerseyServletAdapter object.
+         *
+         * @param  publicDirectory  the directory of the static resources
+         */
+        JerseyServletAdapter(final String publicDirectory) {
+            super(publicDirectory);
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Loads and initialises the servlet, what the adapter otherwise does with the first request. The adapter must
+         * have been started.
+         *
+         * @throws  ServletException  if the servlet cannot be initialised
+         */
+        void initialize() throws ServletException {
+            loadServlet();
+        }
+    }
+
+    /**
+     * Initialises Jersey after the listener was bound, replays the warm-up requests, if any, and opens the health
+     * adapter for requests afterwards.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class JerseyInitializer implements Runnable {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final transient JerseyServletAdapter jerseyAdapter;
+        private final transient HealthEndpointAdapter gate;
+        private final transient WarmUpReplay warmUp;
+        private final transient String warmUpToken;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new JerseyInitializer object.
+         *
+         * @param  jerseyAdapter  the started adapter hosting the Jersey servlet
+         * @param  gate           the health adapter rejecting requests until Jersey is initialised or <code>null</code>
+         * @param  warmUp         the warm-up or <code>null</code>
+         * @param  warmUpToken    the token letting the warm-up requests pass the gate
+         */
+        JerseyInitializer(
+                final JerseyServletAdapter jerseyAdapter,
+                final HealthEndpointAdapter gate,
+                final WarmUpReplay warmUp,
+                final String warmUpToken) {
+            this.jerseyAdapter = jerseyAdapter;
+            this.gate = gate;
+            this.warmUp = warmUp;
+            this.warmUpToken = warmUpToken;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            final long start = System.currentTimeMillis();
+            try {
+                jerseyAdapter.initialize();
+            } catch (final Throwable t) {
+                // the listener stays up so that the failure can be seen by the liveness probe
+                LOG.error("could not initialise jersey @ " + baseuri + ", requests are rejected", t); // NOI18N
+                Readiness.getInstance().failed(GrizzlyRESTContainer.this);
+
+                return;
+            }
+
+            if (LOG.isInfoEnabled()) {
+                LOG.info("jersey initialised @ " + baseuri + " in " // NOI18N
+                            + (System.currentTimeMillis() - start) + " ms"); // NOI18N
+            }
+
+            if (warmUp != null) {
+                try {
+                    warmUp.run(getWarmUpAddress(), warmUpToken);
+                } catch (final UnknownHostException e) {
+                    LOG.warn("cannot resolve listener address, skipping warm-up", e); // NOI18N
+                }
+            }
+
+            if (gate != null) {
+                gate.open();
+            }
+            Readiness.getInstance().ready(GrizzlyRESTContainer.this);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import java.nio.charset.Charset;
+
+import de.cismet.commons.simplerestserver.loadtest.WarmUpReplay;
+
+/**
+ * Answers the liveness and readiness probes of the {@link Readiness} of the process on <code>&lt;path&gt;/live</code>
+ * and <code>&lt;path&gt;/ready</code> with <code>200</code> or <code>503</code>, without involving the application.
+ * Until the adapter is opened, all other requests are rejected with <code>503</code> and a <code>Retry-After</code>
+ * header, so that a listener can accept connections while its application is still being initialised. Requests
+ * carrying the warm-up token of the listener always pass, they warm up the application before it is opened.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class HealthEndpointAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final String DEFAULT_PATH = "/health"; // NOI18N
+
+    private static final int SC_OK = 200;
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    // seconds a rejected client should wait before it retries
+    private static final String RETRY_AFTER = "1"; // NOI18N
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient String livePath;
+    private final transient String readyPath;
+    private final transient String warmUpToken;
+
+    private transient volatile boolean open;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new HealthEndpointAdapter object.
+     *
+     * @param  delegate     the adapter all other requests are forwarded to once the adapter is open
+     * @param  path         the absolute base path of the probes, independent of the servlet context path
+     * @param  open         whether other requests are forwarded from the beginning
+     * @param  warmUpToken  the token of the warm-up requests or <code>null</code>
+     */
+    HealthEndpointAdapter(
+            final GrizzlyAdapter delegate,
+            final String path,
+            final boolean open,
+            final String warmUpToken) {
+        super(delegate);
+
+        final String base = path.endsWith("/") ? path.substring(0, path.length() - 1) : path; // NOI18N
+        this.livePath = base + "/live";                                                      // NOI18N
+        this.readyPath = base + "/ready";                                                    // NOI18N
+        this.open = open;
+        this.warmUpToken = warmUpToken;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Starts forwarding requests to the delegate.
+     */
+    void open() {
+        open = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        final String method = request.getMethod();
+        final boolean head = "HEAD".equals(method); // NOI18N
+        if (head || "GET".equals(method)) {         // NOI18N
+            final String uri = request.getDecodedRequestURI();
+            final Readiness readiness = Readiness.getInstance();
+            if (livePath.equals(uri)) {
+                final boolean live = readiness.isLive();
+                write(response, live, live ? "live" : ("not live: " + readiness.describe()), head);     // NOI18N
+
+                return;
+            } else if (readyPath.equals(uri)) {
+                final boolean ready = open && readiness.isReady();
+                write(response, ready, ready ? "ready" : ("not ready: " + readiness.describe()), head); // NOI18N
+
+                return;
+            }
+        }
+
+        if (open
+                    || ((warmUpToken != null) && warmUpToken.equals(request.getHeader(WarmUpReplay.TOKEN_HEADER)))) {
+            delegate.service(request, response);
+        } else {
+            response.setHeader("Retry-After", RETRY_AFTER); // NOI18N
+            write(response, false, "starting", head);        // NOI18N
+        }
+    }
+
+    /**
+     * Writes a plain-text probe response.
+     *
+     * @param   response  the response
+     * @param   ok        <code>200</code> if <code>true</code>, <code>503</code> otherwise
+     * @param   message   the body
+     * @param   head      whether the body must be omitted
+     *
+     * @throws  Exception  if the response cannot be written
+     */
+    private static void write(
+            final GrizzlyResponse response,
+            final boolean ok,
+            final String message,
+            final boolean head) throws Exception {
+        final byte[] body = (message + "\n").getBytes(UTF8); // NOI18N
+
+        response.setStatus(ok ? SC_OK : SC_SERVICE_UNAVAILABLE);
+        response.setContentType("text/plain; charset=UTF-8"); // NOI18N
+        response.setHeader("Cache-Control", "no-cache");      // NOI18N
+        response.setContentLength(body.length);
+        if (!head) {
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.jersey.api.container.ContainerFactory;
+import com.sun.jersey.api.core.ClassNamesResourceConfig;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.core.PackagesResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+
+import java.nio.charset.Charset;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.cismet.commons.simplerestserver.AbstractWSContainer;
+import de.cismet.commons.simplerestserver.ServerParamProvider;
+import de.cismet.commons.simplerestserver.ServerParamUtils;
+import de.cismet.commons.simplerestserver.WebServerConfig;
+import de.cismet.commons.simplerestserver.WebServerException;
+import de.cismet.commons.simplerestserver.client.HttpClientPool;
+import de.cismet.commons.simplerestserver.index.ResourceIndex;
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Hosts the Jersey resources in the HTTP server of the JDK (<code>com.sun.net.httpserver</code>). The engine starts
+ * faster and needs less memory than {@link GrizzlyRESTContainer}, at the price of throughput under load, which suits
+ * small sidecar deployments. It is selected with the server parameter <code>container=jdk</code>.<br/>
+ * <br/>
+ * Requests are executed by a pool of <code>workerMaxThreads</code> threads that are discarded when idle, or in virtual
+ * threads if <code>virtualThreads</code> is enabled. <code>TCP_NODELAY</code> is enabled unless <code>tcpNoDelay</code>
+ * is <code>false</code>, the setting of the first container applies to all containers of the JVM. The resource index,
+ * the health probes and the metrics endpoint are supported, the other processing stages of the Grizzly engine (static
+ * files, admission control, rate limits, response cache and coalescing, suspended responses, server-sent events,
+ * WebSockets and per resource metrics) are not.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class JdkHttpServerContainer extends AbstractWSContainer {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_THREADS = 16;
+
+    private static final transient Logger LOG = Logger.getLogger(JdkHttpServerContainer.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); // NOI18N
+
+    private static final String DEFAULT_CTX_PATH = "/"; // NOI18N
+
+    // seconds running requests may take to complete once the container comes down
+    private static final int STOP_DELAY = 1;
+
+    // read once per jvm by the jdk server when the first server is created
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private transient HttpServer server;
+    private transient ExecutorService executor;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new JdkHttpServerContainer object.
+     *
+     * @param  config  container configuration
+     */
+    public JdkHttpServerContainer(final WebServerConfig config) {
+        super(config);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void up() throws WebServerException {
+        if (server != null) {
+            return;
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("jdk http server coming up @ " + baseuri + " :: server params: " // NOI18N
+                        + config.getServerParams());
+        }
+
+        final Map<String, String> serverParams = config.getServerParams();
+        Readiness.getInstance().starting(this, getListenerName());
+        try {
+            final InetSocketAddress address = (config.getHost() == null)
+                ? new InetSocketAddress(config.getPort()) : new InetSocketAddress(config.getHost(), config.getPort());
+            final int backlog = ServerParamUtils.getInt(
+                    serverParams,
+                    ServerParamProvider.PARAM_ACCEPT_BACKLOG,
+                    0,
+                    0,
+                    Integer.MAX_VALUE);
+            // the jdk server writes chunked responses in several packets, with nagle every response of a kept-alive
+            // connection would wait for the delayed ack of the client
+            if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+                System.setProperty(
+                    NO_DELAY_PROPERTY,
+                    String.valueOf(
+                        ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_TCP_NO_DELAY, true)));
+            }
+            // before binding, creating the executor fails on runtimes without virtual threads
+            executor = createExecutor(serverParams);
+            server = HttpServer.create(address, backlog);
+            server.setExecutor(executor);
+
+            final String ctxPath = serverParams.containsKey(ServerParamProvider.PARAM_SERVLET_CONTEXT)
+                ? serverParams.get(ServerParamProvider.PARAM_SERVLET_CONTEXT) : DEFAULT_CTX_PATH;
+            // jersey is initialised here, the server accepts connections once it is up
+            server.createContext(
+                ctxPath,
+                ContainerFactory.createContainer(HttpHandler.class, createResourceConfig(serverParams)));
+
+            if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_HEALTH, false)) {
+                final String path = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_HEALTH_PATH);
+                final String healthPath = (path == null) ? HealthEndpointAdapter.DEFAULT_PATH : path;
+                server.createContext(healthPath, new HealthHandler(healthPath));
+            }
+            if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_METRICS, false)) {
+                final String path = ServerParamUtils.getString(serverParams, ServerParamProvider.PARAM_METRICS_PATH);
+                server.createContext((path == null) ? MetricsEndpointAdapter.DEFAULT_PATH : path, new MetricsHandler());
+            }
+
+            HttpClientPool.getInstance().start(this);
+            server.start();
+            Readiness.getInstance().ready(this);
+        } catch (final Exception ex) {
+            final String message = "could not start jdk http server"; // NOI18N
+            LOG.error(message, ex);
+            Readiness.getInstance().failed(this);
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            server = null;
+
+            throw new WebServerException(message, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void down() {
+        if (server != null) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("jdk http server coming down @ " + baseuri); // NOI18N
+            }
+
+            Readiness.getInstance().stopped(this);
+
+            server.stop(STOP_DELAY);
+            server = null;
+            executor.shutdown();
+            executor = null;
+
+            HttpClientPool.getInstance().stop(this);
+        }
+    }
+
+    /**
+     * Creates the executor of the requests.
+     *
+     * @param   serverParams  the server parameters
+     *
+     * @return  the executor
+     */
+    private ExecutorService createExecutor(final Map<String, String> serverParams) {
+        final String name = "jdk-http-" + config.getPort(); // NOI18N
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_VIRTUAL_THREADS, false)) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("jdk http server executor :: virtual threads"); // NOI18N
+            }
+
+            return VirtualThreadExecutors.newVirtualThreadPerTaskExecutor();
+        }
+
+        final int threads = ServerParamUtils.getInt(
+                serverParams,
+                ServerParamProvider.PARAM_WORKER_MAX_THREADS,
+                DEFAULT_THREADS,
+                1,
+                Integer.MAX_VALUE);
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, name + "-" + count.incrementAndGet()); // NOI18N
+                        t.setDaemon(true);
+
+                        return t;
+                    }
+                });
+        // an idle sidecar keeps no threads
+        pool.allowCoreThreadTimeOut(true);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("jdk http server executor :: threads=" + threads); // NOI18N
+        }
+
+        return pool;
+    }
+
+    /**
+     * Creates the Jersey configuration. The classes of the resource index are registered without scanning the
+     * packages, like the Grizzly engine does.
+     *
+     * @param   serverParams  the server parameters
+     *
+     * @return  the resource configuration
+     */
+    private ResourceConfig createResourceConfig(final Map<String, String> serverParams) {
+        final Map<String, Object> properties = new HashMap<String, Object>(serverParams);
+        final String packages = ServerParamUtils.getString(
+                serverParams,
+                ServerParamProvider.PARAM_JERSEY_PROPERTY_PACKAGES);
+        if (packages == null) {
+            LOG.warn("no resource packages configured, nothing will be served"); // NOI18N
+
+            final ResourceConfig resourceConfig = new DefaultResourceConfig();
+            resourceConfig.setPropertiesAndFeatures(properties);
+
+            return resourceConfig;
+        }
+
+        if (ServerParamUtils.getBoolean(serverParams, ServerParamProvider.PARAM_RESOURCE_INDEX, true)) {
+            final Set<String> classes = ResourceIndex.load(Thread.currentThread().getContextClassLoader())
+                        .getResourcesAndProviders(packages.split("[,;\\s]+")); // NOI18N
+            if (classes != null) {
+                final StringBuilder classNames = new StringBuilder();
+                for (final String className : classes) {
+                    if (classNames.length() > 0) {
+                        classNames.append(',');
+                    }
+                    classNames.append(className);
+                }
+                properties.put(ClassNamesResourceConfig.PROPERTY_CLASSNAMES, classNames.toString());
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("registering " + classes.size() + " indexed classes of packages " + packages // NOI18N
+                                + " without scanning: " + classNames);                                // NOI18N
+                }
+
+                return new ClassNamesResourceConfig(properties);
+            }
+
+            if (LOG.isInfoEnabled()) {
+                LOG.info("resource index incomplete for packages " + packages + " -> scanning them"); // NOI18N
+            }
+        }
+
+        return new PackagesResourceConfig(properties);
+    }
+
+    /**
+     * Getter for the name of the listener of this container.
+     *
+     * @return  <code>host:port</code> of the listener
+     */
+    private String getListenerName() {
+        return ((config.getHost() == null) ? "0.0.0.0" : config.getHost()) + ":" + config.getPort(); // NOI18N
+    }
+
+    /**
+     * Writes a response. Only <code>GET</code> and <code>HEAD</code> requests are answered, others get a <code>
+     * 405</code>.
+     *
+     * @param   exchange     the exchange
+     * @param   status       the status code
+     * @param   contentType  the content type
+     * @param   body         the body
+     *
+     * @throws  IOException  if the response cannot be written
+     */
+    private static void respond(
+            final HttpExchange exchange,
+            final int status,
+            final String contentType,
+            final byte[] body) throws IOException {
+        try {
+            final String method = exchange.getRequestMethod();
+            final boolean head = "HEAD".equals(method); // NOI18N
+            if (!head && !"GET".equals(method)) {       // NOI18N
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD"); // NOI18N
+                exchange.sendResponseHeaders(405, -1);
+
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", contentType); // NOI18N
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache"); // NOI18N
+            if (head) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, body.length);
+
+                final OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Answers the liveness and readiness probes on <code>&lt;path&gt;/live</code> and <code>
+     * &lt;path&gt;/ready</code>.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class HealthHandler implements HttpHandler {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final String livePath;
+        private final String readyPath;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new HealthHandler object.
+         *
+         * @param  path  the base path of the probes
+         */
+        HealthHandler(final String path) {
+            final String base = path.endsWith("/") ? path.substring(0, path.length() - 1) : path; // NOI18N
+            this.livePath = base + "/live";                                                      // NOI18N
+            this.readyPath = base + "/ready";                                                    // NOI18N
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            final String path = exchange.getRequestURI().getPath();
+            final Readiness readiness = Readiness.getInstance();
+            final boolean ok;
+            final String message;
+            if (livePath.equals(path)) {
+                ok = readiness.isLive();
+                message = ok ? "live" : ("not live: " + readiness.describe());   // NOI18N
+            } else if (readyPath.equals(path)) {
+                ok = readiness.isReady();
+                message = ok ? "ready" : ("not ready: " + readiness.describe()); // NOI18N
+            } else {
+                respond(exchange, 404, "text/plain; charset=utf-8", "not found\n".getBytes(UTF8)); // NOI18N
+
+                return;
+            }
+
+            respond(exchange, ok ? 200 : 503, "text/plain; charset=utf-8", (message + "\n").getBytes(UTF8)); // NOI18N
+        }
+    }
+
+    /**
+     * Serves the metrics of the {@link MetricsRegistry}.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class MetricsHandler implements HttpHandler {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            respond(exchange, 200, MetricsWriter.CONTENT_TYPE, MetricsRegistry.getInstance().scrape().getBytes(UTF8));
+        }
+    }
+}
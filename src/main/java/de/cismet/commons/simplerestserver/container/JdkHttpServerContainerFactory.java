@@ -0,0 +1,57 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.openide.util.lookup.ServiceProvider;
+
+import de.cismet.commons.simplerestserver.WebServerConfig;
+import de.cismet.commons.simplerestserver.WebServiceContainer;
+import de.cismet.commons.simplerestserver.WebServiceContainerFactory;
+
+/**
+ * Creates {@link JdkHttpServerContainer}s, the lightweight engine for small deployments.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@ServiceProvider(
+    service = WebServiceContainerFactory.class,
+    position = 200
+)
+public final class JdkHttpServerContainerFactory implements WebServiceContainerFactory {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final String NAME = "jdk"; // NOI18N
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReusePortSupported() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebServiceContainer createContainer(final WebServerConfig config) {
+        return new JdkHttpServerContainer(config);
+    }
+}
@@ -0,0 +1,260 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.Controller;
+import com.sun.grizzly.PortRange;
+import com.sun.grizzly.SelectorHandler;
+import com.sun.grizzly.TCPSelectorHandler;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import java.nio.channels.ServerSocketChannel;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Grizzly controller whose TCP selector handlers bind their server socket with the configured accept backlog and,
+ * optionally, with <code>SO_REUSEPORT</code> enabled. Grizzly opens and binds the server socket channel itself, both
+ * are applied by a {@link PortRange} that replaces the one of the selector handler when the handler is added to the
+ * controller. The port range of grizzly binds with a backlog of 50 if no host is set, whatever the backlog of the
+ * selector handler is.<br/>
+ * <br/>
+ * With <code>SO_REUSEPORT</code> several selector threads, each with its own controller, can listen on the same port
+ * and the kernel spreads the incoming connections across them.
+ * <code>SO_REUSEPORT</code> is available since Java 9 on platforms that support it, e.g. Linux, so it is looked up
+ * reflectively. Use {@link #isReusePortSupported()} before starting more than one listener on the same port.<br/>
+ * <br/>
+ * With an admission limit the worker pool is wrapped by an {@link AdmissionExecutor}, which sheds requests before
+ * they are queued.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class ListenerController extends Controller {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(ListenerController.class);
+
+    // java.net.StandardSocketOptions.SO_REUSEPORT or null
+    private static final Object SO_REUSEPORT;
+
+    // java.nio.channels.NetworkChannel.setOption(SocketOption, Object) or null
+    private static final Method SET_OPTION;
+
+    static {
+        Object option = null;
+        Method setOption = null;
+        try {
+            option = Class.forName("java.net.StandardSocketOptions").getField("SO_REUSEPORT").get(null); // NOI18N
+            setOption = Class.forName("java.nio.channels.NetworkChannel")                                 // NOI18N
+                        .getMethod("setOption", Class.forName("java.net.SocketOption"), Object.class);  // NOI18N
+        } catch (final Exception ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("SO_REUSEPORT not available in this runtime", ex); // NOI18N
+            }
+            option = null;
+            setOption = null;
+        }
+
+        SO_REUSEPORT = option;
+        SET_OPTION = setOption;
+    }
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final boolean reusePort;
+
+    private transient AdaptiveConcurrencyLimit admissionLimit;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ListenerController object.
+     *
+     * @param  reusePort  whether the server sockets are bound with <code>SO_REUSEPORT</code>
+     */
+    ListenerController(final boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Indicates whether the runtime and the platform support <code>SO_REUSEPORT</code> for server sockets.
+     *
+     * @return  true if several listeners can be bound to the same port, false otherwise
+     */
+    static boolean isReusePortSupported() {
+        if (SO_REUSEPORT == null) {
+            return false;
+        }
+
+        try {
+            final ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                final Method supportedOptions = SET_OPTION.getDeclaringClass().getMethod("supportedOptions"); // NOI18N
+
+                return ((Set)supportedOptions.invoke(channel)).contains(SO_REUSEPORT);
+            } finally {
+                channel.close();
+            }
+        } catch (final Exception ex) {
+            LOG.warn("cannot determine SO_REUSEPORT support", ex); // NOI18N
+
+            return false;
+        }
+    }
+
+    /**
+     * Sets the limit of requests that are queued or in progress, requests over the limit are rejected before they are
+     * queued for a worker thread. Must be called before the listener is started.
+     *
+     * @param  admissionLimit  the limit or <code>null</code> to queue all requests
+     */
+    void setAdmissionLimit(final AdaptiveConcurrencyLimit admissionLimit) {
+        this.admissionLimit = admissionLimit;
+    }
+
+    /**
+     * Gets the TCP selector handler of the listener. Unlike <code>SelectorThread.getSelectorHandler()</code> this is
+     * not deprecated.
+     *
+     * @return  the selector handler or <code>null</code> if the selector thread has not been started yet
+     */
+    TCPSelectorHandler getTCPSelectorHandler() {
+        return (TCPSelectorHandler)getSelectorHandler(Protocol.TCP);
+    }
+
+    /**
+     * Puts the {@link AdmissionExecutor} in front of the worker pool if there is an admission limit. The selector
+     * handlers, also those of the read controllers, take the pool of the controller when it is started.
+     *
+     * @param  threadPool  the worker pool
+     */
+    @Override
+    public void setThreadPool(final ExecutorService threadPool) {
+        if ((admissionLimit == null) || (threadPool == null) || (threadPool instanceof AdmissionExecutor)) {
+            super.setThreadPool(threadPool);
+        } else {
+            super.setThreadPool(new AdmissionExecutor(threadPool, admissionLimit));
+        }
+    }
+
+    /**
+     * Replaces the port range of TCP selector handlers before adding them, so their server socket is bound with the
+     * backlog of the handler and, if requested, with <code>SO_REUSEPORT</code>.
+     *
+     * @param  selectorHandler  the selector handler to add
+     */
+    @Override
+    public void addSelectorHandler(final SelectorHandler selectorHandler) {
+        if (selectorHandler instanceof TCPSelectorHandler) {
+            final TCPSelectorHandler tcpHandler = (TCPSelectorHandler)selectorHandler;
+            final PortRange range = tcpHandler.getPortRange();
+            if ((range != null) && !(range instanceof ListenerPortRange)) {
+                tcpHandler.setPortRange(new ListenerPortRange(range.getLower(), range.getUpper(), reusePort));
+            }
+        }
+
+        super.addSelectorHandler(selectorHandler);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Binds a server socket with the given backlog also if no address is given and enables <code>SO_REUSEPORT</code>
+     * before, if requested.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class ListenerPortRange extends PortRange {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final boolean reusePort;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new ListenerPortRange object.
+         *
+         * @param  lower      the lowest port of the range
+         * @param  upper      the highest port of the range
+         * @param  reusePort  whether <code>SO_REUSEPORT</code> is enabled before binding
+         */
+        ListenerPortRange(final int lower, final int upper, final boolean reusePort) {
+            super(lower, upper);
+
+            this.reusePort = reusePort;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Binds to the wildcard address with the given backlog, the implementation of grizzly ignores it.
+         *
+         * @param   socket   the server socket to bind
+         * @param   backlog  the accept backlog
+         *
+         * @throws  IOException  if the socket cannot be bound
+         */
+        @Override
+        public void bind(final ServerSocket socket, final int backlog) throws IOException {
+            bind(socket, (InetAddress)null, backlog);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void bind(final ServerSocket socket, final InetAddress inet, final int backlog) throws IOException {
+            if (reusePort) {
+                enableReusePort(socket);
+            }
+
+            super.bind(socket, inet, backlog);
+        }
+
+        /**
+         * Enables <code>SO_REUSEPORT</code> on the channel of the given server socket.
+         *
+         * @param   socket  the server socket, not bound yet
+         *
+         * @throws  IOException  if the option is not supported or cannot be set
+         */
+        private void enableReusePort(final ServerSocket socket) throws IOException {
+            final ServerSocketChannel channel = socket.getChannel();
+            if ((SO_REUSEPORT == null) || (channel == null)) {
+                throw new IOException("SO_REUSEPORT not supported"); // NOI18N
+            }
+
+            try {
+                SET_OPTION.invoke(channel, SO_REUSEPORT, Boolean.TRUE);
+            } catch (final InvocationTargetException ex) {
+                final IOException ioe = new IOException("cannot enable SO_REUSEPORT"); // NOI18N
+                ioe.initCause(ex.getCause());
+                throw ioe;
+            } catch (final IllegalAccessException ex) {
+                final IOException ioe = new IOException("cannot enable SO_REUSEPORT"); // NOI18N
+                ioe.initCause(ex);
+                throw ioe;
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.TCPSelectorHandler;
+import com.sun.grizzly.http.SelectorThread;
+import com.sun.grizzly.http.StatsThreadPool;
+import com.sun.grizzly.http.ThreadPoolStatistic;
+import com.sun.grizzly.util.ExtendedThreadPool;
+import com.sun.grizzly.util.GrizzlyExecutorService;
+import com.sun.grizzly.util.ThreadPoolMonitoringProbe;
+
+import org.apache.log4j.Logger;
+
+import java.nio.channels.Selector;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.LatencyHistogram;
+
+/**
+ * Transport metrics of a single Grizzly listener. Accept, keep-alive and byte counters are taken from the Grizzly
+ * monitoring of the <code>SelectorThread</code>, open connections are the keys registered with its selector, so
+ * connections handed to selector read threads are not counted. The time tasks wait for a worker thread is measured by a
+ * monitoring probe of the worker pool. The latency of the selector loop is sampled by periodically posting a task to
+ * the selector thread and measuring how long it takes until the task runs, a selector that is busy dispatching keys or
+ * blocked by a slow handler shows up as lag.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class ListenerMetrics implements ListenerMetricsMBean {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(ListenerMetrics.class);
+
+    // ms
+    private static final long SELECTOR_PROBE_INTERVAL = 100;
+
+    private static final double MICROS_PER_MILLI = 1000d;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient SelectorThread selectorThread;
+    private final transient LatencyHistogram queueWait;
+    private final transient LatencyHistogram selectorLag;
+    private final transient AtomicLong rejectedTasks;
+    private final transient AtomicBoolean probePending;
+
+    private transient ScheduledExecutorService scheduler;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ListenerMetrics object.
+     *
+     * @param  selectorThread  the selector thread of the listener
+     */
+    ListenerMetrics(final SelectorThread selectorThread) {
+        this.selectorThread = selectorThread;
+        this.queueWait = new LatencyHistogram();
+        this.selectorLag = new LatencyHistogram();
+        this.rejectedTasks = new AtomicLong();
+        this.probePending = new AtomicBoolean();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Enables the Grizzly monitoring and installs the worker pool probe, which is also needed to include the queue wait
+     * in the {@link RequestArrival}. Must be called after the worker pool has been configured and before the listener
+     * is started, as enabling the monitoring creates the worker pool.
+     */
+    void install() {
+        selectorThread.enableMonitoring();
+
+        final ExecutorService pool = selectorThread.getThreadPool();
+        if (pool instanceof GrizzlyExecutorService) {
+            final GrizzlyExecutorService executor = (GrizzlyExecutorService)pool;
+            // the probe is part of the configuration, later reconfigurations of the pool size keep it
+            executor.reconfigure(executor.getConfiguration().copy().setMonitoringProbe(new WorkerPoolProbe()));
+        } else {
+            LOG.warn("worker pool " + pool + " cannot be probed, queue wait times are not available"); // NOI18N
+        }
+    }
+
+    /**
+     * Starts sampling the selector loop latency. Must be called after the listener has been started.
+     */
+    synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "selector-probe-" + selectorThread.getPort()); // NOI18N
+                        t.setDaemon(true);
+
+                        return t;
+                    }
+                });
+        scheduler.scheduleWithFixedDelay(
+            new SelectorProbe(),
+            SELECTOR_PROBE_INTERVAL,
+            SELECTOR_PROBE_INTERVAL,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling the selector loop latency.
+     */
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the time tasks waited for a worker thread.
+     *
+     * @return  the queue wait time histogram
+     */
+    LatencyHistogram getWorkerQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns the time the selector thread needed to pick up a posted task.
+     *
+     * @return  the selector lag histogram
+     */
+    LatencyHistogram getSelectorLag() {
+        return selectorLag;
+    }
+
+    /**
+     * Gets the selector handler of the listener.
+     *
+     * @return  the selector handler or <code>null</code> if the listener has not been started yet
+     */
+    private TCPSelectorHandler getSelectorHandler() {
+        return ((ListenerController)selectorThread.getController()).getTCPSelectorHandler();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getOpenConnections() {
+        // the connection statistic of grizzly does not notice most of the closed connections
+        final TCPSelectorHandler handler = getSelectorHandler();
+        final Selector selector = (handler == null) ? null : handler.getSelector();
+        if (selector == null) {
+            return 0;
+        }
+
+        // one key belongs to the server socket
+        return Math.max(0, selector.keys().size() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAcceptedConnections() {
+        final ThreadPoolStatistic statistic = getThreadPoolStatistic();
+
+        return (statistic == null) ? 0 : statistic.getCountTotalConnections();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRequests() {
+        return selectorThread.getRequestGroupInfo().getRequestCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getKeepAliveReuseRatio() {
+        final long requests = getRequests();
+        if (requests == 0) {
+            return 0;
+        }
+
+        // every accepted connection serves its first request without reuse
+        final long reused = requests - getAcceptedConnections();
+
+        return (reused <= 0) ? 0 : ((double)reused / requests);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getKeepAliveTimeouts() {
+        return selectorThread.getKeepAliveStats().getCountTimeouts();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesReceived() {
+        return selectorThread.getRequestGroupInfo().getBytesReceived();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesSent() {
+        return selectorThread.getRequestGroupInfo().getBytesSent();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWorkerThreads() {
+        final ExtendedThreadPool pool = getExtendedThreadPool();
+
+        return (pool == null) ? 0 : pool.getPoolSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getBusyWorkerThreads() {
+        final ExtendedThreadPool pool = getExtendedThreadPool();
+
+        return (pool == null) ? 0 : pool.getActiveCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWorkerQueueDepth() {
+        final ExtendedThreadPool pool = getExtendedThreadPool();
+
+        return (pool == null) ? 0 : pool.getQueueSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRejectedTasks() {
+        return rejectedTasks.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getWorkerQueueWait99thPercentile() {
+        return queueWait.snapshot().getValueAtQuantile(0.99) / MICROS_PER_MILLI;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getWorkerQueueWaitMax() {
+        return queueWait.snapshot().getMax() / MICROS_PER_MILLI;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getSelectorLag99thPercentile() {
+        return selectorLag.snapshot().getValueAtQuantile(0.99) / MICROS_PER_MILLI;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getSelectorLagMax() {
+        return selectorLag.snapshot().getMax() / MICROS_PER_MILLI;
+    }
+
+    /**
+     * Returns the worker pool if it provides its size and queue depth.
+     *
+     * @return  the worker pool or <code>null</code>
+     */
+    private ExtendedThreadPool getExtendedThreadPool() {
+        final ExecutorService pool = selectorThread.getThreadPool();
+
+        return (pool instanceof ExtendedThreadPool) ? (ExtendedThreadPool)pool : null;
+    }
+
+    /**
+     * Returns the connection statistic Grizzly gathers for its own worker pool.
+     *
+     * @return  the statistic or <code>null</code> if the worker pool is not a Grizzly <code>StatsThreadPool</code>
+     */
+    private ThreadPoolStatistic getThreadPoolStatistic() {
+        final ExecutorService pool = selectorThread.getThreadPool();
+
+        return (pool instanceof StatsThreadPool) ? ((StatsThreadPool)pool).getStatistic() : null;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Measures the time between queueing a task and a worker thread taking it and marks the {@link RequestArrival} of
+     * the task. Depending on the pool implementation Grizzly may report the dequeue of a task before its queueing, in
+     * that case the wait time is recorded as zero.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class WorkerPoolProbe implements ThreadPoolMonitoringProbe {
+
+        //~ Static fields/initializers -----------------------------------------
+
+        private static final long DEQUEUED = Long.MIN_VALUE;
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final transient ConcurrentMap<Runnable, Long> queued = new ConcurrentHashMap<Runnable, Long>();
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void threadAllocatedEvent(final String threadPoolName, final Thread thread) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void threadReleasedEvent(final String threadPoolName, final Thread thread) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void maxNumberOfThreadsReachedEvent(final String threadPoolName, final int maxNumberOfThreads) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTaskQueuedEvent(final Runnable task) {
+            if (queued.putIfAbsent(task, System.nanoTime()) != null) {
+                // the task has already been taken by a worker
+                queued.remove(task);
+                queueWait.record(0);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTaskDequeuedEvent(final Runnable task) {
+            final long now = System.nanoTime();
+            Long start = queued.remove(task);
+            if (start == null) {
+                start = queued.putIfAbsent(task, DEQUEUED);
+                if (start == null) {
+                    RequestArrival.taskDequeued(now);
+
+                    return;
+                }
+                queued.remove(task);
+            }
+
+            // called in the worker thread that runs the task next
+            RequestArrival.taskDequeued(start);
+            queueWait.recordNanos(now - start);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTaskCompletedEvent(final Runnable task) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTaskQueueOverflowEvent(final String threadPoolName) {
+            rejectedTasks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Posts a task to the selector thread unless the previously posted one is still pending, the task records how long
+     * it waited for the selector thread.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class SelectorProbe implements Runnable {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            if (!probePending.compareAndSet(false, true)) {
+                return;
+            }
+
+            final long posted = System.nanoTime();
+            getSelectorHandler().addPendingIO(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        selectorLag.recordNanos(System.nanoTime() - posted);
+                        probePending.set(false);
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+/**
+ * JMX view of the transport metrics of a single listener. Counters are totals since the listener was started, rates
+ * are derived by the monitoring tool. Latencies are given in milliseconds.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public interface ListenerMetricsMBean {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the number of currently open connections.
+     *
+     * @return  the number of open connections
+     */
+    long getOpenConnections();
+
+    /**
+     * Returns the number of accepted connections.
+     *
+     * @return  the number of accepted connections
+     */
+    long getAcceptedConnections();
+
+    /**
+     * Returns the number of processed requests.
+     *
+     * @return  the number of requests
+     */
+    long getRequests();
+
+    /**
+     * Returns the share of requests that were served on a connection that was already used for a previous request.
+     *
+     * @return  the keep-alive reuse ratio between 0 and 1
+     */
+    double getKeepAliveReuseRatio();
+
+    /**
+     * Returns the number of connections closed because they were idle for longer than the keep-alive timeout.
+     *
+     * @return  the number of keep-alive timeouts
+     */
+    long getKeepAliveTimeouts();
+
+    /**
+     * Returns the number of request body bytes received.
+     *
+     * @return  the number of bytes received
+     */
+    long getBytesReceived();
+
+    /**
+     * Returns the number of response bytes sent.
+     *
+     * @return  the number of bytes sent
+     */
+    long getBytesSent();
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return  the number of worker threads
+     */
+    int getWorkerThreads();
+
+    /**
+     * Returns the number of worker threads that are executing a task.
+     *
+     * @return  the number of busy worker threads
+     */
+    int getBusyWorkerThreads();
+
+    /**
+     * Returns the number of tasks waiting for a worker thread.
+     *
+     * @return  the worker queue depth
+     */
+    int getWorkerQueueDepth();
+
+    /**
+     * Returns the number of tasks that were rejected because the worker queue was full.
+     *
+     * @return  the number of rejected tasks
+     */
+    long getRejectedTasks();
+
+    /**
+     * Returns the 99th percentile of the time tasks waited for a worker thread.
+     *
+     * @return  the 99th percentile of the queue wait time in milliseconds
+     */
+    double getWorkerQueueWait99thPercentile();
+
+    /**
+     * Returns the longest time a task waited for a worker thread.
+     *
+     * @return  the maximum queue wait time in milliseconds
+     */
+    double getWorkerQueueWaitMax();
+
+    /**
+     * Returns the 99th percentile of the time the selector thread needed to pick up a task posted to it, i.e. the
+     * latency of a selector loop iteration.
+     *
+     * @return  the 99th percentile of the selector lag in milliseconds
+     */
+    double getSelectorLag99thPercentile();
+
+    /**
+     * Returns the longest time the selector thread needed to pick up a task posted to it.
+     *
+     * @return  the maximum selector lag in milliseconds
+     */
+    double getSelectorLagMax();
+}
@@ -0,0 +1,80 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import java.nio.charset.Charset;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Serves the metrics of the {@link MetricsRegistry} in the plain-text exposition format on a fixed path. All other
+ * requests are forwarded to the delegate. The adapter is placed in front of all other processing stages, so a scrape
+ * neither waits for nor influences the application.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class MetricsEndpointAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final String DEFAULT_PATH = "/metrics"; // NOI18N
+
+    private static final int SC_OK = 200;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient String path;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new MetricsEndpointAdapter object.
+     *
+     * @param  delegate  the adapter all other requests are forwarded to
+     * @param  path      the absolute request path of the metrics, independent of the servlet context path
+     */
+    MetricsEndpointAdapter(final GrizzlyAdapter delegate, final String path) {
+        super(delegate);
+
+        this.path = path;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        final String method = request.getMethod();
+        final boolean head = "HEAD".equals(method); // NOI18N
+        if ((!head && !"GET".equals(method)) || !path.equals(request.getDecodedRequestURI())) { // NOI18N
+            delegate.service(request, response);
+
+            return;
+        }
+
+        final byte[] body = MetricsRegistry.getInstance().scrape().getBytes(UTF8);
+
+        response.setStatus(SC_OK);
+        response.setContentType(MetricsWriter.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache"); // NOI18N
+        response.setContentLength(body.length);
+        if (!head) {
+            response.getOutputStream().write(body);
+        }
+    }
+}
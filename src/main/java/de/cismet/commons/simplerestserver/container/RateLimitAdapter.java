@@ -0,0 +1,266 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.cismet.commons.simplerestserver.loadtest.WarmUpReplay;
+
+/**
+ * Limits the request rate per key with {@link TokenBuckets}. Requests over the limit are answered with <code>429 Too
+ * Many Requests</code>, an empty body and a <code>Retry-After</code> header before anything else is done, the request
+ * body is never read by the application.<br/>
+ * <br/>
+ * The key is a comma separated list of parts:<br/>
+ * <br/>
+ *
+ * <ul>
+ *   <li><code>ip</code>: the address of the client</li>
+ *   <li><code>header:&lt;name&gt;</code>: the value of a header, e.g. an API key or <code>X-Forwarded-For</code> behind
+ *     a proxy, requests without the header are keyed by the address of the client instead</li>
+ *   <li><code>route[:&lt;segments&gt;]</code>: the first segments of the request path, {@link #DEFAULT_ROUTE_SEGMENTS}
+ *     by default, so that <code>/api/items/42</code> and <code>/api/items/43</code> share the route <code>
+ *     /api/items</code></li>
+ * </ul>
+ *
+ * <p>For instance <code>header:X-Api-Key,route</code> limits every API key on every route separately.</p>
+ *
+ * <p>The requests replayed to warm up the listener are not limited, they all come from the same address.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class RateLimitAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(RateLimitAdapter.class);
+
+    public static final String DEFAULT_KEY = "ip"; // NOI18N
+    public static final int DEFAULT_ROUTE_SEGMENTS = 2;
+
+    // not known to grizzly, the reason phrase must be given explicitly
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final String TOO_MANY_REQUESTS = "Too Many Requests"; // NOI18N
+
+    private static final double NANOS_PER_SECOND = 1000000000d;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient TokenBuckets buckets;
+    private final transient KeyPart[] keyParts;
+    private final transient String warmUpToken;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new RateLimitAdapter object.
+     *
+     * @param   delegate     the adapter that processes the requests within the limit
+     * @param   buckets      the token buckets
+     * @param   key          the key specification, see above
+     * @param   warmUpToken  the token of the warm-up requests or <code>null</code>
+     *
+     * @throws  IllegalArgumentException  if the key specification is invalid
+     */
+    RateLimitAdapter(
+            final GrizzlyAdapter delegate,
+            final TokenBuckets buckets,
+            final String key,
+            final String warmUpToken) {
+        super(delegate);
+
+        this.buckets = buckets;
+        this.keyParts = parseKey(key);
+        this.warmUpToken = warmUpToken;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Parses a key specification.
+     *
+     * @param   key  the key specification
+     *
+     * @return  the parts of the key
+     *
+     * @throws  IllegalArgumentException  if the key specification is invalid
+     */
+    static KeyPart[] parseKey(final String key) {
+        final List<KeyPart> parts = new ArrayList<KeyPart>();
+        for (final String entry : key.split(",")) { // NOI18N
+            final String part = entry.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+
+            final int colon = part.indexOf(':');
+            final String type = (colon < 0) ? part : part.substring(0, colon).trim();
+            final String argument = (colon < 0) ? null : part.substring(colon + 1).trim();
+            if ("ip".equals(type) && (argument == null)) { // NOI18N
+                parts.add(new KeyPart(KeyPart.IP, null, 0));
+            } else if ("header".equals(type) && (argument != null) && !argument.isEmpty()) { // NOI18N
+                parts.add(new KeyPart(KeyPart.HEADER, argument, 0));
+            } else if ("route".equals(type)) { // NOI18N
+                final int segments;
+                try {
+                    segments = (argument == null) ? DEFAULT_ROUTE_SEGMENTS : Integer.parseInt(argument);
+                } catch (final NumberFormatException e) {
+                    throw new IllegalArgumentException("illegal route segments: " + part, e); // NOI18N
+                }
+                if (segments < 1) {
+                    throw new IllegalArgumentException("illegal route segments: " + part); // NOI18N
+                }
+                parts.add(new KeyPart(KeyPart.ROUTE, null, segments));
+            } else {
+                throw new IllegalArgumentException("illegal rate limit key: " + part); // NOI18N
+            }
+        }
+
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("empty rate limit key: " + key); // NOI18N
+        }
+
+        return parts.toArray(new KeyPart[parts.size()]);
+    }
+
+    /**
+     * Cuts a path after the given number of segments.
+     *
+     * @param   path      the request path
+     * @param   segments  the number of segments to keep
+     *
+     * @return  the route
+     */
+    static String route(final String path, final int segments) {
+        int count = 0;
+        for (int i = 1; i < path.length(); ++i) {
+            if ((path.charAt(i) == '/') && (++count == segments)) {
+                return path.substring(0, i);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        if ((warmUpToken != null) && warmUpToken.equals(request.getHeader(WarmUpReplay.TOKEN_HEADER))) {
+            delegate.service(request, response);
+
+            return;
+        }
+
+        final String key = createKey(request);
+        final long wait = buckets.tryAcquire(key);
+        if (wait == 0) {
+            delegate.service(request, response);
+
+            return;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("rate limit exceeded, rejecting request: " + key + " -> " + request.getRequestURI()); // NOI18N
+        }
+        response.setStatus(SC_TOO_MANY_REQUESTS, TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", String.valueOf((long)Math.ceil(wait / NANOS_PER_SECOND))); // NOI18N
+        response.setContentLength(0);
+    }
+
+    /**
+     * Creates the key of a request.
+     *
+     * @param   request  the request
+     *
+     * @return  the key
+     */
+    private String createKey(final GrizzlyRequest request) {
+        if (keyParts.length == 1) {
+            return keyParts[0].valueOf(request);
+        }
+
+        final StringBuilder sb = new StringBuilder(64);
+        for (final KeyPart part : keyParts) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(part.valueOf(request));
+        }
+
+        return sb.toString();
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * A part of the key of a request.
+     *
+     * @version  1.0, 20261017
+     */
+    static final class KeyPart {
+
+        //~ Static fields/initializers -----------------------------------------
+
+        static final int IP = 0;
+        static final int HEADER = 1;
+        static final int ROUTE = 2;
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final int type;
+        private final String header;
+        private final int segments;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new KeyPart object.
+         *
+         * @param  type      the type of the part
+         * @param  header    the header name of a header part
+         * @param  segments  the number of path segments of a route part
+         */
+        KeyPart(final int type, final String header, final int segments) {
+            this.type = type;
+            this.header = header;
+            this.segments = segments;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Extracts the value of this part from a request.
+         *
+         * @param   request  the request
+         *
+         * @return  the value
+         */
+        String valueOf(final GrizzlyRequest request) {
+            if (type == ROUTE) {
+                return route(request.getRequestURI(), segments);
+            } else if (type == HEADER) {
+                final String value = request.getHeader(header);
+                if (value != null) {
+                    return value;
+                }
+            }
+
+            return request.getRemoteAddr();
+        }
+    }
+}
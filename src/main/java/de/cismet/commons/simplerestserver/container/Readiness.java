@@ -0,0 +1,196 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.apache.log4j.Logger;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the startup state of all listeners of the process. The process is ready as soon as every listener that was
+ * started has initialised its application and none was stopped since, it is live as long as no initialisation failed.
+ * The state is shared by the health endpoints of all listeners, so a load balancer sees the same answer on every port.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class Readiness {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(Readiness.class);
+
+    private static final Readiness INSTANCE = new Readiness();
+
+    //~ Enums ------------------------------------------------------------------
+
+    /**
+     * The startup state of a listener.
+     *
+     * @version  1.0, 20261017
+     */
+    public enum State {
+
+        //~ Enum constants -----------------------------------------------------
+
+        STARTING, READY, FAILED, STOPPED
+    }
+
+    //~ Instance fields --------------------------------------------------------
+
+    // keyed by the container, several listeners may share a host and port
+    private final transient Map<Object, String> names;
+    private final transient Map<Object, State> states;
+
+    private transient long startingSince;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new Readiness object.
+     */
+    private Readiness() {
+        names = new IdentityHashMap<Object, String>();
+        states = new IdentityHashMap<Object, State>();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Getter for the readiness of the process.
+     *
+     * @return  the readiness of the process
+     */
+    public static Readiness getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether every started listener is ready to serve requests.
+     *
+     * @return  <code>true</code> if at least one listener was started and all listeners are ready
+     */
+    public synchronized boolean isReady() {
+        if (states.isEmpty()) {
+            return false;
+        }
+
+        for (final State state : states.values()) {
+            if (state != State.READY) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether no listener failed to initialise its application. A process that is not live will not become ready
+     * anymore and should be restarted.
+     *
+     * @return  <code>true</code> if no initialisation failed
+     */
+    public synchronized boolean isLive() {
+        return !states.containsValue(State.FAILED);
+    }
+
+    /**
+     * Waits until no listener is starting anymore, i.e. until every started listener is ready, has failed or has been
+     * stopped.
+     *
+     * @param   timeout  the maximum time to wait in milliseconds
+     *
+     * @return  the result of {@link #isReady()} when the wait ends
+     *
+     * @throws  InterruptedException  if the current thread is interrupted while waiting
+     */
+    public synchronized boolean awaitReady(final long timeout) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (states.containsValue(State.STARTING) && (remaining > 0)) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+
+        return isReady();
+    }
+
+    /**
+     * Describes the state of every listener.
+     *
+     * @return  a comma separated list of <code>listener=STATE</code> entries
+     */
+    public synchronized String describe() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<Object, State> entry : states.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", "); // NOI18N
+            }
+            sb.append(names.get(entry.getKey())).append('=').append(entry.getValue());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Registers a listener that is being started.
+     *
+     * @param  owner  the container of the listener
+     * @param  name   the name of the listener
+     */
+    synchronized void starting(final Object owner, final String name) {
+        if (!states.containsValue(State.STARTING)) {
+            startingSince = System.currentTimeMillis();
+        }
+
+        names.put(owner, name);
+        states.put(owner, State.STARTING);
+    }
+
+    /**
+     * Marks a starting listener as ready. Nothing happens if the listener was stopped in the meantime.
+     *
+     * @param  owner  the container of the listener
+     */
+    synchronized void ready(final Object owner) {
+        if (states.get(owner) == State.STARTING) {
+            states.put(owner, State.READY);
+            notifyAll();
+
+            if (isReady() && LOG.isInfoEnabled()) {
+                LOG.info("all listeners ready after " + (System.currentTimeMillis() - startingSince) + " ms: " // NOI18N
+                            + describe());
+            }
+        }
+    }
+
+    /**
+     * Marks a starting listener as failed.
+     *
+     * @param  owner  the container of the listener
+     */
+    synchronized void failed(final Object owner) {
+        if (states.get(owner) == State.STARTING) {
+            states.put(owner, State.FAILED);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Marks a listener as stopped, the process is not ready anymore.
+     *
+     * @param  owner  the container of the listener
+     */
+    synchronized void stopped(final Object owner) {
+        if (states.containsKey(owner)) {
+            states.put(owner, State.STOPPED);
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+
+/**
+ * Tracks when a request arrived at the listener, i.e. when the task reading it was queued for a worker thread. The
+ * worker pool probe of the {@link ListenerMetrics} marks the queueing time of a task in the worker thread taking it,
+ * the first request read by the task takes the mark over. Further requests read by the same task, and requests of a
+ * worker pool that is not probed, arrive when they are looked up first. The arrival is kept as a request attribute, so
+ * it is also available after the request has been dispatched to another thread.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class RequestArrival {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final String ATTRIBUTE = RequestArrival.class.getName();
+
+    // nanos, 0 if the task of the current worker thread has no mark or it has been taken already
+    private static final ThreadLocal<long[]> TASK_QUEUED = new ThreadLocal<long[]>() {
+
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new RequestArrival object.
+     */
+    private RequestArrival() {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Marks the time the task that is about to run in the current worker thread was queued.
+     *
+     * @param  queuedNanos  the <code>System.nanoTime()</code> the task was queued
+     */
+    static void taskDequeued(final long queuedNanos) {
+        // 0 is reserved for no mark, the clock hitting it exactly only loses the queue wait of one request
+        TASK_QUEUED.get()[0] = queuedNanos;
+    }
+
+    /**
+     * Returns the time the given request arrived. Must be called in the worker thread that read the request before it
+     * is dispatched to another thread.
+     *
+     * @param   request  the request
+     *
+     * @return  the <code>System.nanoTime()</code> the request arrived
+     */
+    static long get(final GrizzlyRequest request) {
+        final Object arrival = request.getAttribute(ATTRIBUTE);
+        if (arrival instanceof Long) {
+            return (Long)arrival;
+        }
+
+        final long[] mark = TASK_QUEUED.get();
+        final long arrived = (mark[0] == 0) ? System.nanoTime() : mark[0];
+        mark[0] = 0;
+        request.setAttribute(ATTRIBUTE, arrived);
+
+        return arrived;
+    }
+}
@@ -0,0 +1,59 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsFilterFactory;
+import de.cismet.commons.simplerestserver.metrics.ResourceMetrics;
+
+/**
+ * Times the requests processed by the Jersey adapter and records them in the {@link ResourceMetrics} the
+ * {@link MetricsFilterFactory} bound them to. Requests that do not match a resource method are not recorded. The
+ * adapter must be placed directly in front of the Jersey adapter, so that it runs in the same thread as the resource
+ * method.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class ResourceMetricsAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int SC_INTERNAL_SERVER_ERROR = 500;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ResourceMetricsAdapter object.
+     *
+     * @param  delegate  the Jersey adapter
+     */
+    ResourceMetricsAdapter(final GrizzlyAdapter delegate) {
+        super(delegate);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.service(request, response);
+            failed = response.getStatus() >= SC_INTERNAL_SERVER_ERROR;
+        } finally {
+            ResourceMetrics.exit(System.nanoTime() - start, failed);
+        }
+    }
+}
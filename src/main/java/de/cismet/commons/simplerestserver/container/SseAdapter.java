@@ -0,0 +1,557 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.CompletionHandler;
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.events.EventBroker;
+import de.cismet.commons.simplerestserver.events.EventSubscriber;
+import de.cismet.commons.simplerestserver.events.SlowConsumerPolicy;
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Streams the events of the {@link EventBroker} as server-sent events. A <code>GET</code> request on <code>
+ * &lt;path&gt;/&lt;topic&gt;</code> subscribes to the topic, its response is suspended and stays open until either side
+ * closes it. The connections do not hold a worker thread: a published frame is queued per connection and written by a
+ * small pool of writer threads, which drain the whole queue of a connection and write it at once. Every connection
+ * queues a bounded number of frames, if a client reads slower than the events are published the
+ * {@link SlowConsumerPolicy} either drops its oldest frame or disconnects it. Idle connections receive a comment as
+ * heartbeat, which keeps proxies from closing them and detects clients that went away.<br/>
+ * <br/>
+ * Once the response is committed the frames are written to the non-blocking channel directly, framed as chunks if the
+ * response is chunked. A write the socket buffer cannot take completely is retried by a writer thread shortly after, so
+ * a client that stops reading never blocks a writer thread. A client that has not taken a pending write within the
+ * write timeout is disconnected.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class SseAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(SseAdapter.class);
+
+    public static final String DEFAULT_PATH = "/events"; // NOI18N
+    public static final int DEFAULT_QUEUE_SIZE = 256;
+    public static final SlowConsumerPolicy DEFAULT_POLICY = SlowConsumerPolicy.DROP_OLDEST;
+    public static final int DEFAULT_WRITER_THREADS = 2;
+    public static final long DEFAULT_HEARTBEAT = 15000;
+    public static final long DEFAULT_WRITE_TIMEOUT = 5000;
+
+    private static final int SC_NOT_FOUND = 404;
+
+    // ms between two attempts to complete a pending write
+    private static final long RETRY_DELAY = 20;
+
+    private static final String SOURCE_NAME = "sse"; // NOI18N
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); // NOI18N
+
+    // comments, ignored by the client
+    private static final byte[] PRELUDE = ":ok\n\n".getBytes(UTF_8); // NOI18N
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(UTF_8);  // NOI18N
+    private static final byte[] CRLF = "\r\n".getBytes(UTF_8);       // NOI18N
+
+    private static final AtomicLong CONNECTIONS = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AtomicLong SLOW_DISCONNECTS = new AtomicLong();
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient String base;
+    private final transient int queueSize;
+    private final transient SlowConsumerPolicy policy;
+    private final transient long heartbeat;
+    private final transient long writeTimeoutNanos;
+    private final transient ScheduledExecutorService writers;
+    private final transient Set<Connection> connections;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new SseAdapter object.
+     *
+     * @param  delegate       the adapter all other requests are forwarded to
+     * @param  path           the absolute base path of the topics, independent of the servlet context path
+     * @param  queueSize      the maximum number of frames queued per connection
+     * @param  policy         the handling of connections whose queue is full
+     * @param  writerThreads  the number of threads writing the frames
+     * @param  heartbeat      the milliseconds between two heartbeats, <code>0</code> to disable them
+     * @param  writeTimeout   the milliseconds a client may take to accept a pending write
+     * @param  name           the name of the writer threads
+     */
+    SseAdapter(final GrizzlyAdapter delegate,
+            final String path,
+            final int queueSize,
+            final SlowConsumerPolicy policy,
+            final int writerThreads,
+            final long heartbeat,
+            final long writeTimeout,
+            final String name) {
+        super(delegate);
+
+        this.base = (path.endsWith("/") ? path : (path + "/")); // NOI18N
+        this.queueSize = queueSize;
+        this.policy = policy;
+        this.heartbeat = heartbeat;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+        this.connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+        this.writers = new ScheduledThreadPoolExecutor(writerThreads, new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, name + "-" + count.incrementAndGet()); // NOI18N
+                        t.setDaemon(true);
+
+                        return t;
+                    }
+                });
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        final String uri = request.getRequestURI();
+        if (!"GET".equals(request.getMethod()) || !uri.startsWith(base)) { // NOI18N
+            delegate.service(request, response);
+
+            return;
+        }
+
+        final String topic = uri.substring(base.length());
+        if (topic.isEmpty() || (topic.indexOf('/') >= 0)) {
+            response.setStatus(SC_NOT_FOUND);
+            response.setContentLength(0);
+
+            return;
+        }
+
+        final Connection connection = new Connection(topic, response);
+        // the adapters get the raw response, the attachment is the connection
+        @SuppressWarnings("unchecked")
+        final GrizzlyResponse<Connection> suspendable = response;
+        suspendable.suspend(Long.MAX_VALUE, connection, new CloseHandler());
+        response.setContentType("text/event-stream; charset=UTF-8"); // NOI18N
+        response.setHeader("Cache-Control", "no-cache");             // NOI18N
+
+        // commits the response, the buffer of grizzly is empty afterwards and the frames bypass it
+        try {
+            final OutputStream out = response.getOutputStream();
+            out.write(PRELUDE);
+            out.flush();
+        } catch (final IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("cannot open event stream :: topic=" + topic, e); // NOI18N
+            }
+            response.cancel();
+
+            return;
+        }
+        connection.open();
+
+        connections.add(connection);
+        CONNECTIONS.incrementAndGet();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("event stream opened :: topic=" + topic + " | client=" + request.getRemoteAddr()); // NOI18N
+        }
+
+        EventBroker.getInstance().subscribe(topic, connection);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() {
+        super.start();
+
+        if (heartbeat > 0) {
+            writers.scheduleWithFixedDelay(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (final Connection connection : connections) {
+                            connection.heartbeat();
+                        }
+                    }
+                }, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        try {
+            for (final Connection connection : connections) {
+                connection.close(true);
+            }
+            writers.shutdown();
+        } finally {
+            super.destroy();
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Closes the connections whose client went away, grizzly finishes the response afterwards.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class CloseHandler implements CompletionHandler<Connection> {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void resumed(final Connection connection) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void cancelled(final Connection connection) {
+            connection.close(false);
+        }
+    }
+
+    /**
+     * An event stream subscribed to a topic. Only one writer thread at a time writes to the channel, the pending write
+     * is handed from one writer thread to the next one by the <code>scheduled</code> flag.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Connection implements EventSubscriber, Runnable {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final String topic;
+        private final GrizzlyResponse response;
+        private final BlockingQueue<byte[]> queue;
+        // whether a writer thread is scheduled or running, it is never reset once the connection is finished
+        private final AtomicBoolean scheduled;
+        private final AtomicBoolean closed;
+        // whether the response must be finished by the writer thread, it is not if the client went away
+        private volatile boolean finish;
+        // set once the response is committed
+        private SocketChannel channel;
+        private boolean chunked;
+        // the buffers of a write the socket buffer did not take completely, the first one with a rest, and since when
+        // the write is pending, in nanos
+        private ByteBuffer[] pending;
+        private int pendingOffset;
+        private long pendingSince;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Connection object.
+         *
+         * @param  topic     the subscribed topic
+         * @param  response  the suspended response
+         */
+        Connection(final String topic, final GrizzlyResponse response) {
+            this.topic = topic;
+            this.response = response;
+            this.queue = new ArrayBlockingQueue<byte[]>(queueSize);
+            this.scheduled = new AtomicBoolean();
+            this.closed = new AtomicBoolean();
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Takes over the channel of the committed response, before the first frame is delivered.
+         */
+        void open() {
+            channel = response.getResponse().getChannel();
+            chunked = "chunked".equalsIgnoreCase(                                                // NOI18N
+                    response.getResponse().getMimeHeaders().getHeader("Transfer-Encoding")); // NOI18N
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void deliver(final byte[] frame) {
+            if (closed.get()) {
+                return;
+            }
+
+            if (!queue.offer(frame)) {
+                if (SlowConsumerPolicy.DISCONNECT == policy) {
+                    SLOW_DISCONNECTS.incrementAndGet();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("disconnecting slow event stream :: topic=" + topic); // NOI18N
+                    }
+                    close(true);
+
+                    return;
+                }
+
+                // the writer may have made room in the meantime, then nothing is dropped
+                if (queue.poll() != null) {
+                    DROPPED.incrementAndGet();
+                }
+                if (!queue.offer(frame)) {
+                    DROPPED.incrementAndGet();
+                }
+            }
+
+            schedule();
+        }
+
+        /**
+         * Sends a heartbeat if no frame is pending.
+         */
+        void heartbeat() {
+            if (queue.isEmpty() && queue.offer(HEARTBEAT)) {
+                schedule();
+            }
+        }
+
+        /**
+         * Unsubscribes and discards the pending frames, once.
+         *
+         * @param  finish  whether the response must be finished, <code>false</code> if grizzly finishes it
+         */
+        void close(final boolean finish) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+
+            EventBroker.getInstance().unsubscribe(topic, this);
+            // not registered yet if the prelude could not be written
+            if (connections.remove(this)) {
+                CONNECTIONS.decrementAndGet();
+            }
+            queue.clear();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("event stream closed :: topic=" + topic); // NOI18N
+            }
+
+            if (finish) {
+                this.finish = true;
+                schedule();
+            }
+        }
+
+        /**
+         * Lets a writer thread write the pending frames, unless one is already doing that.
+         */
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this);
+                } catch (final RejectedExecutionException e) {
+                    // the adapter is destroyed, the response is finished by grizzly
+                    close(false);
+                }
+            }
+        }
+
+        /**
+         * Writes the queued frames at once. Returns without waiting if the client does not take them completely, a
+         * writer thread retries the rest shortly after.
+         */
+        @Override
+        public void run() {
+            final List<byte[]> frames = new ArrayList<byte[]>();
+            while (true) {
+                if (closed.get()) {
+                    if (finish) {
+                        finish();
+
+                        return;
+                    }
+
+                    // the closing thread may not have requested the finish yet
+                    scheduled.set(false);
+                    if (!finish || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    if (pending == null) {
+                        queue.drainTo(frames);
+                        if (!frames.isEmpty()) {
+                            pending = encode(frames);
+                            pendingOffset = 0;
+                            pendingSince = System.nanoTime();
+                            frames.clear();
+                        }
+                    }
+                    if ((pending != null) && !write()) {
+                        // keeps the connection scheduled, no other writer thread touches the pending write
+                        writers.schedule(this, RETRY_DELAY, TimeUnit.MILLISECONDS);
+
+                        return;
+                    }
+                } catch (final IOException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("cannot write to event stream :: topic=" + topic, e); // NOI18N
+                    }
+                    close(true);
+                } catch (final RejectedExecutionException e) {
+                    // the adapter is destroyed, the response is finished by grizzly
+                    close(false);
+
+                    return;
+                }
+
+                scheduled.set(false);
+                if ((queue.isEmpty() && !closed.get()) || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Writes as much of the pending write as the socket buffer takes.
+         *
+         * @return  <code>true</code> if the pending write is complete
+         *
+         * @throws  IOException  if the channel fails or the client did not take the write within the write timeout
+         */
+        private boolean write() throws IOException {
+            channel.write(pending, pendingOffset, pending.length - pendingOffset);
+            while ((pendingOffset < pending.length) && !pending[pendingOffset].hasRemaining()) {
+                pendingOffset++;
+            }
+            if (pendingOffset == pending.length) {
+                pending = null;
+
+                return true;
+            }
+
+            if ((System.nanoTime() - pendingSince) > writeTimeoutNanos) {
+                SLOW_DISCONNECTS.incrementAndGet();
+                throw new IOException("write timed out"); // NOI18N
+            }
+
+            return false;
+        }
+
+        /**
+         * Finishes the response. A connection with a pending write is aborted, the end of the response cannot be
+         * written after an incomplete frame.
+         */
+        private void finish() {
+            try {
+                if (pending == null) {
+                    response.resume();
+                } else {
+                    pending = null;
+                    response.cancel();
+                }
+            } catch (final Exception e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("event stream already finished", e); // NOI18N
+                }
+            }
+        }
+
+        /**
+         * Prepares the given frames for a single gathering write, as a single chunk if the response is chunked. The
+         * frames are shared by all subscribers of the topic, they are wrapped instead of copied.
+         *
+         * @param   frames  the frames to write
+         *
+         * @return  the buffers to write
+         */
+        private ByteBuffer[] encode(final List<byte[]> frames) {
+            final int first = chunked ? 1 : 0;
+            final ByteBuffer[] buffers = new ByteBuffer[frames.size() + (2 * first)];
+            int length = 0;
+            for (int i = 0; i < frames.size(); i++) {
+                final byte[] frame = frames.get(i);
+                buffers[first + i] = ByteBuffer.wrap(frame).asReadOnlyBuffer();
+                length += frame.length;
+            }
+
+            if (chunked) {
+                buffers[0] = ByteBuffer.wrap((Integer.toHexString(length) + "\r\n").getBytes(UTF_8)); // NOI18N
+                buffers[buffers.length - 1] = ByteBuffer.wrap(CRLF).asReadOnlyBuffer();
+            }
+
+            return buffers;
+        }
+    }
+
+    /**
+     * Publishes the counters of all event streams.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            writer.gauge("sse_connections", "Open event streams", CONNECTIONS.get()); // NOI18N
+            writer.counter(
+                "sse_frames_dropped_total", // NOI18N
+                "Events dropped because the client of an event stream was too slow", // NOI18N
+                DROPPED.get());
+            writer.counter(
+                "sse_slow_disconnects_total", // NOI18N
+                "Event streams closed because the client was too slow", // NOI18N
+                SLOW_DISCONNECTS.get());
+        }
+    }
+}
@@ -0,0 +1,825 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.FileOutputBuffer;
+import com.sun.grizzly.tcp.OutputBuffer;
+import com.sun.grizzly.tcp.Response;
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+import com.sun.grizzly.util.OutputWriter;
+import com.sun.grizzly.util.SelectorFactory;
+import com.sun.grizzly.util.http.MimeType;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the files of a static resource directory. Requests that do not denote a readable file are forwarded to the
+ * delegate.<br/>
+ * <br/>
+ * Small files are kept in a memory cache that is bounded by the total number of cached bytes and evicts the least
+ * recently used files first. Larger files are transferred using {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, so their content is never copied to the heap, if the connection supports it.
+ * The file metadata is cached, too, and only rechecked after the check interval elapsed. Thus a revalidation using
+ * <code>If-None-Match</code> or <code>If-Modified-Since</code> is usually answered with <code>304 Not Modified</code>
+ * without touching the disk.<br/>
+ * <br/>
+ * Requests whose first path segment is no entry of the directory, e.g. the requests of the REST resources, are
+ * forwarded without touching the disk or the cache, the entries of the directory are rechecked after the check
+ * interval, too. Lookups within the directory that did not find a file are remembered in a small separate cache, so
+ * they neither evict the cached files nor hit the disk again before the check interval elapsed.<br/>
+ * <br/>
+ * If precompressed variants are enabled and the client accepts the respective content coding, a sibling file with the
+ * suffix <code>.br</code> or <code>.gz</code> is served instead of the file itself, as long as it is not older than
+ * the file. The variants can be generated by a {@link StaticResourceCompressor}, its temporary files are never
+ * served.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class StaticFileAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(StaticFileAdapter.class);
+
+    public static final long DEFAULT_CACHE_SIZE = 32L * 1024 * 1024;
+    public static final long DEFAULT_MAX_CACHED_FILE_SIZE = 256L * 1024;
+    public static final long DEFAULT_CHECK_INTERVAL = 2000;
+
+    private static final String INDEX_FILE = "index.html";                         // NOI18N
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream"; // NOI18N
+
+    private static final int SC_OK = 200;
+    private static final int SC_NOT_MODIFIED = 304;
+
+    // approximate heap usage of an entry without content, used to bound the number of entries
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    // maximum number of remembered lookups that did not find a file
+    private static final int MAX_MISSING = 1024;
+
+    // the result of lookups that did not find a file
+    private static final FileEntry MISSING = new FileEntry(null, -1, -1, null, null, 0);
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient File root;
+    private final transient String rootPath;
+    private final transient long cacheSize;
+    private final transient long maxCachedFileSize;
+    private final transient long checkInterval;
+    private final transient boolean precompressed;
+    private final transient StaticResourceCompressor compressor;
+
+    // access ordered, guarded by itself
+    private final transient LinkedHashMap<String, FileEntry> cache;
+    private transient long cachedBytes;
+
+    // access ordered, uri to the time the file was found missing, guarded by itself
+    private final transient LinkedHashMap<String, Long> missing;
+
+    // the entries of the root, replaced as a whole
+    private transient volatile Set<String> rootEntries;
+    private transient volatile long rootEntriesChecked;
+
+    private final transient AtomicLong hits;
+    private final transient AtomicLong misses;
+    private final transient AtomicLong notModified;
+    private final transient AtomicLong transfers;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new StaticFileAdapter object.
+     *
+     * @param   delegate           the adapter requests are forwarded to if they do not denote a file
+     * @param   root               the static resource directory
+     * @param   cacheSize          the maximum number of bytes held by the memory cache
+     * @param   maxCachedFileSize  the maximum size of a file that is held in memory, larger files are transferred
+     * @param   checkInterval      the time in milliseconds the metadata of a file is trusted without checking the disk
+     * @param   precompressed      whether to serve precompressed variants of the files
+     * @param   compressor         the compressor that generates the variants or <code>null</code>
+     *
+     * @throws  IOException  if the canonical path of the root cannot be determined
+     */
+    StaticFileAdapter(
+            final GrizzlyAdapter delegate,
+            final File root,
+            final long cacheSize,
+            final long maxCachedFileSize,
+            final long checkInterval,
+            final boolean precompressed,
+            final StaticResourceCompressor compressor) throws IOException {
+        super(delegate);
+
+        this.root = root.getCanonicalFile();
+        this.rootPath = this.root.getPath();
+        this.cacheSize = cacheSize;
+        this.maxCachedFileSize = Math.min(maxCachedFileSize, cacheSize);
+        this.checkInterval = checkInterval;
+        this.precompressed = precompressed;
+        this.compressor = compressor;
+        this.cache = new LinkedHashMap<String, FileEntry>(64, 0.75f, true);
+        this.missing = new LinkedHashMap<String, Long>(64, 0.75f, true);
+        this.rootEntries = Collections.emptySet();
+        this.rootEntriesChecked = 0;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.notModified = new AtomicLong();
+        this.transfers = new AtomicLong();
+
+        if (!this.root.isDirectory()) {
+            LOG.warn("static resource path is not a directory: " + this.root); // NOI18N
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        final String method = request.getMethod();
+        final boolean head = "HEAD".equals(method); // NOI18N
+        if (!head && !"GET".equals(method)) {       // NOI18N
+            delegate.service(request, response);
+
+            return;
+        }
+
+        final String uri = request.getDecodedRequestURI();
+        final FileEntry source = ((uri == null) || !isBelowRootEntry(uri)) ? null : lookup(uri);
+        if ((source == null) || (source.file == null)) {
+            delegate.service(request, response);
+
+            return;
+        }
+
+        FileEntry entry = source;
+        if (precompressed) {
+            response.setHeader("Vary", "Accept-Encoding"); // NOI18N
+
+            final String acceptEncoding = request.getHeader("Accept-Encoding"); // NOI18N
+            if (acceptEncoding != null) {
+                for (final ContentCoding coding : ContentCoding.values()) {
+                    if (accepts(acceptEncoding, coding.getName())) {
+                        final FileEntry variant = lookupVariant(uri, source, coding);
+                        if ((variant.file != null) && (variant.lastModified >= source.lastModified)) {
+                            response.setHeader("Content-Encoding", coding.getName()); // NOI18N
+                            entry = variant;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        response.setHeader("ETag", entry.etag);                      // NOI18N
+        response.setDateHeader("Last-Modified", entry.lastModified); // NOI18N
+
+        if (isNotModified(request, entry)) {
+            notModified.incrementAndGet();
+            response.setStatus(SC_NOT_MODIFIED);
+
+            return;
+        }
+
+        response.setStatus(SC_OK);
+        response.setContentType(source.contentType);
+        response.setContentLengthLong(entry.length);
+
+        if (head) {
+            return;
+        }
+
+        final byte[] content = entry.content;
+        if (content == null) {
+            misses.incrementAndGet();
+            send(entry, response);
+        } else {
+            hits.incrementAndGet();
+            response.getOutputStream().write(content);
+        }
+    }
+
+    /**
+     * Checks the conditional headers of the request. <code>If-None-Match</code> takes precedence over <code>
+     * If-Modified-Since</code>.
+     *
+     * @param   request  the request
+     * @param   entry    the requested file
+     *
+     * @return  true if the client's copy is still valid, false otherwise
+     */
+    private static boolean isNotModified(final GrizzlyRequest request, final FileEntry entry) {
+        final String ifNoneMatch = request.getHeader("If-None-Match"); // NOI18N
+        if (ifNoneMatch != null) {
+            if ("*".equals(ifNoneMatch.trim())) {                      // NOI18N
+                return true;
+            }
+            for (final String tag : ifNoneMatch.split(",")) {          // NOI18N
+                final String trimmed = tag.trim();
+                if (entry.etag.equals(trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed)) { // NOI18N
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        final long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since"); // NOI18N
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+
+        // http dates have a resolution of one second
+        return (ifModifiedSince >= 0) && ((entry.lastModified / 1000) <= (ifModifiedSince / 1000));
+    }
+
+    /**
+     * Sends the content of a file that is not held in memory. If the connection supports it the file is transferred
+     * directly from the file channel to the socket, otherwise it is streamed through a heap buffer.
+     *
+     * @param   entry     the file to send
+     * @param   response  the response, status and headers are already set
+     *
+     * @throws  IOException  if the file cannot be read or sent
+     */
+    private void send(final FileEntry entry, final GrizzlyResponse response) throws IOException {
+        final FileInputStream fis = new FileInputStream(entry.file);
+        try {
+            final Response raw = response.getResponse();
+            final OutputBuffer outputBuffer = raw.getOutputBuffer();
+            final SocketChannel channel = raw.getChannel();
+            if ((channel != null) && (outputBuffer instanceof FileOutputBuffer)
+                        && ((FileOutputBuffer)outputBuffer).isSupportFileSend()) {
+                transfers.incrementAndGet();
+                raw.sendHeaders();
+                raw.flush();
+                transfer(fis.getChannel(), entry.length, (FileOutputBuffer)outputBuffer, channel);
+            } else {
+                final OutputStream out = response.getOutputStream();
+                final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                long remaining = entry.length;
+                while (remaining > 0) {
+                    final int read = fis.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("file shrunk while sending: " + entry.file); // NOI18N
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Transfers the file to the socket. The socket is non-blocking, so if nothing can be written the calling thread
+     * waits until the socket becomes writable again or the Grizzly write timeout elapses.
+     *
+     * @param   file          the channel of the file to send
+     * @param   length        the number of bytes to send
+     * @param   outputBuffer  the output buffer of the response
+     * @param   channel       the socket channel of the response
+     *
+     * @throws  IOException  if the transfer fails or times out
+     */
+    private static void transfer(
+            final FileChannel file,
+            final long length,
+            final FileOutputBuffer outputBuffer,
+            final SocketChannel channel) throws IOException {
+        long position = 0;
+        Selector selector = null;
+        SelectionKey key = null;
+        try {
+            while (position < length) {
+                final long sent = outputBuffer.sendFile(file, position, length - position);
+                if (sent > 0) {
+                    position += sent;
+                } else if (position >= file.size()) {
+                    throw new IOException("file shrunk while sending"); // NOI18N
+                } else {
+                    if (selector == null) {
+                        selector = SelectorFactory.getSelector();
+                        if (selector == null) {
+                            throw new IOException("no temporary selector available"); // NOI18N
+                        }
+                        key = channel.register(selector, SelectionKey.OP_WRITE);
+                    }
+                    if (selector.select(OutputWriter.getDefaultWriteTimeout()) == 0) {
+                        throw new IOException("write timed out"); // NOI18N
+                    }
+                    selector.selectedKeys().clear();
+                }
+            }
+        } finally {
+            if (key != null) {
+                key.cancel();
+            }
+            if (selector != null) {
+                SelectorFactory.selectNowAndReturnSelector(selector);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the given <code>Accept-Encoding</code> header accepts the given content coding, i.e. lists it
+     * or <code>*</code> with a quality value greater than zero.
+     *
+     * @param   acceptEncoding  the value of the <code>Accept-Encoding</code> header
+     * @param   coding          the content coding
+     *
+     * @return  true if the coding is acceptable, false otherwise
+     */
+    static boolean accepts(final String acceptEncoding, final String coding) {
+        boolean wildcard = false;
+        for (final String element : acceptEncoding.split(",")) { // NOI18N
+            final int semicolon = element.indexOf(';');
+            final String name = ((semicolon < 0) ? element : element.substring(0, semicolon)).trim();
+            final boolean named = name.equalsIgnoreCase(coding);
+            if (named || "*".equals(name)) {                     // NOI18N
+                boolean acceptable = true;
+                if (semicolon >= 0) {
+                    final String param = element.substring(semicolon + 1).trim();
+                    if (param.startsWith("q=") || param.startsWith("Q=")) { // NOI18N
+                        try {
+                            acceptable = Float.parseFloat(param.substring(2).trim()) > 0;
+                        } catch (final NumberFormatException e) {
+                            acceptable = false;
+                        }
+                    }
+                }
+                if (named) {
+                    // an explicit entry takes precedence over the wildcard
+                    return acceptable;
+                }
+                wildcard = acceptable;
+            }
+        }
+
+        return wildcard;
+    }
+
+    /**
+     * Looks up the precompressed variant of a file using the cache.
+     *
+     * @param   uri     the decoded request uri of the file
+     * @param   source  the entry of the file, must denote an existing file
+     * @param   coding  the content coding of the variant
+     *
+     * @return  the entry of the variant, its file is <code>null</code> if there is no such variant
+     *
+     * @throws  IOException  if the variant cannot be read
+     */
+    private FileEntry lookupVariant(final String uri, final FileEntry source, final ContentCoding coding)
+            throws IOException {
+        // the key must not collide with the uri of the variant itself, which is served with another content type
+        final String key = coding.getName() + ':' + uri;
+        final long now = System.currentTimeMillis();
+
+        final FileEntry cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if ((cached != null) && ((now - cached.checked) < checkInterval)) {
+            return cached;
+        }
+        if ((cached == null) && isKnownMissing(key, now)) {
+            return MISSING;
+        }
+
+        return refresh(key, cached, new File(source.file.getPath() + coding.getSuffix()), now);
+    }
+
+    /**
+     * Looks up the file for the given request uri using the cache. The disk is only checked if the entry is unknown or
+     * older than the check interval.
+     *
+     * @param   uri  the decoded request uri
+     *
+     * @return  the entry for the uri, its file is <code>null</code> if there is no such file, or <code>null</code> if
+     *          the uri is illegal
+     *
+     * @throws  IOException  if the file cannot be read
+     */
+    private FileEntry lookup(final String uri) throws IOException {
+        final long now = System.currentTimeMillis();
+
+        final FileEntry cached;
+        synchronized (cache) {
+            cached = cache.get(uri);
+        }
+        if ((cached != null) && ((now - cached.checked) < checkInterval)) {
+            return cached;
+        }
+        if ((cached == null) && isKnownMissing(uri, now)) {
+            return MISSING;
+        }
+
+        final File file = resolve(uri);
+        if (file == null) {
+            return null;
+        }
+
+        return refresh(uri, cached, file, now);
+    }
+
+    /**
+     * Reads the metadata of the given file and updates the cache. The content of the file is only read if it changed.
+     *
+     * @param   key     the cache key
+     * @param   cached  the currently cached entry or <code>null</code>
+     * @param   file    the file
+     * @param   now     the current time
+     *
+     * @return  the up-to-date entry
+     *
+     * @throws  IOException  if the file cannot be read
+     */
+    private FileEntry refresh(final String key, final FileEntry cached, final File file, final long now)
+            throws IOException {
+        final boolean exists = file.isFile() && file.canRead();
+        final long length = exists ? file.length() : -1;
+        final long lastModified = exists ? file.lastModified() : -1;
+
+        if ((cached != null) && (cached.length == length) && (cached.lastModified == lastModified)) {
+            cached.checked = now;
+
+            return cached;
+        }
+
+        if (!exists) {
+            if (cached != null) {
+                synchronized (cache) {
+                    if (cache.remove(key) != null) {
+                        cachedBytes -= cached.weight();
+                    }
+                }
+            }
+            synchronized (missing) {
+                missing.put(key, now);
+                if (missing.size() > MAX_MISSING) {
+                    final Iterator<Long> it = missing.values().iterator();
+                    it.next();
+                    it.remove();
+                }
+            }
+
+            return MISSING;
+        }
+
+        final byte[] content = (length <= maxCachedFileSize) ? read(file, length) : null;
+        final FileEntry entry = new FileEntry(file, length, lastModified, contentType(file), content, now);
+
+        synchronized (cache) {
+            final FileEntry previous = cache.put(key, entry);
+            if (previous != null) {
+                cachedBytes -= previous.weight();
+            }
+            cachedBytes += entry.weight();
+
+            final Iterator<FileEntry> it = cache.values().iterator();
+            while ((cachedBytes > cacheSize) && it.hasNext()) {
+                final FileEntry eldest = it.next();
+                if (eldest != entry) {
+                    cachedBytes -= eldest.weight();
+                    it.remove();
+                }
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Indicates whether a lookup of the uri recently did not find a file.
+     *
+     * @param   key  the cache key
+     * @param   now  the current time
+     *
+     * @return  <code>true</code> if the file was missing within the check interval
+     */
+    private boolean isKnownMissing(final String key, final long now) {
+        synchronized (missing) {
+            final Long checked = missing.get(key);
+
+            return (checked != null) && ((now - checked) < checkInterval);
+        }
+    }
+
+    /**
+     * Checks the first segment of the uri against the entries of the root without touching the cache. The entries are
+     * read again once the check interval elapsed.
+     *
+     * @param   uri  the decoded request uri
+     *
+     * @return  <code>true</code> if the uri denotes the root or may denote a file below one of its entries
+     */
+    private boolean isBelowRootEntry(final String uri) {
+        final int start = (uri.startsWith("/")) ? 1 : 0; // NOI18N
+        int end = uri.indexOf('/', start);
+        if (end < 0) {
+            end = uri.length();
+        }
+        if (start == end) {
+            // the index file of the root
+            return true;
+        }
+
+        final long now = System.currentTimeMillis();
+        if ((now - rootEntriesChecked) >= checkInterval) {
+            // concurrent refreshes are harmless, they read the same entries
+            final String[] names = root.list();
+            rootEntries = (names == null) ? Collections.<String>emptySet() : new HashSet<String>(Arrays.asList(names));
+            rootEntriesChecked = now;
+        }
+
+        return rootEntries.contains(uri.substring(start, end));
+    }
+
+    /**
+     * Maps the request uri to a file below the root. Directories are mapped to their index file.
+     *
+     * @param   uri  the decoded request uri
+     *
+     * @return  the file or <code>null</code> if the uri points outside the root or to a temporary file of a
+     *          {@link StaticResourceCompressor}
+     *
+     * @throws  IOException  if the canonical path cannot be determined
+     */
+    private File resolve(final String uri) throws IOException {
+        if (uri.indexOf('\0') >= 0) {
+            return null;
+        }
+
+        File file = new File(root, uri).getCanonicalFile();
+        final String path = file.getPath();
+        if (!path.equals(rootPath) && !path.startsWith(rootPath + File.separator)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("uri outside of static resource path: " + uri); // NOI18N
+            }
+
+            return null;
+        }
+
+        if (file.isDirectory()) {
+            file = new File(file, INDEX_FILE);
+        }
+
+        // variants being written by a compressor are never served
+        if (StaticResourceCompressor.isTemporary(file)) {
+            return null;
+        }
+
+        return file;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @param   file    the file to read
+     * @param   length  the expected length of the file
+     *
+     * @return  the content of the file
+     *
+     * @throws  IOException  if the file cannot be read or its length changed
+     */
+    private static byte[] read(final File file, final long length) throws IOException {
+        final FileInputStream fis = new FileInputStream(file);
+        try {
+            final byte[] content = new byte[(int)length];
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            final FileChannel channel = fis.getChannel();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("file shrunk while reading: " + file); // NOI18N
+                }
+            }
+
+            return content;
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Determines the content type of a file using its extension.
+     *
+     * @param   file  the file
+     *
+     * @return  the content type, never <code>null</code>
+     */
+    private static String contentType(final File file) {
+        final String name = file.getName();
+        final int dot = name.lastIndexOf('.');
+
+        return (dot < 0) ? DEFAULT_CONTENT_TYPE : MimeType.get(name.substring(dot + 1), DEFAULT_CONTENT_TYPE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() {
+        super.start();
+        if (compressor != null) {
+            compressor.start();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        try {
+            if (compressor != null) {
+                compressor.stop();
+            }
+        } finally {
+            super.destroy();
+        }
+    }
+
+    /**
+     * Getter for the number of responses served from the memory cache.
+     *
+     * @return  the number of cache hits
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Getter for the number of responses that were read from disk.
+     *
+     * @return  the number of cache misses
+     */
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Getter for the number of <code>304 Not Modified</code> responses.
+     *
+     * @return  the number of not modified responses
+     */
+    long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * Getter for the number of zero-copy transfers.
+     *
+     * @return  the number of zero-copy transfers
+     */
+    long getTransferCount() {
+        return transfers.get();
+    }
+
+    //~ Enums ------------------------------------------------------------------
+
+    /**
+     * The content codings of precompressed variants in order of preference.
+     *
+     * @version  1.0, 20261017
+     */
+    enum ContentCoding {
+
+        //~ Enum constants -----------------------------------------------------
+
+        BR("br", ".br"), GZIP("gzip", ".gz"); // NOI18N
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final String name;
+        private final String suffix;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new ContentCoding object.
+         *
+         * @param  name    the name used in the <code>Accept-Encoding</code> and <code>Content-Encoding</code> headers
+         * @param  suffix  the file name suffix of the variant
+         */
+        private ContentCoding(final String name, final String suffix) {
+            this.name = name;
+            this.suffix = suffix;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Getter for the name of the content coding.
+         *
+         * @return  the name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Getter for the file name suffix of the variant.
+         *
+         * @return  the suffix
+         */
+        String getSuffix() {
+            return suffix;
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Cached metadata and, for small files, the content of a file. The file of {@link #MISSING} is <code>null</code>.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class FileEntry {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+        private final String contentType;
+        private final byte[] content;
+
+        private volatile long checked;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new FileEntry object.
+         *
+         * @param  file          the file
+         * @param  length        the length of the file
+         * @param  lastModified  the last modification time of the file
+         * @param  contentType   the content type of the file
+         * @param  content       the content of the file or <code>null</code> if it is not held in memory
+         * @param  checked       the time the metadata was read from disk
+         */
+        FileEntry(
+                final File file,
+                final long length,
+                final long lastModified,
+                final String contentType,
+                final byte[] content,
+                final long checked) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\""; // NOI18N
+            this.contentType = contentType;
+            this.content = content;
+            this.checked = checked;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Returns the approximate number of bytes this entry occupies in the cache.
+         *
+         * @return  the weight of this entry
+         */
+        long weight() {
+            return ENTRY_OVERHEAD + ((content == null) ? 0 : content.length);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates the gzip variants of the compressible files of a static resource directory in the background. A variant
+ * is (re)generated if it does not exist or is older than its file, the modification time of a generated variant is set
+ * to the one of its file. Variants are written to a temporary file first, so a {@link StaticFileAdapter} never serves a
+ * partially written variant, and the adapter never serves the temporary files. Temporary files left over by a killed
+ * compressor are deleted by a later run, as soon as they were not written for a minute. Files whose gzip variant would
+ * not be smaller are remembered and not compressed again until they change.<br/>
+ * <br/>
+ * The variants are kept in sync with their files: the gzip variant of a file that was removed or is not worth
+ * compressing anymore is deleted. Only variants of file names with a compressible extension are touched, other
+ * <code>.gz</code> files are served as they are.<br/>
+ * <br/>
+ * Brotli variants are never generated, because there is no Brotli encoder available in the JDK, but existing ones are
+ * served by the {@link StaticFileAdapter}.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class StaticResourceCompressor implements Runnable {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(StaticResourceCompressor.class);
+
+    public static final long DEFAULT_INTERVAL = 60000;
+
+    /** Files smaller than this do not benefit from compression. */
+    public static final long MIN_FILE_SIZE = 1024;
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = new HashSet<String>(Arrays.asList(
+                "css",     // NOI18N
+                "csv",     // NOI18N
+                "geojson", // NOI18N
+                "htm",     // NOI18N
+                "html",    // NOI18N
+                "js",      // NOI18N
+                "json",    // NOI18N
+                "map",     // NOI18N
+                "mjs",     // NOI18N
+                "svg",     // NOI18N
+                "txt",     // NOI18N
+                "xml"));   // NOI18N
+
+    private static final String TMP_SUFFIX = ".tmp"; // NOI18N
+
+    // <name>.gz.<random>.tmp, as created by File.createTempFile
+    private static final Pattern TMP_NAME = Pattern.compile(".+"
+                    + Pattern.quote(StaticFileAdapter.ContentCoding.GZIP.getSuffix() + ".") // NOI18N
+                    + "\\d+"                                                                // NOI18N
+                    + Pattern.quote(TMP_SUFFIX),
+            Pattern.CASE_INSENSITIVE);
+
+    // ms without a write after which a temporary file is a leftover, compressors of other listeners may share the
+    // directory and write to their own temporary files
+    private static final long TMP_MAX_AGE = 60 * 1000;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient File root;
+    private final transient long interval;
+
+    // path -> modification time of files that are not worth compressing
+    private final transient Map<String, Long> incompressible;
+
+    private transient ScheduledExecutorService scheduler;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new StaticResourceCompressor object.
+     *
+     * @param  root      the static resource directory
+     * @param  interval  the time in milliseconds between two runs, <code>0</code> to run only once after start
+     */
+    StaticResourceCompressor(final File root, final long interval) {
+        this.root = root;
+        this.interval = interval;
+        this.incompressible = new ConcurrentHashMap<String, Long>();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Indicates whether the given file is a variant being written by a compressor, or left over by one.
+     *
+     * @param   file  the file
+     *
+     * @return  true if the file is a temporary file of a compressor
+     */
+    static boolean isTemporary(final File file) {
+        return TMP_NAME.matcher(file.getName()).matches();
+    }
+
+    /**
+     * Starts generating the variants in a background thread.
+     */
+    synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "static-resource-compressor"); // NOI18N
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+
+                        return t;
+                    }
+                });
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(this, 0, interval, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(this);
+        }
+    }
+
+    /**
+     * Stops generating the variants. A variant that is being generated is discarded.
+     */
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Generates all missing or outdated variants and deletes the variants without file.
+     */
+    @Override
+    public void run() {
+        final long start = System.currentTimeMillis();
+        try {
+            final int generated = compressDirectory(root);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("generated " + generated + " gzip variants in " // NOI18N
+                            + (System.currentTimeMillis() - start) + " ms"); // NOI18N
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception ex) {
+            // never let an exception cancel the periodic execution
+            LOG.error("cannot generate gzip variants in " + root, ex); // NOI18N
+        }
+    }
+
+    /**
+     * Generates the variants of all files in the given directory and its subdirectories.
+     *
+     * @param   dir  the directory
+     *
+     * @return  the number of generated variants
+     *
+     * @throws  InterruptedException  if the compressor was stopped
+     */
+    private int compressDirectory(final File dir) throws InterruptedException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        int generated = 0;
+        for (final File file : files) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (file.isDirectory()) {
+                generated += compressDirectory(file);
+            } else if (isTemporary(file)) {
+                if ((System.currentTimeMillis() - file.lastModified()) > TMP_MAX_AGE) {
+                    delete(file);
+                }
+            } else if (isVariant(file)) {
+                final String name = file.getName();
+                final File source = new File(file.getParentFile(),
+                        name.substring(0, name.length() - StaticFileAdapter.ContentCoding.GZIP.getSuffix().length()));
+                if (!source.exists()) {
+                    delete(file);
+                }
+            } else if (hasCompressibleExtension(file.getName())) {
+                try {
+                    if (compress(file)) {
+                        ++generated;
+                    }
+                } catch (final IOException ex) {
+                    LOG.warn("cannot generate gzip variant of " + file, ex); // NOI18N
+                }
+            }
+        }
+
+        return generated;
+    }
+
+    /**
+     * Indicates whether a file of the given name may have a gzip variant.
+     *
+     * @param   name  the file name
+     *
+     * @return  true if the name has a compressible extension
+     */
+    private static boolean hasCompressibleExtension(final String name) {
+        final int dot = name.lastIndexOf('.');
+
+        return (dot >= 0) && COMPRESSIBLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Indicates whether the given file is the gzip variant of a file with a compressible extension.
+     *
+     * @param   file  the file
+     *
+     * @return  true if the file may have been generated by a compressor
+     */
+    private static boolean isVariant(final File file) {
+        final String name = file.getName();
+        final String suffix = StaticFileAdapter.ContentCoding.GZIP.getSuffix();
+
+        return name.endsWith(suffix) && hasCompressibleExtension(name.substring(0, name.length() - suffix.length()));
+    }
+
+    /**
+     * Deletes an outdated variant or a leftover temporary file.
+     *
+     * @param  file  the file to delete
+     */
+    private static void delete(final File file) {
+        if (file.delete()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("deleted outdated file " + file); // NOI18N
+            }
+        } else if (file.exists()) {
+            LOG.warn("cannot delete outdated file " + file); // NOI18N
+        }
+    }
+
+    /**
+     * Generates the gzip variant of the given file if it is missing or outdated. An outdated variant of a file that is
+     * not worth compressing is deleted.
+     *
+     * @param   file  the file
+     *
+     * @return  true if a variant was generated, false otherwise
+     *
+     * @throws  IOException  if the variant cannot be generated
+     */
+    private boolean compress(final File file) throws IOException {
+        final long lastModified = file.lastModified();
+        final File variant = new File(file.getPath() + StaticFileAdapter.ContentCoding.GZIP.getSuffix());
+        if (variant.isFile() && (variant.lastModified() >= lastModified)) {
+            return false;
+        }
+
+        if (file.length() < MIN_FILE_SIZE) {
+            if (variant.isFile()) {
+                delete(variant);
+            }
+
+            return false;
+        }
+
+        final String path = file.getPath();
+        final Long skipped = incompressible.get(path);
+        if ((skipped != null) && (skipped == lastModified)) {
+            return false;
+        }
+
+        // unique, the compressors of other listeners may generate the same variant
+        final File tmp = File.createTempFile(variant.getName() + ".", TMP_SUFFIX, file.getParentFile()); // NOI18N
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                final OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), BUFFER_SIZE) {
+
+                        {
+                            def.setLevel(Deflater.BEST_COMPRESSION);
+                        }
+                    };
+                try {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, read);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ex) {
+            tmp.delete();
+            throw ex;
+        }
+
+        // the file changed while compressing, try again next time
+        if (file.lastModified() != lastModified) {
+            tmp.delete();
+
+            return false;
+        }
+
+        if (tmp.length() >= file.length()) {
+            tmp.delete();
+            if (variant.isFile()) {
+                delete(variant);
+            }
+            incompressible.put(path, lastModified);
+
+            return false;
+        }
+
+        tmp.setLastModified(lastModified);
+        if (!tmp.renameTo(variant)) {
+            // renameTo does not replace existing files on every platform
+            variant.delete();
+            if (!tmp.renameTo(variant)) {
+                tmp.delete();
+                throw new IOException("cannot rename " + tmp + " to " + variant); // NOI18N
+            }
+        }
+        incompressible.remove(path);
+
+        return true;
+    }
+}
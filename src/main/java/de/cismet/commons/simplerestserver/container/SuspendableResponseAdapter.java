@@ -0,0 +1,51 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+/**
+ * Lets the resource methods suspend their response with {@link SuspendedResponse#suspend(long)}. The adapter must run
+ * in the thread of the resource method, thus anywhere between the dispatch to virtual threads and the Jersey adapter.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class SuspendableResponseAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new SuspendableResponseAdapter object.
+     *
+     * @param  delegate  the adapter that processes the requests
+     */
+    SuspendableResponseAdapter(final GrizzlyAdapter delegate) {
+        super(delegate);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        SuspendedResponse.bind(response);
+        try {
+            delegate.service(request, response);
+        } finally {
+            final SuspendedResponse suspended = SuspendedResponse.unbind();
+            if (suspended != null) {
+                suspended.dispatched();
+            }
+        }
+    }
+}
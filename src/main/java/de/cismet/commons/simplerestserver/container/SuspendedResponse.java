@@ -0,0 +1,395 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.CompletionHandler;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import com.sun.jersey.spi.container.ContainerResponse;
+
+import org.apache.log4j.Logger;
+
+import java.nio.charset.Charset;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * A response that is completed after the resource method returned, possibly by another thread. A resource method
+ * suspends the response of the request it processes, hands the returned object to whatever performs the slow operation
+ * and returns at once, the return value of the method is discarded. The worker thread is free for other requests until
+ * the response is resumed:
+ *
+ * <pre>
+ * &#64;GET
+ * public void getStatus() {
+ *     final SuspendedResponse suspended = SuspendedResponse.suspend(30000);
+ *     executor.execute(new Runnable() {
+ *             public void run() {
+ *                 suspended.resume(Response.ok(remote.waitForStatus(), MediaType.TEXT_PLAIN).build());
+ *             }
+ *         });
+ * }
+ * </pre>
+ *
+ * <p>The entity of the resumed response must be a <code>String</code>, which is encoded as UTF-8, a <code>
+ * byte[]</code> or <code>null</code>, it is not serialised by Jersey. Responses that are not resumed in time are
+ * answered with <code>503 Service Unavailable</code>. The server parameter <code>asyncResponses</code> enables the
+ * support. If the requests are dispatched to virtual threads, the virtual thread waits for the response to be resumed
+ * instead, which does not hold a worker thread either.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class SuspendedResponse {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(SuspendedResponse.class);
+
+    private static final int SC_OK = 200;
+    private static final int SC_INTERNAL_SERVER_ERROR = 500;
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); // NOI18N
+
+    private static final ThreadLocal<Binding> BINDING = new ThreadLocal<Binding>();
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient GrizzlyResponse response;
+    // whether this response suspended the grizzly response, otherwise it was suspended by the dispatch to a virtual
+    // thread, which waits for the resumption
+    private final transient boolean owner;
+    private final transient long deadline;
+
+    // guarded by this
+    private transient boolean dispatched;
+    private transient boolean done;
+    private transient Response pending;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new SuspendedResponse object.
+     *
+     * @param  response  the response to complete
+     * @param  owner     whether the response is suspended by this object
+     * @param  timeout   the milliseconds until the response times out
+     */
+    private SuspendedResponse(final GrizzlyResponse response, final boolean owner, final long timeout) {
+        this.response = response;
+        this.owner = owner;
+        this.deadline = System.currentTimeMillis() + timeout;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Suspends the response of the request processed by the current thread. Must be called from within a resource
+     * method.
+     *
+     * @param   timeout  the milliseconds until the response is answered with <code>503</code> if it is not resumed
+     *
+     * @return  the suspended response
+     *
+     * @throws  IllegalArgumentException  if the timeout is not positive
+     * @throws  IllegalStateException     if asynchronous responses are not enabled, the current thread does not process
+     *                                    a request or the response is already suspended
+     */
+    public static SuspendedResponse suspend(final long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout); // NOI18N
+        }
+
+        final Binding binding = BINDING.get();
+        if (binding == null) {
+            throw new IllegalStateException(
+                "asynchronous responses are not enabled or the current thread does not process a request"); // NOI18N
+        } else if (binding.suspended != null) {
+            throw new IllegalStateException("the response is already suspended");                           // NOI18N
+        }
+
+        final boolean owner = !binding.response.isSuspended();
+        final SuspendedResponse suspended = new SuspendedResponse(binding.response, owner, timeout);
+        if (owner) {
+            // the adapters get the raw response, the attachment is the suspended response
+            @SuppressWarnings("unchecked")
+            final GrizzlyResponse<SuspendedResponse> response = binding.response;
+            response.suspend(timeout, suspended, new TimeoutHandler());
+        }
+        binding.suspended = suspended;
+
+        return suspended;
+    }
+
+    /**
+     * Lets resource methods processed by the current thread suspend the given response.
+     *
+     * @param  response  the response of the request processed next
+     */
+    static void bind(final GrizzlyResponse response) {
+        BINDING.set(new Binding(response));
+    }
+
+    /**
+     * Ends the processing of a request by the current thread.
+     *
+     * @return  the response suspended by the resource method or <code>null</code> if it was not suspended
+     */
+    static SuspendedResponse unbind() {
+        final Binding binding = BINDING.get();
+        BINDING.remove();
+
+        return (binding == null) ? null : binding.suspended;
+    }
+
+    /**
+     * Indicates whether the resource method processed by the current thread suspended its response.
+     *
+     * @return  <code>true</code> if the response is suspended
+     */
+    static boolean isSuspendedInCurrentThread() {
+        final Binding binding = BINDING.get();
+
+        return (binding != null) && (binding.suspended != null);
+    }
+
+    /**
+     * Completes the response. May be called from any thread, once.
+     *
+     * @param   resumed  the response to send
+     *
+     * @return  <code>true</code> if the response is sent, <code>false</code> if it was already resumed or has timed out
+     *
+     * @throws  IllegalArgumentException  if the entity is neither a <code>String</code>, a <code>byte[]</code> nor
+     *                                    <code>null</code>
+     */
+    public boolean resume(final Response resumed) {
+        final Object entity = resumed.getEntity();
+        if ((entity != null) && !(entity instanceof String) && !(entity instanceof byte[])) {
+            throw new IllegalArgumentException("unsupported entity: " + entity.getClass()); // NOI18N
+        }
+
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+
+            // the request thread is still in jersey or waits for the resumption
+            if (!dispatched || !owner) {
+                pending = resumed;
+                notifyAll();
+
+                return true;
+            }
+        }
+
+        write(resumed);
+        finish();
+
+        return true;
+    }
+
+    /**
+     * Indicates whether the response is resumed or timed out.
+     *
+     * @return  <code>true</code> if the response is completed
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Called by the request thread once Jersey has returned. Sends a response that was resumed in the meantime, if the
+     * response was suspended by the dispatch to a virtual thread it waits for the resumption.
+     */
+    void dispatched() {
+        final boolean failed = response.getStatus() >= SC_INTERNAL_SERVER_ERROR;
+        final Response resumed;
+        boolean timedOut = false;
+        synchronized (this) {
+            dispatched = true;
+            if (failed && !done) {
+                // the resource method failed after suspending, its error response is sent as it is
+                done = true;
+                resumed = null;
+            } else {
+                if (!owner) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    try {
+                        while (!done && (remaining > 0)) {
+                            wait(remaining);
+                            remaining = deadline - System.currentTimeMillis();
+                        }
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (!done) {
+                        done = true;
+                        timedOut = true;
+                    }
+                }
+                resumed = pending;
+                pending = null;
+            }
+        }
+
+        if (timedOut) {
+            writeTimeout();
+        } else if (resumed != null) {
+            write(resumed);
+        }
+        if (owner && (failed || (resumed != null))) {
+            finish();
+        }
+    }
+
+    /**
+     * Lets grizzly finish the response, unless it was already finished because of an error.
+     */
+    private void finish() {
+        try {
+            response.resume();
+        } catch (final IllegalStateException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("response already finished", e); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * Answers a response that timed out or whose client went away, grizzly finishes it afterwards.
+     */
+    private void cancelled() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+        }
+
+        writeTimeout();
+    }
+
+    /**
+     * Discards the status, the headers and the buffered body Jersey left in the response.
+     * {@link GrizzlyResponse#reset()} cannot be used, it resets the suspension, too.
+     */
+    private void clear() {
+        response.resetBuffer();
+        response.setStatus(SC_OK);
+        response.getResponse().getMimeHeaders().clear();
+        response.getResponse().setContentType(null);
+        response.getResponse().setContentLengthLong(-1);
+    }
+
+    /**
+     * Replaces whatever Jersey left in the response with the resumed response.
+     *
+     * @param  resumed  the resumed response
+     */
+    private void write(final Response resumed) {
+        try {
+            clear();
+            response.setStatus(resumed.getStatus());
+            for (final Map.Entry<String, List<Object>> header : resumed.getMetadata().entrySet()) {
+                for (final Object value : header.getValue()) {
+                    response.addHeader(header.getKey(), ContainerResponse.getHeaderValue(value));
+                }
+            }
+
+            final Object entity = resumed.getEntity();
+            final byte[] body;
+            if (entity == null) {
+                body = new byte[0];
+            } else if (entity instanceof String) {
+                body = ((String)entity).getBytes(UTF_8);
+            } else {
+                body = (byte[])entity;
+            }
+            response.setContentLength(body.length);
+            if (body.length > 0) {
+                response.getOutputStream().write(body);
+            }
+        } catch (final Exception e) {
+            LOG.warn("cannot write resumed response", e); // NOI18N
+        }
+    }
+
+    /**
+     * Replaces whatever Jersey left in the response with a <code>503</code>.
+     */
+    private void writeTimeout() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("suspended response timed out"); // NOI18N
+        }
+        try {
+            clear();
+            response.setStatus(SC_SERVICE_UNAVAILABLE);
+            response.setContentLength(0);
+        } catch (final Exception e) {
+            LOG.warn("cannot write timeout of suspended response", e); // NOI18N
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * The response of the request processed by a thread.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Binding {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final GrizzlyResponse response;
+        private SuspendedResponse suspended;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Binding object.
+         *
+         * @param  response  the response
+         */
+        Binding(final GrizzlyResponse response) {
+            this.response = response;
+        }
+    }
+
+    /**
+     * Receives the timeout of a response suspended by grizzly, which is reported as cancellation. A closed connection
+     * is reported the same way.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class TimeoutHandler implements CompletionHandler<SuspendedResponse> {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void resumed(final SuspendedResponse suspended) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void cancelled(final SuspendedResponse suspended) {
+            suspended.cancelled();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Discards the response Jersey creates from the return value of a resource method that suspended its response, so that
+ * nothing is committed before the {@link SuspendedResponse} is resumed. The factory is registered using the Jersey
+ * init parameter <code>com.sun.jersey.spi.container.ResourceFilters</code>, the container does that automatically if
+ * asynchronous responses are enabled.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class SuspendedResponseFilterFactory implements ResourceFilterFactory {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final ResourceFilter FILTER = new DiscardingFilter();
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ResourceFilter> create(final AbstractMethod am) {
+        return Collections.singletonList(FILTER);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Replaces the writer of responses that are suspended.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class DiscardingFilter implements ResourceFilter, ContainerResponseFilter {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerRequestFilter getRequestFilter() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerResponseFilter getResponseFilter() {
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+            if (SuspendedResponse.isSuspendedInCurrentThread()) {
+                response.setContainerResponseWriter(new DiscardingWriter(response.getContainerResponseWriter()));
+            }
+
+            return response;
+        }
+    }
+
+    /**
+     * Passes the status and headers to the original writer, which expects them, but discards the body. Neither commits
+     * the response.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class DiscardingWriter implements ContainerResponseWriter {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final ContainerResponseWriter writer;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new DiscardingWriter object.
+         *
+         * @param  writer  the original writer
+         */
+        DiscardingWriter(final ContainerResponseWriter writer) {
+            this.writer = writer;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream writeStatusAndHeaders(final long contentLength, final ContainerResponse response)
+                throws IOException {
+            writer.writeStatusAndHeaders(contentLength, response);
+
+            return new OutputStream() {
+
+                    @Override
+                    public void write(final int b) {
+                    }
+
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) {
+                    }
+                };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finish() throws IOException {
+            writer.finish();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Token buckets of arbitrary many keys, e.g. clients. Every key may take up to <code>burst</code> tokens at once, the
+ * tokens are refilled continuously at <code>rate</code> tokens per second. The buckets are spread over
+ * {@link #STRIPES} stripes, each guarded by its own lock, so concurrent requests of different keys rarely contend.
+ * Every stripe is an access ordered map of bounded size. If it is full, the least recently used bucket that has
+ * refilled to <code>burst</code> is evicted, it is indistinguishable from a new one. If none of the least recently
+ * used buckets has refilled, the new key shares the overflow bucket of the stripe with all other keys that found no
+ * room, so rotating keys cannot escape their limit and the memory stays bounded. Keys are only affected by the
+ * overflow bucket if the bound is smaller than the number of keys active at the same time.
+ *
+ * <p>Listeners with the same limits share their buckets, a client must not get a multiple of its rate because the
+ * process listens on several ports or uses several listeners sharing a port.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class TokenBuckets {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_MAX_KEYS = 100000;
+
+    static final int STRIPES = 64;
+
+    private static final String SOURCE_NAME = "rateLimit"; // NOI18N
+
+    private static final double NANOS_PER_SECOND = 1000000000d;
+
+    // least recently used buckets checked for eviction when a stripe is full
+    private static final int EVICTION_SCAN = 8;
+
+    // keyed by rate, burst and maximum number of keys
+    private static final ConcurrentMap<String, TokenBuckets> SHARED = new ConcurrentHashMap<String, TokenBuckets>();
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient int rate;
+    private final transient int burst;
+    private final transient double tokensPerNano;
+    private final transient Stripe[] stripes;
+
+    private final transient AtomicLong allowed;
+    private final transient AtomicLong rejected;
+    private final transient AtomicLong evicted;
+    private final transient AtomicLong overflowed;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new TokenBuckets object.
+     *
+     * @param  rate     the tokens per second
+     * @param  burst    the capacity of a bucket
+     * @param  maxKeys  the maximum number of buckets
+     */
+    private TokenBuckets(final int rate, final int burst, final int maxKeys) {
+        this.rate = rate;
+        this.burst = burst;
+        this.tokensPerNano = rate / NANOS_PER_SECOND;
+        this.allowed = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.evicted = new AtomicLong();
+        this.overflowed = new AtomicLong();
+
+        final int maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new Stripe(maxKeysPerStripe);
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the buckets shared by all listeners with the given limits.
+     *
+     * @param   rate     the tokens per second
+     * @param   burst    the capacity of a bucket
+     * @param   maxKeys  the maximum number of buckets
+     *
+     * @return  the shared buckets
+     *
+     * @throws  IllegalArgumentException  if an argument is not positive
+     */
+    static TokenBuckets getShared(final int rate, final int burst, final int maxKeys) {
+        if ((rate < 1) || (burst < 1) || (maxKeys < 1)) {
+            throw new IllegalArgumentException("illegal rate limit: " + rate + ", " + burst + ", " + maxKeys); // NOI18N
+        }
+
+        final String name = rate + "/" + burst + "/" + maxKeys; // NOI18N
+        TokenBuckets buckets = SHARED.get(name);
+        if (buckets == null) {
+            final TokenBuckets created = new TokenBuckets(rate, burst, maxKeys);
+            buckets = SHARED.putIfAbsent(name, created);
+            if (buckets == null) {
+                buckets = created;
+                MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+            }
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Takes a token from the bucket of the given key.
+     *
+     * @param   key  the key
+     *
+     * @return  <code>0</code> if a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    long tryAcquire(final String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        final Stripe stripe = stripes[hash & (STRIPES - 1)];
+
+        final long now = System.nanoTime();
+        final long wait;
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = stripe.admit(key, now);
+            }
+            bucket.tokens = refill(bucket, now);
+            bucket.updated = now;
+
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                wait = 0;
+            } else {
+                wait = (long)Math.ceil((1 - bucket.tokens) / tokensPerNano);
+            }
+        }
+
+        if (wait == 0) {
+            allowed.incrementAndGet();
+        } else {
+            rejected.incrementAndGet();
+        }
+
+        return wait;
+    }
+
+    /**
+     * Computes the tokens of a bucket at the given time.
+     *
+     * @param   bucket  the bucket
+     * @param   now     the time in nanoseconds
+     *
+     * @return  the tokens, at most <code>burst</code>
+     */
+    private double refill(final Bucket bucket, final long now) {
+        return Math.min(burst, bucket.tokens + ((now - bucket.updated) * tokensPerNano));
+    }
+
+    /**
+     * Getter for the number of buckets.
+     *
+     * @return  the number of buckets
+     */
+    int size() {
+        int size = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Getter for the tokens per second.
+     *
+     * @return  the rate
+     */
+    int getRate() {
+        return rate;
+    }
+
+    /**
+     * Getter for the capacity of a bucket.
+     *
+     * @return  the burst
+     */
+    int getBurst() {
+        return burst;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * The state of a single bucket, guarded by the lock of its stripe.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Bucket {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private double tokens;
+        private long updated;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Bucket object.
+         *
+         * @param  tokens   the initial tokens
+         * @param  updated  the time of the last refill in nanoseconds
+         */
+        Bucket(final double tokens, final long updated) {
+            this.tokens = tokens;
+            this.updated = updated;
+        }
+    }
+
+    /**
+     * A stripe of buckets, least recently used buckets are evicted first once they have refilled.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Stripe extends LinkedHashMap<String, Bucket> {
+
+        //~ Static fields/initializers -----------------------------------------
+
+        private static final long serialVersionUID = 1L;
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final int maxSize;
+        private final Bucket overflow;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Stripe object.
+         *
+         * @param  maxSize  the maximum number of buckets of the stripe
+         */
+        Stripe(final int maxSize) {
+            super(16, 0.75f, true);
+
+            this.maxSize = maxSize;
+            this.overflow = new Bucket(burst, System.nanoTime());
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Creates the bucket of a new key. If the stripe is full, a refilled bucket is evicted to make room, if there
+         * is none, the key gets the overflow bucket.
+         *
+         * @param   key  the new key
+         * @param   now  the time in nanoseconds
+         *
+         * @return  the bucket of the key
+         */
+        Bucket admit(final String key, final long now) {
+            if ((size() >= maxSize) && !evictRefilled(now)) {
+                overflowed.incrementAndGet();
+
+                return overflow;
+            }
+
+            final Bucket bucket = new Bucket(burst, now);
+            put(key, bucket);
+
+            return bucket;
+        }
+
+        /**
+         * Evicts the least recently used bucket that has refilled to <code>burst</code>. Only the
+         * {@link #EVICTION_SCAN} least recently used buckets are checked.
+         *
+         * @param   now  the time in nanoseconds
+         *
+         * @return  <code>true</code> if a bucket was evicted
+         */
+        private boolean evictRefilled(final long now) {
+            final Iterator<Bucket> buckets = values().iterator();
+            for (int i = 0; (i < EVICTION_SCAN) && buckets.hasNext(); ++i) {
+                if (refill(buckets.next(), now) >= burst) {
+                    buckets.remove();
+                    evicted.incrementAndGet();
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Publishes the counters of all shared buckets, labeled with their limits.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            writer.family(
+                "rate_limit_allowed_total", // NOI18N
+                MetricsWriter.TYPE_COUNTER,
+                "Requests within the rate limit"); // NOI18N
+            for (final TokenBuckets buckets : SHARED.values()) {
+                writer.sample("rate_limit_allowed_total", labels(buckets), buckets.allowed.get()); // NOI18N
+            }
+
+            writer.family(
+                "rate_limit_rejected_total", // NOI18N
+                MetricsWriter.TYPE_COUNTER,
+                "Requests rejected with 429 because the rate limit was exceeded"); // NOI18N
+            for (final TokenBuckets buckets : SHARED.values()) {
+                writer.sample("rate_limit_rejected_total", labels(buckets), buckets.rejected.get()); // NOI18N
+            }
+
+            writer.family("rate_limit_keys", MetricsWriter.TYPE_GAUGE, "Keys with a token bucket"); // NOI18N
+            for (final TokenBuckets buckets : SHARED.values()) {
+                writer.sample("rate_limit_keys", labels(buckets), buckets.size()); // NOI18N
+            }
+
+            writer.family(
+                "rate_limit_evictions_total", // NOI18N
+                MetricsWriter.TYPE_COUNTER,
+                "Refilled buckets evicted because the maximum number of keys was reached"); // NOI18N
+            for (final TokenBuckets buckets : SHARED.values()) {
+                writer.sample("rate_limit_evictions_total", labels(buckets), buckets.evicted.get()); // NOI18N
+            }
+
+            writer.family(
+                "rate_limit_overflow_total", // NOI18N
+                MetricsWriter.TYPE_COUNTER,
+                "New keys that shared the overflow bucket because no bucket could be evicted"); // NOI18N
+            for (final TokenBuckets buckets : SHARED.values()) {
+                writer.sample("rate_limit_overflow_total", labels(buckets), buckets.overflowed.get()); // NOI18N
+            }
+        }
+
+        /**
+         * Creates the labels of shared buckets.
+         *
+         * @param   buckets  the buckets
+         *
+         * @return  the labels
+         */
+        private static String[] labels(final TokenBuckets buckets) {
+            final String rate = String.valueOf(buckets.getRate());
+            final String burst = String.valueOf(buckets.getBurst());
+
+            return new String[] { "rate", rate, "burst", burst }; // NOI18N
+        }
+    }
+}
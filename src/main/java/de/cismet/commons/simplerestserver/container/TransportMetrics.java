@@ -0,0 +1,240 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import de.cismet.commons.simplerestserver.metrics.LatencyHistogram;
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Publishes the {@link ListenerMetrics} of all running listeners, labeled with the listener, through the
+ * {@link MetricsRegistry} and optionally as MBeans named
+ * <code>de.cismet.commons.simplerestserver:type=Listener,name=&lt;listener&gt;</code>.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class TransportMetrics implements MetricsSource {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(TransportMetrics.class);
+
+    private static final String SOURCE_NAME = "transport";                         // NOI18N
+    private static final String JMX_DOMAIN = "de.cismet.commons.simplerestserver"; // NOI18N
+
+    private static final TransportMetrics INSTANCE = new TransportMetrics();
+
+    //~ Instance fields --------------------------------------------------------
+
+    // sorted to get a stable output
+    private final transient Map<String, ListenerMetrics> listeners;
+    private final transient Map<String, ObjectName> mbeans;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new TransportMetrics object.
+     */
+    private TransportMetrics() {
+        listeners = new ConcurrentSkipListMap<String, ListenerMetrics>();
+        mbeans = new ConcurrentSkipListMap<String, ObjectName>();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the transport metrics of this JVM.
+     *
+     * @return  the transport metrics
+     */
+    static TransportMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publishes the metrics of a listener. Listeners sharing a port get the suffix <code>#2</code>, <code>#3</code>
+     * and so on.
+     *
+     * @param   listener  the address of the listener, e.g. <code>0.0.0.0:8080</code>
+     * @param   metrics   the metrics of the listener
+     * @param   jmx       whether the metrics shall be registered as MBean, too
+     *
+     * @return  the unique name the metrics are published with
+     */
+    synchronized String add(final String listener, final ListenerMetrics metrics, final boolean jmx) {
+        String name = listener;
+        for (int i = 2; listeners.containsKey(name); ++i) {
+            name = listener + '#' + i;
+        }
+        listeners.put(name, metrics);
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, this);
+
+        if (jmx) {
+            try {
+                final ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Listener,name=" // NOI18N
+                                + ObjectName.quote(name));
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(new StandardMBean(metrics, ListenerMetricsMBean.class), objectName);
+                mbeans.put(name, objectName);
+            } catch (final JMException ex) {
+                LOG.warn("cannot register transport metrics of listener " + name + " as MBean", ex); // NOI18N
+            }
+        }
+
+        return name;
+    }
+
+    /**
+     * Withdraws the metrics of a listener.
+     *
+     * @param  name  the name returned by {@link #add(String, ListenerMetrics, boolean)}
+     */
+    synchronized void remove(final String name) {
+        listeners.remove(name);
+
+        final ObjectName objectName = mbeans.remove(name);
+        if (objectName != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (final JMException ex) {
+                LOG.warn("cannot unregister MBean " + objectName, ex); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        final List<String[]> labels = new ArrayList<String[]>(listeners.size());
+        final List<ListenerMetrics> all = new ArrayList<ListenerMetrics>(listeners.size());
+        for (final Map.Entry<String, ListenerMetrics> entry : listeners.entrySet()) {
+            labels.add(new String[] { "listener", entry.getKey() }); // NOI18N
+            all.add(entry.getValue());
+        }
+        if (all.isEmpty()) {
+            return;
+        }
+
+        final int count = all.size();
+        final long[] open = new long[count];
+        final long[] accepted = new long[count];
+        final long[] requests = new long[count];
+        final double[] reuse = new double[count];
+        final long[] timeouts = new long[count];
+        final long[] received = new long[count];
+        final long[] sent = new long[count];
+        final long[] threads = new long[count];
+        final long[] busy = new long[count];
+        final long[] queued = new long[count];
+        final long[] rejected = new long[count];
+        for (int i = 0; i < count; ++i) {
+            final ListenerMetrics metrics = all.get(i);
+            open[i] = metrics.getOpenConnections();
+            accepted[i] = metrics.getAcceptedConnections();
+            requests[i] = metrics.getRequests();
+            reuse[i] = metrics.getKeepAliveReuseRatio();
+            timeouts[i] = metrics.getKeepAliveTimeouts();
+            received[i] = metrics.getBytesReceived();
+            sent[i] = metrics.getBytesSent();
+            threads[i] = metrics.getWorkerThreads();
+            busy[i] = metrics.getBusyWorkerThreads();
+            queued[i] = metrics.getWorkerQueueDepth();
+            rejected[i] = metrics.getRejectedTasks();
+        }
+
+        writeFamily(writer, "transport_connections_open", MetricsWriter.TYPE_GAUGE,                          // NOI18N
+            "Open connections", labels, open);                                                               // NOI18N
+        writeFamily(writer, "transport_connections_accepted_total", MetricsWriter.TYPE_COUNTER,              // NOI18N
+            "Accepted connections", labels, accepted);                                                       // NOI18N
+        writeFamily(writer, "transport_requests_total", MetricsWriter.TYPE_COUNTER,                          // NOI18N
+            "Requests parsed by the listener, including those not handled by a resource", labels, requests); // NOI18N
+
+        writer.family(
+            "transport_keepalive_reuse_ratio",                                                               // NOI18N
+            MetricsWriter.TYPE_GAUGE,
+            "Share of requests served on a connection used before");                                         // NOI18N
+        for (int i = 0; i < count; ++i) {
+            writer.sample("transport_keepalive_reuse_ratio", labels.get(i), reuse[i]);                       // NOI18N
+        }
+
+        writeFamily(writer, "transport_keepalive_timeouts_total", MetricsWriter.TYPE_COUNTER,                // NOI18N
+            "Connections closed after the keep-alive timeout", labels, timeouts);                            // NOI18N
+        writeFamily(writer, "transport_received_bytes_total", MetricsWriter.TYPE_COUNTER,                    // NOI18N
+            "Request body bytes received", labels, received);                                                // NOI18N
+        writeFamily(writer, "transport_sent_bytes_total", MetricsWriter.TYPE_COUNTER,                        // NOI18N
+            "Response bytes sent", labels, sent);                                                            // NOI18N
+        writeFamily(writer, "transport_worker_threads", MetricsWriter.TYPE_GAUGE,                            // NOI18N
+            "Worker threads", labels, threads);                                                              // NOI18N
+        writeFamily(writer, "transport_worker_threads_busy", MetricsWriter.TYPE_GAUGE,                       // NOI18N
+            "Worker threads executing a task", labels, busy);                                                // NOI18N
+        writeFamily(writer, "transport_worker_queue_depth", MetricsWriter.TYPE_GAUGE,                        // NOI18N
+            "Tasks waiting for a worker thread", labels, queued);                                            // NOI18N
+        writeFamily(writer, "transport_worker_rejected_tasks_total", MetricsWriter.TYPE_COUNTER,             // NOI18N
+            "Tasks rejected because the worker queue was full", labels, rejected);                           // NOI18N
+
+        writer.family(
+            "transport_worker_queue_wait_seconds",                                                           // NOI18N
+            MetricsWriter.TYPE_SUMMARY,
+            "Time tasks waited for a worker thread");                                                        // NOI18N
+        for (int i = 0; i < count; ++i) {
+            final LatencyHistogram.Snapshot snapshot = all.get(i).getWorkerQueueWait().snapshot();
+            writer.summary("transport_worker_queue_wait_seconds", labels.get(i), snapshot);                  // NOI18N
+        }
+
+        writer.family(
+            "transport_selector_lag_seconds",                                                                // NOI18N
+            MetricsWriter.TYPE_SUMMARY,
+            "Time the selector thread needed to pick up a posted task");                                     // NOI18N
+        for (int i = 0; i < count; ++i) {
+            final LatencyHistogram.Snapshot snapshot = all.get(i).getSelectorLag().snapshot();
+            writer.summary("transport_selector_lag_seconds", labels.get(i), snapshot);                       // NOI18N
+        }
+    }
+
+    /**
+     * Writes a metric family with one sample per listener.
+     *
+     * @param  writer  the writer to use
+     * @param  name    the name of the family
+     * @param  type    the type of the family
+     * @param  help    the description of the family
+     * @param  labels  the labels of the listeners
+     * @param  values  the values of the listeners
+     */
+    private static void writeFamily(
+            final MetricsWriter writer,
+            final String name,
+            final String type,
+            final String help,
+            final List<String[]> labels,
+            final long[] values) {
+        writer.family(name, type, help);
+        for (int i = 0; i < values.length; ++i) {
+            writer.sample(name, labels.get(i), values[i]);
+        }
+    }
+}
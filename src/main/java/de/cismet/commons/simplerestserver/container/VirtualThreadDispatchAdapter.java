@@ -0,0 +1,158 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.http11.GrizzlyAdapter;
+import com.sun.grizzly.tcp.http11.GrizzlyRequest;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes requests in a virtual thread instead of the Grizzly worker thread. The response is suspended while the
+ * delegate is processing the request, so the worker thread returns to the pool immediately. The number of requests in
+ * progress is limited by a semaphore, a request that finds no permit is rejected at once with <code>503 Service
+ * Unavailable</code>. Waiting for a permit would block the worker thread, and with it the worker pool would limit the
+ * concurrency again.<br/>
+ * <br/>
+ * The request body is read through the buffer of the Grizzly worker thread, thus requests that carry a body are still
+ * processed in the worker thread.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class VirtualThreadDispatchAdapter extends DelegatingGrizzlyAdapter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(VirtualThreadDispatchAdapter.class);
+
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+    private static final int SC_INTERNAL_SERVER_ERROR = 500;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient ExecutorService executor;
+    private final transient Semaphore permits;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new VirtualThreadDispatchAdapter object.
+     *
+     * @param  delegate        the adapter that processes the requests
+     * @param  executor        the executor that provides the virtual threads
+     * @param  maxConcurrency  the maximum number of requests processed at the same time
+     */
+    VirtualThreadDispatchAdapter(
+            final GrizzlyAdapter delegate,
+            final ExecutorService executor,
+            final int maxConcurrency) {
+        super(delegate);
+
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void service(final GrizzlyRequest request, final GrizzlyResponse response) throws Exception {
+        if (!permits.tryAcquire()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("no permit available, rejecting request: " + request.getRequestURI()); // NOI18N
+            }
+            response.setHeader("Retry-After", "1"); // NOI18N
+            response.sendError(SC_SERVICE_UNAVAILABLE);
+
+            return;
+        }
+
+        if (hasBody(request)) {
+            try {
+                delegate.service(request, response);
+            } finally {
+                permits.release();
+            }
+
+            return;
+        }
+
+        // the queue wait of the worker thread is only known in the worker thread
+        RequestArrival.get(request);
+        response.suspend();
+        try {
+            executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            delegate.service(request, response);
+                        } catch (final Exception ex) {
+                            LOG.error("error while processing request: " + request.getRequestURI(), ex); // NOI18N
+                            sendError(response, SC_INTERNAL_SERVER_ERROR);
+                        } finally {
+                            permits.release();
+                            response.resume();
+                        }
+                    }
+                });
+        } catch (final RejectedExecutionException ex) {
+            LOG.warn("dispatch rejected, executor shut down: " + request.getRequestURI(), ex); // NOI18N
+            permits.release();
+            sendError(response, SC_SERVICE_UNAVAILABLE);
+            response.resume();
+        }
+    }
+
+    /**
+     * Indicates whether the request carries a body.
+     *
+     * @param   request  the request
+     *
+     * @return  true if the request has a content length greater than zero or uses a transfer encoding
+     */
+    private static boolean hasBody(final GrizzlyRequest request) {
+        return (request.getContentLength() > 0) || (request.getHeader("Transfer-Encoding") != null); // NOI18N
+    }
+
+    /**
+     * Sends an error if the response is not committed yet.
+     *
+     * @param  response  the response
+     * @param  status    the error status
+     */
+    private static void sendError(final GrizzlyResponse response, final int status) {
+        if (!response.isCommitted()) {
+            try {
+                response.sendError(status);
+            } catch (final Exception e) {
+                LOG.warn("cannot send error status " + status, e); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        try {
+            executor.shutdown();
+        } finally {
+            super.destroy();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import java.lang.reflect.Method;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that start a new virtual thread per task. Virtual threads are only available on Java 21 and later,
+ * they are looked up reflectively so that the server still runs on older runtimes. There is no fallback to platform
+ * threads, a thread per request would exhaust the runtime long before the concurrency caps are reached.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class VirtualThreadExecutors {
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new VirtualThreadExecutors object.
+     */
+    private VirtualThreadExecutors() {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Indicates whether the runtime supports virtual threads.
+     *
+     * @return  true if virtual threads are available, false otherwise
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getFactoryMethod() != null;
+    }
+
+    /**
+     * Creates an executor that runs every task in a new virtual thread.
+     *
+     * @return  a new executor, never <code>null</code>
+     *
+     * @throws  UnsupportedOperationException  if the runtime does not support virtual threads
+     * @throws  IllegalStateException          if the executor cannot be created
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        final Method factoryMethod = getFactoryMethod();
+        if (factoryMethod == null) {
+            throw new UnsupportedOperationException("virtual threads are not supported by this runtime, " // NOI18N
+                        + "Java 21 or later is required: " + System.getProperty("java.version")); // NOI18N
+        }
+
+        try {
+            return (ExecutorService)factoryMethod.invoke(null);
+        } catch (final Exception ex) {
+            throw new IllegalStateException("cannot create virtual thread executor", ex); // NOI18N
+        }
+    }
+
+    /**
+     * Looks up <code>Executors.newVirtualThreadPerTaskExecutor()</code>.
+     *
+     * @return  the factory method or <code>null</code> if it is not available
+     */
+    private static Method getFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); // NOI18N
+        } catch (final NoSuchMethodException ex) {
+            return null;
+        }
+    }
+}
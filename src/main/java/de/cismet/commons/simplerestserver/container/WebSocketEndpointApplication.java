@@ -0,0 +1,763 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.container;
+
+import com.sun.grizzly.tcp.ActionCode;
+import com.sun.grizzly.tcp.Request;
+import com.sun.grizzly.websockets.DataFrame;
+import com.sun.grizzly.websockets.DefaultWebSocket;
+import com.sun.grizzly.websockets.ProtocolHandler;
+import com.sun.grizzly.websockets.WebSocket;
+import com.sun.grizzly.websockets.WebSocketApplication;
+import com.sun.grizzly.websockets.WebSocketListener;
+import com.sun.grizzly.websockets.draft06.ClosingFrame;
+import com.sun.grizzly.websockets.frametypes.BinaryFrameType;
+import com.sun.grizzly.websockets.frametypes.PongFrameType;
+import com.sun.grizzly.websockets.frametypes.TextFrameType;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+import de.cismet.commons.simplerestserver.websocket.WebSocketEndpoint;
+import de.cismet.commons.simplerestserver.websocket.WebSocketSession;
+
+/**
+ * Connects the {@link WebSocketEndpoint}s of a listener to the grizzly WebSocket engine. The engine is shared by all
+ * listeners of the JVM and offers every upgrade request to all registered applications, so the application only
+ * accepts requests to its own port. The upgrade is handled before the adapter chain, thus WebSocket requests bypass the
+ * rate limit and the admission control.<br/>
+ * <br/>
+ * The frames are written to the non-blocking channel directly instead of by grizzly, whose writes block until the
+ * client has taken them. A write the socket buffer cannot take completely is retried by a writer thread shortly after,
+ * so a client that stops reading never blocks the sending thread. A client that takes nothing of a pending write
+ * within the write timeout is disconnected.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class WebSocketEndpointApplication extends WebSocketApplication {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(WebSocketEndpointApplication.class);
+
+    public static final long DEFAULT_MAX_PENDING_BYTES = 1024L * 1024;
+    public static final long DEFAULT_WRITE_TIMEOUT = 5000;
+
+    // ms between two attempts to complete a pending write
+    private static final long RETRY_DELAY = 20;
+
+    private static final String SOURCE_NAME = "websocket"; // NOI18N
+
+    private static final AtomicLong CONNECTIONS = new AtomicLong();
+    private static final AtomicLong RECEIVED = new AtomicLong();
+    private static final AtomicLong SENT = new AtomicLong();
+    private static final AtomicLong REFUSED = new AtomicLong();
+    private static final AtomicLong SLOW_DISCONNECTS = new AtomicLong();
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient int port;
+    private final transient String contextPath;
+    // absolute path -> endpoint
+    private final transient Map<String, WebSocketEndpoint> endpoints;
+    private final transient long maxPendingBytes;
+    private final transient long writeTimeoutNanos;
+    private final transient ScheduledExecutorService writers;
+    private final transient ConcurrentMap<WebSocket, Connection> connections;
+    // the channel of the request being upgraded by the current thread
+    private final transient ThreadLocal<SocketChannel> upgrading;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new WebSocketEndpointApplication object.
+     *
+     * @param  port             the port of the listener
+     * @param  contextPath      the context path the endpoint paths are relative to
+     * @param  endpoints        the endpoints by their path relative to the context path
+     * @param  maxPendingBytes  the maximum size of the queued messages per connection
+     * @param  writeTimeout     the milliseconds a client may take to accept a part of a pending write
+     */
+    WebSocketEndpointApplication(final int port,
+            final String contextPath,
+            final Map<String, WebSocketEndpoint> endpoints,
+            final long maxPendingBytes,
+            final long writeTimeout) {
+        this.port = port;
+        this.contextPath = contextPath.endsWith("/") ? contextPath.substring(0, contextPath.length() - 1) // NOI18N
+                                                     : contextPath;
+        this.endpoints = new ConcurrentHashMap<String, WebSocketEndpoint>();
+        for (final Map.Entry<String, WebSocketEndpoint> entry : endpoints.entrySet()) {
+            final String path = entry.getKey().startsWith("/") ? entry.getKey() : ("/" + entry.getKey()); // NOI18N
+            this.endpoints.put(this.contextPath + path, entry.getValue());
+        }
+        this.maxPendingBytes = maxPendingBytes;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+        this.connections = new ConcurrentHashMap<WebSocket, Connection>();
+        this.upgrading = new ThreadLocal<SocketChannel>();
+        this.writers = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "websocket-writer-" + port); // NOI18N
+                        t.setDaemon(true);
+
+                        return t;
+                    }
+                });
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isApplicationRequest(final Request request) {
+        if (!endpoints.containsKey(request.requestURI().toString())) {
+            return false;
+        }
+
+        // the local port is only determined on demand
+        request.action(ActionCode.ACTION_REQ_LOCALPORT_ATTRIBUTE, request);
+        if (request.getLocalPort() != port) {
+            return false;
+        }
+
+        // the engine creates the websocket of an accepted request in the same thread
+        upgrading.set(request.getResponse().getChannel());
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WebSocket createWebSocket(final ProtocolHandler handler, final WebSocketListener... listeners) {
+        final SocketChannel channel = upgrading.get();
+        upgrading.remove();
+
+        return (channel == null) ? super.createWebSocket(handler, listeners)
+                                 : new EndpointWebSocket(handler, channel, listeners);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onConnect(final WebSocket socket) {
+        super.onConnect(socket);
+
+        final String path;
+        try {
+            path = ((DefaultWebSocket)socket).getRequest().getRequestURI();
+        } catch (final Exception e) {
+            LOG.warn("cannot determine the path of a websocket, closing it", e); // NOI18N
+            socket.close(WebSocket.PROTOCOL_ERROR);
+
+            return;
+        }
+
+        final WebSocketEndpoint endpoint = endpoints.get(path);
+        if ((endpoint == null) || !(socket instanceof EndpointWebSocket)) {
+            socket.close(WebSocket.PROTOCOL_ERROR);
+
+            return;
+        }
+
+        final Connection connection = new Connection((EndpointWebSocket)socket,
+                endpoint,
+                path.substring(contextPath.length()));
+        ((EndpointWebSocket)socket).connection = connection;
+        connections.put(socket, connection);
+        CONNECTIONS.incrementAndGet();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("websocket opened :: path=" + path); // NOI18N
+        }
+        try {
+            endpoint.onOpen(connection);
+        } catch (final RuntimeException e) {
+            LOG.warn("websocket endpoint failed to open a session, closing it :: path=" + path, e); // NOI18N
+            connection.close(WebSocket.END_POINT_GOING_DOWN, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMessage(final WebSocket socket, final String text) {
+        final Connection connection = connections.get(socket);
+        if (connection != null) {
+            RECEIVED.incrementAndGet();
+            try {
+                connection.endpoint.onText(connection, text);
+            } catch (final RuntimeException e) {
+                LOG.warn("websocket endpoint failed on a text message :: path=" + connection.path, e); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMessage(final WebSocket socket, final byte[] data) {
+        final Connection connection = connections.get(socket);
+        if (connection != null) {
+            RECEIVED.incrementAndGet();
+            try {
+                connection.endpoint.onBinary(connection, data);
+            } catch (final RuntimeException e) {
+                LOG.warn("websocket endpoint failed on a binary message :: path=" + connection.path, e); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClose(final WebSocket socket, final DataFrame frame) {
+        remove(socket);
+
+        // the close frame of the client is answered by the connection, grizzly reports the closed socket afterwards
+        final Connection connection = connections.get(socket);
+        if (connection != null) {
+            connection.closed();
+        }
+    }
+
+    /**
+     * Closes all connections, the pending messages are written first as far as the clients take them at once.
+     */
+    void closeAll() {
+        for (final Connection connection : connections.values()) {
+            connection.close(WebSocket.END_POINT_GOING_DOWN, null);
+            connection.closed();
+        }
+        writers.shutdown();
+    }
+
+    /**
+     * Returns the size of a message that counts towards the pending bytes of a connection.
+     *
+     * @param   message  the queued message
+     *
+     * @return  the length of a text or binary message, <code>0</code> for control frames
+     */
+    private static int sizeOf(final Object message) {
+        if (message instanceof String) {
+            return ((String)message).length();
+        } else if (message instanceof byte[]) {
+            return ((byte[])message).length;
+        } else {
+            return 0;
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * The close frame, queued after the pending messages.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Close {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final int code;
+        private final String reason;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Close object.
+         *
+         * @param  code    the status code
+         * @param  reason  the reason or <code>null</code>
+         */
+        Close(final int code, final String reason) {
+            this.code = code;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * A grizzly websocket whose frames are written by its {@link Connection}. Pongs and the answer to the close frame
+     * of the client are queued behind the pending messages instead of written by grizzly.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class EndpointWebSocket extends DefaultWebSocket {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final SocketChannel channel;
+        private volatile Connection connection;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new EndpointWebSocket object.
+         *
+         * @param  handler    the protocol handler of the websocket version of the client
+         * @param  channel    the channel of the connection
+         * @param  listeners  the listeners of the websocket
+         */
+        EndpointWebSocket(final ProtocolHandler handler,
+                final SocketChannel channel,
+                final WebSocketListener... listeners) {
+            super(handler, listeners);
+
+            this.channel = channel;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Encodes a frame for the websocket version of the client.
+         *
+         * @param   frame  the frame
+         *
+         * @return  the bytes to write
+         */
+        byte[] frame(final DataFrame frame) {
+            return protocolHandler.frame(frame);
+        }
+
+        /**
+         * Closes the connection without writing anything, the close frame is written by the {@link Connection}.
+         */
+        void terminate() {
+            super.onClose(null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onPing(final DataFrame frame) {
+            final Connection current = connection;
+            if (current == null) {
+                super.onPing(frame);
+            } else {
+                current.control(new DataFrame(new PongFrameType(), frame.getBytes()));
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onClose(final DataFrame frame) {
+            final Connection current = connection;
+            if ((frame == null) || (current == null)) {
+                super.onClose(frame);
+            } else {
+                // answers the close frame of the client after the pending messages
+                current.close(WebSocket.NORMAL_CLOSURE, null);
+            }
+        }
+    }
+
+    /**
+     * A session of an endpoint. Whichever thread finds no other thread writing writes the queued messages as far as the
+     * socket takes them without blocking, a writer thread retries the rest shortly after.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Connection implements WebSocketSession, Runnable {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final EndpointWebSocket socket;
+        private final WebSocketEndpoint endpoint;
+        private final String path;
+
+        // String, byte[], DataFrame or Close
+        private final Queue<Object> queue;
+        private final AtomicLong pending;
+        // whether a thread is writing, the writer thread holds it while a write is incomplete
+        private final AtomicBoolean writing;
+        // whether a message was refused since the last call of onWritable
+        private final AtomicBoolean refused;
+        private final AtomicBoolean closed;
+        private volatile boolean closing;
+
+        // the message being written, the rest of its frame and since when the client took nothing of it, in nanos;
+        // only touched by the thread that is writing
+        private Object message;
+        private ByteBuffer frame;
+        private long stalledSince;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Connection object.
+         *
+         * @param  socket    the grizzly websocket
+         * @param  endpoint  the endpoint of the path
+         * @param  path      the path relative to the context path
+         */
+        Connection(final EndpointWebSocket socket, final WebSocketEndpoint endpoint, final String path) {
+            this.socket = socket;
+            this.endpoint = endpoint;
+            this.path = path;
+            this.queue = new ConcurrentLinkedQueue<Object>();
+            this.pending = new AtomicLong();
+            this.writing = new AtomicBoolean();
+            this.refused = new AtomicBoolean();
+            this.closed = new AtomicBoolean();
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean send(final String text) {
+            return enqueue(text, text.length());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean send(final byte[] data) {
+            return enqueue(data, data.length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isWritable(final int size) {
+            final long current = pending.get();
+
+            return isOpen() && ((current == 0) || ((current + size) <= maxPendingBytes));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getPendingBytes() {
+            return pending.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isOpen() {
+            return !closing && socket.isConnected();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            close(WebSocket.NORMAL_CLOSURE, null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close(final int code, final String reason) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+
+            queue.offer(new Close(code, reason));
+            drain();
+        }
+
+        /**
+         * Queues a control frame, it does not count towards the pending bytes.
+         *
+         * @param  control  the control frame
+         */
+        void control(final DataFrame control) {
+            if (closing) {
+                return;
+            }
+
+            queue.offer(control);
+            drain();
+        }
+
+        /**
+         * Queues a message and writes the queue unless another thread is writing it.
+         *
+         * @param   message  the message
+         * @param   size     the size of the message
+         *
+         * @return  <code>true</code> if the message is queued
+         */
+        private boolean enqueue(final Object message, final int size) {
+            if (closing) {
+                return false;
+            }
+
+            final long total = pending.addAndGet(size);
+            // a single message is accepted even if it exceeds the limit on its own
+            if ((total > maxPendingBytes) && (total != size)) {
+                pending.addAndGet(-size);
+                refused.set(true);
+                REFUSED.incrementAndGet();
+
+                return false;
+            }
+
+            queue.offer(message);
+            drain();
+
+            return true;
+        }
+
+        /**
+         * Writes the queued messages unless another thread is doing that already, it writes the message queued by the
+         * current thread before it finishes then. Returns once the socket does not take more without blocking, the
+         * writer thread continues then.
+         */
+        private void drain() {
+            while (!queue.isEmpty() && writing.compareAndSet(false, true)) {
+                if (!write()) {
+                    // the writer thread holds the writing flag until the write is complete
+                    return;
+                }
+                writing.set(false);
+            }
+
+            if (!closing && refused.get() && (pending.get() <= (maxPendingBytes / 2))
+                        && refused.compareAndSet(true, false)) {
+                try {
+                    endpoint.onWritable(this);
+                } catch (final RuntimeException e) {
+                    LOG.warn("websocket endpoint failed to continue writing :: path=" + path, e); // NOI18N
+                }
+            }
+        }
+
+        /**
+         * Continues an incomplete write, in the writer thread.
+         */
+        @Override
+        public void run() {
+            if (write()) {
+                writing.set(false);
+                drain();
+            }
+        }
+
+        /**
+         * Writes the queued messages as far as the socket takes them without blocking. A failed write closes the
+         * session.
+         *
+         * @return  <code>true</code> if the queue is written, <code>false</code> if the writer thread is scheduled to
+         *          continue the incomplete write
+         */
+        private boolean write() {
+            try {
+                while (true) {
+                    if (frame == null) {
+                        message = queue.poll();
+                        if (message == null) {
+                            return true;
+                        }
+                        if (!encode()) {
+                            continue;
+                        }
+                        stalledSince = System.nanoTime();
+                    }
+
+                    if (socket.channel.write(frame) > 0) {
+                        stalledSince = System.nanoTime();
+                    }
+                    if (frame.hasRemaining()) {
+                        if ((System.nanoTime() - stalledSince) > writeTimeoutNanos) {
+                            SLOW_DISCONNECTS.incrementAndGet();
+                            throw new IOException("write timed out"); // NOI18N
+                        }
+                        writers.schedule(this, RETRY_DELAY, TimeUnit.MILLISECONDS);
+
+                        return false;
+                    }
+
+                    frame = null;
+                    pending.addAndGet(-sizeOf(message));
+                    if (message instanceof Close) {
+                        terminate();
+                    } else if (!(message instanceof DataFrame)) {
+                        SENT.incrementAndGet();
+                    }
+                }
+            } catch (final IOException e) {
+                abort(e);
+            } catch (final RuntimeException e) {
+                // grizzly reports failures with runtime exceptions, the retry is rejected once the application is
+                // closed
+                abort(e);
+            }
+
+            return true;
+        }
+
+        /**
+         * Frames the message being written. Messages queued behind the close frame or a failed write are dropped.
+         *
+         * @return  <code>true</code> if the frame of the message is to be written
+         */
+        private boolean encode() {
+            if (closed.get()) {
+                pending.addAndGet(-sizeOf(message));
+
+                return false;
+            }
+
+            final DataFrame dataFrame;
+            if (message instanceof String) {
+                dataFrame = new DataFrame(new TextFrameType(), (String)message);
+            } else if (message instanceof byte[]) {
+                dataFrame = new DataFrame(new BinaryFrameType(), (byte[])message);
+            } else if (message instanceof Close) {
+                dataFrame = new ClosingFrame(((Close)message).code, ((Close)message).reason);
+            } else {
+                dataFrame = (DataFrame)message;
+            }
+            frame = ByteBuffer.wrap(socket.frame(dataFrame));
+
+            return true;
+        }
+
+        /**
+         * Ends the session after a failed write, the rest of the message being written is dropped.
+         *
+         * @param  e  the failure
+         */
+        private void abort(final Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("cannot write to websocket, closing it :: path=" + path, e); // NOI18N
+            }
+            if (frame != null) {
+                frame = null;
+                pending.addAndGet(-sizeOf(message));
+            }
+            closing = true;
+            terminate();
+        }
+
+        /**
+         * Closes the connection and ends the session.
+         */
+        private void terminate() {
+            try {
+                socket.terminate();
+            } catch (final RuntimeException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("cannot close websocket :: path=" + path, e); // NOI18N
+                }
+            }
+            // grizzly reports the closed socket only if it was still connected
+            closed();
+        }
+
+        /**
+         * Ends the session, once.
+         */
+        void closed() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+
+            closing = true;
+            socket.connection = null;
+            connections.remove(socket);
+            CONNECTIONS.decrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("websocket closed :: path=" + path); // NOI18N
+            }
+            try {
+                endpoint.onClose(this);
+            } catch (final RuntimeException e) {
+                LOG.warn("websocket endpoint failed to close a session :: path=" + path, e); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * Publishes the counters of all websocket endpoints.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            writer.gauge("websocket_connections", "Open websocket sessions", CONNECTIONS.get()); // NOI18N
+            writer.counter(
+                "websocket_messages_received_total", // NOI18N
+                "Messages received from websocket clients", // NOI18N
+                RECEIVED.get());
+            writer.counter(
+                "websocket_messages_sent_total", // NOI18N
+                "Messages sent to websocket clients", // NOI18N
+                SENT.get());
+            writer.counter(
+                "websocket_sends_refused_total", // NOI18N
+                "Messages refused because too many bytes of the session were pending", // NOI18N
+                REFUSED.get());
+            writer.counter(
+                "websocket_slow_disconnects_total", // NOI18N
+                "Sessions closed because the client did not take a pending write within the write timeout", // NOI18N
+                SLOW_DISCONNECTS.get());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.events;
+
+import java.nio.charset.Charset;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Distributes events to the subscribers of named topics. Resources publish status changes instead of letting their
+ * clients poll for them:
+ *
+ * <pre>
+ * EventBroker.getInstance().publish("devices/4711", "status", "{\"power\":\"on\"}");
+ * </pre>
+ *
+ * <p>An event is serialised once into a <code>text/event-stream</code> frame and the same buffer is handed to every
+ * subscriber, so the cost of a publication does not depend on the size of the event but only on the number of
+ * subscribers. If server-sent events are enabled, clients subscribe to a topic with a <code>GET</code> request on
+ * <code>&lt;ssePath&gt;/&lt;topic&gt;</code>. There is one broker per JVM, shared by all listeners. Topics exist while
+ * they have subscribers, events published to a topic without subscribers are discarded.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class EventBroker {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final EventBroker INSTANCE = new EventBroker();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); // NOI18N
+
+    private static final String SOURCE_NAME = "events"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    // copy on write, publications by far outnumber subscriptions and iterate without locking
+    private final transient ConcurrentMap<String, Set<EventSubscriber>> topics;
+
+    private final transient AtomicLong published;
+    private final transient AtomicLong delivered;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new EventBroker object.
+     */
+    private EventBroker() {
+        topics = new ConcurrentHashMap<String, Set<EventSubscriber>>();
+        published = new AtomicLong();
+        delivered = new AtomicLong();
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the event broker of this JVM.
+     *
+     * @return  the event broker
+     */
+    public static EventBroker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Serialises an event into a <code>text/event-stream</code> frame. Every line of the data becomes a <code>
+     * data</code> field, the client joins them with line feeds again.
+     *
+     * @param   event  the name of the event or <code>null</code> for the default name <code>message</code>
+     * @param   data   the data of the event
+     *
+     * @return  the frame
+     *
+     * @throws  IllegalArgumentException  if the data is <code>null</code> or the name contains a line break
+     */
+    public static byte[] frame(final String event, final String data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data must not be null"); // NOI18N
+        }
+
+        final StringBuilder frame = new StringBuilder(data.length() + 32);
+        if (event != null) {
+            if ((event.indexOf('\n') >= 0) || (event.indexOf('\r') >= 0)) {
+                throw new IllegalArgumentException("event name must not contain line breaks: " + event); // NOI18N
+            }
+            frame.append("event: ").append(event).append('\n');                                      // NOI18N
+        }
+        for (final String line : data.split("\r\n|\r|\n", -1)) {                                     // NOI18N
+            frame.append("data: ").append(line).append('\n');                                        // NOI18N
+        }
+        frame.append('\n');
+
+        return frame.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Publishes an event to all subscribers of a topic.
+     *
+     * @param   topic  the topic
+     * @param   event  the name of the event or <code>null</code> for the default name <code>message</code>
+     * @param   data   the data of the event
+     *
+     * @return  the number of subscribers the event was delivered to
+     *
+     * @throws  IllegalArgumentException  if the data is <code>null</code> or the name contains a line break
+     */
+    public int publish(final String topic, final String event, final String data) {
+        return publish(topic, frame(event, data));
+    }
+
+    /**
+     * Publishes an already serialised event to all subscribers of a topic.
+     *
+     * @param   topic  the topic
+     * @param   frame  the event in the <code>text/event-stream</code> format, e.g. created by
+     *                 {@link #frame(java.lang.String, java.lang.String)}, must not be modified afterwards
+     *
+     * @return  the number of subscribers the event was delivered to
+     */
+    public int publish(final String topic, final byte[] frame) {
+        published.incrementAndGet();
+
+        final Set<EventSubscriber> subscribers = topics.get(topic);
+        if (subscribers == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (final EventSubscriber subscriber : subscribers) {
+            subscriber.deliver(frame);
+            count++;
+        }
+        delivered.addAndGet(count);
+
+        return count;
+    }
+
+    /**
+     * Subscribes to a topic. A subscriber may subscribe to several topics.
+     *
+     * @param  topic       the topic
+     * @param  subscriber  receives the events of the topic
+     */
+    public void subscribe(final String topic, final EventSubscriber subscriber) {
+        while (true) {
+            Set<EventSubscriber> subscribers = topics.get(topic);
+            if (subscribers == null) {
+                final Set<EventSubscriber> created = new CopyOnWriteArraySet<EventSubscriber>();
+                subscribers = topics.putIfAbsent(topic, created);
+                if (subscribers == null) {
+                    subscribers = created;
+                }
+            }
+            subscribers.add(subscriber);
+
+            // the set may have been removed by the last unsubscription in the meantime
+            if (topics.get(topic) == subscribers) {
+                return;
+            }
+            subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * Cancels a subscription. Nothing happens if the subscriber did not subscribe to the topic.
+     *
+     * @param  topic       the topic
+     * @param  subscriber  the subscriber
+     */
+    public void unsubscribe(final String topic, final EventSubscriber subscriber) {
+        final Set<EventSubscriber> subscribers = topics.get(topic);
+        if ((subscribers != null) && subscribers.remove(subscriber) && subscribers.isEmpty()) {
+            topics.remove(topic, subscribers);
+        }
+    }
+
+    /**
+     * Returns the number of subscribers of a topic.
+     *
+     * @param   topic  the topic
+     *
+     * @return  the number of subscribers
+     */
+    public int getSubscriberCount(final String topic) {
+        final Set<EventSubscriber> subscribers = topics.get(topic);
+
+        return (subscribers == null) ? 0 : subscribers.size();
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Publishes the counters of the broker.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            long subscribers = 0;
+            for (final Set<EventSubscriber> set : topics.values()) {
+                subscribers += set.size();
+            }
+
+            writer.counter("events_published_total", "Events published to a topic", published.get());   // NOI18N
+            writer.counter("events_delivered_total", "Events delivered to a subscriber", delivered.get()); // NOI18N
+            writer.gauge("events_topics", "Topics with subscribers", topics.size());                      // NOI18N
+            writer.gauge("events_subscribers", "Subscriptions of all topics", subscribers);               // NOI18N
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.events;
+
+/**
+ * Receives the events published to a topic of the {@link EventBroker}.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public interface EventSubscriber {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Delivers an event. Called by the publishing thread, so implementations must not block, they usually queue the
+     * frame and write it in another thread.
+     *
+     * @param  frame  the serialised event in the <code>text/event-stream</code> format, shared by all subscribers and
+     *                thus must not be modified
+     */
+    void deliver(byte[] frame);
+}
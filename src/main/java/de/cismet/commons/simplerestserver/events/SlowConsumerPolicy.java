@@ -0,0 +1,26 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.events;
+
+/**
+ * Defines what happens to a subscriber whose queue of pending events is full because the client reads slower than the
+ * events are published.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public enum SlowConsumerPolicy {
+
+    //~ Enum constants ---------------------------------------------------------
+
+    /** The oldest pending event is dropped, the client misses events but keeps its connection. */
+    DROP_OLDEST,
+
+    /** The connection is closed, the client reconnects and fetches the current state on its own. */
+    DISCONNECT
+}
@@ -0,0 +1,380 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.index;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.lang.annotation.Annotation;
+
+import java.net.URL;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * The index of root resources, providers and {@link de.cismet.commons.simplerestserver.ServerParamProvider}
+ * implementations that the {@link ResourceIndexProcessor} writes into a jar at build time. Reading the index replaces
+ * the scanning of every class of the Jersey resource packages and the discovery of the <code>
+ * ServerParamProvider</code> by the default <code>Lookup</code>. The index is a text file with one <code>kind
+ * binaryClassName</code> entry per line, lines starting with <code>#</code> are comments. The indexes of all jars of a
+ * class loader are merged, the index remembers which jars and directories have one.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class ResourceIndex {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(ResourceIndex.class);
+
+    public static final String INDEX_RESOURCE = "META-INF/simplerestserver/resource.index"; // NOI18N
+
+    private static final String ENCODING = "UTF-8"; // NOI18N
+
+    //~ Enums ------------------------------------------------------------------
+
+    /**
+     * The kinds of indexed classes.
+     *
+     * @version  1.0, 20261017
+     */
+    public enum Kind {
+
+        //~ Enum constants -----------------------------------------------------
+
+        RESOURCE("resource"), PROVIDER("provider"), SERVER_PARAM_PROVIDER("serverParamProvider"); // NOI18N
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final String key;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Kind object.
+         *
+         * @param  key  the key of the kind in the index file
+         */
+        private Kind(final String key) {
+            this.key = key;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Getter for the key of the kind in the index file.
+         *
+         * @return  the key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the kind with the given key.
+         *
+         * @param   key  the key of the kind in the index file
+         *
+         * @return  the kind or <code>null</code> if there is no kind with the given key
+         */
+        public static Kind forKey(final String key) {
+            for (final Kind kind : values()) {
+                if (kind.key.equals(key)) {
+                    return kind;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient Map<Kind, Set<String>> classes;
+    // the class loader the index is loaded from and the roots of its jars and directories that have an index
+    private final transient ClassLoader classLoader;
+    private final transient Set<String> indexedRoots;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new, empty ResourceIndex object.
+     */
+    ResourceIndex() {
+        this(null);
+    }
+
+    /**
+     * Creates a new, empty ResourceIndex object for the indexes of the given class loader.
+     *
+     * @param  classLoader  the class loader or <code>null</code> if the index is not loaded from a class loader
+     */
+    private ResourceIndex(final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        this.indexedRoots = new HashSet<String>();
+        this.classes = new EnumMap<Kind, Set<String>>(Kind.class);
+        for (final Kind kind : Kind.values()) {
+            classes.put(kind, new TreeSet<String>());
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Loads and merges all indexes visible to the given class loader. Indexes that cannot be read are skipped. Since
+     * the index is read before logging is configured, only failures are logged.
+     *
+     * @param   classLoader  the class loader or <code>null</code> for the class loader of this class
+     *
+     * @return  the merged index, empty if there is none
+     */
+    public static ResourceIndex load(final ClassLoader classLoader) {
+        final ClassLoader loader = (classLoader == null) ? ResourceIndex.class.getClassLoader() : classLoader;
+        final ResourceIndex index = new ResourceIndex(loader);
+
+        final Enumeration<URL> urls;
+        try {
+            urls = loader.getResources(INDEX_RESOURCE);
+        } catch (final IOException e) {
+            LOG.warn("cannot look up resource indexes, classes will be discovered by scanning", e); // NOI18N
+
+            return index;
+        }
+
+        while (urls.hasMoreElements()) {
+            final URL url = urls.nextElement();
+            try {
+                final InputStream in = url.openStream();
+                try {
+                    index.read(new InputStreamReader(in, ENCODING));
+                } finally {
+                    in.close();
+                }
+                index.indexedRoots.add(getRoot(url, INDEX_RESOURCE));
+            } catch (final IOException e) {
+                LOG.warn("cannot read resource index, skipped: " + url, e); // NOI18N
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds the entries of an index file.
+     *
+     * @param   reader  the reader of the index file, it is not closed
+     *
+     * @throws  IOException  if the index cannot be read
+     */
+    void read(final Reader reader) throws IOException {
+        final BufferedReader br = new BufferedReader(reader);
+        String line = br.readLine();
+        while (line != null) {
+            final String entry = line.trim();
+            final int space = entry.indexOf(' ');
+            if (!entry.isEmpty() && !entry.startsWith("#") && (space > 0)) { // NOI18N
+                final Kind kind = Kind.forKey(entry.substring(0, space));
+                if (kind == null) {
+                    // written by a newer version
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("unknown resource index entry ignored: " + entry); // NOI18N
+                    }
+                } else {
+                    classes.get(kind).add(entry.substring(space + 1).trim());
+                }
+            }
+            line = br.readLine();
+        }
+    }
+
+    /**
+     * Writes the index in the format read by {@link #read(java.io.Reader)}.
+     *
+     * @param   writer  the writer, it is not closed
+     *
+     * @throws  IOException  if the index cannot be written
+     */
+    void write(final Writer writer) throws IOException {
+        writer.write("# generated by " + ResourceIndexProcessor.class.getName() + ", do not edit\n"); // NOI18N
+        for (final Kind kind : Kind.values()) {
+            for (final String name : classes.get(kind)) {
+                writer.write(kind.getKey() + " " + name + "\n"); // NOI18N
+            }
+        }
+    }
+
+    /**
+     * Adds a class to the index.
+     *
+     * @param  kind  the kind of the class
+     * @param  name  the binary name of the class
+     */
+    void add(final Kind kind, final String name) {
+        classes.get(kind).add(name);
+    }
+
+    /**
+     * Getter for the indexed classes of a kind.
+     *
+     * @param   kind  the kind
+     *
+     * @return  the sorted binary names of the classes
+     */
+    public Set<String> getClasses(final Kind kind) {
+        return Collections.unmodifiableSet(classes.get(kind));
+    }
+
+    /**
+     * Whether there are no indexed classes at all.
+     *
+     * @return  <code>true</code> if nothing is indexed
+     */
+    public boolean isEmpty() {
+        for (final Set<String> names : classes.values()) {
+            if (!names.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Collects the root resources and providers in the given packages and their subpackages, the classes Jersey would
+     * find by scanning the packages. The index of a jar only contains the classes compiled with it, thus the index is
+     * only complete for a package if every jar and directory that contributes to the package has an index, the result
+     * is <code>null</code> otherwise and the packages must be scanned. Entries whose class cannot be loaded or is not
+     * annotated with <code>Path</code> or <code>Provider</code> anymore are skipped.
+     *
+     * @param   packages  the package names
+     *
+     * @return  the binary names of the classes or <code>null</code> if the packages must be scanned
+     */
+    public Set<String> getResourcesAndProviders(final String[] packages) {
+        if (classLoader == null) {
+            return null;
+        }
+
+        final Set<String> found = new TreeSet<String>();
+        for (final String pkg : packages) {
+            final String name = pkg.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!isIndexed(name)) {
+                return null;
+            }
+
+            final String prefix = name + "."; // NOI18N
+            for (final String className : classes.get(Kind.RESOURCE)) {
+                if (className.startsWith(prefix) && isAnnotated(className, Path.class)) {
+                    found.add(className);
+                }
+            }
+            for (final String className : classes.get(Kind.PROVIDER)) {
+                if (className.startsWith(prefix) && isAnnotated(className, Provider.class)) {
+                    found.add(className);
+                }
+            }
+        }
+
+        return found.isEmpty() ? null : found;
+    }
+
+    /**
+     * Whether every jar and directory of the class loader that contains the given package has an index. These are the
+     * locations Jersey scans for the package.
+     *
+     * @param   pkg  the package name
+     *
+     * @return  <code>true</code> if the package is found and all its locations are indexed
+     */
+    private boolean isIndexed(final String pkg) {
+        final String path = pkg.replace('.', '/');
+        boolean found = false;
+        try {
+            final Enumeration<URL> urls = classLoader.getResources(path);
+            while (urls.hasMoreElements()) {
+                final URL url = urls.nextElement();
+                found = true;
+                if (!indexedRoots.contains(getRoot(url, path))) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("package " + pkg + " is not indexed in " + url); // NOI18N
+                    }
+
+                    return false;
+                }
+            }
+        } catch (final IOException e) {
+            LOG.warn("cannot look up the locations of package " + pkg, e); // NOI18N
+
+            return false;
+        }
+
+        return found;
+    }
+
+    /**
+     * Whether an indexed class still carries the annotation of its kind, an index may be stale.
+     *
+     * @param   className   the binary name of the class
+     * @param   annotation  the annotation
+     *
+     * @return  <code>true</code> if the class can be loaded and is annotated
+     */
+    private boolean isAnnotated(final String className, final Class<? extends Annotation> annotation) {
+        try {
+            if (Class.forName(className, false, classLoader).isAnnotationPresent(annotation)) {
+                return true;
+            }
+        } catch (final ClassNotFoundException e) {
+            // skipped below
+        } catch (final LinkageError e) {
+            // skipped below
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("stale resource index entry skipped: " + className); // NOI18N
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the jar or directory a resource of a class loader is located in.
+     *
+     * @param   url   the url of the resource
+     * @param   name  the name of the resource
+     *
+     * @return  the url of the jar or directory, e.g. <code>jar:file:/lib/app.jar!/</code>
+     */
+    private static String getRoot(final URL url, final String name) {
+        String location = url.toExternalForm();
+        if (location.endsWith("/")) { // NOI18N
+            location = location.substring(0, location.length() - 1);
+        }
+
+        return location.endsWith(name) ? location.substring(0, location.length() - name.length()) : location;
+    }
+}
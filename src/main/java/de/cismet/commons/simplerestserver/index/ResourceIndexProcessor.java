@@ -0,0 +1,308 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.index;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import de.cismet.commons.simplerestserver.ServerParamProvider;
+
+/**
+ * Writes the {@link ResourceIndex} of the classes of a compilation. Indexed are the concrete, public top-level or
+ * static nested classes that are annotated with <code>javax.ws.rs.Path</code> (root resources), <code>
+ * javax.ws.rs.ext.Provider</code> (providers) or <code>org.openide.util.lookup.ServiceProvider</code>, also within
+ * <code>ServiceProviders</code>, for the service {@link ServerParamProvider}. The processor is registered as service,
+ * so it runs whenever this library is on the classpath of <code>javac</code>. It never claims the annotations, other
+ * processors like the one generating the <code>Lookup</code> registrations still see them.
+ *
+ * <p>An incremental compilation only passes the changed classes, so the entries of an existing index in the output
+ * directory are kept as long as their classes still exist and are still indexable with the same annotation.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+@SupportedAnnotationTypes(
+    {
+        ResourceIndexProcessor.PATH,
+        ResourceIndexProcessor.PROVIDER,
+        ResourceIndexProcessor.SERVICE_PROVIDER,
+        ResourceIndexProcessor.SERVICE_PROVIDERS
+    }
+)
+public final class ResourceIndexProcessor extends AbstractProcessor {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    static final String PATH = "javax.ws.rs.Path";                                      // NOI18N
+    static final String PROVIDER = "javax.ws.rs.ext.Provider";                          // NOI18N
+    static final String SERVICE_PROVIDER = "org.openide.util.lookup.ServiceProvider";   // NOI18N
+    static final String SERVICE_PROVIDERS = "org.openide.util.lookup.ServiceProviders"; // NOI18N
+
+    private static final String ENCODING = "UTF-8"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient ResourceIndex index = new ResourceIndex();
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!roundEnv.errorRaised()) {
+                writeIndex();
+            }
+
+            return false;
+        }
+
+        for (final TypeElement annotation : annotations) {
+            final String name = annotation.getQualifiedName().toString();
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (!isIndexable(element)) {
+                    continue;
+                }
+
+                final TypeElement type = (TypeElement)element;
+                final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+                if (PATH.equals(name)) {
+                    index.add(ResourceIndex.Kind.RESOURCE, binaryName);
+                } else if (PROVIDER.equals(name)) {
+                    index.add(ResourceIndex.Kind.PROVIDER, binaryName);
+                } else if ((SERVICE_PROVIDER.equals(name) || SERVICE_PROVIDERS.equals(name))
+                            && isServerParamProvider(type)) {
+                    index.add(ResourceIndex.Kind.SERVER_PARAM_PROVIDER, binaryName);
+                }
+            }
+        }
+
+        // the annotations are left to other processors
+        return false;
+    }
+
+    /**
+     * Whether the given element is a class Jersey or the <code>Lookup</code> can instantiate.
+     *
+     * @param   element  an annotated element
+     *
+     * @return  <code>true</code> if the element is a concrete, public top-level or static nested class
+     */
+    private static boolean isIndexable(final Element element) {
+        if ((element.getKind() != ElementKind.CLASS)
+                    || element.getModifiers().contains(Modifier.ABSTRACT)
+                    || !element.getModifiers().contains(Modifier.PUBLIC)) {
+            return false;
+        }
+
+        final NestingKind nesting = ((TypeElement)element).getNestingKind();
+
+        return (nesting == NestingKind.TOP_LEVEL)
+                    || ((nesting == NestingKind.MEMBER) && element.getModifiers().contains(Modifier.STATIC));
+    }
+
+    /**
+     * Whether one of the <code>ServiceProvider</code> annotations of the given type, also within <code>
+     * ServiceProviders</code>, registers it as {@link ServerParamProvider}.
+     *
+     * @param   type  the annotated type
+     *
+     * @return  <code>true</code> if the type is registered as <code>ServerParamProvider</code>
+     */
+    private static boolean isServerParamProvider(final TypeElement type) {
+        for (final AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            final String name = ((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (SERVICE_PROVIDER.equals(name) && registersServerParamProvider(mirror)) {
+                return true;
+            } else if (SERVICE_PROVIDERS.equals(name)) {
+                final Object providers = getValue(mirror, "value"); // NOI18N
+                if (providers instanceof List) {
+                    for (final Object provider : (List)providers) {
+                        final Object nested = ((AnnotationValue)provider).getValue();
+                        if ((nested instanceof AnnotationMirror)
+                                    && registersServerParamProvider((AnnotationMirror)nested)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Whether a <code>ServiceProvider</code> annotation registers the {@link ServerParamProvider} service. The
+     * annotation is inspected as mirror, its class values cannot be read at compile time.
+     *
+     * @param   serviceProvider  the annotation
+     *
+     * @return  <code>true</code> if the service is <code>ServerParamProvider</code>
+     */
+    private static boolean registersServerParamProvider(final AnnotationMirror serviceProvider) {
+        final Object service = getValue(serviceProvider, "service"); // NOI18N
+        if (service instanceof DeclaredType) {
+            final TypeElement serviceType = (TypeElement)((DeclaredType)service).asElement();
+
+            return ServerParamProvider.class.getName().equals(serviceType.getQualifiedName().toString());
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the explicitly set value of an annotation element.
+     *
+     * @param   mirror  the annotation
+     * @param   name    the name of the element
+     *
+     * @return  the value or <code>null</code> if the element is not set
+     */
+    private static Object getValue(final AnnotationMirror mirror, final String name) {
+        for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+            if (name.contentEquals(entry.getKey().getSimpleName())) {
+                return entry.getValue().getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Merges the entries of an existing index that are still valid and writes the index to the class output.
+     */
+    private void writeIndex() {
+        final ResourceIndex previous = readPreviousIndex();
+        for (final ResourceIndex.Kind kind : ResourceIndex.Kind.values()) {
+            for (final String name : previous.getClasses(kind)) {
+                final TypeElement type = processingEnv.getElementUtils().getTypeElement(name.replace('$', '.'));
+                if ((type != null) && isIndexable(type) && isStillIndexed(type, kind)) {
+                    index.add(kind, name);
+                }
+            }
+        }
+
+        if (index.isEmpty()) {
+            return;
+        }
+
+        try {
+            final FileObject file = processingEnv.getFiler()
+                        .createResource(StandardLocation.CLASS_OUTPUT, "", ResourceIndex.INDEX_RESOURCE); // NOI18N
+            final Writer writer = new OutputStreamWriter(file.openOutputStream(), ENCODING);
+            try {
+                index.write(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            processingEnv.getMessager()
+                    .printMessage(Diagnostic.Kind.ERROR, "cannot write resource index: " + e.getMessage()); // NOI18N
+        }
+    }
+
+    /**
+     * Whether a class of a previous index still carries the annotation of its kind. The class may have lost it since.
+     *
+     * @param   type  the class of the previous index
+     * @param   kind  the kind of its entry
+     *
+     * @return  <code>true</code> if the entry is still valid
+     */
+    private static boolean isStillIndexed(final TypeElement type, final ResourceIndex.Kind kind) {
+        switch (kind) {
+            case RESOURCE: {
+                return hasAnnotation(type, PATH);
+            }
+            case PROVIDER: {
+                return hasAnnotation(type, PROVIDER);
+            }
+            default: {
+                return isServerParamProvider(type);
+            }
+        }
+    }
+
+    /**
+     * Whether the given type is annotated with the given annotation.
+     *
+     * @param   type        the type
+     * @param   annotation  the qualified name of the annotation
+     *
+     * @return  <code>true</code> if the annotation is present on the type itself
+     */
+    private static boolean hasAnnotation(final TypeElement type, final String annotation) {
+        for (final AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (annotation.contentEquals(((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads the index of a previous compilation from the class output.
+     *
+     * @return  the previous index, empty if there is none or it cannot be read
+     */
+    private ResourceIndex readPreviousIndex() {
+        final ResourceIndex previous = new ResourceIndex();
+        try {
+            final FileObject file = processingEnv.getFiler()
+                        .getResource(StandardLocation.CLASS_OUTPUT, "", ResourceIndex.INDEX_RESOURCE); // NOI18N
+            final Reader reader = new InputStreamReader(file.openInputStream(), ENCODING);
+            try {
+                previous.read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            // there is no previous index or the compiler cannot read the class output, the index is rebuilt then
+        }
+
+        return previous;
+    }
+}
@@ -0,0 +1,325 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import java.util.Map;
+
+/**
+ * A minimal HTTP/1.1 client connection of the {@link LoadGenerator}. It sends prepared <code>GET</code> requests over a
+ * single kept-alive socket and reads the responses completely, bodies are discarded. Unlike
+ * <code>HttpURLConnection</code>, which shares a small pool of connections between all threads of the JVM, every
+ * instance owns exactly one socket, so the number of connections the server sees is the number of instances. The
+ * connection is not thread-safe.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class HttpClientConnection {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int CR = '\r';
+    private static final int LF = '\n';
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final InetSocketAddress address;
+    private final int timeout;
+    private final byte[] buffer;
+    private final StringBuilder line;
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new HttpClientConnection object, the socket is connected on the first request.
+     *
+     * @param  address  the address of the server
+     * @param  timeout  the connect and read timeout in milliseconds
+     */
+    HttpClientConnection(final InetSocketAddress address, final int timeout) {
+        this.address = address;
+        this.timeout = timeout;
+        this.buffer = new byte[8192];
+        this.line = new StringBuilder(128);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates the bytes of a <code>GET</code> request.
+     *
+     * @param   host  the value of the <code>Host</code> header
+     * @param   path  the absolute path of the request
+     *
+     * @return  the request bytes
+     */
+    static byte[] createRequest(final String host, final String path) {
+        return createRequest(host, path, null);
+    }
+
+    /**
+     * Creates the bytes of a <code>GET</code> request with additional headers.
+     *
+     * @param   host     the value of the <code>Host</code> header
+     * @param   path     the absolute path of the request
+     * @param   headers  the additional headers or <code>null</code>
+     *
+     * @return  the request bytes
+     */
+    static byte[] createRequest(final String host, final String path, final Map<String, String> headers) {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("GET ").append(path).append(" HTTP/1.1\r\n"); // NOI18N
+        sb.append("Host: ").append(host).append("\r\n");        // NOI18N
+        sb.append("Accept: */*\r\n");                           // NOI18N
+        if (headers != null) {
+            for (final Map.Entry<String, String> header : headers.entrySet()) {
+                sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n"); // NOI18N
+            }
+        }
+        sb.append("\r\n");                                      // NOI18N
+
+        final String request = sb.toString();
+        final byte[] bytes = new byte[request.length()];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte)request.charAt(i);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Sends a request and reads the response. The socket is connected first if necessary and closed if the server
+     * closes the connection.
+     *
+     * @param   request  the request bytes, see {@link #createRequest(java.lang.String, java.lang.String)}
+     *
+     * @return  the status code of the response
+     *
+     * @throws  IOException  if the request cannot be sent or the response cannot be read, the connection is closed
+     *                       then
+     */
+    int send(final byte[] request) throws IOException {
+        try {
+            if (socket == null) {
+                connect();
+            }
+
+            out.write(request);
+            out.flush();
+
+            return readResponse();
+        } catch (final IOException e) {
+            close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the socket, the next request opens a new one.
+     */
+    void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (final IOException e) {
+                // nothing to do, the socket is discarded anyway
+            }
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+
+    /**
+     * Connects the socket.
+     *
+     * @throws  IOException  if the socket cannot be connected
+     */
+    private void connect() throws IOException {
+        final Socket s = new Socket();
+        try {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(timeout);
+            s.connect(address, timeout);
+        } catch (final IOException e) {
+            s.close();
+
+            throw e;
+        }
+
+        socket = s;
+        in = new BufferedInputStream(s.getInputStream(), buffer.length);
+        out = s.getOutputStream();
+    }
+
+    /**
+     * Reads status line, headers and body of a response.
+     *
+     * @return  the status code
+     *
+     * @throws  IOException  if the response cannot be read or is malformed
+     */
+    private int readResponse() throws IOException {
+        final String statusLine = readLine();
+        final int status;
+        try {
+            status = Integer.parseInt(statusLine.substring(9, 12));
+        } catch (final RuntimeException e) {
+            throw new IOException("malformed status line: " + statusLine); // NOI18N
+        }
+
+        boolean close = statusLine.startsWith("HTTP/1.0"); // NOI18N
+        boolean chunked = false;
+        long contentLength = -1;
+        for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+            final int colon = header.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+
+            final String name = header.substring(0, colon).trim();
+            final String value = header.substring(colon + 1).trim();
+            if ("Content-Length".equalsIgnoreCase(name)) { // NOI18N
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (final NumberFormatException e) {
+                    throw new IOException("malformed content length: " + value); // NOI18N
+                }
+            } else if ("Transfer-Encoding".equalsIgnoreCase(name)) { // NOI18N
+                chunked = value.toLowerCase().contains("chunked");   // NOI18N
+            } else if ("Connection".equalsIgnoreCase(name)) {        // NOI18N
+                close = value.equalsIgnoreCase("close");             // NOI18N
+            }
+        }
+
+        final boolean bodyless = (status == 204) || (status == 304) || ((status >= 100) && (status < 200));
+        if (bodyless) {
+            return finish(status, close);
+        }
+
+        if (chunked) {
+            for (long size = readChunkSize(); size > 0; size = readChunkSize()) {
+                skip(size);
+                readLine();
+            }
+            skipTrailers();
+        } else if (contentLength >= 0) {
+            skip(contentLength);
+        } else {
+            // the body ends with the connection
+            skip(Long.MAX_VALUE);
+        }
+
+        return finish(status, close || (!chunked && (contentLength < 0)));
+    }
+
+    /**
+     * Completes a response, the connection is closed if the server does not keep it alive.
+     *
+     * @param   status  the status code
+     * @param   close   whether the connection shall be closed
+     *
+     * @return  the status code
+     */
+    private int finish(final int status, final boolean close) {
+        if (close) {
+            close();
+        }
+
+        return status;
+    }
+
+    /**
+     * Reads the trailer lines of a chunked body up to the terminating empty line.
+     *
+     * @throws  IOException  if the lines cannot be read
+     */
+    private void skipTrailers() throws IOException {
+        String trailer = readLine();
+        while (!trailer.isEmpty()) {
+            trailer = readLine();
+        }
+    }
+
+    /**
+     * Reads the size line of a chunk.
+     *
+     * @return  the size of the chunk, <code>0</code> for the last chunk
+     *
+     * @throws  IOException  if the line cannot be read or is malformed
+     */
+    private long readChunkSize() throws IOException {
+        final String size = readLine();
+        final int semicolon = size.indexOf(';');
+        try {
+            return Long.parseLong(((semicolon < 0) ? size : size.substring(0, semicolon)).trim(), 16);
+        } catch (final NumberFormatException e) {
+            throw new IOException("malformed chunk size: " + size); // NOI18N
+        }
+    }
+
+    /**
+     * Reads a line terminated by CRLF or LF.
+     *
+     * @return  the line without the terminator
+     *
+     * @throws  IOException   if the line cannot be read
+     * @throws  EOFException  if the connection is closed before the line is complete
+     */
+    private String readLine() throws IOException {
+        line.setLength(0);
+        int c = in.read();
+        while (c != LF) {
+            if (c == -1) {
+                throw new EOFException("connection closed by server"); // NOI18N
+            } else if (c != CR) {
+                line.append((char)c);
+            }
+            c = in.read();
+        }
+
+        return line.toString();
+    }
+
+    /**
+     * Reads and discards the given number of bytes.
+     *
+     * @param   length  the number of bytes or <code>Long.MAX_VALUE</code> to read until the end of the stream
+     *
+     * @throws  IOException   if the bytes cannot be read
+     * @throws  EOFException  if the connection is closed before all bytes are read
+     */
+    private void skip(final long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            final int read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+            if (read == -1) {
+                if (length == Long.MAX_VALUE) {
+                    return;
+                }
+
+                throw new EOFException("connection closed by server"); // NOI18N
+            }
+            remaining -= read;
+        }
+    }
+}
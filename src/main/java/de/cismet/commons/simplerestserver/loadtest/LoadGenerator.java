@@ -0,0 +1,337 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.loadtest;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import de.cismet.commons.simplerestserver.metrics.LatencyHistogram;
+
+/**
+ * Drives a server with <code>GET</code> requests over a fixed number of kept-alive connections, one thread per
+ * connection, and measures throughput and latency. There are two modes:<br>
+ * <br>
+ *
+ * <ul>
+ *   <li><b>closed loop</b>: every connection sends its next request as soon as the previous response is complete, so
+ *     the server determines the rate. Since a stalled response delays all requests the connection would have sent in
+ *     the meantime, the response times are corrected for coordinated omission afterwards, assuming that requests are
+ *     expected at the interval of the median service time.</li>
+ *   <li><b>open loop</b>: requests are sent at a fixed total rate, spread evenly across the connections. Every request
+ *     has an intended start time and its response time is measured from that time, so a request that could not be sent
+ *     in time because the connection was still busy is accounted with its waiting time.</li>
+ * </ul>
+ *
+ * <p>The run is divided into a warm-up and a measurement phase, only requests that are due in the measurement phase
+ * are recorded. No request is sent after the measurement phase, so an open loop that the server cannot keep up with
+ * sends less requests than the rate demands.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class LoadGenerator {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(LoadGenerator.class);
+
+    public static final int DEFAULT_CONNECTIONS = 8;
+    public static final int DEFAULT_TIMEOUT = 10000;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient URI target;
+    private final transient UrlMix urls;
+    private final transient int connections;
+    private final transient double rate;
+    private final transient long warmupMillis;
+    private final transient long durationMillis;
+    private final transient int timeout;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new LoadGenerator object.
+     *
+     * @param   target          the base URI of the server, only scheme, host and port are used
+     * @param   urls            the paths to request, see {@link UrlMix} for the format
+     * @param   connections     the number of connections
+     * @param   rate            the total number of requests per second or <code>0</code> for a closed loop
+     * @param   warmupMillis    the duration of the warm-up in milliseconds
+     * @param   durationMillis  the duration of the measurement in milliseconds
+     *
+     * @throws  IllegalArgumentException  if the target is no http URI or any other argument is invalid
+     */
+    public LoadGenerator(
+            final URI target,
+            final String urls,
+            final int connections,
+            final double rate,
+            final long warmupMillis,
+            final long durationMillis) {
+        if ((target == null) || !"http".equals(target.getScheme()) || (target.getHost() == null)) { // NOI18N
+            throw new IllegalArgumentException("target must be an http uri: " + target);            // NOI18N
+        } else if (connections < 1) {
+            throw new IllegalArgumentException("connections must be positive: " + connections);     // NOI18N
+        } else if ((rate < 0) || Double.isNaN(rate) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("illegal rate: " + rate);                            // NOI18N
+        } else if ((warmupMillis < 0) || (durationMillis < 1)) {
+            throw new IllegalArgumentException("illegal warm-up or duration: "                      // NOI18N
+                        + warmupMillis + ", " + durationMillis);
+        }
+
+        this.target = target;
+        this.urls = UrlMix.parse(urls);
+        this.connections = connections;
+        this.rate = rate;
+        this.warmupMillis = warmupMillis;
+        this.durationMillis = durationMillis;
+        this.timeout = DEFAULT_TIMEOUT;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Runs the load test and blocks until it is finished.
+     *
+     * @return  the result of the measurement phase
+     *
+     * @throws  InterruptedException  if the calling thread is interrupted while waiting for the connections
+     */
+    public LoadTestResult run() throws InterruptedException {
+        final int port = (target.getPort() < 0) ? 80 : target.getPort();
+        final InetSocketAddress address = new InetSocketAddress(target.getHost(), port);
+        final String hostHeader = (port == 80) ? target.getHost() : (target.getHost() + ":" + port); // NOI18N
+        final byte[][] requests = new byte[urls.size()][];
+        for (int i = 0; i < requests.length; ++i) {
+            requests[i] = HttpClientConnection.createRequest(hostHeader, urls.getPath(i));
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("starting load test: " + describe()); // NOI18N
+        }
+
+        final Recorder recorder = new Recorder();
+        final long start = System.nanoTime();
+        recorder.measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        recorder.measureEnd = recorder.measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        // the connections of an open loop start at evenly spaced offsets
+        final long interval = (rate == 0) ? 0 : (long)(connections * 1e9 / rate);
+        final Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; ++i) {
+            final Worker worker = new Worker(
+                    new HttpClientConnection(address, timeout),
+                    requests,
+                    recorder,
+                    start + (interval * i / connections),
+                    interval,
+                    new Random(start + i));
+            threads[i] = new Thread(worker, "loadtest-" + i); // NOI18N
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        try {
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+        } catch (final InterruptedException e) {
+            for (final Thread thread : threads) {
+                thread.interrupt();
+            }
+
+            throw e;
+        }
+
+        // the last requests complete after the end of the measurement phase
+        final long elapsed = System.nanoTime() - recorder.measureStart;
+
+        final LatencyHistogram.Snapshot serviceTime = recorder.serviceTime.snapshot();
+        final LatencyHistogram.Snapshot responseTime;
+        if (rate == 0) {
+            responseTime = serviceTime.correctedForCoordinatedOmission(serviceTime.getValueAtQuantile(0.5));
+        } else {
+            responseTime = recorder.responseTime.snapshot();
+        }
+
+        return new LoadTestResult(
+                describe(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                recorder.requests.get(),
+                recorder.failedResponses.get(),
+                recorder.errors.get(),
+                responseTime,
+                serviceTime);
+    }
+
+    /**
+     * Describes the load this generator creates.
+     *
+     * @return  the description
+     */
+    private String describe() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(target.getScheme()).append("://").append(target.getHost()); // NOI18N
+        if (target.getPort() >= 0) {
+            sb.append(':').append(target.getPort());
+        }
+        if (rate == 0) {
+            sb.append(", closed loop");                                                       // NOI18N
+        } else {
+            sb.append(String.format(Locale.ENGLISH, ", open loop at %.1f requests/s", rate)); // NOI18N
+        }
+        sb.append(", ").append(connections).append(" connections, "); // NOI18N
+        sb.append(durationMillis / 1000d).append(" s");               // NOI18N
+        if (warmupMillis > 0) {
+            sb.append(" after ").append(warmupMillis / 1000d).append(" s warm-up"); // NOI18N
+        }
+        sb.append(", urls: ").append(urls); // NOI18N
+
+        return sb.toString();
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Collects the measurements of all connections.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class Recorder {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failedResponses = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        // written before the workers are started
+        private long measureStart;
+        private long measureEnd;
+    }
+
+    /**
+     * Sends the requests of a single connection.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Worker implements Runnable {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final HttpClientConnection connection;
+        private final byte[][] requests;
+        private final Recorder recorder;
+        private final long firstStart;
+        private final long interval;
+        private final Random random;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Worker object.
+         *
+         * @param  connection  the connection to use
+         * @param  requests    the prepared requests, indexed like the url mix
+         * @param  recorder    the recorder of the measurements
+         * @param  firstStart  the intended start of the first request in the open loop
+         * @param  interval    the interval between two requests in the open loop in nanoseconds, <code>0</code> for a
+         *                     closed loop
+         * @param  random      chooses the requests
+         */
+        Worker(
+                final HttpClientConnection connection,
+                final byte[][] requests,
+                final Recorder recorder,
+                final long firstStart,
+                final long interval,
+                final Random random) {
+            this.connection = connection;
+            this.requests = requests;
+            this.recorder = recorder;
+            this.firstStart = firstStart;
+            this.interval = interval;
+            this.random = random;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Sends requests until the measurement phase is over.
+         */
+        @Override
+        public void run() {
+            try {
+                long intended = firstStart;
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (interval == 0) {
+                        intended = System.nanoTime();
+                    } else {
+                        // a connection that is behind schedule sends at once, the delay is part of the response time
+                        long wait = intended - System.nanoTime();
+                        while (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                            wait = intended - System.nanoTime();
+                        }
+                    }
+                    // a connection that is still behind schedule at the end does not catch up
+                    if ((intended >= recorder.measureEnd) || (System.nanoTime() >= recorder.measureEnd)) {
+                        break;
+                    }
+
+                    send(intended);
+                    intended += interval;
+                }
+            } finally {
+                connection.close();
+            }
+        }
+
+        /**
+         * Sends a single request and records the measurements if it is due in the measurement phase.
+         *
+         * @param  intended  the intended start of the request
+         */
+        private void send(final long intended) {
+            final boolean measured = intended >= recorder.measureStart;
+            final long sent = System.nanoTime();
+            try {
+                final int status = connection.send(requests[urls.next(random)]);
+                final long done = System.nanoTime();
+                if (measured) {
+                    recorder.requests.incrementAndGet();
+                    if (status >= 400) {
+                        recorder.failedResponses.incrementAndGet();
+                    }
+                    recorder.serviceTime.recordNanos(done - sent);
+                    recorder.responseTime.recordNanos(done - intended);
+                }
+            } catch (final IOException e) {
+                if (measured) {
+                    recorder.errors.incrementAndGet();
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("request failed", e); // NOI18N
+                }
+            }
+        }
+    }
+}
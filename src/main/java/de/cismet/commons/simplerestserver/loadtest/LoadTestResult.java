@@ -0,0 +1,178 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.loadtest;
+
+import java.io.PrintStream;
+
+import java.util.Locale;
+
+import de.cismet.commons.simplerestserver.metrics.LatencyHistogram;
+
+/**
+ * The outcome of a {@link LoadGenerator} run. Two latency distributions are reported: the service time measured from
+ * the moment a request was actually sent, and the response time that is corrected for coordinated omission, i.e. that
+ * also contains the time a request had to wait because the connection was still busy with the previous one. Only the
+ * response time tells how the server behaves for clients that do not wait for each other.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class LoadTestResult {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] QUANTILE_NAMES = { "p50", "p90", "p99", "p99.9" }; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final String description;
+    private final long durationMillis;
+    private final long requests;
+    private final long failedResponses;
+    private final long errors;
+    private final LatencyHistogram.Snapshot responseTime;
+    private final LatencyHistogram.Snapshot serviceTime;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new LoadTestResult object.
+     *
+     * @param  description      describes the load that was generated
+     * @param  durationMillis   the duration of the measurement until the last response in milliseconds
+     * @param  requests         the number of completed requests
+     * @param  failedResponses  the number of completed requests with a status of 400 or above
+     * @param  errors           the number of requests that failed with a connection error or timeout
+     * @param  responseTime     the response times corrected for coordinated omission
+     * @param  serviceTime      the service times
+     */
+    LoadTestResult(
+            final String description,
+            final long durationMillis,
+            final long requests,
+            final long failedResponses,
+            final long errors,
+            final LatencyHistogram.Snapshot responseTime,
+            final LatencyHistogram.Snapshot serviceTime) {
+        this.description = description;
+        this.durationMillis = durationMillis;
+        this.requests = requests;
+        this.failedResponses = failedResponses;
+        this.errors = errors;
+        this.responseTime = responseTime;
+        this.serviceTime = serviceTime;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Getter for the number of completed requests, including those with an error status.
+     *
+     * @return  the number of completed requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Getter for the number of completed requests with a status of 400 or above.
+     *
+     * @return  the number of failed responses
+     */
+    public long getFailedResponses() {
+        return failedResponses;
+    }
+
+    /**
+     * Getter for the number of requests that failed with a connection error or timeout.
+     *
+     * @return  the number of errors
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Getter for the throughput.
+     *
+     * @return  the completed requests per second
+     */
+    public double getThroughput() {
+        return (durationMillis == 0) ? 0 : (requests * 1000d / durationMillis);
+    }
+
+    /**
+     * Getter for the response times, corrected for coordinated omission.
+     *
+     * @return  the response times in microseconds
+     */
+    public LatencyHistogram.Snapshot getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Getter for the service times.
+     *
+     * @return  the service times in microseconds
+     */
+    public LatencyHistogram.Snapshot getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Prints a human readable report.
+     *
+     * @param  out  the stream to print to
+     */
+    public void print(final PrintStream out) {
+        out.println(description);
+        out.println(String.format(Locale.ENGLISH, "requests  %12d (%.1f/s)", requests, getThroughput())); // NOI18N
+        out.println(String.format(Locale.ENGLISH, "failed    %12d (status >= 400)", failedResponses));    // NOI18N
+        out.println(String.format(Locale.ENGLISH, "errors    %12d (connections, timeouts)", errors));     // NOI18N
+
+        final StringBuilder header = new StringBuilder("latency ms"); // NOI18N
+        for (final String name : QUANTILE_NAMES) {
+            header.append(String.format(Locale.ENGLISH, "%10s", name)); // NOI18N
+        }
+        header.append(String.format(Locale.ENGLISH, "%10s%10s", "max", "mean")); // NOI18N
+        out.println(header);
+        out.println(formatLatencies("response", responseTime)); // NOI18N
+        out.println(formatLatencies("service", serviceTime));   // NOI18N
+    }
+
+    /**
+     * Formats a row of the latency table.
+     *
+     * @param   name      the name of the row
+     * @param   snapshot  the latencies
+     *
+     * @return  the formatted row
+     */
+    private static String formatLatencies(final String name, final LatencyHistogram.Snapshot snapshot) {
+        final StringBuilder row = new StringBuilder(String.format(Locale.ENGLISH, "%-10s", name)); // NOI18N
+        for (final double quantile : QUANTILES) {
+            row.append(formatMillis(snapshot.getValueAtQuantile(quantile)));
+        }
+        row.append(formatMillis(snapshot.getMax()));
+        row.append(formatMillis((snapshot.getCount() == 0) ? 0 : (snapshot.getSum() / snapshot.getCount())));
+
+        return row.toString();
+    }
+
+    /**
+     * Formats a latency.
+     *
+     * @param   micros  the latency in microseconds
+     *
+     * @return  the latency in milliseconds, right aligned
+     */
+    private static String formatMillis(final long micros) {
+        return String.format(Locale.ENGLISH, "%10.3f", micros / 1000d); // NOI18N
+    }
+}
@@ -0,0 +1,165 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The weighted set of paths a {@link LoadGenerator} requests. The textual form is a comma separated list of <code>
+ * path[=weight]</code> entries, e.g. <code>/items=9,/items/42=1</code> requests <code>/items</code> in nine of ten
+ * cases. The weight defaults to <code>1</code>.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+final class UrlMix {
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final String[] paths;
+    private final int[] weights;
+    // cumulative weights, paths[i] is chosen for random values in [bounds[i - 1], bounds[i])
+    private final int[] bounds;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new UrlMix object.
+     *
+     * @param  paths    the paths
+     * @param  weights  the positive weights of the paths
+     */
+    private UrlMix(final String[] paths, final int[] weights) {
+        this.paths = paths;
+        this.weights = weights;
+        this.bounds = new int[weights.length];
+
+        int total = 0;
+        for (int i = 0; i < weights.length; ++i) {
+            total += weights[i];
+            bounds[i] = total;
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Parses a comma separated list of <code>path[=weight]</code> entries. Paths that do not start with a slash are
+     * made absolute.
+     *
+     * @param   urls  the textual form of the mix
+     *
+     * @return  the parsed mix
+     *
+     * @throws  IllegalArgumentException  if there is no entry or an entry is invalid
+     */
+    static UrlMix parse(final String urls) {
+        if ((urls == null) || urls.trim().isEmpty()) {
+            throw new IllegalArgumentException("urls must not be null or empty"); // NOI18N
+        }
+
+        final List<String> paths = new ArrayList<String>();
+        final List<Integer> weights = new ArrayList<Integer>();
+        long total = 0;
+        for (final String entry : urls.split(",")) { // NOI18N
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            final int equals = entry.lastIndexOf('=');
+            final String path = ((equals < 0) ? entry : entry.substring(0, equals)).trim();
+            final int weight;
+            try {
+                weight = (equals < 0) ? 1 : Integer.parseInt(entry.substring(equals + 1).trim());
+            } catch (final NumberFormatException ex) {
+                throw new IllegalArgumentException("illegal url weight: " + entry, ex); // NOI18N
+            }
+            if (path.isEmpty() || (weight < 1)) {
+                throw new IllegalArgumentException("illegal url entry: " + entry); // NOI18N
+            }
+
+            total += weight;
+            paths.add(path.startsWith("/") ? path : ("/" + path)); // NOI18N
+            weights.add(weight);
+        }
+
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("no url in: " + urls);                 // NOI18N
+        } else if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("url weights are too large: " + urls); // NOI18N
+        }
+
+        final int[] weightArray = new int[weights.size()];
+        for (int i = 0; i < weightArray.length; ++i) {
+            weightArray[i] = weights.get(i);
+        }
+
+        return new UrlMix(paths.toArray(new String[paths.size()]), weightArray);
+    }
+
+    /**
+     * Getter for the number of paths.
+     *
+     * @return  the number of paths
+     */
+    int size() {
+        return paths.length;
+    }
+
+    /**
+     * Getter for a path.
+     *
+     * @param   index  the index of the path
+     *
+     * @return  the path
+     */
+    String getPath(final int index) {
+        return paths[index];
+    }
+
+    /**
+     * Chooses the index of the next path according to the weights.
+     *
+     * @param   random  the random number generator of the calling thread
+     *
+     * @return  the index of the path
+     */
+    int next(final Random random) {
+        if (paths.length == 1) {
+            return 0;
+        }
+
+        final int value = random.nextInt(bounds[bounds.length - 1]);
+        int index = 0;
+        while (value >= bounds[index]) {
+            ++index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Lists the paths with their weights.
+     *
+     * @return  the paths and weights
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < paths.length; ++i) {
+            if (i > 0) {
+                sb.append(", "); // NOI18N
+            }
+            sb.append(paths[i]).append(" (weight ").append(weights[i]).append(')'); // NOI18N
+        }
+
+        return sb.toString();
+    }
+}
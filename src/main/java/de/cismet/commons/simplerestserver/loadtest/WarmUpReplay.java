@@ -0,0 +1,235 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.loadtest;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import java.net.InetSocketAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.cismet.commons.simplerestserver.metrics.LatencyHistogram;
+
+/**
+ * Replays sample requests against a freshly started server over loopback, so that the request processing of Grizzly
+ * and Jersey and the resource methods are compiled by the JIT before real clients arrive. The requests are sent one
+ * after the other in file order, repeatedly, until the request limit or the time limit is reached. The latencies of
+ * the first and of the last {@link #WINDOW} requests are logged to show the effect.
+ *
+ * <p>The file contains one request per line, a path including the context path and query, optionally preceded by
+ * <code>GET</code> as in access logs. Empty lines and lines starting with <code>#</code> are ignored. Only <code>
+ * GET</code> requests are replayed, lines with other methods are skipped, since the replay must not change any
+ * state.</p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class WarmUpReplay {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(WarmUpReplay.class);
+
+    public static final long DEFAULT_REQUESTS = 10000;
+    public static final long DEFAULT_DURATION = 30000;
+
+    // lets the replayed requests pass while a listener still rejects client requests
+    public static final String TOKEN_HEADER = "X-Warmup-Token"; // NOI18N
+
+    // number of requests the first and the final latencies are measured over
+    static final int WINDOW = 500;
+
+    private static final String ENCODING = "UTF-8"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient String[] paths;
+    private final transient long maxRequests;
+    private final transient long maxMillis;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new WarmUpReplay object.
+     *
+     * @param  paths        the paths to request
+     * @param  maxRequests  the maximum number of requests
+     * @param  maxMillis    the maximum duration in milliseconds
+     */
+    private WarmUpReplay(final String[] paths, final long maxRequests, final long maxMillis) {
+        this.paths = paths;
+        this.maxRequests = maxRequests;
+        this.maxMillis = maxMillis;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Reads the requests to replay from a file.
+     *
+     * @param   file         the file with one request per line
+     * @param   maxRequests  the maximum number of requests
+     * @param   maxMillis    the maximum duration in milliseconds
+     *
+     * @return  the replay
+     *
+     * @throws  IOException               if the file cannot be read or contains no request
+     * @throws  IllegalArgumentException  if a limit is not positive
+     */
+    public static WarmUpReplay load(final File file, final long maxRequests, final long maxMillis) throws IOException {
+        if ((maxRequests < 1) || (maxMillis < 1)) {
+            throw new IllegalArgumentException("illegal warm-up limits: " + maxRequests + ", " + maxMillis); // NOI18N
+        }
+
+        final List<String> paths;
+        final Reader reader = new InputStreamReader(new FileInputStream(file), ENCODING);
+        try {
+            paths = parse(reader);
+        } finally {
+            reader.close();
+        }
+
+        if (paths.isEmpty()) {
+            throw new IOException("no request to replay in " + file); // NOI18N
+        }
+
+        return new WarmUpReplay(paths.toArray(new String[paths.size()]), maxRequests, maxMillis);
+    }
+
+    /**
+     * Parses the lines of a warm-up file.
+     *
+     * @param   reader  the reader of the file, it is not closed
+     *
+     * @return  the paths of the <code>GET</code> requests
+     *
+     * @throws  IOException  if the file cannot be read
+     */
+    static List<String> parse(final Reader reader) throws IOException {
+        final List<String> paths = new ArrayList<String>();
+        final BufferedReader br = new BufferedReader(reader);
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
+            final String entry = line.trim();
+            if (entry.isEmpty() || entry.startsWith("#")) { // NOI18N
+                continue;
+            }
+
+            final int space = entry.indexOf(' ');
+            final String path;
+            if (space < 0) {
+                path = entry;
+            } else if ("GET".equals(entry.substring(0, space))) { // NOI18N
+                path = entry.substring(space + 1).trim();
+            } else {
+                LOG.warn("only GET requests are replayed, skipped: " + entry); // NOI18N
+                continue;
+            }
+
+            paths.add(path.startsWith("/") ? path : ("/" + path)); // NOI18N
+        }
+
+        return paths;
+    }
+
+    /**
+     * Replays the requests and logs duration and latencies. The replay ends early if the connection fails, a warm-up
+     * never prevents a server from starting.
+     *
+     * @param  address  the address of the server
+     * @param  token    the value of the {@link #TOKEN_HEADER} or <code>null</code>
+     */
+    public void run(final InetSocketAddress address, final String token) {
+        final Map<String, String> headers = (token == null) ? null : Collections.singletonMap(TOKEN_HEADER, token);
+        final String host = address.getHostString() + ":" + address.getPort(); // NOI18N
+        final byte[][] requests = new byte[paths.length][];
+        for (int i = 0; i < requests.length; ++i) {
+            requests[i] = HttpClientConnection.createRequest(host, paths[i], headers);
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("warm-up starting @ " + host + " :: paths=" + paths.length // NOI18N
+                        + " | maxRequests=" + maxRequests // NOI18N
+                        + " | maxDuration=" + maxMillis + " ms"); // NOI18N
+        }
+
+        final HttpClientConnection connection = new HttpClientConnection(address, LoadGenerator.DEFAULT_TIMEOUT);
+        final LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram previous = null;
+        LatencyHistogram current = new LatencyHistogram();
+        long sent = 0;
+        long failed = 0;
+        final long start = System.nanoTime();
+        final long deadline = start + (maxMillis * 1000000L);
+        try {
+            while ((sent < maxRequests) && (System.nanoTime() < deadline)) {
+                if ((sent > 0) && ((sent % WINDOW) == 0)) {
+                    previous = current;
+                    current = new LatencyHistogram();
+                }
+
+                final long begin = System.nanoTime();
+                final int status = connection.send(requests[(int)(sent % requests.length)]);
+                final long nanos = System.nanoTime() - begin;
+                if (status >= 400) {
+                    ++failed;
+                }
+                if (sent < WINDOW) {
+                    first.recordNanos(nanos);
+                }
+                current.recordNanos(nanos);
+                ++sent;
+            }
+        } catch (final IOException e) {
+            LOG.warn("warm-up aborted after " + sent + " requests", e); // NOI18N
+        } finally {
+            connection.close();
+        }
+
+        final long duration = (System.nanoTime() - start) / 1000000L;
+        if (failed > 0) {
+            LOG.warn(failed + " warm-up requests failed with status >= 400, check the warm-up file"); // NOI18N
+        }
+        if (LOG.isInfoEnabled()) {
+            // the final window is the last complete one, if any
+            final LatencyHistogram last = ((previous != null) && (current.snapshot().getCount() < WINDOW)) ? previous
+                                                                                                           : current;
+            LOG.info("warm-up finished @ " + host + " :: requests=" + sent // NOI18N
+                        + " | failed=" + failed // NOI18N
+                        + " | duration=" + duration + " ms" // NOI18N
+                        + " | first " + describe(first.snapshot()) // NOI18N
+                        + " | final " + describe(last.snapshot())); // NOI18N
+        }
+    }
+
+    /**
+     * Describes the median and the 99th percentile of a latency window.
+     *
+     * @param   snapshot  the latencies of the window
+     *
+     * @return  the description, latencies in milliseconds
+     */
+    private static String describe(final LatencyHistogram.Snapshot snapshot) {
+        return String.format(
+                Locale.ENGLISH,
+                "%d: p50=%.3f ms p99=%.3f ms", // NOI18N
+                snapshot.getCount(),
+                snapshot.getValueAtQuantile(0.5) / 1000d,
+                snapshot.getValueAtQuantile(0.99) / 1000d);
+    }
+}
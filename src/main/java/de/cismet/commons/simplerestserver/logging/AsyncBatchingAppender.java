@@ -0,0 +1,526 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Decouples the logging threads from the attached appenders. Events are put into a bounded buffer and a single writer
+ * thread hands them to the attached appenders in batches. After each batch all attached appenders that implement
+ * {@link Flushable} are flushed, so file appenders should be configured with <code>ImmediateFlush=false</code> and
+ * will write once per batch.<br/>
+ * <br/>
+ * If the buffer is full the configured {@link OverflowPolicy} decides whether the logging thread waits or the event is
+ * dropped. Once the appender is closed waiting logging threads give up and their events are dropped, too. Dropped and
+ * blocked events are counted and published by the {@link MetricsRegistry}.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class AsyncBatchingAppender extends AppenderSkeleton implements AppenderAttachable {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    // ms between two checks whether the appender was closed, of a waiting logging thread and of the writer thread
+    private static final long CLOSE_CHECK_INTERVAL = 100;
+
+    private static final String SOURCE_NAME = "asyncLogging"; // NOI18N
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient AppenderAttachableImpl appenders;
+    private final transient AtomicLong dropped;
+    private final transient AtomicLong blocked;
+
+    private transient int bufferSize;
+    private transient int batchSize;
+    private transient OverflowPolicy overflowPolicy;
+    private transient boolean locationInfo;
+
+    private transient BlockingQueue<LoggingEvent> buffer;
+    private transient Thread writer;
+
+    // closed is neither volatile nor read while holding the monitor by the logging threads
+    private transient volatile boolean stopped;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new AsyncBatchingAppender object.
+     */
+    public AsyncBatchingAppender() {
+        appenders = new AppenderAttachableImpl();
+        dropped = new AtomicLong();
+        blocked = new AtomicLong();
+        bufferSize = DEFAULT_BUFFER_SIZE;
+        batchSize = DEFAULT_BATCH_SIZE;
+        overflowPolicy = OverflowPolicy.BLOCK;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates the buffer, starts the writer thread and publishes the counters. Must be called once after all options
+     * are set.
+     */
+    @Override
+    public synchronized void activateOptions() {
+        if (writer != null) {
+            return;
+        }
+
+        buffer = new ArrayBlockingQueue<LoggingEvent>(bufferSize);
+        writer = new Thread(new Writer(), "log4j-async-writer-" + name); // NOI18N
+        writer.setDaemon(true);
+        writer.start();
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    /**
+     * Same as {@link AppenderSkeleton#doAppend(org.apache.log4j.spi.LoggingEvent)} but without synchronisation, the
+     * buffer is thread safe and logging threads shall not contend on the appender monitor.
+     *
+     * @param  event  the event to append
+     */
+    @Override
+    public void doAppend(final LoggingEvent event) {
+        if (stopped || !isAsSevereAsThreshold(event.getLevel())) {
+            return;
+        }
+
+        Filter f = headFilter;
+        while (f != null) {
+            final int decision = f.decide(event);
+            if (decision == Filter.DENY) {
+                return;
+            } else if (decision == Filter.ACCEPT) {
+                break;
+            }
+            f = f.next;
+        }
+
+        append(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void append(final LoggingEvent event) {
+        final BlockingQueue<LoggingEvent> queue = buffer;
+        if (queue == null) {
+            errorHandler.error("appender not activated: " + name); // NOI18N
+
+            return;
+        }
+
+        // capture all thread dependent information while still in the logging thread
+        event.getNDC();
+        event.getThreadName();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        event.getThrowableStrRep();
+        if (locationInfo) {
+            event.getLocationInformation();
+        }
+
+        if (queue.offer(event)) {
+            discardIfStopped(queue, event);
+
+            return;
+        }
+
+        final boolean wait;
+        switch (overflowPolicy) {
+            case DROP_ALL: {
+                wait = false;
+                break;
+            }
+            case DROP_DEBUG: {
+                wait = event.getLevel().isGreaterOrEqual(Level.INFO);
+                break;
+            }
+            default: {
+                wait = true;
+            }
+        }
+
+        if (wait) {
+            blocked.incrementAndGet();
+            try {
+                // the writer thread does not take events anymore once the appender is closed
+                while (!stopped) {
+                    if (queue.offer(event, CLOSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                        discardIfStopped(queue, event);
+
+                        return;
+                    }
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Takes back an event that was buffered while the appender was closed, the writer thread may have written the
+     * buffered events for the last time already. The event is counted as dropped.
+     *
+     * @param  queue  the buffer
+     * @param  event  the buffered event
+     */
+    private void discardIfStopped(final BlockingQueue<LoggingEvent> queue, final LoggingEvent event) {
+        if (stopped && queue.remove(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting events, waits for the writer thread to write the buffered events and closes all attached
+     * appenders. The writer thread is not interrupted, attached appenders writing to an interruptible channel would
+     * lose their connection.
+     */
+    @Override
+    public void close() {
+        final Thread w;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stopped = true;
+            w = writer;
+        }
+
+        if (w != null) {
+            try {
+                w.join(CLOSE_TIMEOUT);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (dropped.get() > 0) {
+            LogLog.warn("appender " + name + " dropped " + dropped.get() + " events"); // NOI18N
+        }
+
+        synchronized (appenders) {
+            final Enumeration e = appenders.getAllAppenders();
+            while ((e != null) && e.hasMoreElements()) {
+                ((Appender)e.nextElement()).close();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+
+    /**
+     * Getter for the number of events that were dropped because the buffer was full or the appender was closed.
+     *
+     * @return  the number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Getter for the number of times a logging thread had to wait because the buffer was full.
+     *
+     * @return  the number of blocked appends
+     */
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    /**
+     * Getter for the number of events currently waiting in the buffer.
+     *
+     * @return  the number of buffered events
+     */
+    public int getBufferedCount() {
+        final BlockingQueue<LoggingEvent> queue = buffer;
+
+        return (queue == null) ? 0 : queue.size();
+    }
+
+    /**
+     * Setter for the buffer size. Has no effect after {@link #activateOptions()}.
+     *
+     * @param  bufferSize  the maximum number of buffered events
+     */
+    public void setBufferSize(final int bufferSize) {
+        this.bufferSize = Math.max(1, bufferSize);
+    }
+
+    /**
+     * Getter for the buffer size.
+     *
+     * @return  the maximum number of buffered events
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Setter for the batch size.
+     *
+     * @param  batchSize  the maximum number of events written before the attached appenders are flushed
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Getter for the batch size.
+     *
+     * @return  the maximum number of events written before the attached appenders are flushed
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Setter for the overflow policy.
+     *
+     * @param  overflowPolicy  the overflow policy
+     */
+    public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = (overflowPolicy == null) ? OverflowPolicy.BLOCK : overflowPolicy;
+    }
+
+    /**
+     * Getter for the overflow policy.
+     *
+     * @return  the overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Setter for the location info flag. If set the location information is captured in the logging thread, which is
+     * expensive but required if any attached appender uses it.
+     *
+     * @param  locationInfo  the location info flag
+     */
+    public void setLocationInfo(final boolean locationInfo) {
+        this.locationInfo = locationInfo;
+    }
+
+    /**
+     * Getter for the location info flag.
+     *
+     * @return  the location info flag
+     */
+    public boolean getLocationInfo() {
+        return locationInfo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAppender(final Appender newAppender) {
+        synchronized (appenders) {
+            appenders.addAppender(newAppender);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration getAllAppenders() {
+        synchronized (appenders) {
+            return appenders.getAllAppenders();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Appender getAppender(final String name) {
+        synchronized (appenders) {
+            return appenders.getAppender(name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAttached(final Appender appender) {
+        synchronized (appenders) {
+            return appenders.isAttached(appender);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAllAppenders() {
+        synchronized (appenders) {
+            appenders.removeAllAppenders();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAppender(final Appender appender) {
+        synchronized (appenders) {
+            appenders.removeAppender(appender);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAppender(final String name) {
+        synchronized (appenders) {
+            appenders.removeAppender(name);
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Drains the buffer and hands the events to the attached appenders.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Writer implements Runnable {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            final List<LoggingEvent> batch = new ArrayList<LoggingEvent>(batchSize);
+            boolean running = true;
+            while (running) {
+                try {
+                    final LoggingEvent first = buffer.poll(CLOSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        buffer.drainTo(batch, batchSize - 1);
+                    }
+                } catch (final InterruptedException ex) {
+                    running = false;
+                }
+
+                if (!running || stopped) {
+                    // write whatever is left before terminating
+                    buffer.drainTo(batch);
+                    running = false;
+                }
+
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * Writes the given events to all attached appenders and flushes them afterwards.
+         *
+         * @param  batch  the events to write
+         */
+        private void write(final List<LoggingEvent> batch) {
+            synchronized (appenders) {
+                for (final LoggingEvent event : batch) {
+                    appenders.appendLoopOnAppenders(event);
+                }
+
+                final Enumeration e = appenders.getAllAppenders();
+                while ((e != null) && e.hasMoreElements()) {
+                    final Object appender = e.nextElement();
+                    if (appender instanceof Flushable) {
+                        try {
+                            ((Flushable)appender).flush();
+                        } catch (final IOException ex) {
+                            errorHandler.error("cannot flush appender: " + appender, ex, 0); // NOI18N
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the counters of the appender.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            writer.gauge(
+                "log_async_buffered", // NOI18N
+                "Log events waiting for the writer thread", // NOI18N
+                getBufferedCount());
+            writer.counter(
+                "log_async_dropped_total", // NOI18N
+                "Log events dropped because the buffer was full or the appender closed", // NOI18N
+                dropped.get());
+            writer.counter(
+                "log_async_blocked_total", // NOI18N
+                "Log events whose logging thread had to wait because the buffer was full", // NOI18N
+                blocked.get());
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.charset.Charset;
+
+/**
+ * Compact binary representation of {@link LoggingEvent}s used for log shipping. Unlike java serialisation only the
+ * timestamp, level, logger name, thread name, rendered message, NDC and throwable lines are transferred, location
+ * information is omitted. Every event is encoded as a self-contained frame:<br/>
+ * <br/>
+ * <code>int frameLength | byte version | long timestamp | int level | string logger | string thread | string message |
+ * string ndc | int throwableLineCount | string[] throwableLines</code><br/>
+ * <br/>
+ * where a string is encoded as its UTF-8 byte count followed by the bytes, <code>-1</code> denotes <code>null</code>.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class CompactEventCodec {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final byte VERSION = 1;
+
+    /** Frames larger than this are considered corrupt. */
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); // NOI18N
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new CompactEventCodec object.
+     */
+    private CompactEventCodec() {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Encodes the given event into a frame including the leading frame length.
+     *
+     * @param   event  the event to encode
+     *
+     * @return  the encoded frame
+     */
+    public static byte[] encode(final LoggingEvent event) {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        final DataOutputStream dos = new DataOutputStream(bos);
+        try {
+            // placeholder for the frame length
+            dos.writeInt(0);
+            dos.writeByte(VERSION);
+            dos.writeLong(event.timeStamp);
+            dos.writeInt(event.getLevel().toInt());
+            writeString(dos, event.getLoggerName());
+            writeString(dos, event.getThreadName());
+            writeString(dos, event.getRenderedMessage());
+            writeString(dos, event.getNDC());
+
+            final String[] throwable = event.getThrowableStrRep();
+            if (throwable == null) {
+                dos.writeInt(0);
+            } else {
+                dos.writeInt(throwable.length);
+                for (final String line : throwable) {
+                    writeString(dos, line);
+                }
+            }
+            dos.flush();
+        } catch (final IOException ex) {
+            // cannot happen with a byte array output stream
+            throw new IllegalStateException("cannot encode event", ex); // NOI18N
+        }
+
+        final byte[] frame = bos.toByteArray();
+        final int length = frame.length - 4;
+        frame[0] = (byte)(length >>> 24);
+        frame[1] = (byte)(length >>> 16);
+        frame[2] = (byte)(length >>> 8);
+        frame[3] = (byte)length;
+
+        return frame;
+    }
+
+    /**
+     * Reads the next frame from the given stream.
+     *
+     * @param   in  the stream to read from
+     *
+     * @return  the decoded event
+     *
+     * @throws  IOException  if the stream cannot be read, ends prematurely or contains an invalid frame
+     */
+    public static ShippedEvent decode(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if ((length < 1) || (length > MAX_FRAME_LENGTH)) {
+            throw new IOException("invalid frame length: " + length); // NOI18N
+        }
+
+        final byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported frame version: " + version); // NOI18N
+        }
+
+        final long timestamp = in.readLong();
+        final int level = in.readInt();
+        final String logger = readString(in);
+        final String thread = readString(in);
+        final String message = readString(in);
+        final String ndc = readString(in);
+        final int throwableLines = in.readInt();
+        if ((throwableLines < 0) || (throwableLines > length)) {
+            throw new IOException("invalid throwable line count: " + throwableLines); // NOI18N
+        }
+        final String[] throwable = new String[throwableLines];
+        for (int i = 0; i < throwableLines; ++i) {
+            throwable[i] = readString(in);
+        }
+
+        return new ShippedEvent(timestamp, level, logger, thread, message, ndc, throwable);
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string.
+     *
+     * @param   out  the output
+     * @param   s    the string, may be <code>null</code>
+     *
+     * @throws  IOException  if the string cannot be written
+     */
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = s.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string.
+     *
+     * @param   in  the input
+     *
+     * @return  the string, may be <code>null</code>
+     *
+     * @throws  IOException  if the string cannot be read
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == -1) {
+            return null;
+        } else if ((length < 0) || (length > MAX_FRAME_LENGTH)) {
+            throw new IOException("invalid string length: " + length); // NOI18N
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, UTF8);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * A decoded event.
+     *
+     * @version  1.0, 20261017
+     */
+    public static final class ShippedEvent {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final long timestamp;
+        private final int level;
+        private final String logger;
+        private final String thread;
+        private final String message;
+        private final String ndc;
+        private final String[] throwable;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new ShippedEvent object.
+         *
+         * @param  timestamp  the event timestamp
+         * @param  level      the int value of the Log4J level
+         * @param  logger     the logger name
+         * @param  thread     the thread name
+         * @param  message    the rendered message
+         * @param  ndc        the NDC
+         * @param  throwable  the throwable lines, never <code>null</code>
+         */
+        ShippedEvent(
+                final long timestamp,
+                final int level,
+                final String logger,
+                final String thread,
+                final String message,
+                final String ndc,
+                final String[] throwable) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.message = message;
+            this.ndc = ndc;
+            this.throwable = throwable;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Getter for the timestamp.
+         *
+         * @return  the timestamp
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Getter for the int value of the Log4J level.
+         *
+         * @return  the level
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Getter for the logger name.
+         *
+         * @return  the logger name
+         */
+        public String getLogger() {
+            return logger;
+        }
+
+        /**
+         * Getter for the thread name.
+         *
+         * @return  the thread name
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * Getter for the rendered message.
+         *
+         * @return  the message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Getter for the NDC.
+         *
+         * @return  the NDC
+         */
+        public String getNdc() {
+            return ndc;
+        }
+
+        /**
+         * Getter for the throwable lines.
+         *
+         * @return  the throwable lines, empty if the event had no throwable
+         */
+        public String[] getThrowable() {
+            return throwable;
+        }
+    }
+}
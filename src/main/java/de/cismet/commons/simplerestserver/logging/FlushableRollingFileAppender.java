@@ -0,0 +1,34 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.RollingFileAppender;
+
+import java.io.Flushable;
+
+/**
+ * {@link RollingFileAppender} that can be flushed explicitly. Used with <code>ImmediateFlush=false</code> behind an
+ * {@link AsyncBatchingAppender} so that the file is written once per batch instead of once per event.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class FlushableRollingFileAppender extends RollingFileAppender implements Flushable {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Flushes the underlying writer, if any.
+     */
+    @Override
+    public synchronized void flush() {
+        if (qw != null) {
+            qw.flush();
+        }
+    }
+}
@@ -0,0 +1,523 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.Logger;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import java.util.Locale;
+
+/**
+ * Pipes a <code>PrintStream</code> to Log4J at DEBUG level. Every thread writes into its own line buffer, so no lock is
+ * shared between the printing threads. Only complete lines are logged, empty lines are skipped. If DEBUG is disabled
+ * the output is discarded right away without copying it. A line that exceeds the maximum line length is logged in
+ * pieces, so a runaway printer cannot grow the heap.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class Log4JPrintStream extends PrintStream {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_MAX_LINE_LENGTH = 8192;
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient Logger log;
+    private final transient int maxLineLength;
+    private final transient ThreadLocal<LineBuffer> buffers;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new Log4JPrintStream object using the {@link #DEFAULT_MAX_LINE_LENGTH}.
+     *
+     * @param  log  the log4j logger to use for logging
+     */
+    public Log4JPrintStream(final Logger log) {
+        this(log, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * Creates a new Log4JPrintStream object.
+     *
+     * @param   log            the log4j logger to use for logging
+     * @param   maxLineLength  the maximum number of characters buffered per thread
+     *
+     * @throws  IllegalArgumentException  if the logger is <code>null</code> or the max line length is not positive
+     */
+    public Log4JPrintStream(final Logger log, final int maxLineLength) {
+        super(new DiscardingOutputStream(), false);
+
+        if (log == null) {
+            throw new IllegalArgumentException("log must not be null"); // NOI18N
+        }
+        if (maxLineLength < 1) {
+            throw new IllegalArgumentException("maxLineLength must be positive: " + maxLineLength); // NOI18N
+        }
+
+        this.log = log;
+        this.maxLineLength = maxLineLength;
+        this.buffers = new ThreadLocal<LineBuffer>() {
+
+                @Override
+                protected LineBuffer initialValue() {
+                    return new LineBuffer();
+                }
+            };
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the line buffer of the current thread or <code>null</code> if DEBUG is disabled. In the latter case no
+     * buffer is created and the buffer of the thread, if any, is discarded.
+     *
+     * @return  the line buffer of the current thread or <code>null</code>
+     */
+    private LineBuffer buffer() {
+        if (log.isDebugEnabled()) {
+            return buffers.get();
+        }
+
+        buffers.remove();
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final int b) {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            buffer.append((byte)b);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final byte[] buf, final int off, final int len) {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            for (int i = off; i < (off + len); ++i) {
+                buffer.append(buf[i]);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final String s) {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            buffer.append((s == null) ? "null" : s); // NOI18N
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final char[] s) {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            for (final char c : s) {
+                buffer.append(c);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final char c) {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            buffer.append(c);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final boolean b) {
+        print(String.valueOf(b));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final int i) {
+        print(String.valueOf(i));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final long l) {
+        print(String.valueOf(l));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final float f) {
+        print(String.valueOf(f));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final double d) {
+        print(String.valueOf(d));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(final Object obj) {
+        print(String.valueOf(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println() {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            buffer.emit();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final String x) {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            buffer.append((x == null) ? "null" : x); // NOI18N
+            buffer.emit();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final char[] x) {
+        print(x);
+        println();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final char x) {
+        print(x);
+        println();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final boolean x) {
+        println(String.valueOf(x));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final int x) {
+        println(String.valueOf(x));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final long x) {
+        println(String.valueOf(x));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final float x) {
+        println(String.valueOf(x));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final double x) {
+        println(String.valueOf(x));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(final Object x) {
+        println(String.valueOf(x));
+    }
+
+    /**
+     * Formats without locking the stream, {@link PrintStream#format(java.lang.String, java.lang.Object[])} synchronises
+     * on the stream.
+     *
+     * @param   format  the format string
+     * @param   args    the format arguments
+     *
+     * @return  this stream
+     */
+    @Override
+    public PrintStream format(final String format, final Object... args) {
+        if (log.isDebugEnabled()) {
+            print(String.format(format, args));
+        }
+
+        return this;
+    }
+
+    /**
+     * Formats without locking the stream, {@link PrintStream#format(java.util.Locale, java.lang.String,
+     * java.lang.Object[])} synchronises on the stream.
+     *
+     * @param   l       the locale to use
+     * @param   format  the format string
+     * @param   args    the format arguments
+     *
+     * @return  this stream
+     */
+    @Override
+    public PrintStream format(final Locale l, final String format, final Object... args) {
+        if (log.isDebugEnabled()) {
+            print(String.format(l, format, args));
+        }
+
+        return this;
+    }
+
+    /**
+     * Does nothing, only complete lines are logged.
+     */
+    @Override
+    public void flush() {
+        // only complete lines are logged
+    }
+
+    /**
+     * Logs the incomplete line of the current thread, if any.
+     */
+    @Override
+    public void close() {
+        final LineBuffer buffer = buffer();
+        if (buffer != null) {
+            buffer.emit();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean checkError() {
+        return false;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Collects the characters and bytes of the current line of a single thread. Bytes are buffered separately and
+     * decoded using the platform encoding as soon as a character is appended or the line is complete.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class LineBuffer {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private StringBuilder chars;
+        private byte[] bytes;
+        private int byteCount;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new LineBuffer object.
+         */
+        LineBuffer() {
+            chars = new StringBuilder(INITIAL_CAPACITY);
+            bytes = new byte[INITIAL_CAPACITY];
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Appends a byte, a line feed completes the line.
+         *
+         * @param  b  the byte to append
+         */
+        void append(final byte b) {
+            if (b == '\n') {
+                emit();
+            } else {
+                if (byteCount == bytes.length) {
+                    final byte[] grown = new byte[Math.min(bytes.length << 1, maxLineLength)];
+                    System.arraycopy(bytes, 0, grown, 0, byteCount);
+                    bytes = grown;
+                }
+                bytes[byteCount++] = b;
+                if ((chars.length() + byteCount) >= maxLineLength) {
+                    emit();
+                }
+            }
+        }
+
+        /**
+         * Appends a character, a line feed completes the line.
+         *
+         * @param  c  the character to append
+         */
+        void append(final char c) {
+            if (c == '\n') {
+                emit();
+            } else {
+                decodeBytes();
+                chars.append(c);
+                if (chars.length() >= maxLineLength) {
+                    emit();
+                }
+            }
+        }
+
+        /**
+         * Appends a string, every line feed completes a line.
+         *
+         * @param  s  the string to append
+         */
+        void append(final String s) {
+            decodeBytes();
+
+            int start = 0;
+            final int length = s.length();
+            for (int i = 0; i < length; ++i) {
+                if (s.charAt(i) == '\n') {
+                    appendChunk(s, start, i);
+                    emit();
+                    start = i + 1;
+                }
+            }
+            appendChunk(s, start, length);
+        }
+
+        /**
+         * Appends the given part of a string that does not contain any line feed, respecting the max line length.
+         *
+         * @param  s      the string
+         * @param  start  the start index, inclusive
+         * @param  end    the end index, exclusive
+         */
+        private void appendChunk(final String s, final int start, final int end) {
+            int pos = start;
+            while (pos < end) {
+                final int count = Math.min(end - pos, maxLineLength - chars.length());
+                chars.append(s, pos, pos + count);
+                pos += count;
+                if (chars.length() >= maxLineLength) {
+                    emit();
+                }
+            }
+        }
+
+        /**
+         * Decodes the pending bytes and appends them to the characters.
+         */
+        private void decodeBytes() {
+            if (byteCount > 0) {
+                chars.append(new String(bytes, 0, byteCount));
+                byteCount = 0;
+            }
+        }
+
+        /**
+         * Logs the current line, if it is not empty, and clears the buffer.
+         */
+        void emit() {
+            decodeBytes();
+
+            int length = chars.length();
+            if ((length > 0) && (chars.charAt(length - 1) == '\r')) {
+                --length;
+            }
+            if (length > 0) {
+                log.debug(chars.substring(0, length));
+            }
+
+            reset();
+        }
+
+        /**
+         * Clears the buffer and releases memory that was allocated for very long lines.
+         */
+        void reset() {
+            byteCount = 0;
+            if (chars.capacity() > (INITIAL_CAPACITY << 2)) {
+                chars = new StringBuilder(INITIAL_CAPACITY);
+            } else {
+                chars.setLength(0);
+            }
+            if (bytes.length > (INITIAL_CAPACITY << 2)) {
+                bytes = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * Target of the <code>PrintStream</code> super class, never written to because all writing methods are overridden.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final int b) {
+            // discard
+        }
+    }
+}
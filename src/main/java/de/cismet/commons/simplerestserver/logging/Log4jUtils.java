@@ -0,0 +1,94 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.net.SocketAppender;
+import org.apache.log4j.spi.AppenderAttachable;
+
+import java.util.Enumeration;
+import java.util.regex.Pattern;
+
+/**
+ * Log4J related helper methods.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class Log4jUtils {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    // %C, %F, %l, %L and %M, optionally with format modifiers, see PatternLayout
+    private static final Pattern LOCATION_CONVERSION = Pattern.compile("%-?[0-9]*(\\.[0-9]+)?[CFlLM]"); // NOI18N
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new Log4jUtils object.
+     */
+    private Log4jUtils() {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Indicates whether any of the given appenders, including attached appenders of appenders that implement
+     * {@link AppenderAttachable}, needs the location information of an event. Location information is needed by
+     * {@link PatternLayout}s that print the caller class, file, line or method and by {@link SocketAppender}s with
+     * <code>LocationInfo=true</code>. Unknown appenders are assumed not to need it.
+     *
+     * @param   appenders  the appenders to inspect, usually the result of <code>getAllAppenders()</code>
+     *
+     * @return  true if location information is needed, false otherwise
+     */
+    public static boolean requiresLocationInfo(final Enumeration appenders) {
+        if (appenders == null) {
+            return false;
+        }
+
+        while (appenders.hasMoreElements()) {
+            final Object next = appenders.nextElement();
+            if ((next instanceof Appender) && requiresLocationInfo((Appender)next)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates whether the given appender needs the location information of an event.
+     *
+     * @param   appender  the appender to inspect
+     *
+     * @return  true if location information is needed, false otherwise
+     *
+     * @see     #requiresLocationInfo(java.util.Enumeration)
+     */
+    public static boolean requiresLocationInfo(final Appender appender) {
+        if (appender instanceof SocketAppender) {
+            return ((SocketAppender)appender).getLocationInfo();
+        }
+
+        if (appender instanceof AppenderAttachable) {
+            return requiresLocationInfo(((AppenderAttachable)appender).getAllAppenders());
+        }
+
+        final Layout layout = appender.getLayout();
+        if (layout instanceof PatternLayout) {
+            final String pattern = ((PatternLayout)layout).getConversionPattern();
+
+            return (pattern != null) && LOCATION_CONVERSION.matcher(pattern).find();
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,702 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.net.InetSocketAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cismet.commons.simplerestserver.metrics.MetricsRegistry;
+import de.cismet.commons.simplerestserver.metrics.MetricsSource;
+import de.cismet.commons.simplerestserver.metrics.MetricsWriter;
+
+/**
+ * Ships events to a remote receiver without ever blocking the logging thread. Events are encoded using the
+ * {@link CompactEventCodec} and put into a bounded queue. A sender thread writes them in batches over a non-blocking
+ * {@link SocketChannel}. While the receiver is unavailable the batches are appended to a bounded spool file which is
+ * replayed as soon as the connection is re-established. Delivery is at-least-once: if the connection breaks during a
+ * replay, the spool is replayed again from the start.<br/>
+ * <br/>
+ * Events that do not fit into the queue or the spool file are dropped. The shipped, spooled and dropped events are
+ * counted and published by the {@link MetricsRegistry}. The {@link LogShippingReceiver} can serve as a local stand-in
+ * for the remote receiver.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class LogShippingAppender extends AppenderSkeleton {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final String DEFAULT_REMOTE_HOST = "localhost"; // NOI18N
+    public static final int DEFAULT_PORT = 4445;
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+    public static final long DEFAULT_MAX_SPOOL_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_RECONNECTION_DELAY = 5000;
+
+    private static final long IO_TIMEOUT = 5000;
+    private static final long CLOSE_TIMEOUT = 5000;
+    private static final int REPLAY_CHUNK_SIZE = 64 * 1024;
+
+    private static final String SOURCE_NAME = "logShipping"; // NOI18N
+
+    // queued by close to wake the sender, compared by identity
+    private static final byte[] SHUTDOWN = new byte[0];
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient AtomicLong dropped;
+    private final transient AtomicLong shipped;
+    private final transient AtomicLong spooled;
+
+    private transient String remoteHost;
+    private transient int port;
+    private transient int batchSize;
+    private transient int queueSize;
+    private transient String spoolFile;
+    private transient long maxSpoolSize;
+    private transient long reconnectionDelay;
+
+    private transient BlockingQueue<byte[]> queue;
+    private transient Thread sender;
+    // read without the appender monitor, by logging threads and the sender
+    private transient volatile boolean stopped;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new LogShippingAppender object.
+     */
+    public LogShippingAppender() {
+        dropped = new AtomicLong();
+        shipped = new AtomicLong();
+        spooled = new AtomicLong();
+        remoteHost = DEFAULT_REMOTE_HOST;
+        port = DEFAULT_PORT;
+        batchSize = DEFAULT_BATCH_SIZE;
+        queueSize = DEFAULT_QUEUE_SIZE;
+        maxSpoolSize = DEFAULT_MAX_SPOOL_SIZE;
+        reconnectionDelay = DEFAULT_RECONNECTION_DELAY;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates the queue, starts the sender thread and publishes the counters. Must be called once after all options
+     * are set.
+     */
+    @Override
+    public synchronized void activateOptions() {
+        if (sender != null) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<byte[]>(queueSize);
+        sender = new Thread(new Sender(), "log4j-shipping-" + name); // NOI18N
+        sender.setDaemon(true);
+        sender.start();
+
+        MetricsRegistry.getInstance().addSource(SOURCE_NAME, new Metrics());
+    }
+
+    /**
+     * Same as {@link AppenderSkeleton#doAppend(org.apache.log4j.spi.LoggingEvent)} but without synchronisation, the
+     * queue is thread safe and logging threads shall not contend on the appender monitor.
+     *
+     * @param  event  the event to append
+     */
+    @Override
+    public void doAppend(final LoggingEvent event) {
+        if (stopped || !isAsSevereAsThreshold(event.getLevel())) {
+            return;
+        }
+
+        Filter f = headFilter;
+        while (f != null) {
+            final int decision = f.decide(event);
+            if (decision == Filter.DENY) {
+                return;
+            } else if (decision == Filter.ACCEPT) {
+                break;
+            }
+            f = f.next;
+        }
+
+        append(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void append(final LoggingEvent event) {
+        final BlockingQueue<byte[]> q = queue;
+        if (q == null) {
+            errorHandler.error("appender not activated: " + name); // NOI18N
+
+            return;
+        }
+
+        if (!q.offer(CompactEventCodec.encode(event))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the sender thread after it tried to ship or spool the queued events. The sender is not interrupted, an
+     * interrupt during a write would close the channel and the remaining events would be spooled instead of shipped.
+     */
+    @Override
+    public void close() {
+        final Thread s;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stopped = true;
+            s = sender;
+        }
+
+        if (s != null) {
+            // if the queue is full the sender notices the stopped flag with its next poll
+            queue.offer(SHUTDOWN);
+            try {
+                s.join(CLOSE_TIMEOUT);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (dropped.get() > 0) {
+            LogLog.warn("appender " + name + " dropped " + dropped.get() + " events"); // NOI18N
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+
+    /**
+     * Getter for the number of dropped events.
+     *
+     * @return  the number of events that were neither shipped nor spooled
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Getter for the number of shipped events, events replayed from the spool are not counted.
+     *
+     * @return  the number of shipped events
+     */
+    public long getShippedCount() {
+        return shipped.get();
+    }
+
+    /**
+     * Getter for the number of spooled events, they are shipped once the receiver is available again.
+     *
+     * @return  the number of events appended to the spool file
+     */
+    public long getSpooledCount() {
+        return spooled.get();
+    }
+
+    /**
+     * Setter for the remote host.
+     *
+     * @param  remoteHost  the remote host
+     */
+    public void setRemoteHost(final String remoteHost) {
+        this.remoteHost = remoteHost;
+    }
+
+    /**
+     * Getter for the remote host.
+     *
+     * @return  the remote host
+     */
+    public String getRemoteHost() {
+        return remoteHost;
+    }
+
+    /**
+     * Setter for the remote port.
+     *
+     * @param  port  the remote port
+     */
+    public void setPort(final int port) {
+        this.port = port;
+    }
+
+    /**
+     * Getter for the remote port.
+     *
+     * @return  the remote port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Setter for the batch size.
+     *
+     * @param  batchSize  the maximum number of events written at once
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Getter for the batch size.
+     *
+     * @return  the maximum number of events written at once
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Setter for the queue size. Has no effect after {@link #activateOptions()}.
+     *
+     * @param  queueSize  the maximum number of queued events
+     */
+    public void setQueueSize(final int queueSize) {
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Getter for the queue size.
+     *
+     * @return  the maximum number of queued events
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Setter for the spool file. If no spool file is set events are dropped while the receiver is unavailable.
+     *
+     * @param  spoolFile  the path of the spool file
+     */
+    public void setSpoolFile(final String spoolFile) {
+        this.spoolFile = spoolFile;
+    }
+
+    /**
+     * Getter for the spool file.
+     *
+     * @return  the path of the spool file
+     */
+    public String getSpoolFile() {
+        return spoolFile;
+    }
+
+    /**
+     * Setter for the maximum spool file size.
+     *
+     * @param  maxSpoolSize  the maximum spool file size in bytes
+     */
+    public void setMaxSpoolSize(final long maxSpoolSize) {
+        this.maxSpoolSize = Math.max(0, maxSpoolSize);
+    }
+
+    /**
+     * Getter for the maximum spool file size.
+     *
+     * @return  the maximum spool file size in bytes
+     */
+    public long getMaxSpoolSize() {
+        return maxSpoolSize;
+    }
+
+    /**
+     * Setter for the reconnection delay.
+     *
+     * @param  reconnectionDelay  the time in milliseconds between two connection attempts
+     */
+    public void setReconnectionDelay(final long reconnectionDelay) {
+        this.reconnectionDelay = Math.max(0, reconnectionDelay);
+    }
+
+    /**
+     * Getter for the reconnection delay.
+     *
+     * @return  the time in milliseconds between two connection attempts
+     */
+    public long getReconnectionDelay() {
+        return reconnectionDelay;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Ships, spools and replays the queued events. All I/O of the appender happens in this thread.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Sender implements Runnable {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private SocketChannel channel;
+        private Selector selector;
+        private long nextConnectAttempt;
+        private RandomAccessFile spool;
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            final List<byte[]> batch = new ArrayList<byte[]>(batchSize);
+            boolean running = true;
+            try {
+                openSpool();
+                while (running) {
+                    try {
+                        final byte[] first = queue.poll(1, TimeUnit.SECONDS);
+                        if (first != null) {
+                            batch.add(first);
+                            queue.drainTo(batch, batchSize - 1);
+                        }
+                    } catch (final InterruptedException ex) {
+                        running = false;
+                    }
+
+                    if (!running || stopped) {
+                        queue.drainTo(batch);
+                        running = false;
+                    }
+                    // the shutdown marker is not a frame, events appended concurrently to close may follow it
+                    while (batch.remove(SHUTDOWN)) {
+                        running = false;
+                    }
+
+                    ship(batch);
+                    batch.clear();
+                }
+            } finally {
+                disconnect();
+                closeSpool();
+            }
+        }
+
+        /**
+         * Ships the given batch, replaying the spool first. If the receiver is unavailable the batch is spooled.
+         *
+         * @param  batch  the frames to ship, may be empty
+         */
+        private void ship(final List<byte[]> batch) {
+            final boolean connected = connect();
+            if (connected && (spoolSize() > 0)) {
+                try {
+                    replay();
+                } catch (final IOException ex) {
+                    LogLog.warn("replaying spool failed, will retry: " + ex.getMessage()); // NOI18N
+                    disconnect();
+                }
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            int length = 0;
+            for (final byte[] frame : batch) {
+                length += frame.length;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            for (final byte[] frame : batch) {
+                buffer.put(frame);
+            }
+            buffer.flip();
+
+            if ((channel != null) && (spoolSize() == 0)) {
+                try {
+                    write(buffer);
+                    shipped.addAndGet(batch.size());
+
+                    return;
+                } catch (final IOException ex) {
+                    LogLog.warn("shipping events failed, spooling: " + ex.getMessage()); // NOI18N
+                    disconnect();
+                    // the receiver may have got part of the batch, spool it as a whole anyway
+                    buffer.rewind();
+                }
+            }
+
+            spool(buffer, batch.size());
+        }
+
+        /**
+         * Ensures that there is a connection to the receiver. Connection attempts are not made more often than the
+         * reconnection delay permits.
+         *
+         * @return  true if connected, false otherwise
+         */
+        private boolean connect() {
+            if (channel != null) {
+                return true;
+            }
+
+            final long now = System.currentTimeMillis();
+            if (now < nextConnectAttempt) {
+                return false;
+            }
+            nextConnectAttempt = now + reconnectionDelay;
+
+            SocketChannel sc = null;
+            try {
+                if (selector == null) {
+                    selector = Selector.open();
+                }
+                sc = SocketChannel.open();
+                sc.configureBlocking(false);
+                if (!sc.connect(new InetSocketAddress(remoteHost, port))) {
+                    final SelectionKey key = sc.register(selector, SelectionKey.OP_CONNECT);
+                    try {
+                        if ((selector.select(IO_TIMEOUT) == 0) || !sc.finishConnect()) {
+                            throw new IOException("connect timed out"); // NOI18N
+                        }
+                    } finally {
+                        key.cancel();
+                        selector.selectNow();
+                    }
+                }
+                sc.socket().setTcpNoDelay(true);
+                channel = sc;
+
+                return true;
+            } catch (final IOException ex) {
+                LogLog.debug("cannot connect to " + remoteHost + ":" + port + ": " + ex.getMessage()); // NOI18N
+                if (sc != null) {
+                    try {
+                        sc.close();
+                    } catch (final IOException e) {
+                        // ignore
+                    }
+                }
+
+                return false;
+            }
+        }
+
+        /**
+         * Closes the connection, if any.
+         */
+        private void disconnect() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (final IOException ex) {
+                    // ignore
+                }
+                channel = null;
+            }
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (final IOException ex) {
+                    // ignore
+                }
+                selector = null;
+            }
+        }
+
+        /**
+         * Writes the whole buffer to the channel, waiting for writability if the socket buffer is full.
+         *
+         * @param   buffer  the data to write
+         *
+         * @throws  IOException  if the data cannot be written within the I/O timeout
+         */
+        private void write(final ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    final SelectionKey key = channel.register(selector, SelectionKey.OP_WRITE);
+                    try {
+                        if (selector.select(IO_TIMEOUT) == 0) {
+                            throw new IOException("write timed out"); // NOI18N
+                        }
+                    } finally {
+                        key.cancel();
+                        selector.selectNow();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the current size of the spool file.
+         *
+         * @return  the spool size in bytes, <code>0</code> if there is no spool file
+         */
+        private long spoolSize() {
+            if (spool == null) {
+                return 0;
+            }
+
+            try {
+                return spool.length();
+            } catch (final IOException ex) {
+                return 0;
+            }
+        }
+
+        /**
+         * Appends the given frames to the spool file if it does not exceed the maximum spool size, otherwise the frames
+         * are dropped.
+         *
+         * @param  buffer      the frames to spool
+         * @param  frameCount  the number of frames contained in the buffer
+         */
+        private void spool(final ByteBuffer buffer, final int frameCount) {
+            if ((spoolFile == null) || ((spoolSize() + buffer.remaining()) > maxSpoolSize)) {
+                dropped.addAndGet(frameCount);
+
+                return;
+            }
+
+            try {
+                if (spool == null) {
+                    spool = new RandomAccessFile(new File(spoolFile), "rw"); // NOI18N
+                }
+
+                final FileChannel fc = spool.getChannel();
+                fc.position(fc.size());
+                while (buffer.hasRemaining()) {
+                    fc.write(buffer);
+                }
+                spooled.addAndGet(frameCount);
+            } catch (final IOException ex) {
+                LogLog.warn("cannot spool events: " + ex.getMessage()); // NOI18N
+                dropped.addAndGet(frameCount);
+            }
+        }
+
+        /**
+         * Opens the spool file if it has been left over by a previous run, so it is replayed with the first connect.
+         */
+        private void openSpool() {
+            if ((spoolFile == null) || (new File(spoolFile).length() == 0)) {
+                return;
+            }
+
+            try {
+                spool = new RandomAccessFile(new File(spoolFile), "rw"); // NOI18N
+            } catch (final IOException ex) {
+                LogLog.warn("cannot open spool file " + spoolFile + ": " + ex.getMessage()); // NOI18N
+            }
+        }
+
+        /**
+         * Sends the whole spool file to the receiver and truncates it afterwards.
+         *
+         * @throws  IOException  if the spool cannot be read or sent
+         */
+        private void replay() throws IOException {
+            final FileChannel fc = spool.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate(REPLAY_CHUNK_SIZE);
+            long position = 0;
+            while (position < fc.size()) {
+                buffer.clear();
+                final int read = fc.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+                buffer.flip();
+                write(buffer);
+            }
+
+            fc.truncate(0);
+        }
+
+        /**
+         * Closes the spool file, if any. An empty spool file is deleted.
+         */
+        private void closeSpool() {
+            if (spool != null) {
+                final boolean empty = spoolSize() == 0;
+                try {
+                    spool.close();
+                } catch (final IOException ex) {
+                    // ignore
+                }
+                spool = null;
+                if (empty) {
+                    new File(spoolFile).delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the counters of the appender.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class Metrics implements MetricsSource {
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeMetrics(final MetricsWriter writer) {
+            final BlockingQueue<byte[]> q = queue;
+            writer.gauge(
+                "log_shipping_queued", // NOI18N
+                "Log events waiting for the sender thread", // NOI18N
+                (q == null) ? 0 : q.size());
+            writer.counter(
+                "log_shipping_shipped_total", // NOI18N
+                "Log events shipped to the receiver, without those replayed from the spool", // NOI18N
+                shipped.get());
+            writer.counter(
+                "log_shipping_spooled_total", // NOI18N
+                "Log events spooled while the receiver was unavailable", // NOI18N
+                spooled.get());
+            writer.counter(
+                "log_shipping_dropped_total", // NOI18N
+                "Log events dropped because the queue or the spool was full", // NOI18N
+                dropped.get());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple receiver for events shipped by the {@link LogShippingAppender}. Every decoded event is logged to the local
+ * Log4J logger of the same name, prefixed with the name of the remote thread. It is meant as a local stand-in for the
+ * real log receiver, e.g. to test the shipping and spooling behaviour. It can be started standalone using
+ * {@link #main(java.lang.String[])}. It must not run in the JVM that ships the events, otherwise every received event
+ * is shipped again.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class LogShippingReceiver implements Runnable {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final transient Logger LOG = Logger.getLogger(LogShippingReceiver.class);
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient ServerSocket serverSocket;
+    private final transient AtomicLong received;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new LogShippingReceiver object listening on the given port. Use port <code>0</code> to listen on any
+     * free port.
+     *
+     * @param   port  the port to listen on
+     *
+     * @throws  IOException  if the server socket cannot be created
+     */
+    public LogShippingReceiver(final int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        received = new AtomicLong();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Accepts connections until the receiver is closed. Every connection is handled by its own daemon thread.
+     */
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                final Thread handler = new Thread(
+                        new ConnectionHandler(socket),
+                        "log-receiver-" // NOI18N
+                                + socket.getRemoteSocketAddress());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (final IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warn("cannot accept connection", ex); // NOI18N
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections. Established connections are served until the remote side closes them.
+     *
+     * @throws  IOException  if the server socket cannot be closed
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * Getter for the port the receiver listens on.
+     *
+     * @return  the local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Getter for the number of received events.
+     *
+     * @return  the number of received events
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * Starts a receiver and logs the received events to the console.
+     *
+     * @param   args  the port to listen on, defaults to {@link LogShippingAppender#DEFAULT_PORT}
+     *
+     * @throws  IOException  if the receiver cannot be started
+     */
+    public static void main(final String[] args) throws IOException {
+        BasicConfigurator.configure();
+
+        final int port = (args.length > 0) ? Integer.parseInt(args[0]) : LogShippingAppender.DEFAULT_PORT;
+        final LogShippingReceiver receiver = new LogShippingReceiver(port);
+        LOG.info("listening on port " + receiver.getPort()); // NOI18N
+
+        receiver.run();
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Decodes the events of a single connection.
+     *
+     * @version  1.0, 20261017
+     */
+    private final class ConnectionHandler implements Runnable {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final Socket socket;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new ConnectionHandler object.
+         *
+         * @param  socket  the accepted connection
+         */
+        ConnectionHandler(final Socket socket) {
+            this.socket = socket;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            try {
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (true) {
+                    final CompactEventCodec.ShippedEvent event = CompactEventCodec.decode(in);
+                    received.incrementAndGet();
+
+                    final Logger logger = (event.getLogger() == null) ? Logger.getRootLogger()
+                                                                      : Logger.getLogger(event.getLogger());
+                    final Level level = Level.toLevel(event.getLevel());
+                    if (logger.isEnabledFor(level)) {
+                        final StringBuilder message = new StringBuilder();
+                        message.append('[').append(event.getThread()).append("] ").append(event.getMessage()); // NOI18N
+                        for (final String line : event.getThrowable()) {
+                            message.append('\n').append(line);
+                        }
+                        logger.log(level, message.toString());
+                    }
+                }
+            } catch (final EOFException ex) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("connection closed: " + socket.getRemoteSocketAddress()); // NOI18N
+                }
+            } catch (final IOException ex) {
+                LOG.warn("connection failed: " + socket.getRemoteSocketAddress(), ex); // NOI18N
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
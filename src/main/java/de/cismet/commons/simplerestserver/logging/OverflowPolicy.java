@@ -0,0 +1,28 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.logging;
+
+/**
+ * Defines how an {@link AsyncBatchingAppender} behaves if its buffer is full.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public enum OverflowPolicy {
+
+    //~ Enum constants ---------------------------------------------------------
+
+    /** The logging thread waits until there is room in the buffer, no event is lost. */
+    BLOCK,
+
+    /** Events below INFO are dropped, all other events wait until there is room in the buffer. */
+    DROP_DEBUG,
+
+    /** Any event is dropped, the logging thread never waits. */
+    DROP_ALL
+}
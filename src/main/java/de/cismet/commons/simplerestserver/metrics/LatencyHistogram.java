@@ -0,0 +1,294 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records latencies in microseconds into a fixed set of log-linear buckets. Every power of two is divided into 32
+ * buckets of equal width, so a recorded value is off by at most about 3% while the whole range from 1 microsecond to
+ * more than three weeks fits into less than 10 KB. Recording is lock-free and does not allocate, percentiles are
+ * computed from a {@link Snapshot} taken by the reader.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class LatencyHistogram {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    // highest power of two with its own buckets, larger values are recorded in the last bucket
+    private static final int MAX_EXPONENT = 40;
+
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient AtomicLongArray buckets;
+    private final transient AtomicLong sum;
+    private final transient AtomicLong max;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new LatencyHistogram object.
+     */
+    public LatencyHistogram() {
+        buckets = new AtomicLongArray(BUCKET_COUNT);
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Records a latency.
+     *
+     * @param  nanos  the latency in nanoseconds, negative values are recorded as zero
+     */
+    public void recordNanos(final long nanos) {
+        record((nanos <= 0) ? 0 : (nanos / 1000));
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param  micros  the latency in microseconds, negative values are recorded as zero
+     */
+    public void record(final long micros) {
+        final long value = (micros < 0) ? 0 : micros;
+
+        buckets.incrementAndGet(indexOf(value));
+        sum.addAndGet(value);
+
+        long current = max.get();
+        while ((value > current) && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the recorded values. Values recorded while the snapshot is taken may or may not be included.
+     *
+     * @return  a new snapshot
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        return new Snapshot(counts, count, sum.get(), max.get());
+    }
+
+    /**
+     * Returns the index of the bucket the given value is recorded in.
+     *
+     * @param   value  a non-negative value
+     *
+     * @return  the bucket index
+     */
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS)
+                    + (int)((value >>> (exponent - SUB_BUCKET_BITS)) & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * Returns the highest value that is recorded in the bucket with the given index.
+     *
+     * @param   index  the bucket index
+     *
+     * @return  the upper bound of the bucket
+     */
+    static long upperBoundOf(final int index) {
+        if (index < (2 * SUB_BUCKET_COUNT)) {
+            return index;
+        }
+
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long lower = ((long)(SUB_BUCKET_COUNT + (index & SUB_BUCKET_MASK))) << shift;
+
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the lowest value that is recorded in the bucket with the given index.
+     *
+     * @param   index  the bucket index
+     *
+     * @return  the lower bound of the bucket
+     */
+    static long lowerBoundOf(final int index) {
+        return (index == 0) ? 0 : (upperBoundOf(index - 1) + 1);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * An immutable copy of the buckets of a {@link LatencyHistogram}.
+     *
+     * @version  1.0, 20261017
+     */
+    public static final class Snapshot {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new Snapshot object.
+         *
+         * @param  counts  the bucket counts
+         * @param  count   the total number of recorded values
+         * @param  sum     the sum of all recorded values in microseconds
+         * @param  max     the highest recorded value in microseconds
+         */
+        Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * Getter for the number of recorded values.
+         *
+         * @return  the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Getter for the sum of all recorded values.
+         *
+         * @return  the sum in microseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Getter for the highest recorded value.
+         *
+         * @return  the highest value in microseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value below or at which the given fraction of the recorded values lies. The result is the upper
+         * bound of the respective bucket but never more than the highest recorded value.
+         *
+         * @param   quantile  the quantile, e.g. <code>0.999</code> for the 99.9th percentile
+         *
+         * @return  the value in microseconds or <code>0</code> if nothing was recorded
+         */
+        public long getValueAtQuantile(final double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final double q = Math.max(0, Math.min(1, quantile));
+            final long rank = Math.max(1, (long)Math.ceil(q * count));
+
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+
+            return max;
+        }
+
+        /**
+         * Creates a copy of this snapshot that is corrected for coordinated omission. A client that waits for every
+         * response before it sends the next request does not send the requests it would have sent while a slow
+         * response was pending, so only a single sample is recorded for the whole stall. Like
+         * <code>HdrHistogram</code>, the copy contains the samples that are missing if requests were expected every
+         * <code>expectedInterval</code> microseconds: for every recorded value <code>v</code> also the values <code>
+         * v - expectedInterval</code>, <code>v - 2 * expectedInterval</code>, ... down to <code>
+         * expectedInterval</code>.
+         *
+         * @param   expectedInterval  the expected interval between two requests in microseconds
+         *
+         * @return  the corrected snapshot or this snapshot if <code>expectedInterval</code> is not positive
+         */
+        public Snapshot correctedForCoordinatedOmission(final long expectedInterval) {
+            if ((expectedInterval <= 0) || (max < (2 * expectedInterval))) {
+                return this;
+            }
+
+            final long[] corrected = counts.clone();
+            long correctedCount = count;
+            long correctedSum = sum;
+            for (int i = indexOf(2 * expectedInterval); i < counts.length; ++i) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+
+                // the missing values v - k * expectedInterval for k in [1, last] are counted per bucket, not one by one
+                final long value = Math.min(upperBoundOf(i), max);
+                final long last = (value / expectedInterval) - 1;
+                for (int j = indexOf(expectedInterval); j <= i; ++j) {
+                    final long first = Math.max(1, ceilDiv(value - upperBoundOf(j), expectedInterval));
+                    final long end = Math.min(last, (value - lowerBoundOf(j)) / expectedInterval);
+                    if (end >= first) {
+                        final long missing = end - first + 1;
+                        corrected[j] += missing * counts[i];
+                        correctedCount += missing * counts[i];
+                        correctedSum += ((missing * value) - (expectedInterval * (first + end) * missing / 2))
+                                    * counts[i];
+                    }
+                }
+            }
+
+            return new Snapshot(corrected, correctedCount, correctedSum, max);
+        }
+
+        /**
+         * Divides and rounds towards positive infinity.
+         *
+         * @param   dividend  the dividend
+         * @param   divisor   the positive divisor
+         *
+         * @return  the rounded quotient
+         */
+        private static long ceilDiv(final long dividend, final long divisor) {
+            final long quotient = dividend / divisor;
+
+            return ((dividend % divisor) > 0) ? (quotient + 1) : quotient;
+        }
+    }
+}
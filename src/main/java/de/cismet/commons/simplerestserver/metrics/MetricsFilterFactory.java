@@ -0,0 +1,152 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.metrics;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResource;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binds every request to the {@link ResourceMetrics} of the resource method Jersey matched. The request is only bound
+ * here, it is completed and timed by the container around the Jersey adapter, so that serialisation and unmapped
+ * exceptions are covered as well. The factory is registered using the Jersey init parameter
+ * <code>com.sun.jersey.spi.container.ResourceFilters</code>, the container does that automatically if metrics are
+ * enabled.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class MetricsFilterFactory implements ResourceFilterFactory {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ResourceFilter> create(final AbstractMethod am) {
+        if (!(am instanceof AbstractResourceMethod)) {
+            return null;
+        }
+
+        final AbstractResourceMethod method = (AbstractResourceMethod)am;
+        final ResourceMetrics metrics = MetricsRegistry.getInstance()
+                    .getResourceMetrics(method.getHttpMethod(), createPathTemplate(method));
+
+        return Collections.<ResourceFilter>singletonList(new MetricsFilter(metrics));
+    }
+
+    /**
+     * Creates the path template of the given resource method, e.g. <code>/users/{id}</code>. Resource classes that are
+     * not root resources are represented by their simple class name.
+     *
+     * @param   method  the resource method
+     *
+     * @return  the path template
+     */
+    private static String createPathTemplate(final AbstractResourceMethod method) {
+        final AbstractResource resource = method.getResource();
+
+        final StringBuilder path = new StringBuilder();
+        if (resource.isRootResource()) {
+            appendSegment(path, resource.getPath().getValue());
+        } else {
+            path.append('<').append(resource.getResourceClass().getSimpleName()).append('>');
+        }
+        if (method instanceof AbstractSubResourceMethod) {
+            appendSegment(path, ((AbstractSubResourceMethod)method).getPath().getValue());
+        }
+        if (path.length() == 0) {
+            path.append('/');
+        }
+
+        return path.toString();
+    }
+
+    /**
+     * Appends a path segment, making sure that it is separated by exactly one slash.
+     *
+     * @param  path     the path
+     * @param  segment  the segment to append
+     */
+    private static void appendSegment(final StringBuilder path, final String segment) {
+        int start = 0;
+        int end = segment.length();
+        while ((start < end) && (segment.charAt(start) == '/')) {
+            ++start;
+        }
+        while ((end > start) && (segment.charAt(end - 1) == '/')) {
+            --end;
+        }
+        if (start < end) {
+            path.append('/').append(segment, start, end);
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Binds the requests of a single resource method to its metrics.
+     *
+     * @version  1.0, 20261017
+     */
+    private static final class MetricsFilter implements ResourceFilter, ContainerRequestFilter {
+
+        //~ Instance fields ----------------------------------------------------
+
+        private final ResourceMetrics metrics;
+
+        //~ Constructors -------------------------------------------------------
+
+        /**
+         * Creates a new MetricsFilter object.
+         *
+         * @param  metrics  the metrics of the resource method
+         */
+        MetricsFilter(final ResourceMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerRequestFilter getRequestFilter() {
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerResponseFilter getResponseFilter() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerRequest filter(final ContainerRequest request) {
+            metrics.enter();
+
+            return request;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Holds the {@link ResourceMetrics} of all resource methods and the other {@link MetricsSource}s of this JVM and
+ * renders them in the plain-text exposition format. There is one registry per JVM, shared by all containers, so the
+ * resource metrics aggregate the requests of all listeners.<br/>
+ * <br/>
+ * The latencies of the resource methods are exported as summaries with the quantiles 0.5, 0.9, 0.99 and 0.999 over the
+ * whole lifetime of the server. Scrapers derive rates and windowed percentiles from consecutive scrapes anyway.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class MetricsRegistry {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    //~ Instance fields --------------------------------------------------------
+
+    // sorted to get a stable output
+    private final transient ConcurrentMap<String, ResourceMetrics> resources;
+    private final transient ConcurrentMap<String, MetricsSource> sources;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new MetricsRegistry object.
+     */
+    private MetricsRegistry() {
+        resources = new ConcurrentSkipListMap<String, ResourceMetrics>();
+        sources = new ConcurrentSkipListMap<String, MetricsSource>();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the metrics registry of this JVM.
+     *
+     * @return  the metrics registry
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the metrics of the given resource method, they are created if they do not exist yet.
+     *
+     * @param   method  the HTTP method
+     * @param   path    the path template
+     *
+     * @return  the metrics of the resource method
+     */
+    public ResourceMetrics getResourceMetrics(final String method, final String path) {
+        final String key = path + ' ' + method;
+        ResourceMetrics metrics = resources.get(key);
+        if (metrics == null) {
+            final ResourceMetrics created = new ResourceMetrics(method, path);
+            metrics = resources.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Adds a source whose metrics are written after the resource metrics. A source that was added with the same name
+     * before is replaced.
+     *
+     * @param  name    the unique name of the source
+     * @param  source  the source
+     */
+    public void addSource(final String name, final MetricsSource source) {
+        sources.put(name, source);
+    }
+
+    /**
+     * Removes a source.
+     *
+     * @param  name  the name of the source
+     */
+    public void removeSource(final String name) {
+        sources.remove(name);
+    }
+
+    /**
+     * Renders all metrics in the plain-text exposition format.
+     *
+     * @return  the metrics
+     */
+    public String scrape() {
+        final StringBuilder out = new StringBuilder(4096);
+        final MetricsWriter writer = new MetricsWriter(out);
+
+        writeResourceMetrics(writer);
+        for (final MetricsSource source : sources.values()) {
+            source.writeMetrics(writer);
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Writes the metrics of all resource methods.
+     *
+     * @param  writer  the writer to use
+     */
+    private void writeResourceMetrics(final MetricsWriter writer) {
+        final List<ResourceMetrics> all = new ArrayList<ResourceMetrics>(resources.values());
+        final List<String[]> labels = new ArrayList<String[]>(all.size());
+        final List<LatencyHistogram.Snapshot> snapshots = new ArrayList<LatencyHistogram.Snapshot>(all.size());
+        for (final ResourceMetrics metrics : all) {
+            labels.add(new String[] { "method", metrics.getMethod(), "resource", metrics.getPath() }); // NOI18N
+            snapshots.add(metrics.getLatency().snapshot());
+        }
+
+        writer.family(
+            "http_server_requests_total",                                       // NOI18N
+            MetricsWriter.TYPE_COUNTER,
+            "Completed requests per resource method");                          // NOI18N
+        for (int i = 0; i < all.size(); ++i) {
+            writer.sample("http_server_requests_total", labels.get(i), all.get(i).getRequestCount()); // NOI18N
+        }
+
+        writer.family(
+            "http_server_errors_total",                                         // NOI18N
+            MetricsWriter.TYPE_COUNTER,
+            "Requests per resource method that failed with a 5xx status or an exception"); // NOI18N
+        for (int i = 0; i < all.size(); ++i) {
+            writer.sample("http_server_errors_total", labels.get(i), all.get(i).getErrorCount()); // NOI18N
+        }
+
+        writer.family(
+            "http_server_requests_in_flight",                                   // NOI18N
+            MetricsWriter.TYPE_GAUGE,
+            "Requests per resource method that are in progress");               // NOI18N
+        for (int i = 0; i < all.size(); ++i) {
+            writer.sample("http_server_requests_in_flight", labels.get(i), all.get(i).getInFlightCount()); // NOI18N
+        }
+
+        writer.family(
+            "http_server_request_duration_seconds",                             // NOI18N
+            MetricsWriter.TYPE_SUMMARY,
+            "Processing time of the requests per resource method");            // NOI18N
+        for (int i = 0; i < all.size(); ++i) {
+            writer.summary("http_server_request_duration_seconds", labels.get(i), snapshots.get(i)); // NOI18N
+        }
+
+        writer.family(
+            "http_server_request_duration_seconds_max",                         // NOI18N
+            MetricsWriter.TYPE_GAUGE,
+            "Longest processing time of a request per resource method");        // NOI18N
+        for (int i = 0; i < all.size(); ++i) {
+            writer.sample(
+                "http_server_request_duration_seconds_max",                     // NOI18N
+                labels.get(i),
+                MetricsWriter.toSeconds(snapshots.get(i).getMax()));
+        }
+    }
+
+    /**
+     * Returns the metrics of all known resource methods, keyed by path template and HTTP method.
+     *
+     * @return  an unmodifiable view of the resource metrics
+     */
+    public Map<String, ResourceMetrics> getResourceMetrics() {
+        return Collections.unmodifiableMap(resources);
+    }
+}
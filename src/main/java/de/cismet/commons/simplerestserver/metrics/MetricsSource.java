@@ -0,0 +1,27 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.metrics;
+
+/**
+ * Contributes metrics to the output of the {@link MetricsRegistry}. Sources are asked for their metrics on every
+ * scrape, so they should report the current values of counters they maintain anyway instead of computing them.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public interface MetricsSource {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Writes the metrics of this source.
+     *
+     * @param  writer  the writer to use
+     */
+    void writeMetrics(MetricsWriter writer);
+}
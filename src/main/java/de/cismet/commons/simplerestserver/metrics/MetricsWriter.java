@@ -0,0 +1,214 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.metrics;
+
+/**
+ * Writes metrics in the plain-text exposition format understood by Prometheus and compatible scrapers. Every metric
+ * family is introduced by {@link #family(String, String, String)} and followed by its samples, samples of one family
+ * must not be interleaved with samples of another.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class MetricsWriter {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8"; // NOI18N
+
+    public static final String TYPE_COUNTER = "counter"; // NOI18N
+    public static final String TYPE_GAUGE = "gauge";     // NOI18N
+    public static final String TYPE_SUMMARY = "summary"; // NOI18N
+
+    private static final String[] NO_LABELS = new String[0];
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final double MICROS_PER_SECOND = 1000000d;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient StringBuilder out;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new MetricsWriter object.
+     *
+     * @param  out  the buffer to write to
+     */
+    public MetricsWriter(final StringBuilder out) {
+        this.out = out;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Starts a metric family.
+     *
+     * @param  name  the name of the family
+     * @param  type  the type of the family, one of the <code>TYPE_</code> constants
+     * @param  help  the description of the family
+     */
+    public void family(final String name, final String type, final String help) {
+        out.append("# HELP ").append(name).append(' ');                           // NOI18N
+        appendEscaped(help, false);
+        out.append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n'); // NOI18N
+    }
+
+    /**
+     * Writes a counter family with a single sample without labels.
+     *
+     * @param  name   the name of the counter
+     * @param  help   the description of the counter
+     * @param  value  the value
+     */
+    public void counter(final String name, final String help, final long value) {
+        family(name, TYPE_COUNTER, help);
+        sample(name, value);
+    }
+
+    /**
+     * Writes a gauge family with a single sample without labels.
+     *
+     * @param  name   the name of the gauge
+     * @param  help   the description of the gauge
+     * @param  value  the value
+     */
+    public void gauge(final String name, final String help, final long value) {
+        family(name, TYPE_GAUGE, help);
+        sample(name, value);
+    }
+
+    /**
+     * Writes a sample without labels.
+     *
+     * @param  name   the name of the sample
+     * @param  value  the value
+     */
+    public void sample(final String name, final long value) {
+        sample(name, NO_LABELS, value);
+    }
+
+    /**
+     * Writes a sample without labels.
+     *
+     * @param  name   the name of the sample
+     * @param  value  the value
+     */
+    public void sample(final String name, final double value) {
+        sample(name, NO_LABELS, value);
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param  name    the name of the sample
+     * @param  labels  alternating label names and values
+     * @param  value   the value
+     */
+    public void sample(final String name, final String[] labels, final long value) {
+        appendName(name, labels);
+        out.append(value).append('\n');
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param  name    the name of the sample
+     * @param  labels  alternating label names and values
+     * @param  value   the value
+     */
+    public void sample(final String name, final String[] labels, final double value) {
+        appendName(name, labels);
+        if (Double.isNaN(value)) {
+            out.append("NaN");                          // NOI18N
+        } else if (Double.isInfinite(value)) {
+            out.append((value > 0) ? "+Inf" : "-Inf"); // NOI18N
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Writes the samples of a summary of latencies in seconds: the quantiles 0.5, 0.9, 0.99 and 0.999 followed by the
+     * <code>_sum</code> and the <code>_count</code> sample.
+     *
+     * @param  name      the name of the summary
+     * @param  labels    alternating label names and values
+     * @param  snapshot  the snapshot of the latencies
+     */
+    public void summary(final String name, final String[] labels, final LatencyHistogram.Snapshot snapshot) {
+        final String[] quantileLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, quantileLabels, 0, labels.length);
+        quantileLabels[labels.length] = "quantile"; // NOI18N
+        for (final double quantile : QUANTILES) {
+            quantileLabels[labels.length + 1] = String.valueOf(quantile);
+            sample(name, quantileLabels, snapshot.getValueAtQuantile(quantile) / MICROS_PER_SECOND);
+        }
+        sample(name + "_sum", labels, snapshot.getSum() / MICROS_PER_SECOND); // NOI18N
+        sample(name + "_count", labels, snapshot.getCount());                 // NOI18N
+    }
+
+    /**
+     * Converts a latency to seconds.
+     *
+     * @param   micros  the latency in microseconds
+     *
+     * @return  the latency in seconds
+     */
+    public static double toSeconds(final long micros) {
+        return micros / MICROS_PER_SECOND;
+    }
+
+    /**
+     * Appends the name and the labels of a sample followed by a space.
+     *
+     * @param  name    the name of the sample
+     * @param  labels  alternating label names and values
+     */
+    private void appendName(final String name, final String[] labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; (i + 1) < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\""); // NOI18N
+                appendEscaped(labels[i + 1], true);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+    }
+
+    /**
+     * Appends the given text, escaping backslashes, line feeds and, in label values, double quotes.
+     *
+     * @param  text   the text
+     * @param  quote  whether double quotes shall be escaped
+     */
+    private void appendEscaped(final String text, final boolean quote) {
+        for (int i = 0; i < text.length(); ++i) {
+            final char c = text.charAt(i);
+            if (c == '\\') {
+                out.append("\\\\"); // NOI18N
+            } else if (c == '\n') {
+                out.append("\\n");  // NOI18N
+            } else if (quote && (c == '"')) {
+                out.append("\\\""); // NOI18N
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
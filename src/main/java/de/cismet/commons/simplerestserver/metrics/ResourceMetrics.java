@@ -0,0 +1,156 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of a single resource method: number of requests, number of failed requests, number of requests in
+ * progress and the latency distribution. A request is bound to the metrics of its resource method by
+ * {@link #enter()} once Jersey has matched the method, and completed by {@link #exit(long, boolean)} from the thread
+ * that processed it. Neither allocates once the thread has processed its first request.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public final class ResourceMetrics {
+
+    //~ Static fields/initializers ---------------------------------------------
+
+    // the metrics of the request processed by the current thread, one reusable holder per thread
+    private static final ThreadLocal<ResourceMetrics[]> CURRENT = new ThreadLocal<ResourceMetrics[]>() {
+
+            @Override
+            protected ResourceMetrics[] initialValue() {
+                return new ResourceMetrics[1];
+            }
+        };
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final transient String method;
+    private final transient String path;
+
+    private final transient AtomicLong requests;
+    private final transient AtomicLong errors;
+    private final transient AtomicLong inFlight;
+    private final transient LatencyHistogram latency;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ResourceMetrics object.
+     *
+     * @param  method  the HTTP method of the resource method
+     * @param  path    the path template of the resource method
+     */
+    ResourceMetrics(final String method, final String path) {
+        this.method = method;
+        this.path = path;
+        this.requests = new AtomicLong();
+        this.errors = new AtomicLong();
+        this.inFlight = new AtomicLong();
+        this.latency = new LatencyHistogram();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Binds the request processed by the current thread to these metrics. If the request was bound to other metrics
+     * before, e.g. by a sub-resource locator, it is moved.
+     */
+    public void enter() {
+        final ResourceMetrics[] current = CURRENT.get();
+        if (current[0] != this) {
+            if (current[0] != null) {
+                current[0].inFlight.decrementAndGet();
+            }
+            current[0] = this;
+            inFlight.incrementAndGet();
+        }
+    }
+
+    /**
+     * Completes the request processed by the current thread, if it was bound to any metrics.
+     *
+     * @param   nanos   the processing time of the request in nanoseconds
+     * @param   failed  whether the request failed
+     *
+     * @return  the metrics the request was bound to or <code>null</code> if it was not bound
+     */
+    public static ResourceMetrics exit(final long nanos, final boolean failed) {
+        final ResourceMetrics[] current = CURRENT.get();
+        final ResourceMetrics metrics = current[0];
+        if (metrics != null) {
+            current[0] = null;
+            metrics.inFlight.decrementAndGet();
+            metrics.requests.incrementAndGet();
+            if (failed) {
+                metrics.errors.incrementAndGet();
+            }
+            metrics.latency.recordNanos(nanos);
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Getter for the HTTP method.
+     *
+     * @return  the HTTP method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Getter for the path template.
+     *
+     * @return  the path template
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Getter for the number of completed requests.
+     *
+     * @return  the number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Getter for the number of failed requests, i.e. requests that were answered with a <code>5xx</code> status or
+     * that threw an exception.
+     *
+     * @return  the number of errors
+     */
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * Getter for the number of requests in progress.
+     *
+     * @return  the number of requests in progress
+     */
+    public long getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * Getter for the latency histogram.
+     *
+     * @return  the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,78 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.websocket;
+
+/**
+ * Receives the messages of the WebSocket connections to a path. Endpoints are registered with the server parameter
+ * <code>webSocketEndpoints</code>, a comma separated list of <code>&lt;path&gt;=&lt;class name&gt;</code> entries. The
+ * paths are relative to the context path and share the port of the listener with the resources, every listener creates
+ * one instance of the class using its public no-argument constructor. A command endpoint answering in the callback:
+ *
+ * <pre>
+ * public class RemoteControl extends WebSocketEndpoint {
+ *     &#64;Override
+ *     public void onText(final WebSocketSession session, final String command) {
+ *         session.send(device.execute(command));
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>The callbacks of a connection are invoked by the thread reading it, one at a time, so they should not block.
+ * Disabling Nagle's algorithm with the server parameter <code>tcpNoDelay</code> keeps small replies from being delayed.
+ * </p>
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public abstract class WebSocketEndpoint {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Called once a client has connected.
+     *
+     * @param  session  the new session
+     */
+    public void onOpen(final WebSocketSession session) {
+    }
+
+    /**
+     * Called for every text message of the client.
+     *
+     * @param  session  the session
+     * @param  text     the message
+     */
+    public void onText(final WebSocketSession session, final String text) {
+    }
+
+    /**
+     * Called for every binary message of the client.
+     *
+     * @param  session  the session
+     * @param  data     the message
+     */
+    public void onBinary(final WebSocketSession session, final byte[] data) {
+    }
+
+    /**
+     * Called once the pending messages of a session that refused a message have been written down to half of the
+     * limit. Invoked by the thread that wrote them.
+     *
+     * @param  session  the session
+     */
+    public void onWritable(final WebSocketSession session) {
+    }
+
+    /**
+     * Called once the session is closed, by either side or because the connection failed.
+     *
+     * @param  session  the closed session
+     */
+    public void onClose(final WebSocketSession session) {
+    }
+}
@@ -0,0 +1,90 @@
+/***************************************************
+*
+* cismet GmbH, Saarbruecken, Germany
+*
+*              ... and it just works.
+*
+****************************************************/
+package de.cismet.commons.simplerestserver.websocket;
+
+/**
+ * A WebSocket connection of a {@link WebSocketEndpoint}. All methods may be called from any thread.<br/>
+ * <br/>
+ * Messages are sent in the order of the calls. The thread that finds no other thread sending writes the message itself
+ * at once, which keeps the round trip of a reply sent from within a callback as short as possible. Messages sent
+ * meanwhile by other threads are queued and written by the sending thread before it returns. No call blocks: what the
+ * socket does not take at once is written by a writer thread as soon as the client reads again, the message counts as
+ * pending until then. The queue is bounded by the pending bytes of the connection: once they exceed the limit, the
+ * messages are refused instead of buffered until the client has caught up, which the endpoint learns by
+ * {@link WebSocketEndpoint#onWritable(WebSocketSession)}.
+ *
+ * @author   martin.scholl@cismet.de
+ * @version  1.0, 20261017
+ */
+public interface WebSocketSession {
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Sends a text message.
+     *
+     * @param   text  the message
+     *
+     * @return  <code>true</code> if the message is sent or queued, <code>false</code> if it is refused because too many
+     *          bytes are pending or the session is closed
+     */
+    boolean send(String text);
+
+    /**
+     * Sends a binary message. The array must not be modified afterwards, it may be queued.
+     *
+     * @param   data  the message
+     *
+     * @return  <code>true</code> if the message is sent or queued, <code>false</code> if it is refused because too many
+     *          bytes are pending or the session is closed
+     */
+    boolean send(byte[] data);
+
+    /**
+     * Indicates whether a message of the given size would be accepted now.
+     *
+     * @param   size  the size of the message in bytes, characters for text messages
+     *
+     * @return  <code>true</code> if the session is open and the message fits into the queue
+     */
+    boolean isWritable(int size);
+
+    /**
+     * Returns the size of the messages that are not written yet.
+     *
+     * @return  the pending bytes, characters for text messages
+     */
+    long getPendingBytes();
+
+    /**
+     * Indicates whether the session is open.
+     *
+     * @return  <code>true</code> if the session is open
+     */
+    boolean isOpen();
+
+    /**
+     * Returns the path the client connected to, relative to the context path.
+     *
+     * @return  the path of the endpoint
+     */
+    String getPath();
+
+    /**
+     * Closes the session normally once the pending messages are written.
+     */
+    void close();
+
+    /**
+     * Closes the session once the pending messages are written.
+     *
+     * @param  code    the status code of the close frame
+     * @param  reason  the reason or <code>null</code>
+     */
+    void close(int code, String reason);
+}